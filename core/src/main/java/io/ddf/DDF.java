@@ -22,6 +22,8 @@ import com.google.gson.annotations.Expose;
 import io.basic.ddf.BasicDDFManager;
 import io.ddf.analytics.AStatisticsSupporter.FiveNumSummary;
 import io.ddf.analytics.AStatisticsSupporter.HistogramBin;
+import io.ddf.analytics.ContingencyTable;
+import io.ddf.analytics.GroupedDDF;
 import io.ddf.analytics.IHandleAggregation;
 import io.ddf.analytics.IHandleBinning;
 import io.ddf.analytics.ISupportStatistics;
@@ -34,6 +36,7 @@ import io.ddf.datasource.SQLDataSourceDescriptor;
 import io.ddf.etl.*;
 import io.ddf.etl.IHandleMissingData.Axis;
 import io.ddf.etl.IHandleMissingData.NAChecking;
+import io.ddf.etl.Types.JoinStrategy;
 import io.ddf.etl.Types.JoinType;
 import io.ddf.exception.DDFException;
 import io.ddf.facades.*;
@@ -42,6 +45,7 @@ import io.ddf.ml.ISupportML;
 import io.ddf.ml.ISupportMLMetrics;
 import io.ddf.types.AggregateTypes.AggregateField;
 import io.ddf.types.AggregateTypes.AggregationResult;
+import io.ddf.types.AggregateTypes.TypedAggregationResult;
 import io.ddf.types.IGloballyAddressable;
 import io.ddf.util.ISupportPhantomReference;
 import io.ddf.util.PhantomReference;
@@ -414,15 +418,39 @@ public abstract class DDF extends ALoggable //
     return this.getAggregationHandler().aggregate(AggregateField.fromSqlFieldSpecs(fields));
   }
 
+  /**
+   * Same as {@link #aggregate(String)}, with the group keys and aggregated values kept typed
+   *
+   * @param fields a string includes aggregated fields and functions, e.g "a, b, sum(c), max(d)"
+   * @return
+   * @throws DDFException
+   */
+  public TypedAggregationResult aggregateTyped(String fields) throws DDFException {
+    return this.getAggregationHandler().aggregateTyped(AggregateField.fromSqlFieldSpecs(fields));
+  }
+
   public AggregationResult xtabs(String fields) throws DDFException {
     return this.getAggregationHandler().xtabs(AggregateField.fromSqlFieldSpecs(fields));
   }
 
+  public ContingencyTable contingencyTable(List<String> columns) throws DDFException {
+    return this.getAggregationHandler().contingencyTable(columns);
+  }
+
   public DDF join(DDF anotherDDF, JoinType joinType, List<String> byColumns, List<String> byLeftColumns,
       List<String> byRightColumns) throws DDFException {
     return this.getJoinsHandler().join(anotherDDF, joinType, byColumns, byLeftColumns, byRightColumns);
   }
 
+  public DDF join(DDF anotherDDF, JoinType joinType, List<String> byColumns, List<String> byLeftColumns,
+      List<String> byRightColumns, JoinStrategy strategy) throws DDFException {
+    return this.getJoinsHandler().join(anotherDDF, joinType, byColumns, byLeftColumns, byRightColumns, strategy);
+  }
+
+  public DDF append(DDF batch) throws DDFException {
+    return this.getJoinsHandler().append(batch);
+  }
+
   public DDF groupBy(List<String> groupedColumns, List<String> aggregateFunctions) throws DDFException {
     return this.getAggregationHandler().groupBy(groupedColumns, aggregateFunctions);
   }
@@ -435,6 +463,18 @@ public abstract class DDF extends ALoggable //
     return this.getAggregationHandler().agg(aggregateFunctions);
   }
 
+  /**
+   * Groups this DDF by the given columns, without changing any state of the DDF, so that it can be aggregated
+   * concurrently from several threads, e.g., ddf.groupedBy(columns).agg(functions)
+   *
+   * @param groupedColumns
+   * @return
+   * @throws DDFException
+   */
+  public GroupedDDF groupedBy(List<String> groupedColumns) throws DDFException {
+    return this.getAggregationHandler().groupedBy(groupedColumns);
+  }
+
   // ///// binning
   public DDF binning(String column, String binningType, int numBins, double[] breaks, boolean includeLowest,
       boolean right) throws DDFException {
@@ -17,6 +17,7 @@ package io.ddf;
 
 
 import com.google.common.base.Strings;
+import io.basic.ddf.BasicDDF;
 import io.ddf.content.APersistenceHandler.PersistenceUri;
 import io.ddf.content.IHandlePersistence.IPersistible;
 import io.ddf.content.IHandleRepresentations;
@@ -35,14 +36,16 @@ import io.ddf.misc.Config.ConfigConstant;
 import io.ddf.misc.ObjectRegistry;
 import io.ddf.ml.IModel;
 import io.ddf.ml.ISupportML;
+import io.ddf.ml.Model;
+import io.ddf.ml.ModelRegistry;
 import io.ddf.util.ISupportPhantomReference;
 import io.ddf.util.PhantomReference;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.util.Arrays;
-import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * <p>
@@ -105,7 +108,12 @@ public abstract class DDFManager extends ALoggable implements IDDFManager, IHand
      */
     protected DDFCache mDDFCache = new DDFCache();
 
-    protected Map<String, IModel> mModels = new ConcurrentHashMap<String, IModel>();
+    public static final long DEFAULT_MODEL_REGISTRY_MAX_BYTES = 256L << 20;
+
+    /**
+     * Models by name, of at most MODEL_REGISTRY_MAX_BYTES in memory, the others being evicted to disk.
+     */
+    private ModelRegistry mModels;
 
     public void addDDF(DDF ddf) throws DDFException {
         mDDFCache.addDDF(ddf);
@@ -142,23 +150,43 @@ public abstract class DDFManager extends ALoggable implements IDDFManager, IHand
         mDDFCache.setDDFUUID(ddf, uuid);
     }
 
-    public void addModel(IModel model) {
-        mModels.put(model.getName(), model);
+    protected synchronized ModelRegistry getModelRegistry() throws DDFException {
+        if (mModels == null) {
+            String maxBytes = Config.getValueWithGlobalDefault(this.getEngine(),
+                ConfigConstant.FIELD_MODEL_REGISTRY_MAX_BYTES);
+            try {
+                mModels = new ModelRegistry(Strings.isNullOrEmpty(maxBytes) ? DEFAULT_MODEL_REGISTRY_MAX_BYTES :
+                    Long.parseLong(maxBytes.trim()), new File(Config.getModelRegistryDir()));
+            } catch (NumberFormatException e) {
+                throw new DDFException(String.format("Invalid %s: %s", ConfigConstant.FIELD_MODEL_REGISTRY_MAX_BYTES,
+                    maxBytes), e);
+            } catch (IOException e) {
+                throw new DDFException("Cannot create the model registry directory", e);
+            }
+        }
+        return mModels;
+    }
+
+    public void addModel(IModel model) throws DDFException {
+        this.getModelRegistry().add(model);
     }
 
-    public IModel getModel(String modelName) {
-        return mModels.get(modelName);
+    /**
+     * @return the model, reloaded from disk if it was evicted from memory, or null if there is no such model
+     */
+    public IModel getModel(String modelName) throws DDFException {
+        return this.getModelRegistry().get(modelName);
     }
 
     public DDF serialize2DDF(IModel model) throws DDFException {
-        // TODO
-        // DDF df = new DDF(this, model.getRawModel(), new Class[] {IModel.class} , null, model.getName(), null);
-        return null;
+        return model.serialize2DDF(this);
     }
 
-    public IModel deserialize2Model(DDF ddf) {
-        // TODO
-        return null;
+    public IModel deserialize2Model(DDF ddf) throws DDFException {
+        if (!(ddf instanceof BasicDDF)) {
+            throw new DDFException(String.format("Cannot deserialize a model from a %s", ddf.getClass().getName()));
+        }
+        return Model.deserializeFromDDF((BasicDDF) ddf);
     }
 
     public DDFManager() {
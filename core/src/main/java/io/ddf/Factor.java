@@ -205,6 +205,52 @@ public class Factor<T> extends Vector<T> implements Serializable {
 
   private boolean mIsOrdered = false;
 
+  /**
+   * The last level of an approximate factor, under which the values dropped from the levels are counted and coded
+   */
+  public static final String OTHER_LEVEL = "(Other)";
+
+  private boolean mIsApproximate = false;
+  private long mOtherLevelCount = 0;
+  private long mEstimatedNumLevels = -1;
+
+
+  /**
+   * @return whether the levels and level counts are only an approximation. This is the case when the column has more
+   * distinct values than the configured maximum number of factor levels: only the most frequent values are kept as
+   * levels, with approximate counts, and the rest is accounted for in {@link #getOtherLevelCount()} and under the last
+   * level, {@link #OTHER_LEVEL}.
+   */
+  public boolean isApproximate() {
+    return mIsApproximate;
+  }
+
+  public void setApproximate(boolean isApproximate) {
+    this.mIsApproximate = isApproximate;
+  }
+
+  /**
+   * @return number of values not counted under any of the levels, when the levels are approximate
+   */
+  public long getOtherLevelCount() {
+    return mOtherLevelCount;
+  }
+
+  public void setOtherLevelCount(long otherLevelCount) {
+    this.mOtherLevelCount = otherLevelCount;
+  }
+
+  /**
+   * @return estimated number of distinct values in the column, or -1 if not computed
+   */
+  public long getEstimatedNumLevels() {
+    return mEstimatedNumLevels;
+  }
+
+  public void setEstimatedNumLevels(long estimatedNumLevels) {
+    this.mEstimatedNumLevels = estimatedNumLevels;
+  }
+
 
   /**
    * @return whether this factor is ordered or not. I.e., do the levels have a meaning of "less-than" or "greater than"
@@ -22,17 +22,54 @@ public abstract class AStatisticsSupporter extends ADDFFunctionalGroupHandler im
 
   private Summary[] basicStats;
 
+  // data version of the DDF basicStats were computed for
+  private long mBasicStatsVersion = -1L;
+
   private SimpleSummary[] simpleSummary;
 
   protected abstract Summary[] getSummaryImpl() throws DDFException;
 
   protected abstract SimpleSummary[] getSimpleSummaryImpl() throws DDFException;
 
-  public Summary[] getSummary() throws DDFException {
-    this.basicStats = getSummaryImpl();
+  /**
+   * @return the summary of each column, recomputed only when the data version of the DDF has changed
+   */
+  public synchronized Summary[] getSummary() throws DDFException {
+    long dataVersion = this.getDDF().getMetaDataHandler().getDataVersion();
+    if (this.basicStats == null || mBasicStatsVersion != dataVersion) {
+      this.basicStats = getSummaryImpl();
+      mBasicStatsVersion = dataVersion;
+    }
     return basicStats;
   }
 
+  /**
+   * Called after the rows of appended were appended to the DDF, moving it from data version fromDataVersion to the
+   * current one. If the summary of fromDataVersion is cached, the summary of the appended rows alone is merged into
+   * it, so that the summary of the current version does not need a pass over all the rows.
+   */
+  public synchronized void appendSummary(DDF appended, long fromDataVersion) throws DDFException {
+    if (this.basicStats == null || mBasicStatsVersion != fromDataVersion) return;
+
+    Summary[] appendedStats = appended.getStatisticsSupporter().getSummary();
+    if (appendedStats == null || appendedStats.length != this.basicStats.length) {
+      this.basicStats = null;
+      return;
+    }
+    Summary[] merged = new Summary[appendedStats.length];
+    for (int i = 0; i < merged.length; i++) {
+      if (this.basicStats[i] == null && appendedStats[i] == null) continue;
+      if (this.basicStats[i] == null || appendedStats[i] == null) {
+        // a column found numeric in only one of them, only a full pass can tell
+        this.basicStats = null;
+        return;
+      }
+      merged[i] = this.basicStats[i].newSummary(this.basicStats[i]).merge(appendedStats[i]);
+    }
+    this.basicStats = merged;
+    mBasicStatsVersion = this.getDDF().getMetaDataHandler().getDataVersion();
+  }
+
   public SimpleSummary[] getSimpleSummary() throws DDFException {
     this.simpleSummary = this.getSimpleSummaryImpl();
     return simpleSummary;
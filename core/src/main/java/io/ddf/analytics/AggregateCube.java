@@ -0,0 +1,227 @@
+package io.ddf.analytics;
+
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import io.ddf.DDF;
+import io.ddf.types.AggregateTypes.AggregateFunction;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A materialized GROUP BY result holding decomposable base measures (COUNT, SUM, MIN, MAX) of a DDF, from which any
+ * coarser grouping of COUNT, SUM, MIN, MAX and AVG aggregates can be rolled up without scanning the DDF again. AVG is
+ * kept as SUM and COUNT.
+ * <p/>
+ * A cube is only valid for the data version of its DDF it was built from, see
+ * {@link io.ddf.content.IHandleMetaData#getDataVersion()}.
+ */
+public class AggregateCube {
+
+  // [name =] function(column), with column a plain column name, * or 1
+  private static final Pattern DECOMPOSABLE_AGGREGATE = Pattern.compile(
+      "^\\s*(?:(\\w+)\\s*=\\s*)?(count|sum|min|max|avg|mean)\\s*\\(\\s*(\\w+|\\*)\\s*\\)\\s*$", Pattern.CASE_INSENSITIVE);
+
+  private static final String MEASURE_COLUMN_PREFIX = "cube_measure_";
+
+
+  /**
+   * One aggregate of an agg() call, like "m=avg(depdelay)"
+   */
+  public static class Aggregate {
+    private final String mName;
+    private final AggregateFunction mFunction;
+    private final String mColumn;
+
+
+    public Aggregate(String name, AggregateFunction function, String column) {
+      mName = name;
+      mFunction = function == AggregateFunction.MEAN ? AggregateFunction.AVG : function;
+      mColumn = "1".equals(column) ? "*" : column;
+    }
+
+    /**
+     * @return the aggregate, or null if it cannot be rolled up from a cube
+     */
+    public static Aggregate parse(String spec) {
+      if (Strings.isNullOrEmpty(spec)) return null;
+
+      Matcher matcher = DECOMPOSABLE_AGGREGATE.matcher(spec);
+      if (!matcher.matches()) return null;
+
+      AggregateFunction function = AggregateFunction.fromString(matcher.group(2));
+      String column = matcher.group(3);
+      if ("*".equals(column) && function != AggregateFunction.COUNT) return null;
+      return new Aggregate(matcher.group(1), function, column);
+    }
+
+    public String getName() {
+      return mName;
+    }
+
+    public AggregateFunction getFunction() {
+      return mFunction;
+    }
+
+    public String getColumn() {
+      return mColumn;
+    }
+
+    /**
+     * @return the base measures this aggregate is computed from, e.g., SUM(x) and COUNT(x) for AVG(x)
+     */
+    public List<String> getBaseMeasures() {
+      if (mFunction == AggregateFunction.AVG) {
+        return Lists.newArrayList(measure(AggregateFunction.SUM, mColumn), measure(AggregateFunction.COUNT, mColumn));
+      }
+      return Lists.newArrayList(measure(mFunction, mColumn));
+    }
+
+    private static String measure(AggregateFunction function, String column) {
+      return String.format("%s(%s)", function.name(), column.toLowerCase());
+    }
+  }
+
+
+  private final List<String> mGroupedColumns;
+  private final Set<String> mGroupedColumnSet = new HashSet<String>();
+  // base measure -> name of the cube column holding it
+  private final Map<String, String> mMeasureColumns = new LinkedHashMap<String, String>();
+  private final long mDataVersion;
+  private DDF mDDF;
+
+
+  public AggregateCube(List<String> groupedColumns, List<Aggregate> aggregates, long dataVersion) {
+    mGroupedColumns = new ArrayList<String>(groupedColumns);
+    for (String column : groupedColumns) {
+      mGroupedColumnSet.add(column.trim().toLowerCase());
+    }
+    for (Aggregate aggregate : aggregates) {
+      for (String measure : aggregate.getBaseMeasures()) {
+        if (!mMeasureColumns.containsKey(measure)) {
+          mMeasureColumns.put(measure, MEASURE_COLUMN_PREFIX + mMeasureColumns.size());
+        }
+      }
+    }
+    mDataVersion = dataVersion;
+  }
+
+  /**
+   * @return the aggregates, or null if any of them cannot be rolled up from a cube. Aggregates must be named, e.g.,
+   * "m=avg(depdelay)": the engine names unnamed ones after the query it runs, so a roll-up could name them differently
+   * from the direct aggregation, which they are left to.
+   */
+  public static List<Aggregate> parseAggregates(List<String> aggregateFunctions) {
+    if (aggregateFunctions == null || aggregateFunctions.isEmpty()) return null;
+
+    List<Aggregate> aggregates = new ArrayList<Aggregate>();
+    for (String spec : aggregateFunctions) {
+      Aggregate aggregate = Aggregate.parse(spec);
+      if (aggregate == null || aggregate.getName() == null) return null;
+      aggregates.add(aggregate);
+    }
+    return aggregates;
+  }
+
+  public List<String> getGroupedColumns() {
+    return mGroupedColumns;
+  }
+
+  public long getDataVersion() {
+    return mDataVersion;
+  }
+
+  public DDF getDDF() {
+    return mDDF;
+  }
+
+  public void setDDF(DDF ddf) {
+    mDDF = ddf;
+  }
+
+  /**
+   * @return true if the given grouping and aggregates can be rolled up from this cube
+   */
+  public boolean covers(List<String> groupedColumns, List<Aggregate> aggregates) {
+    for (String column : groupedColumns) {
+      if (!mGroupedColumnSet.contains(column.trim().toLowerCase())) return false;
+    }
+    for (Aggregate aggregate : aggregates) {
+      for (String measure : aggregate.getBaseMeasures()) {
+        if (!mMeasureColumns.containsKey(measure)) return false;
+      }
+    }
+    return true;
+  }
+
+  public int getNumGroupedColumns() {
+    return mGroupedColumns.size();
+  }
+
+  /**
+   * @return the statement materializing this cube from the DDF referenced as {1}
+   */
+  public String toCubeSql() {
+    List<String> measures = new ArrayList<String>();
+    for (Map.Entry<String, String> measure : mMeasureColumns.entrySet()) {
+      measures.add(String.format("%s AS %s", measure.getKey(), measure.getValue()));
+    }
+    String groupedColSql = Joiner.on(",").join(mGroupedColumns);
+    return String.format("SELECT %s , %s FROM %s GROUP BY %s", Joiner.on(",").join(measures), groupedColSql, "{1}",
+        groupedColSql);
+  }
+
+  /**
+   * @return the statement answering the grouping of this cube, referenced as {1}, from its base measures without
+   * grouping again, as the cube has one row per group. Its columns are laid out as those of the direct aggregation.
+   */
+  public String toProjectionSql(List<Aggregate> aggregates) {
+    List<String> selects = new ArrayList<String>();
+    for (Aggregate aggregate : aggregates) {
+      List<String> measures = aggregate.getBaseMeasures();
+      String first = mMeasureColumns.get(measures.get(0));
+      String expression = aggregate.getFunction() == AggregateFunction.AVG ? String.format("%s / %s", first,
+          mMeasureColumns.get(measures.get(1))) : first;
+      selects.add(String.format("%s AS %s", expression, aggregate.getName()));
+    }
+    return String.format("SELECT %s , %s FROM %s", Joiner.on(",").join(selects), Joiner.on(",").join(mGroupedColumns),
+        "{1}");
+  }
+
+  /**
+   * @return the statement rolling this cube, referenced as {1}, up to the given grouping and aggregates. Its columns
+   * are laid out as those of the direct aggregation: the aggregates first, then the grouped columns.
+   */
+  public String toRollUpSql(List<String> groupedColumns, List<Aggregate> aggregates) {
+    List<String> selects = new ArrayList<String>();
+    for (Aggregate aggregate : aggregates) {
+      selects.add(String.format("%s AS %s", this.rollUpExpression(aggregate), aggregate.getName()));
+    }
+    String groupedColSql = Joiner.on(",").join(groupedColumns);
+    return String.format("SELECT %s , %s FROM %s GROUP BY %s", Joiner.on(",").join(selects), groupedColSql, "{1}",
+        groupedColSql);
+  }
+
+  private String rollUpExpression(Aggregate aggregate) {
+    List<String> measures = aggregate.getBaseMeasures();
+    String first = mMeasureColumns.get(measures.get(0));
+    switch (aggregate.getFunction()) {
+      case MIN:
+        return String.format("MIN(%s)", first);
+      case MAX:
+        return String.format("MAX(%s)", first);
+      case AVG:
+        return String.format("SUM(%s) / SUM(%s)", first, mMeasureColumns.get(measures.get(1)));
+      default: // COUNT, SUM
+        return String.format("SUM(%s)", first);
+    }
+  }
+}
@@ -4,23 +4,44 @@ package io.ddf.analytics;
 import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
 import io.ddf.DDF;
+import io.ddf.content.FactorDictionary;
 import io.ddf.datasource.SQLDataSourceDescriptor;
 import io.ddf.exception.DDFException;
 import io.ddf.misc.ADDFFunctionalGroupHandler;
 import io.ddf.types.AggregateTypes.AggregateField;
 import io.ddf.types.AggregateTypes.AggregateFunction;
 import io.ddf.types.AggregateTypes.AggregationResult;
+import io.ddf.types.AggregateTypes.GroupKey;
+import io.ddf.types.AggregateTypes.TypedAggregationResult;
 import io.ddf.util.Utils;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  *
  */
 public class AggregationHandler extends ADDFFunctionalGroupHandler implements IHandleAggregation {
 
-  private List<String> mGroupedColumns;
+  // grouped columns of the pandas-like groupBy(columns).agg(functions)
+  private volatile List<String> mGroupedColumns;
+
+  // maximum number of aggregate cubes kept for this DDF
+  public static final int MAX_CACHED_CUBES = 8;
+
+  private final LinkedList<AggregateCube> mCubes = new LinkedList<AggregateCube>();
+
+  // the number of aggregations reading each cube, guarded by mCubes, so that a cube dropped from the cache while
+  // being read is only removed once the last of them is done
+  private final Map<AggregateCube, Integer> mCubeReaders = new IdentityHashMap<AggregateCube, Integer>();
+  private final List<AggregateCube> mDroppedCubes = new ArrayList<AggregateCube>();
 
 
   public AggregationHandler(DDF theDDF) {
@@ -54,8 +75,7 @@ public class AggregationHandler extends ADDFFunctionalGroupHandler implements IH
 
     String sqlCmd = String.format("SELECT CORR(%s, %s) FROM %s", columnA, columnB, this.getDDF().getTableName());
     try {
-      List<String> rs = this.getManager().sql(sqlCmd, false).getRows();
-      return Utils.roundUp(Double.parseDouble(rs.get(0)));
+      return Utils.roundUp(this.computeScalars(sqlCmd)[0]);
 
     } catch (Exception e) {
       throw new DDFException(String.format("Unable to get CORR(%s, %s) FROM %s", columnA, columnB, this.getDDF()
@@ -74,46 +94,169 @@ public class AggregationHandler extends ADDFFunctionalGroupHandler implements IH
    */
   @Override
   public AggregationResult aggregate(List<AggregateField> fields) throws DDFException {
+    return this.aggregateTyped(fields).toAggregationResult();
+  }
+
+  /**
+   * Same as {@link #aggregate(List)}, but keeps the GROUP BY keys and aggregated values typed as the engine returns
+   * them, without rounding or rendering them into strings
+   *
+   * @param fields
+   * @return
+   * @throws DDFException
+   */
+  @Override
+  public TypedAggregationResult aggregateTyped(List<AggregateField> fields) throws DDFException {
 
     String tableName = this.getDDF().getTableName();
 
     String sqlCmd = AggregateField.toSql(fields, tableName);
     mLog.info("SQL Command: " + sqlCmd);
-    int numUnaggregatedFields = 0;
-
-    for (AggregateField field : fields) {
-      if (!field.isAggregated()) numUnaggregatedFields++;
-    }
 
     try {
-      List<String> result = this.getManager().sql(sqlCmd, false).getRows();
-      return AggregationResult.newInstance(result, numUnaggregatedFields);
+      return this.computeAggregation(sqlCmd, fields);
 
     } catch (Exception e) {
-      e.printStackTrace();
-      mLog.error(e.getMessage());
+      mLog.error(e.getMessage(), e);
       throw new DDFException("Unable to query from " + tableName, e);
     }
   }
 
+  /**
+   * Runs an aggregation query and collects its rows into a {@link TypedAggregationResult}. This implementation parses
+   * the text rows of {@link io.ddf.DDFManager#sql}; engines that can hand out typed rows should override it.
+   *
+   * @param sqlCmd the SELECT ... GROUP BY statement built from fields
+   * @param fields the fields of the statement, in SELECT order
+   * @return
+   * @throws DDFException
+   */
+  protected TypedAggregationResult computeAggregation(String sqlCmd, List<AggregateField> fields) throws DDFException {
+    TypedAggregationResult result = TypedAggregationResult.newInstance(fields);
+    int numGroupColumns = result.getGroupColumns().size();
+
+    for (String row : this.getManager().sql(sqlCmd, false).getRows()) {
+      String[] cells = row.split("\t", -1);
+      Object[] keyValues = new Object[numGroupColumns];
+      double[] values = new double[fields.size() - numGroupColumns];
+      int k = 0, v = 0;
+      for (int i = 0; i < fields.size(); i++) {
+        if (fields.get(i).isAggregated()) values[v++] = parseDouble(cells[i]);
+        else keyValues[k++] = cells[i];
+      }
+      result.put(new GroupKey(keyValues), values);
+    }
+    return result;
+  }
+
+  /**
+   * Runs a query returning a single row of numbers, e.g., "SELECT CORR(a, b) FROM t"
+   *
+   * @return the values of that row, NULLs as Double.NaN
+   */
+  protected double[] computeScalars(String sqlCmd) throws DDFException {
+    String[] cells = this.getManager().sql(sqlCmd, false).getRows().get(0).split("\t", -1);
+    double[] values = new double[cells.length];
+    for (int i = 0; i < cells.length; i++) {
+      values[i] = parseDouble(cells[i]);
+    }
+    return values;
+  }
+
+  private static double parseDouble(String cell) {
+    return "null".equalsIgnoreCase(cell) ? Double.NaN : Double.parseDouble(cell);
+  }
+
+  /**
+   * Cross-tabulates the unaggregated fields. When the only aggregates are counts, the result comes from
+   * {@link #contingencyTable(List)}, which leaves out rows with a NULL in any of the fields; otherwise this is
+   * {@link #aggregate(List)}.
+   */
   @Override
   public AggregationResult xtabs(List<AggregateField> fields) throws DDFException {
-    return this.aggregate(fields);
+    List<String> columns = new ArrayList<String>();
+    int numCounts = 0;
+    for (AggregateField field : fields) {
+      if (!field.isAggregated()) {
+        columns.add(field.getColumn());
+      } else if (field.getAggregateFunction() == AggregateFunction.COUNT) {
+        numCounts++;
+      } else {
+        return this.aggregate(fields);
+      }
+    }
+    if (columns.isEmpty()) return this.aggregate(fields);
+
+    AggregationResult result = this.contingencyTable(columns).toAggregationResult();
+    if (numCounts > 1) {
+      for (Map.Entry<String, double[]> cell : result.entrySet()) {
+        double[] counts = new double[numCounts];
+        Arrays.fill(counts, cell.getValue()[0]);
+        cell.setValue(counts);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Counts the co-occurrences of the levels of the given columns. This implementation runs a GROUP BY query; engines
+   * that can count on encoded factor codes should override it.
+   *
+   * @param columns
+   * @return
+   * @throws DDFException
+   */
+  @Override
+  public ContingencyTable contingencyTable(List<String> columns) throws DDFException {
+    List<AggregateField> fields = new ArrayList<AggregateField>();
+    for (String column : columns) {
+      fields.add(new AggregateField(column));
+    }
+    fields.add(new AggregateField(AggregateFunction.COUNT, "*"));
+    TypedAggregationResult groups = this.aggregateTyped(fields);
+
+    int numDimensions = columns.size();
+    List<Map<String, Integer>> codes = new ArrayList<Map<String, Integer>>();
+    for (int d = 0; d < numDimensions; d++) {
+      codes.add(new TreeMap<String, Integer>());
+    }
+    for (GroupKey key : groups.getGroups().keySet()) {
+      for (int d = 0; d < numDimensions; d++) {
+        if (key.get(d) != null) codes.get(d).put(key.get(d).toString(), 0);
+      }
+    }
+
+    String[][] levels = new String[numDimensions][];
+    for (int d = 0; d < numDimensions; d++) {
+      levels[d] = codes.get(d).keySet().toArray(new String[0]);
+      for (int code = 0; code < levels[d].length; code++) {
+        codes.get(d).put(levels[d][code], code);
+      }
+    }
+
+    ContingencyTable table = new ContingencyTable(columns.toArray(new String[numDimensions]), levels);
+    int[] cell = new int[numDimensions];
+    for (Map.Entry<GroupKey, double[]> group : groups.getGroups().entrySet()) {
+      GroupKey key = group.getKey();
+      for (int d = 0; d < numDimensions; d++) {
+        cell[d] = key.get(d) == null ? FactorDictionary.NA_CODE : codes.get(d).get(key.get(d).toString());
+      }
+      table.add(cell, (long) group.getValue()[0]);
+    }
+    return table;
   }
 
 
   @Override
   public double aggregateOnColumn(AggregateFunction function, String column) throws DDFException {
-    return Double.parseDouble(this.getManager()
-        .sql(String.format("SELECT %s from %s", function.toString(column), this.getDDF().getTableName()), false).getRows
-            ().get(0));
+    return this.computeScalars(String.format("SELECT %s from %s", function.toString(column),
+        this.getDDF().getTableName()))[0];
   }
 
   //dplyr-like
   @Override
   public DDF groupBy(List<String> groupedColumns, List<String> aggregateFunctions) throws DDFException {
-    mGroupedColumns = groupedColumns;
-    return agg(aggregateFunctions);
+    return this.agg(groupedColumns, aggregateFunctions);
   }
 
   //pandas-like
@@ -123,13 +266,31 @@ public class AggregationHandler extends ADDFFunctionalGroupHandler implements IH
     return this.getDDF();
   }
 
+  @Override
+  public GroupedDDF groupedBy(List<String> groupedColumns) throws DDFException {
+    return new GroupedDDF(this.getDDF(), groupedColumns);
+  }
+
+  /**
+   * Aggregates on the columns last set by {@link #groupBy(List)}. Kept for compatibility: the grouped columns are shared
+   * by all users of this DDF, use {@link #groupedBy(List)} to aggregate the same DDF from several threads.
+   */
   @Override
   public DDF agg(List<String> aggregateFunctions) throws DDFException {
+    return this.agg(mGroupedColumns, aggregateFunctions);
+  }
 
-    if (mGroupedColumns.size() > 0) {
+  @Override
+  public DDF agg(List<String> groupedColumns, List<String> aggregateFunctions) throws DDFException {
+
+    if (groupedColumns != null && groupedColumns.size() > 0) {
+      List<AggregateCube.Aggregate> aggregates = AggregateCube.parseAggregates(aggregateFunctions);
+      if (aggregates != null) {
+        return this.aggFromCube(groupedColumns, aggregates);
+      }
       // String tableName = this.getDDF().getTableName();
 
-      String groupedColSql = Joiner.on(",").join(mGroupedColumns);
+      String groupedColSql = Joiner.on(",").join(groupedColumns);
 
       String selectFuncSql = convertAggregateFunctionsToSql(aggregateFunctions.get(0));
       for (int i = 1; i < aggregateFunctions.size(); i++) {
@@ -160,6 +321,150 @@ public class AggregationHandler extends ADDFFunctionalGroupHandler implements IH
     }
   }
 
+  /**
+   * Answers a GROUP BY of decomposable aggregates by rolling up a cached {@link AggregateCube}. If no cached cube of the
+   * current data version covers it, a cube is materialized at the requested grouping and the answer projected from it.
+   */
+  private DDF aggFromCube(List<String> groupedColumns, List<AggregateCube.Aggregate> aggregates)
+      throws DDFException {
+    long dataVersion = this.getDDF().getMetaDataHandler().getDataVersion();
+
+    AggregateCube cube = this.findCube(groupedColumns, aggregates, dataVersion);
+    if (cube != null) {
+      try {
+        mLog.info(String.format("Rolling up cached aggregate cube grouped by %s", cube.getGroupedColumns()));
+        return this.runAggregationSql(cube.toRollUpSql(groupedColumns, aggregates), cube.getDDF());
+      } finally {
+        this.releaseCube(cube);
+      }
+    }
+
+    cube = new AggregateCube(groupedColumns, aggregates, dataVersion);
+    cube.setDDF(this.runAggregationSql(cube.toCubeSql(), this.getDDF()));
+    this.addCube(cube);
+    try {
+      // the cube has one row per requested group already
+      return this.runAggregationSql(cube.toProjectionSql(aggregates), cube.getDDF());
+    } finally {
+      this.releaseCube(cube);
+    }
+  }
+
+  private DDF runAggregationSql(String sqlCmd, DDF source) throws DDFException {
+    mLog.info("SQL Command: " + sqlCmd);
+    try {
+      return this.getManager().sql2ddf(sqlCmd,
+          new SQLDataSourceDescriptor(sqlCmd, true, null, null, source.getUUID().toString()));
+
+    } catch (Exception e) {
+      throw new DDFException("Unable to query from " + source.getTableName(), e);
+    }
+  }
+
+  /**
+   * @return the cube with the fewest grouped columns that covers the given grouping and aggregates, or null. The cube
+   * is kept until it is released by {@link #releaseCube}.
+   */
+  private AggregateCube findCube(List<String> groupedColumns, List<AggregateCube.Aggregate> aggregates,
+      long dataVersion) {
+    List<AggregateCube> stale = new ArrayList<AggregateCube>();
+    AggregateCube best = null;
+    synchronized (mCubes) {
+      Iterator<AggregateCube> it = mCubes.iterator();
+      while (it.hasNext()) {
+        AggregateCube cube = it.next();
+        if (cube.getDataVersion() != dataVersion) {
+          // built from data that has since changed
+          it.remove();
+          stale.add(cube);
+        } else if (cube.covers(groupedColumns, aggregates)
+            && (best == null || cube.getNumGroupedColumns() < best.getNumGroupedColumns())) {
+          best = cube;
+        }
+      }
+      if (best != null) this.acquireCube(best);
+      stale = this.dropCubes(stale);
+    }
+    this.removeCubes(stale);
+    return best;
+  }
+
+  /**
+   * Caches the cube, which is kept until it is released by {@link #releaseCube}, evicting the least recently added
+   * cubes that no aggregation reads beyond MAX_CACHED_CUBES
+   */
+  private void addCube(AggregateCube cube) {
+    List<AggregateCube> evicted = new ArrayList<AggregateCube>();
+    synchronized (mCubes) {
+      this.acquireCube(cube);
+      mCubes.addFirst(cube);
+      int numCubes = mCubes.size();
+      Iterator<AggregateCube> it = mCubes.descendingIterator();
+      while (numCubes > MAX_CACHED_CUBES && it.hasNext()) {
+        AggregateCube oldest = it.next();
+        // cubes being read are left in the cache, and evicted by a later addCube
+        if (!mCubeReaders.containsKey(oldest)) {
+          it.remove();
+          evicted.add(oldest);
+          numCubes--;
+        }
+      }
+    }
+    this.removeCubes(evicted);
+  }
+
+  private void acquireCube(AggregateCube cube) {
+    Integer readers = mCubeReaders.get(cube);
+    mCubeReaders.put(cube, readers == null ? 1 : readers + 1);
+  }
+
+  /**
+   * Removes the cube if it was dropped from the cache and no other aggregation reads it
+   */
+  private void releaseCube(AggregateCube cube) {
+    List<AggregateCube> removed = new ArrayList<AggregateCube>();
+    synchronized (mCubes) {
+      int readers = mCubeReaders.get(cube) - 1;
+      if (readers > 0) {
+        mCubeReaders.put(cube, readers);
+      } else {
+        mCubeReaders.remove(cube);
+        if (mDroppedCubes.remove(cube)) removed.add(cube);
+      }
+    }
+    this.removeCubes(removed);
+  }
+
+  /**
+   * Called with the lock of mCubes held, on cubes dropped from the cache
+   *
+   * @return the cubes that no aggregation reads, which can be removed now, the others being removed when released
+   */
+  private List<AggregateCube> dropCubes(List<AggregateCube> dropped) {
+    List<AggregateCube> removable = new ArrayList<AggregateCube>();
+    for (AggregateCube cube : dropped) {
+      if (mCubeReaders.containsKey(cube)) {
+        mDroppedCubes.add(cube);
+      } else {
+        removable.add(cube);
+      }
+    }
+    return removable;
+  }
+
+  /**
+   * Uncaches the DDFs of cubes dropped from the cache and removes them from the manager
+   */
+  private void removeCubes(List<AggregateCube> cubes) {
+    for (AggregateCube cube : cubes) {
+      try {
+        this.getManager().removeDDF(cube.getDDF());
+      } catch (DDFException e) {
+        mLog.warn(String.format("Cannot remove aggregate cube grouped by %s", cube.getGroupedColumns()), e);
+      }
+    }
+  }
+
   private String convertAggregateFunctionsToSql(String sql) {
 
     if (Strings.isNullOrEmpty(sql)) return null;
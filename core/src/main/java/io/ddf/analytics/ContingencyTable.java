@@ -0,0 +1,331 @@
+package io.ddf.analytics;
+
+
+import io.ddf.exception.DDFException;
+import io.ddf.types.AggregateTypes.AggregationResult;
+import io.ddf.util.LongCountMap;
+
+import java.io.Serializable;
+
+/**
+ * A sparse N-dimensional contingency table over factor columns. Each dimension is a factor column with a fixed list of
+ * levels, and each cell is addressed by the level codes of all dimensions, packed in mixed radix into one long key.
+ * Only non-empty cells are stored, in a primitive {@link LongCountMap}, so tables over several high-cardinality
+ * factors stay as small as the number of level combinations actually seen.
+ * <p/>
+ * Tables with the same dimensions are mergeable, e.g., across partitions. Rows with an NA code in any dimension are not
+ * counted, as in R's xtabs.
+ */
+public class ContingencyTable implements Serializable {
+
+  private static final long serialVersionUID = 7451339264003617240L;
+
+  // dense exports are limited to this many cells
+  public static final int MAX_DENSE_CELLS = 1 << 24;
+
+  private final String[] mColumnNames;
+  private final String[][] mLevels;
+  // stride of each dimension in the packed cell key, the last dimension varying fastest
+  private final long[] mStrides;
+  private final long mNumCells;
+  private final LongCountMap<Void> mCounts = new LongCountMap<Void>();
+
+
+  public ContingencyTable(String[] columnNames, String[][] levels) throws DDFException {
+    if (columnNames == null || levels == null || columnNames.length != levels.length || columnNames.length == 0) {
+      throw new DDFException("A contingency table needs the levels of at least one column");
+    }
+    mColumnNames = columnNames;
+    mLevels = levels;
+    mStrides = new long[levels.length];
+
+    long numCells = 1;
+    for (int d = levels.length - 1; d >= 0; d--) {
+      mStrides[d] = numCells;
+      int numLevels = Math.max(levels[d].length, 1);
+      if (numCells > Long.MAX_VALUE / numLevels) {
+        throw new DDFException("Too many level combinations for a contingency table over " + levels.length + " columns");
+      }
+      numCells *= numLevels;
+    }
+    mNumCells = numCells;
+  }
+
+  public int getNumDimensions() {
+    return mColumnNames.length;
+  }
+
+  public String[] getColumnNames() {
+    return mColumnNames;
+  }
+
+  public String[] getLevels(int dimension) {
+    return mLevels[dimension];
+  }
+
+  /**
+   * @return the number of cells of the full table, empty or not
+   */
+  public long getNumCells() {
+    return mNumCells;
+  }
+
+  /**
+   * @return the number of non-empty cells
+   */
+  public int getNumNonEmptyCells() {
+    return mCounts.size();
+  }
+
+  /**
+   * Counts one row
+   *
+   * @param codes the level code of the row in each dimension
+   */
+  public void add(int[] codes) {
+    this.add(codes, 1L);
+  }
+
+  public void add(int[] codes, long count) {
+    long key = this.toKey(codes);
+    if (key >= 0) mCounts.increment(key, null, count);
+  }
+
+  public ContingencyTable merge(ContingencyTable other) throws DDFException {
+    if (other.mColumnNames.length != mColumnNames.length || other.mNumCells != mNumCells) {
+      throw new DDFException("Cannot merge contingency tables of different dimensions");
+    }
+    mCounts.merge(other.mCounts);
+    return this;
+  }
+
+  /**
+   * @return the count of the cell with the given level codes
+   */
+  public long getCount(int... codes) {
+    long key = this.toKey(codes);
+    return key < 0 ? 0 : mCounts.get(key);
+  }
+
+  public long getTotal() {
+    return mCounts.total();
+  }
+
+  /**
+   * @return the counts of each level of the given dimension, summed over all other dimensions
+   */
+  public long[] getMargin(int dimension) {
+    long[] margin = new long[mLevels[dimension].length];
+    long[] keys = mCounts.keys();
+    long[] counts = mCounts.counts();
+    for (int i = 0; i < keys.length; i++) {
+      margin[this.codeOf(keys[i], dimension)] += counts[i];
+    }
+    return margin;
+  }
+
+  /**
+   * Pearson's chi-square test of mutual independence of all dimensions. Only the non-empty cells are visited, using
+   * that sum((O - E)^2 / E) = sum(O^2 / E) - N when the expected counts E sum up to N. Levels that never occur are
+   * left out of the degrees of freedom.
+   */
+  public ChiSquareTest chiSquareTest() {
+    int numDimensions = mLevels.length;
+    double total = this.getTotal();
+    if (total == 0) return new ChiSquareTest(0, 0);
+
+    long[][] margins = new long[numDimensions][];
+    long dof = 1;
+    long sumOfLevels = 0;
+    for (int d = 0; d < numDimensions; d++) {
+      margins[d] = this.getMargin(d);
+      int numOccurringLevels = 0;
+      for (long count : margins[d]) {
+        if (count > 0) numOccurringLevels++;
+      }
+      dof *= numOccurringLevels;
+      sumOfLevels += numOccurringLevels - 1;
+    }
+    dof = dof - sumOfLevels - 1;
+
+    double statistic = -total;
+    long[] keys = mCounts.keys();
+    long[] counts = mCounts.counts();
+    for (int i = 0; i < keys.length; i++) {
+      double expected = total;
+      for (int d = 0; d < numDimensions; d++) {
+        expected *= margins[d][this.codeOf(keys[i], d)] / total;
+      }
+      statistic += counts[i] * (double) counts[i] / expected;
+    }
+    return new ChiSquareTest(Math.max(statistic, 0), dof);
+  }
+
+  /**
+   * @return all counts of the table, including empty cells, in row-major order (the last dimension varying fastest)
+   * @throws DDFException if the table has more than {@link #MAX_DENSE_CELLS} cells
+   */
+  public long[] toDense() throws DDFException {
+    if (mNumCells > MAX_DENSE_CELLS) {
+      throw new DDFException(String.format("Contingency table has %d cells, too many for a dense export", mNumCells));
+    }
+    long[] dense = new long[(int) mNumCells];
+    long[] keys = mCounts.keys();
+    long[] counts = mCounts.counts();
+    for (int i = 0; i < keys.length; i++) {
+      dense[(int) keys[i]] = counts[i];
+    }
+    return dense;
+  }
+
+  /**
+   * @return the counts of a two-dimensional table as a matrix, rows being the levels of the first dimension
+   */
+  public long[][] toDenseMatrix() throws DDFException {
+    if (mLevels.length != 2) {
+      throw new DDFException("Only two-dimensional contingency tables can be exported as a matrix");
+    }
+    long[] dense = this.toDense();
+    int numColumns = mLevels[1].length;
+    long[][] matrix = new long[mLevels[0].length][numColumns];
+    for (int i = 0; i < matrix.length; i++) {
+      System.arraycopy(dense, i * numColumns, matrix[i], 0, numColumns);
+    }
+    return matrix;
+  }
+
+  /**
+   * @return the non-empty cells, keyed by their tab-joined levels, each with its count as single value
+   */
+  public AggregationResult toAggregationResult() {
+    AggregationResult result = new AggregationResult();
+    long[] keys = mCounts.keys();
+    long[] counts = mCounts.counts();
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < keys.length; i++) {
+      sb.setLength(0);
+      for (int d = 0; d < mLevels.length; d++) {
+        if (d > 0) sb.append('\t');
+        sb.append(mLevels[d][this.codeOf(keys[i], d)]);
+      }
+      result.put(sb.toString(), new double[] { counts[i] });
+    }
+    return result;
+  }
+
+  private long toKey(int[] codes) {
+    long key = 0;
+    for (int d = 0; d < mStrides.length; d++) {
+      int code = codes[d];
+      if (code < 0 || code >= mLevels[d].length) return -1;
+      key += code * mStrides[d];
+    }
+    return key;
+  }
+
+  private int codeOf(long key, int dimension) {
+    long numLevels = Math.max(mLevels[dimension].length, 1);
+    return (int) ((key / mStrides[dimension]) % numLevels);
+  }
+
+
+  /**
+   * Result of {@link #chiSquareTest()}
+   */
+  public static class ChiSquareTest implements Serializable {
+
+    private static final long serialVersionUID = -3390419530474620385L;
+
+    private final double mStatistic;
+    private final long mDegreesOfFreedom;
+
+
+    public ChiSquareTest(double statistic, long degreesOfFreedom) {
+      mStatistic = statistic;
+      mDegreesOfFreedom = degreesOfFreedom;
+    }
+
+    public double getStatistic() {
+      return mStatistic;
+    }
+
+    public long getDegreesOfFreedom() {
+      return mDegreesOfFreedom;
+    }
+
+    /**
+     * @return the probability of a statistic at least this large under independence
+     */
+    public double getPValue() {
+      if (mDegreesOfFreedom <= 0) return Double.NaN;
+      return regularizedGammaQ(mDegreesOfFreedom / 2.0, mStatistic / 2.0);
+    }
+
+    @Override
+    public String toString() {
+      return String.format("X-squared = %.4f, df = %d, p-value = %.4g", mStatistic, mDegreesOfFreedom,
+          this.getPValue());
+    }
+  }
+
+  // ////// Upper regularized incomplete gamma function, as in Numerical Recipes 6.2 ////////
+
+  private static final int GAMMA_MAX_ITERATIONS = 1000;
+  private static final double GAMMA_EPSILON = 1e-14;
+
+
+  static double regularizedGammaQ(double a, double x) {
+    if (x <= 0) return 1.0;
+    if (x < a + 1) return 1.0 - gammaSeries(a, x);
+    return gammaContinuedFraction(a, x);
+  }
+
+  private static double gammaSeries(double a, double x) {
+    double ap = a;
+    double del = 1.0 / a;
+    double sum = del;
+    for (int n = 0; n < GAMMA_MAX_ITERATIONS; n++) {
+      ap += 1;
+      del *= x / ap;
+      sum += del;
+      if (Math.abs(del) < Math.abs(sum) * GAMMA_EPSILON) break;
+    }
+    return sum * Math.exp(-x + a * Math.log(x) - logGamma(a));
+  }
+
+  private static double gammaContinuedFraction(double a, double x) {
+    double tiny = 1e-300;
+    double b = x + 1 - a;
+    double c = 1.0 / tiny;
+    double d = 1.0 / b;
+    double h = d;
+    for (int i = 1; i < GAMMA_MAX_ITERATIONS; i++) {
+      double an = -i * (i - a);
+      b += 2;
+      d = an * d + b;
+      if (Math.abs(d) < tiny) d = tiny;
+      c = b + an / c;
+      if (Math.abs(c) < tiny) c = tiny;
+      d = 1.0 / d;
+      double del = d * c;
+      h *= del;
+      if (Math.abs(del - 1) < GAMMA_EPSILON) break;
+    }
+    return Math.exp(-x + a * Math.log(x) - logGamma(a)) * h;
+  }
+
+  private static final double[] LANCZOS = { 76.18009172947146, -86.50532032941677, 24.01409824083091,
+      -1.231739572450155, 0.1208650973866179e-2, -0.5395239384953e-5 };
+
+
+  static double logGamma(double x) {
+    double y = x;
+    double tmp = x + 5.5;
+    tmp -= (x + 0.5) * Math.log(tmp);
+    double ser = 1.000000000190015;
+    for (double coefficient : LANCZOS) {
+      ser += coefficient / ++y;
+    }
+    return -tmp + Math.log(2.5066282746310005 * ser / x);
+  }
+}
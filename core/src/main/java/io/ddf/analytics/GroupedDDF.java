@@ -0,0 +1,53 @@
+package io.ddf.analytics;
+
+
+import io.ddf.DDF;
+import io.ddf.exception.DDFException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable handle on a DDF grouped by some columns, as returned by
+ * {@link IHandleAggregation#groupedBy(List)}. Since it carries its own grouped columns instead of leaving them on the
+ * DDF's {@link AggregationHandler}, any number of threads can group and aggregate the same DDF concurrently.
+ */
+public final class GroupedDDF {
+
+  private final DDF mDDF;
+  private final List<String> mGroupedColumns;
+
+
+  public GroupedDDF(DDF ddf, List<String> groupedColumns) throws DDFException {
+    if (ddf == null) {
+      throw new DDFException("Cannot group a null DDF");
+    }
+    if (groupedColumns == null || groupedColumns.isEmpty()) {
+      throw new DDFException("Need to set grouped columns before aggregation");
+    }
+    mDDF = ddf;
+    mGroupedColumns = Collections.unmodifiableList(new ArrayList<String>(groupedColumns));
+  }
+
+  public DDF getDDF() {
+    return mDDF;
+  }
+
+  public List<String> getGroupedColumns() {
+    return mGroupedColumns;
+  }
+
+  /**
+   * @param aggregateFunctions aggregates like "m=avg(depdelay)" or "count(*)"
+   * @return a new DDF of the aggregates followed by the grouped columns, one row per group
+   */
+  public DDF agg(List<String> aggregateFunctions) throws DDFException {
+    return mDDF.getAggregationHandler().agg(mGroupedColumns, aggregateFunctions);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s grouped by %s", mDDF.getName(), mGroupedColumns);
+  }
+}
@@ -7,6 +7,7 @@ import io.ddf.misc.IHandleDDFFunctionalGroup;
 import io.ddf.types.AggregateTypes.AggregateField;
 import io.ddf.types.AggregateTypes.AggregateFunction;
 import io.ddf.types.AggregateTypes.AggregationResult;
+import io.ddf.types.AggregateTypes.TypedAggregationResult;
 
 import java.util.List;
 
@@ -16,8 +17,12 @@ public interface IHandleAggregation extends IHandleDDFFunctionalGroup {
 
   public AggregationResult aggregate(List<AggregateField> fields) throws DDFException;
 
+  public TypedAggregationResult aggregateTyped(List<AggregateField> fields) throws DDFException;
+
   public AggregationResult xtabs(List<AggregateField> fields) throws DDFException;
 
+  public ContingencyTable contingencyTable(List<String> columns) throws DDFException;
+
   public DDF groupBy(List<String> groupedColumns, List<String> aggregateFunctions) throws DDFException;
 
   public double aggregateOnColumn(AggregateFunction function, String col) throws DDFException;
@@ -26,5 +31,9 @@ public interface IHandleAggregation extends IHandleDDFFunctionalGroup {
 
   public DDF groupBy(List<String> groupedColumns);
 
+  public GroupedDDF groupedBy(List<String> groupedColumns) throws DDFException;
+
+  public DDF agg(List<String> groupedColumns, List<String> aggregateFunctions) throws DDFException;
+
 }
 
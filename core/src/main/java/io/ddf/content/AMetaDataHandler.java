@@ -13,6 +13,7 @@ import io.ddf.misc.ADDFFunctionalGroupHandler;
 import org.apache.avro.generic.GenericData;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class AMetaDataHandler extends ADDFFunctionalGroupHandler
     implements IHandleMetaData {
@@ -36,7 +37,9 @@ public abstract class AMetaDataHandler extends ADDFFunctionalGroupHandler
 
   private long mNumRows = 0L;
   private boolean bNumRowsIsValid = false;
+  private long mNumRowsDataVersion = -1L;
   private int useCount = 0;
+  private volatile long mDataVersion = 0L;
   private DataSourceDescriptor mDataSourceDescriptor;
   private Date mLastRefreshTime;
   private String mLastRefreshUser;
@@ -44,6 +47,7 @@ public abstract class AMetaDataHandler extends ADDFFunctionalGroupHandler
   private String mLastModifiedUser;
   private Date mLastPersistedTime;
   private DataSourceDescriptor mSnapshotDescriptor;
+  private final Map<String, String> mProperties = new ConcurrentHashMap<String, String>();
 
   /**
    * Each implementation needs to come up with its own way to compute the row
@@ -64,12 +68,19 @@ public abstract class AMetaDataHandler extends ADDFFunctionalGroupHandler
   @Override
   public long getNumRows() throws DDFException {
     if (!bNumRowsIsValid) {
+      long dataVersion = mDataVersion;
       mNumRows = this.getNumRowsImpl();
+      mNumRowsDataVersion = dataVersion;
       //      bNumRowsIsValid = true;
     }
     return mNumRows;
   }
 
+  @Override
+  public long getCachedNumRows() {
+    return mNumRowsDataVersion >= 0 && mNumRowsDataVersion == mDataVersion ? mNumRows : -1L;
+  }
+
   protected long getNumRowsImpl() throws DDFException {
     this.mLog.debug("get NumRows Impl called");
     try {
@@ -97,6 +108,37 @@ public abstract class AMetaDataHandler extends ADDFFunctionalGroupHandler
     this.useCount += 1;
   }
 
+  @Override
+  public long getDataVersion() {
+    return mDataVersion;
+  }
+
+  /**
+   * Called when the content of the DDF changes, so that anything derived from the previous content, like row counts
+   * or aggregate cubes, is recomputed
+   */
+  @Override
+  public synchronized void increaseDataVersion() {
+    mDataVersion += 1;
+    this.invalidateNumRows();
+  }
+
+  @Override
+  public String getProperty(String key) {
+    return mProperties.get(key);
+  }
+
+  @Override
+  public void setProperty(String key, String value) {
+    if (value == null) mProperties.remove(key);
+    else mProperties.put(key, value);
+  }
+
+  @Override
+  public Map<String, String> getProperties() {
+    return Collections.unmodifiableMap(mProperties);
+  }
+
   /**
    * Transfer factor information from ddf to this DDF
    * @param ddf
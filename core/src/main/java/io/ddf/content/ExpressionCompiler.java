@@ -0,0 +1,753 @@
+package io.ddf.content;
+
+
+import io.ddf.content.ViewHandler.BooleanVal;
+import io.ddf.content.ViewHandler.Column;
+import io.ddf.content.ViewHandler.DoubleVal;
+import io.ddf.content.ViewHandler.Expression;
+import io.ddf.content.ViewHandler.IntVal;
+import io.ddf.content.ViewHandler.Operator;
+import io.ddf.content.ViewHandler.Value;
+import io.ddf.exception.DDFException;
+
+import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Compiles the {@link Expression} trees of {@link ViewHandler#subset} into predicates and projectors over typed rows,
+ * for engines without an SQL backend. All the per-row decisions the tree would need, such as finding column indexes,
+ * parsing operator names, and picking numeric or generic comparisons, are made once at compile time, so evaluating a
+ * row only runs small specialized nodes.
+ * <p/>
+ * Rows are best filtered in batches, see {@link #filter(Iterator, RowPredicate, RowProjector)}: comparisons of a numeric
+ * column with a constant then read the column of a whole batch at once and compare it in a tight loop, with the
+ * operator chosen once per batch, and generic comparisons call the compareTo of the compared class directly through a
+ * {@link MethodHandle} resolved at compile time.
+ * <p/>
+ * Predicates follow SQL's three-valued logic: comparing with NULL is unknown, and a row is kept only if the filter is
+ * true. Compiled predicates and projectors are serializable, so they can also filter rows of other engines, e.g., the
+ * partitions of a Spark RDD.
+ */
+public class ExpressionCompiler {
+
+  static final byte FALSE = 0;
+  static final byte TRUE = 1;
+  static final byte UNKNOWN = 2;
+
+  public static final int BATCH_SIZE = 1024;
+
+
+  public interface RowPredicate extends Serializable {
+    boolean test(Object[] row);
+
+    /**
+     * Tests the first numRows rows of a batch at once
+     *
+     * @return the number of rows kept, whose indexes in the batch are written at the beginning of selected
+     */
+    int select(Object[][] rows, int numRows, int[] selected);
+  }
+
+
+  public interface RowProjector extends Serializable {
+    Object[] project(Object[] row);
+  }
+
+
+  private final Schema mSchema;
+
+
+  public ExpressionCompiler(Schema schema) {
+    mSchema = schema;
+  }
+
+  /**
+   * @return a predicate keeping the rows for which filter is true, or all rows if filter is null
+   */
+  public RowPredicate compilePredicate(Expression filter) throws DDFException {
+    if (filter == null) return new AcceptAll();
+    return new FilterPredicate(this.compileCondition(filter));
+  }
+
+  /**
+   * @return the rows for which the predicate is true, projected, evaluating the predicate on batches of
+   * {@link #BATCH_SIZE} rows as the returned iterator is consumed
+   */
+  public static Iterator<Object[]> filter(Iterator<Object[]> rows, RowPredicate predicate, RowProjector projector) {
+    return new BatchFilter(rows, predicate, projector);
+  }
+
+  public RowProjector compileProjector(List<Column> columns) throws DDFException {
+    int[] indexes = new int[columns.size()];
+    for (int i = 0; i < indexes.length; i++) {
+      indexes[i] = this.resolveIndex(columns.get(i));
+    }
+    return new Projector(indexes);
+  }
+
+  public int resolveIndex(Column column) throws DDFException {
+    Integer index = column.getIndex();
+    if (index == null) {
+      index = mSchema.getColumnIndex(column.getName());
+    }
+    if (index == null || index < 0 || index >= mSchema.getNumColumns()) {
+      throw new DDFException(String.format("Column %s does not exists", column.getName() != null ? column.getName()
+          : column.getIndex()));
+    }
+    return index;
+  }
+
+  private Condition compileCondition(Expression expression) throws DDFException {
+    if (expression instanceof BooleanVal) {
+      Boolean value = (Boolean) ((BooleanVal) expression).getValue();
+      return new ConstantCondition(value == null ? UNKNOWN : (value ? TRUE : FALSE));
+    }
+    if (expression instanceof Column) {
+      return new BooleanColumnCondition(this.resolveIndex((Column) expression));
+    }
+    if (!(expression instanceof Operator)) {
+      throw new DDFException("Not a condition: " + expression);
+    }
+
+    Operator operator = (Operator) expression;
+    Expression[] operands = operator.getOperands();
+    if (operator.getName() == null) {
+      throw new DDFException("Missing operator name for operands " + Arrays.toString(operands));
+    }
+    switch (operator.getName()) {
+      case and:
+        return new AndCondition(this.compileCondition(operands[0]), this.compileCondition(operands[1]));
+      case or:
+        return new OrCondition(this.compileCondition(operands[0]), this.compileCondition(operands[1]));
+      case neg:
+        return new NotCondition(this.compileCondition(operands[0]));
+      case isnull:
+        return new IsNullCondition(this.compileOperand(operands[0]), true);
+      case isnotnull:
+        return new IsNullCondition(this.compileOperand(operands[0]), false);
+      case grep:
+        return new ContainsCondition(this.compileOperand(operands[1]), (String) ((Value) operands[0]).getValue(), false);
+      case grep_ic:
+        return new ContainsCondition(this.compileOperand(operands[1]), (String) ((Value) operands[0]).getValue(), true);
+      case lt:
+      case le:
+      case eq:
+      case ge:
+      case gt:
+      case ne:
+        return this.compileComparison(operator.getName(), operands[0], operands[1]);
+      default:
+        throw new DDFException("Unsupported Operator: " + operator.getName());
+    }
+  }
+
+  private Condition compileComparison(ViewHandler.OperationName op, Expression left, Expression right)
+      throws DDFException {
+    Operand l = this.compileOperand(left);
+    Operand r = this.compileOperand(right);
+    if (this.isNumeric(left) && this.isNumeric(right)) {
+      if (l instanceof ColumnOperand && r instanceof ConstantOperand) {
+        return new NumericColumnConstantComparison(op, ((ColumnOperand) l).mIndex,
+            ((Number) ((ConstantOperand) r).mValue).doubleValue());
+      }
+      return new NumericComparison(op, l, r);
+    }
+
+    Class<?> type = this.getComparedClass(left);
+    return new GenericComparison(op, l, r, type != null && type == this.getComparedClass(right) ? type : null);
+  }
+
+  /**
+   * @return the class of the values of a constant or of a string column, or null if not known at compile time
+   */
+  private Class<?> getComparedClass(Expression expression) throws DDFException {
+    if (expression instanceof Value) {
+      Object value = ((Value) expression).getValue();
+      return value == null ? null : value.getClass();
+    }
+    if (expression instanceof Column
+        && mSchema.getColumn(this.resolveIndex((Column) expression)).getType() == Schema.ColumnType.STRING) {
+      return String.class;
+    }
+    return null;
+  }
+
+  /**
+   * @return compareTo of the given class as an (Object, Object)int handle, or null if it has none
+   */
+  static MethodHandle findCompareTo(Class<?> type) {
+    if (type == null || !Comparable.class.isAssignableFrom(type)) return null;
+    try {
+      return MethodHandles.publicLookup().findVirtual(type, "compareTo", MethodType.methodType(int.class, type))
+          .asType(MethodType.methodType(int.class, Object.class, Object.class));
+    } catch (NoSuchMethodException e) {
+      return null;
+    } catch (IllegalAccessException e) {
+      return null;
+    }
+  }
+
+  private Operand compileOperand(Expression expression) throws DDFException {
+    if (expression instanceof Column) return new ColumnOperand(this.resolveIndex((Column) expression));
+    if (expression instanceof Value) return new ConstantOperand(((Value) expression).getValue());
+    throw new DDFException("Not a column or a value: " + expression);
+  }
+
+  private boolean isNumeric(Expression expression) throws DDFException {
+    if (expression instanceof IntVal || expression instanceof DoubleVal) return true;
+    if (expression instanceof Column) {
+      return mSchema.getColumn(this.resolveIndex((Column) expression)).isNumeric();
+    }
+    return false;
+  }
+
+
+  // ////// Compiled nodes ////////
+
+  private interface Condition extends Serializable {
+    byte eval(Object[] row);
+
+    /**
+     * Evaluates the first numRows rows of a batch into results
+     */
+    void eval(Object[][] rows, int numRows, byte[] results);
+  }
+
+
+  /**
+   * A condition evaluating a batch one row after the other, for the conditions that gain nothing from batches
+   */
+  private abstract static class RowCondition implements Condition {
+    @Override
+    public void eval(Object[][] rows, int numRows, byte[] results) {
+      for (int i = 0; i < numRows; i++) {
+        results[i] = this.eval(rows[i]);
+      }
+    }
+  }
+
+
+  private interface Operand extends Serializable {
+    Object get(Object[] row);
+  }
+
+
+  private static class AcceptAll implements RowPredicate {
+    @Override
+    public boolean test(Object[] row) {
+      return true;
+    }
+
+    @Override
+    public int select(Object[][] rows, int numRows, int[] selected) {
+      for (int i = 0; i < numRows; i++) {
+        selected[i] = i;
+      }
+      return numRows;
+    }
+  }
+
+
+  private static class FilterPredicate implements RowPredicate {
+    private final Condition mCondition;
+
+
+    FilterPredicate(Condition condition) {
+      mCondition = condition;
+    }
+
+    @Override
+    public boolean test(Object[] row) {
+      return mCondition.eval(row) == TRUE;
+    }
+
+    @Override
+    public int select(Object[][] rows, int numRows, int[] selected) {
+      byte[] results = new byte[numRows];
+      mCondition.eval(rows, numRows, results);
+      int numSelected = 0;
+      for (int i = 0; i < numRows; i++) {
+        if (results[i] == TRUE) selected[numSelected++] = i;
+      }
+      return numSelected;
+    }
+  }
+
+
+  private static class BatchFilter implements Iterator<Object[]> {
+    private final Iterator<Object[]> mRows;
+    private final RowPredicate mPredicate;
+    private final RowProjector mProjector;
+    private final Object[][] mBatch = new Object[BATCH_SIZE][];
+    private final int[] mSelected = new int[BATCH_SIZE];
+    private int mNumSelected = 0;
+    private int mPosition = 0;
+
+
+    BatchFilter(Iterator<Object[]> rows, RowPredicate predicate, RowProjector projector) {
+      mRows = rows;
+      mPredicate = predicate;
+      mProjector = projector;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (mPosition >= mNumSelected && mRows.hasNext()) {
+        int numRows = 0;
+        while (numRows < BATCH_SIZE && mRows.hasNext()) {
+          mBatch[numRows++] = mRows.next();
+        }
+        mNumSelected = mPredicate.select(mBatch, numRows, mSelected);
+        mPosition = 0;
+      }
+      return mPosition < mNumSelected;
+    }
+
+    @Override
+    public Object[] next() {
+      if (!this.hasNext()) throw new NoSuchElementException();
+      return mProjector.project(mBatch[mSelected[mPosition++]]);
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+
+  private static class Projector implements RowProjector {
+    private final int[] mIndexes;
+
+
+    Projector(int[] indexes) {
+      mIndexes = indexes;
+    }
+
+    @Override
+    public Object[] project(Object[] row) {
+      Object[] projected = new Object[mIndexes.length];
+      for (int i = 0; i < mIndexes.length; i++) {
+        projected[i] = row[mIndexes[i]];
+      }
+      return projected;
+    }
+  }
+
+
+  private static class ColumnOperand implements Operand {
+    private final int mIndex;
+
+
+    ColumnOperand(int index) {
+      mIndex = index;
+    }
+
+    @Override
+    public Object get(Object[] row) {
+      return row[mIndex];
+    }
+  }
+
+
+  private static class ConstantOperand implements Operand {
+    private final Object mValue;
+
+
+    ConstantOperand(Object value) {
+      mValue = value;
+    }
+
+    @Override
+    public Object get(Object[] row) {
+      return mValue;
+    }
+  }
+
+
+  private static class ConstantCondition implements Condition {
+    private final byte mValue;
+
+
+    ConstantCondition(byte value) {
+      mValue = value;
+    }
+
+    @Override
+    public byte eval(Object[] row) {
+      return mValue;
+    }
+
+    @Override
+    public void eval(Object[][] rows, int numRows, byte[] results) {
+      Arrays.fill(results, 0, numRows, mValue);
+    }
+  }
+
+
+  private static class BooleanColumnCondition extends RowCondition {
+    private final int mIndex;
+
+
+    BooleanColumnCondition(int index) {
+      mIndex = index;
+    }
+
+    @Override
+    public byte eval(Object[] row) {
+      Object value = row[mIndex];
+      if (value == null) return UNKNOWN;
+      return Boolean.TRUE.equals(value) || "true".equalsIgnoreCase(value.toString()) ? TRUE : FALSE;
+    }
+  }
+
+
+  private static class AndCondition implements Condition {
+    private final Condition mLeft;
+    private final Condition mRight;
+
+
+    AndCondition(Condition left, Condition right) {
+      mLeft = left;
+      mRight = right;
+    }
+
+    @Override
+    public byte eval(Object[] row) {
+      byte left = mLeft.eval(row);
+      if (left == FALSE) return FALSE;
+      byte right = mRight.eval(row);
+      if (right == FALSE) return FALSE;
+      return left == TRUE && right == TRUE ? TRUE : UNKNOWN;
+    }
+
+    @Override
+    public void eval(Object[][] rows, int numRows, byte[] results) {
+      mLeft.eval(rows, numRows, results);
+      Undecided undecided = Undecided.of(rows, numRows, results, FALSE);
+      if (undecided == null) return;
+
+      byte[] right = undecided.eval(mRight);
+      for (int j = 0; j < undecided.mNumRows; j++) {
+        int i = undecided.mPositions[j];
+        results[i] = right[j] == FALSE ? FALSE : (results[i] == TRUE && right[j] == TRUE ? TRUE : UNKNOWN);
+      }
+    }
+  }
+
+
+  private static class OrCondition implements Condition {
+    private final Condition mLeft;
+    private final Condition mRight;
+
+
+    OrCondition(Condition left, Condition right) {
+      mLeft = left;
+      mRight = right;
+    }
+
+    @Override
+    public byte eval(Object[] row) {
+      byte left = mLeft.eval(row);
+      if (left == TRUE) return TRUE;
+      byte right = mRight.eval(row);
+      if (right == TRUE) return TRUE;
+      return left == FALSE && right == FALSE ? FALSE : UNKNOWN;
+    }
+
+    @Override
+    public void eval(Object[][] rows, int numRows, byte[] results) {
+      mLeft.eval(rows, numRows, results);
+      Undecided undecided = Undecided.of(rows, numRows, results, TRUE);
+      if (undecided == null) return;
+
+      byte[] right = undecided.eval(mRight);
+      for (int j = 0; j < undecided.mNumRows; j++) {
+        int i = undecided.mPositions[j];
+        results[i] = right[j] == TRUE ? TRUE : (results[i] == FALSE && right[j] == FALSE ? FALSE : UNKNOWN);
+      }
+    }
+  }
+
+
+  /**
+   * The rows of a batch that the left side of AND or OR does not decide alone, so that the right side is only
+   * evaluated on the rows it would be evaluated on row by row
+   */
+  private static class Undecided {
+    private final Object[][] mRows;
+    private final int[] mPositions;
+    private final int mNumRows;
+
+
+    private Undecided(Object[][] rows, int[] positions, int numRows) {
+      mRows = rows;
+      mPositions = positions;
+      mNumRows = numRows;
+    }
+
+    /**
+     * @return the rows whose result is not decisive, or null if there are none
+     */
+    static Undecided of(Object[][] rows, int numRows, byte[] results, byte decisive) {
+      Object[][] undecided = new Object[numRows][];
+      int[] positions = new int[numRows];
+      int n = 0;
+      for (int i = 0; i < numRows; i++) {
+        if (results[i] != decisive) {
+          undecided[n] = rows[i];
+          positions[n++] = i;
+        }
+      }
+      return n == 0 ? null : new Undecided(undecided, positions, n);
+    }
+
+    byte[] eval(Condition condition) {
+      byte[] results = new byte[mNumRows];
+      condition.eval(mRows, mNumRows, results);
+      return results;
+    }
+  }
+
+
+  private static class NotCondition implements Condition {
+    private final Condition mOperand;
+
+
+    NotCondition(Condition operand) {
+      mOperand = operand;
+    }
+
+    @Override
+    public byte eval(Object[] row) {
+      byte value = mOperand.eval(row);
+      return value == UNKNOWN ? UNKNOWN : (value == TRUE ? FALSE : TRUE);
+    }
+
+    @Override
+    public void eval(Object[][] rows, int numRows, byte[] results) {
+      mOperand.eval(rows, numRows, results);
+      for (int i = 0; i < numRows; i++) {
+        if (results[i] != UNKNOWN) results[i] = results[i] == TRUE ? FALSE : TRUE;
+      }
+    }
+  }
+
+
+  private static class IsNullCondition extends RowCondition {
+    private final Operand mOperand;
+    private final boolean mIsNull;
+
+
+    IsNullCondition(Operand operand, boolean isNull) {
+      mOperand = operand;
+      mIsNull = isNull;
+    }
+
+    @Override
+    public byte eval(Object[] row) {
+      return (mOperand.get(row) == null) == mIsNull ? TRUE : FALSE;
+    }
+  }
+
+
+  /**
+   * The LIKE '%pattern%' of grep and grep_ic
+   */
+  private static class ContainsCondition extends RowCondition {
+    private final Operand mOperand;
+    private final String mPattern;
+    private final boolean mIgnoreCase;
+
+
+    ContainsCondition(Operand operand, String pattern, boolean ignoreCase) {
+      mOperand = operand;
+      mIgnoreCase = ignoreCase;
+      mPattern = ignoreCase ? pattern.toLowerCase() : pattern;
+    }
+
+    @Override
+    public byte eval(Object[] row) {
+      Object value = mOperand.get(row);
+      if (value == null) return UNKNOWN;
+      String s = mIgnoreCase ? value.toString().toLowerCase() : value.toString();
+      return s.contains(mPattern) ? TRUE : FALSE;
+    }
+  }
+
+
+  private abstract static class Comparison extends RowCondition {
+    private final ViewHandler.OperationName mOp;
+
+
+    Comparison(ViewHandler.OperationName op) {
+      mOp = op;
+    }
+
+    byte test(int c) {
+      boolean result;
+      switch (mOp) {
+        case lt:
+          result = c < 0;
+          break;
+        case le:
+          result = c <= 0;
+          break;
+        case eq:
+          result = c == 0;
+          break;
+        case ge:
+          result = c >= 0;
+          break;
+        case gt:
+          result = c > 0;
+          break;
+        default:
+          result = c != 0;
+      }
+      return result ? TRUE : FALSE;
+    }
+
+    /**
+     * Sets the results of a batch from the comparisons of its rows, leaving the UNKNOWN results as they are. The
+     * operator is switched on once for the batch rather than once per row.
+     */
+    void testAll(int[] c, int numRows, byte[] results) {
+      switch (mOp) {
+        case lt:
+          for (int i = 0; i < numRows; i++) if (results[i] != UNKNOWN) results[i] = c[i] < 0 ? TRUE : FALSE;
+          break;
+        case le:
+          for (int i = 0; i < numRows; i++) if (results[i] != UNKNOWN) results[i] = c[i] <= 0 ? TRUE : FALSE;
+          break;
+        case eq:
+          for (int i = 0; i < numRows; i++) if (results[i] != UNKNOWN) results[i] = c[i] == 0 ? TRUE : FALSE;
+          break;
+        case ge:
+          for (int i = 0; i < numRows; i++) if (results[i] != UNKNOWN) results[i] = c[i] >= 0 ? TRUE : FALSE;
+          break;
+        case gt:
+          for (int i = 0; i < numRows; i++) if (results[i] != UNKNOWN) results[i] = c[i] > 0 ? TRUE : FALSE;
+          break;
+        default:
+          for (int i = 0; i < numRows; i++) if (results[i] != UNKNOWN) results[i] = c[i] != 0 ? TRUE : FALSE;
+      }
+    }
+  }
+
+
+  /**
+   * The most common filter, e.g., depdelay > 15, comparing a numeric column to a constant without boxing the constant
+   */
+  private static class NumericColumnConstantComparison extends Comparison {
+    private final int mIndex;
+    private final double mConstant;
+
+
+    NumericColumnConstantComparison(ViewHandler.OperationName op, int index, double constant) {
+      super(op);
+      mIndex = index;
+      mConstant = constant;
+    }
+
+    @Override
+    public byte eval(Object[] row) {
+      Object value = row[mIndex];
+      if (value == null) return UNKNOWN;
+      return this.test(Double.compare(NumericComparison.toDouble(value), mConstant));
+    }
+
+    /**
+     * Reads the column of the batch into primitive comparisons first, then tests them all
+     */
+    @Override
+    public void eval(Object[][] rows, int numRows, byte[] results) {
+      int[] c = new int[numRows];
+      for (int i = 0; i < numRows; i++) {
+        Object value = rows[i][mIndex];
+        if (value == null) {
+          results[i] = UNKNOWN;
+        } else {
+          results[i] = FALSE;
+          c[i] = Double.compare(NumericComparison.toDouble(value), mConstant);
+        }
+      }
+      this.testAll(c, numRows, results);
+    }
+  }
+
+
+  private static class NumericComparison extends Comparison {
+    private final Operand mLeft;
+    private final Operand mRight;
+
+
+    NumericComparison(ViewHandler.OperationName op, Operand left, Operand right) {
+      super(op);
+      mLeft = left;
+      mRight = right;
+    }
+
+    @Override
+    public byte eval(Object[] row) {
+      Object left = mLeft.get(row);
+      Object right = mRight.get(row);
+      if (left == null || right == null) return UNKNOWN;
+      return this.test(Double.compare(toDouble(left), toDouble(right)));
+    }
+
+    static double toDouble(Object value) {
+      return value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble(value.toString());
+    }
+  }
+
+
+  /**
+   * Compares values of the class known at compile time with a direct call to its compareTo, and any other values with
+   * {@link RowComparator}
+   */
+  private static class GenericComparison extends Comparison {
+    private final Operand mLeft;
+    private final Operand mRight;
+    private final Class<?> mType;
+    // method handles are not serializable, so the handle is resolved again after deserialization
+    private transient MethodHandle mCompareTo;
+
+
+    GenericComparison(ViewHandler.OperationName op, Operand left, Operand right, Class<?> type) {
+      super(op);
+      mLeft = left;
+      mRight = right;
+      mCompareTo = findCompareTo(type);
+      mType = mCompareTo == null ? null : type;
+    }
+
+    @Override
+    public byte eval(Object[] row) {
+      Object left = mLeft.get(row);
+      Object right = mRight.get(row);
+      if (left == null || right == null) return UNKNOWN;
+      return this.test(this.compare(left, right));
+    }
+
+    private int compare(Object left, Object right) {
+      if (mType == null || left.getClass() != mType || right.getClass() != mType) {
+        return RowComparator.compareValues(left, right);
+      }
+      if (mCompareTo == null) mCompareTo = findCompareTo(mType);
+      try {
+        return (int) mCompareTo.invokeExact(left, right);
+      } catch (RuntimeException e) {
+        throw e;
+      } catch (Throwable t) {
+        throw new IllegalStateException("Cannot compare " + left + " with " + right, t);
+      }
+    }
+  }
+}
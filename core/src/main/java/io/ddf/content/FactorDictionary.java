@@ -0,0 +1,200 @@
+package io.ddf.content;
+
+
+import io.ddf.Factor;
+import io.ddf.content.Schema.Column;
+import io.ddf.content.Schema.ColumnClass;
+import io.ddf.exception.DDFException;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionary encoding of all the factor columns of a {@link Schema}. Each factor column is assigned a position in the
+ * dictionary, and each of its levels a 0-based int code, in the order of {@link Factor#getLevels()}. Factor values are
+ * encoded once into these codes so that level counting, dummy coding and ML feature building can work on primitive
+ * ints instead of looking up strings per cell.
+ * <p/>
+ * A value which is null is encoded as {@link #NA_CODE}. A value which is not one of the known levels is encoded as the
+ * {@link Factor#OTHER_LEVEL} level when the column has one, i.e., when its levels are approximate, and otherwise as
+ * {@link #NA_CODE}.
+ */
+public class FactorDictionary implements Serializable {
+
+  private static final long serialVersionUID = 2963453215896155470L;
+
+  public static final int NA_CODE = -1;
+
+  // Column indexes (in the schema) of the encoded factor columns, in dictionary order
+  private int[] mColumnIndexes;
+
+  // Levels of each encoded factor column, in dictionary order
+  private String[][] mLevels;
+
+  // Maps a column index to its dictionary position, or -1 if that column is not encoded
+  private int[] mPositions;
+
+  // Built lazily on each side of the wire, see getCodeMap()
+  private transient volatile Map<String, Integer>[] mCodeMaps;
+
+
+  public FactorDictionary(int[] columnIndexes, String[][] levels) throws DDFException {
+    if (columnIndexes == null || levels == null || columnIndexes.length != levels.length) {
+      throw new DDFException("Number of factor columns does not match the number of level lists");
+    }
+    mColumnIndexes = columnIndexes;
+    mLevels = levels;
+
+    int maxIndex = -1;
+    for (int idx : columnIndexes) maxIndex = Math.max(maxIndex, idx);
+    mPositions = new int[maxIndex + 1];
+    Arrays.fill(mPositions, -1);
+    for (int pos = 0; pos < columnIndexes.length; pos++) {
+      mPositions[columnIndexes[pos]] = pos;
+    }
+  }
+
+  /**
+   * Builds the dictionary of all factor columns of the given schema whose levels are known
+   *
+   * @param schema
+   * @return
+   * @throws DDFException
+   */
+  public static FactorDictionary fromSchema(Schema schema) throws DDFException {
+    List<Integer> columnIndexes = new ArrayList<Integer>();
+    List<String[]> levels = new ArrayList<String[]>();
+
+    List<Column> columns = schema.getColumns();
+    for (int i = 0; i < columns.size(); i++) {
+      Column column = columns.get(i);
+      if (column.getColumnClass() != ColumnClass.FACTOR || column.getOptionalFactor() == null) continue;
+
+      List<String> columnLevels = column.getOptionalFactor().getLevels();
+      if (columnLevels == null) continue;
+
+      columnIndexes.add(i);
+      levels.add(columnLevels.toArray(new String[columnLevels.size()]));
+    }
+
+    int[] indexes = new int[columnIndexes.size()];
+    for (int i = 0; i < indexes.length; i++) indexes[i] = columnIndexes.get(i);
+
+    return new FactorDictionary(indexes, levels.toArray(new String[levels.size()][]));
+  }
+
+  /**
+   * @return the number of encoded factor columns
+   */
+  public int size() {
+    return mColumnIndexes.length;
+  }
+
+  public boolean isEmpty() {
+    return mColumnIndexes.length == 0;
+  }
+
+  public int[] getColumnIndexes() {
+    return mColumnIndexes;
+  }
+
+  public boolean hasColumn(int columnIndex) {
+    return this.getPosition(columnIndex) >= 0;
+  }
+
+  /**
+   * @param columnIndex index of the column in the schema
+   * @return the position of the column in this dictionary, i.e., in the encoded code arrays, or -1 if not encoded
+   */
+  public int getPosition(int columnIndex) {
+    return (columnIndex >= 0 && columnIndex < mPositions.length) ? mPositions[columnIndex] : -1;
+  }
+
+  /**
+   * @param position dictionary position, see {@link #getPosition(int)}
+   * @return the levels of the factor column at that position
+   */
+  public String[] getLevelsAt(int position) {
+    return mLevels[position];
+  }
+
+  public int getNumLevelsAt(int position) {
+    return mLevels[position].length;
+  }
+
+  public int getNumLevels(int columnIndex) {
+    int pos = this.getPosition(columnIndex);
+    return pos < 0 ? 0 : mLevels[pos].length;
+  }
+
+  /**
+   * Encodes a value of the factor column at the given dictionary position
+   *
+   * @param position
+   * @param value
+   * @return the int code of the level, the code of {@link Factor#OTHER_LEVEL} if the value is not a known level, or
+   * {@link #NA_CODE} if the value is null or not a known level of a column without an other level
+   */
+  public int encodeAt(int position, Object value) {
+    if (value == null) return NA_CODE;
+    Map<String, Integer> codeMap = this.getCodeMap(position);
+    Integer code = codeMap.get(value.toString());
+    if (code == null) code = codeMap.get(Factor.OTHER_LEVEL);
+    return code == null ? NA_CODE : code;
+  }
+
+  public int encode(int columnIndex, Object value) {
+    int pos = this.getPosition(columnIndex);
+    return pos < 0 ? NA_CODE : this.encodeAt(pos, value);
+  }
+
+  /**
+   * @return the level of the given code, or null for {@link #NA_CODE}
+   */
+  public String decodeAt(int position, int code) {
+    return (code < 0 || code >= mLevels[position].length) ? null : mLevels[position][code];
+  }
+
+  public String decode(int columnIndex, int code) {
+    int pos = this.getPosition(columnIndex);
+    return pos < 0 ? null : this.decodeAt(pos, code);
+  }
+
+  /**
+   * Encodes the factor columns of one row, given as an array of all column values
+   *
+   * @param row
+   * @return the codes of the row's factor columns, in dictionary order
+   */
+  public int[] encodeRow(Object[] row) {
+    int[] codes = new int[mColumnIndexes.length];
+    for (int pos = 0; pos < codes.length; pos++) {
+      codes[pos] = this.encodeAt(pos, row[mColumnIndexes[pos]]);
+    }
+    return codes;
+  }
+
+  @SuppressWarnings("unchecked")
+  private Map<String, Integer> getCodeMap(int position) {
+    if (mCodeMaps == null) {
+      synchronized (this) {
+        if (mCodeMaps == null) {
+          Map<String, Integer>[] codeMaps = new Map[mLevels.length];
+          for (int pos = 0; pos < mLevels.length; pos++) {
+            Map<String, Integer> codeMap = new HashMap<String, Integer>(mLevels[pos].length * 2);
+            for (int code = 0; code < mLevels[pos].length; code++) {
+              codeMap.put(mLevels[pos][code], code);
+            }
+            codeMaps[pos] = codeMap;
+          }
+          mCodeMaps = codeMaps;
+        }
+      }
+    }
+    return mCodeMaps[position];
+  }
+}
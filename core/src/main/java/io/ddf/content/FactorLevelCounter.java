@@ -0,0 +1,157 @@
+package io.ddf.content;
+
+
+import io.ddf.Factor;
+import io.ddf.exception.DDFException;
+import io.ddf.util.HyperLogLog;
+import io.ddf.util.LongCountMap;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Counts the levels of one factor column in bounded memory. Up to maxLevels distinct values are counted exactly.
+ * Beyond that, the counter turns into a Misra-Gries heavy-hitters summary of at most maxLevels levels: every value
+ * whose frequency exceeds n/(maxLevels+1) is kept, each count is underestimated by at most n/(maxLevels+1), and the
+ * rest of the total, i.e., the values that were dropped and the underestimation of the counts kept, is accounted for
+ * under the {@link Factor#OTHER_LEVEL} level. A {@link HyperLogLog} estimates the number of distinct values.
+ * <p/>
+ * Counters are mergeable, so each partition can count separately and the results be combined.
+ */
+public class FactorLevelCounter implements Serializable {
+
+  private static final long serialVersionUID = -4273581447926377123L;
+
+  private final int mMaxLevels;
+  private final LongCountMap<String> mCounts = new LongCountMap<String>();
+  private final HyperLogLog mCardinality = new HyperLogLog();
+  private long mTotal = 0;
+  private boolean mIsApproximate = false;
+
+
+  public FactorLevelCounter(int maxLevels) {
+    if (maxLevels <= 0) throw new IllegalArgumentException("Maximum number of levels must be positive");
+    mMaxLevels = maxLevels;
+  }
+
+  public void add(String value) {
+    if (value == null) return;
+    long hash = HyperLogLog.hash(value);
+    mCardinality.offerHash(hash);
+    mCounts.increment(hash, value);
+    mTotal++;
+    // let the summary grow to twice its bound before shrinking it, so that shrinking is amortized
+    if (mCounts.size() > 2 * mMaxLevels) this.shrink();
+  }
+
+  public FactorLevelCounter merge(FactorLevelCounter other) {
+    mCounts.merge(other.mCounts);
+    mCardinality.merge(other.mCardinality);
+    mTotal += other.mTotal;
+    mIsApproximate |= other.mIsApproximate;
+    if (mCounts.size() > mMaxLevels) this.shrink();
+    return this;
+  }
+
+  /**
+   * Reduces the summary to at most maxLevels levels by subtracting the (maxLevels+1)-th largest count from all counts
+   */
+  private void shrink() {
+    mCounts.decrementAll(mCounts.kthLargestCount(mMaxLevels + 1));
+    mIsApproximate = true;
+  }
+
+  /**
+   * @return the counts, reduced to at most maxLevels levels without changing this counter
+   */
+  private LongCountMap<String> summarized() {
+    if (mCounts.size() <= mMaxLevels) return mCounts;
+    LongCountMap<String> counts = mCounts.copy();
+    counts.decrementAll(counts.kthLargestCount(mMaxLevels + 1));
+    return counts;
+  }
+
+  public boolean isApproximate() {
+    return mIsApproximate || mCounts.size() > mMaxLevels;
+  }
+
+  /**
+   * @return number of non-null values counted
+   */
+  public long getTotal() {
+    return mTotal;
+  }
+
+  /**
+   * @return the level counts, most frequent first, at most maxLevels of them
+   */
+  public Map<String, Integer> getLevelCounts() {
+    LongCountMap<String> summary = this.summarized();
+    final long[] counts = summary.counts();
+    final Object[] labels = summary.labels();
+    Integer[] order = new Integer[counts.length];
+    for (int i = 0; i < order.length; i++) order[i] = i;
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        return counts[a] != counts[b] ? Long.compare(counts[b], counts[a]) : ((String) labels[a]).compareTo(
+            (String) labels[b]);
+      }
+    });
+
+    Map<String, Integer> levelCounts = new LinkedHashMap<String, Integer>();
+    for (int i : order) {
+      levelCounts.put((String) labels[i], (int) Math.min(counts[i], Integer.MAX_VALUE));
+    }
+    return levelCounts;
+  }
+
+  /**
+   * @return the total minus the sum of the level counts, so that the level counts and the other count add up to the
+   * total. As the level counts are underestimated, this is the number of values dropped plus the underestimation of
+   * the levels kept, which is at most maxLevels * n/(maxLevels+1) in all.
+   */
+  public long getOtherCount() {
+    return this.isApproximate() ? otherCount(this.getLevelCounts()) : 0;
+  }
+
+  private long otherCount(Map<String, Integer> levelCounts) {
+    long kept = 0;
+    for (int count : levelCounts.values()) kept += count;
+    return mTotal - kept;
+  }
+
+  /**
+   * @return the exact number of distinct values if exact, otherwise an estimate
+   */
+  public long getEstimatedNumLevels() {
+    return this.isApproximate() ? Math.max(mCardinality.cardinality(), mCounts.size()) : mCounts.size();
+  }
+
+  /**
+   * Sets the levels, level counts and approximation details of the given factor from this counter. When values were
+   * dropped, they are counted under a last {@link Factor#OTHER_LEVEL} level, so that the level counts add up to the
+   * total and the dropped values can be coded like any other level.
+   */
+  public void applyTo(Factor<?> factor) throws DDFException {
+    Map<String, Integer> levelCounts = this.getLevelCounts();
+    long otherCount = this.isApproximate() ? this.otherCount(levelCounts) : 0;
+    if (otherCount > 0) {
+      // a value literally equal to the other level is counted with the dropped values
+      Integer literal = levelCounts.remove(Factor.OTHER_LEVEL);
+      long count = otherCount + (literal == null ? 0 : literal);
+      levelCounts.put(Factor.OTHER_LEVEL, (int) Math.min(count, Integer.MAX_VALUE));
+    }
+    factor.setLevelCounts(levelCounts);
+    if (!levelCounts.isEmpty()) {
+      factor.setLevels(new ArrayList<String>(levelCounts.keySet()), false);
+    }
+    factor.setApproximate(this.isApproximate());
+    factor.setOtherLevelCount(otherCount);
+    factor.setEstimatedNumLevels(this.getEstimatedNumLevels());
+  }
+}
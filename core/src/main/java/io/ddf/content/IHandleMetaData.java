@@ -8,6 +8,7 @@ import io.ddf.misc.IHandleDDFFunctionalGroup;
 
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 public interface IHandleMetaData extends IHandleDDFFunctionalGroup {
@@ -18,6 +19,9 @@ public interface IHandleMetaData extends IHandleDDFFunctionalGroup {
 
   public long getNumRows() throws DDFException;
 
+  // row count last computed by getNumRows, or -1 if none has been computed since the data last changed
+  public long getCachedNumRows();
+
   public void copyFactor(DDF ddf)  throws DDFException;
 
   public void copyFactor(DDF ddf, List<String> colums)  throws DDFException;
@@ -57,4 +61,16 @@ public interface IHandleMetaData extends IHandleDDFFunctionalGroup {
 
   //increase number of user using ddf
   public void increaseUseCount();
+
+  // version of the data of the ddf, increased whenever its content is replaced in place
+  public long getDataVersion();
+
+  public void increaseDataVersion();
+
+  // free-form facts about how the ddf was computed, e.g., the strategy of the join that produced it
+  public String getProperty(String key);
+
+  public void setProperty(String key, String value);
+
+  public Map<String, String> getProperties();
 }
@@ -4,6 +4,8 @@ package io.ddf.content;
 import io.ddf.exception.DDFException;
 import io.ddf.misc.IHandleDDFFunctionalGroup;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -143,6 +145,22 @@ public interface IHandleRepresentations extends IHandleDDFFunctionalGroup {
    */
   void uncacheAll();
 
+  /**
+   * Cache the given representations, leaving those already cached as they are
+   *
+   * @param typeSpecs the type specs strings of the representations
+   * @return the type specs strings of the representations cached by this call, to be given to
+   * {@link #uncacheRepresentations(Collection)} once they are no longer needed
+   */
+  List<String> cacheRepresentations(Collection<String> typeSpecs);
+
+  /**
+   * Uncache the given representations
+   *
+   * @param typeSpecs the type specs strings of the representations
+   */
+  void uncacheRepresentations(Collection<String> typeSpecs);
+
   /**
    * Returns the default representation for this engine
    *
@@ -11,6 +11,7 @@ import io.ddf.exception.DDFException;
 import io.ddf.misc.IHandleDDFFunctionalGroup;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  *
@@ -22,18 +23,58 @@ public interface IHandleViews extends IHandleDDFFunctionalGroup {
    * @param numSamples
    * @return a new DDF containing `numSamples` rows selected randomly from our owner DDF.
    */
-  public List<Object[]> getRandomSample(int numSamples, boolean withReplacement, int seed);
+  public List<Object[]> getRandomSample(int numSamples, boolean withReplacement, int seed) throws DDFException;
 
+  /**
+   * @return a new DDF of `numSamples` rows sampled uniformly in one pass, the same rows for the same seed
+   */
   public DDF getRandomSampleByNum(int numSamples,
                                   boolean withReplacement,
-                                  int seed);
+                                  int seed) throws DDFException;
+
+  public DDF getRandomSample(double percent, boolean withReplacement, int seed) throws DDFException;
+
+  /**
+   * @param column the column whose values define the strata
+   * @param sizes  number of rows to sample, without replacement, from each stratum, keyed by the string value of the
+   *               column ("null" for NULL). Strata not in sizes are left out.
+   * @return a new DDF with the sampled rows of all strata
+   */
+  public DDF getStratifiedSample(String column, Map<String, Integer> sizes, int seed) throws DDFException;
 
-  public DDF getRandomSample(double percent, boolean withReplacement, int seed);
+  /**
+   * Same as {@link #getStratifiedSample(String, Map, int)}, but keeps each row of a stratum with the given probability
+   */
+  public DDF getStratifiedSampleByFraction(String column, Map<String, Double> fractions, int seed) throws DDFException;
 
   public List<String> head(int numRows) throws DDFException;
 
   public List<String> top(int numRows, String orderCols, String mode) throws DDFException;
 
+  /**
+   * Same as {@link #head(int)}, but returns the typed values of the rows
+   */
+  public List<Object[]> headTyped(int numRows) throws DDFException;
+
+  /**
+   * Same as {@link #top(int, String, String)}, but returns the typed values of the rows. Only the top numRows rows of
+   * each partition are kept and merged, nothing sorts the whole DDF.
+   */
+  public List<Object[]> topTyped(int numRows, String orderCols, String mode) throws DDFException;
+
+  /**
+   * Hash-partitions the DDF on the given columns and caches it. DDFs partitioned on their join keys into the same
+   * number of partitions are joined partition by partition, without a shuffle. The partitioning is recorded in the
+   * metadata of the new DDF under {@link #PARTITION_COLUMNS_PROPERTY} and {@link #NUM_PARTITIONS_PROPERTY}.
+   *
+   * @return a new DDF with the same rows
+   */
+  public DDF repartitionBy(List<String> columns, int numPartitions) throws DDFException;
+
+  public static final String PARTITION_COLUMNS_PROPERTY = "partition.columns";
+
+  public static final String NUM_PARTITIONS_PROPERTY = "partition.count";
+
   public DDF project(String... columnNames) throws DDFException;
 
   public DDF project(List<String> columnNames) throws DDFException;
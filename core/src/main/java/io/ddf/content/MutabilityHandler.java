@@ -32,6 +32,7 @@ public class MutabilityHandler extends ADDFFunctionalGroupHandler implements IHa
     curDDF.getRepresentationHandler().setRepresentations(newddf.getRepresentationHandler().getAllRepresentations());
     newddf.getMetaDataHandler().copyFactor(this.getDDF());
     curDDF.getSchemaHandler().setSchema(newddf.getSchema());
+    curDDF.getMetaDataHandler().increaseDataVersion();
 
     return curDDF;
   }
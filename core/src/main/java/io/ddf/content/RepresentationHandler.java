@@ -11,6 +11,7 @@ import io.ddf.types.AGloballyAddressable;
 import io.ddf.types.IGloballyAddressable;
 import org.jgrapht.GraphPath;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -320,6 +321,16 @@ public class RepresentationHandler extends ADDFFunctionalGroupHandler implements
     // TODO Auto-generated method stub
   }
 
+  @Override
+  public List<String> cacheRepresentations(Collection<String> typeSpecs) {
+    return new ArrayList<String>();
+  }
+
+  @Override
+  public void uncacheRepresentations(Collection<String> typeSpecs) {
+
+  }
+
 
   /**
    * A special class representing a Table that's native to the engine, e.g., Shark Table for the Spark engine.
@@ -0,0 +1,115 @@
+package io.ddf.content;
+
+
+import io.ddf.exception.DDFException;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Orders typed rows by some of their columns, the way an SQL ORDER BY clause does: NULLs come before any value, and
+ * each column is ascending unless it says "desc". Used to find the top rows of a DDF without sorting all of them.
+ */
+public class RowComparator implements Comparator<Object[]>, Serializable {
+
+  private static final long serialVersionUID = -1857324407196283325L;
+
+  private final int[] mColumnIndexes;
+  private final boolean[] mDescending;
+
+
+  public RowComparator(int[] columnIndexes, boolean[] descending) {
+    mColumnIndexes = columnIndexes;
+    mDescending = descending;
+  }
+
+  /**
+   * @param schema       schema of the rows
+   * @param orderColumns comma-separated columns, each optionally followed by "asc" or "desc", e.g., "dep, arr desc"
+   * @param mode         "asc" or "desc", the order of the last column if it does not have one, as in
+   *                     "ORDER BY orderColumns mode"
+   */
+  public static RowComparator parse(Schema schema, String orderColumns, String mode) throws DDFException {
+    if (orderColumns == null || orderColumns.trim().isEmpty()) {
+      throw new DDFException("Order columns must be specified");
+    }
+
+    String[] specs = orderColumns.split(",");
+    int[] columnIndexes = new int[specs.length];
+    boolean[] descending = new boolean[specs.length];
+    for (int i = 0; i < specs.length; i++) {
+      String[] parts = specs[i].trim().split("\\s+");
+      if (parts.length > 2 || parts[0].isEmpty()) {
+        throw new DDFException("Invalid order column: " + specs[i]);
+      }
+
+      columnIndexes[i] = schema.getColumnIndex(parts[0]);
+      if (columnIndexes[i] < 0) {
+        throw new DDFException(String.format("Column %s does not exists", parts[0]));
+      }
+
+      String direction = parts.length == 2 ? parts[1] : (i == specs.length - 1 ? mode : null);
+      descending[i] = isDescending(direction);
+    }
+    return new RowComparator(columnIndexes, descending);
+  }
+
+  private static boolean isDescending(String direction) throws DDFException {
+    if (direction == null || direction.trim().isEmpty() || "asc".equalsIgnoreCase(direction.trim())) return false;
+    if ("desc".equalsIgnoreCase(direction.trim())) return true;
+    throw new DDFException("Order must be asc or desc, not " + direction);
+  }
+
+  @Override
+  public int compare(Object[] a, Object[] b) {
+    for (int i = 0; i < mColumnIndexes.length; i++) {
+      int c = compareValues(a[mColumnIndexes[i]], b[mColumnIndexes[i]]);
+      if (c != 0) return mDescending[i] ? -c : c;
+    }
+    return 0;
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  static int compareValues(Object a, Object b) {
+    if (a == b) return 0;
+    if (a == null) return -1;
+    if (b == null) return 1;
+    if (a.getClass() == b.getClass() && a instanceof Comparable) {
+      return ((Comparable) a).compareTo(b);
+    }
+    if (a instanceof Number && b instanceof Number) {
+      return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+    }
+    return a.toString().compareTo(b.toString());
+  }
+
+  /**
+   * Keeps the first numRows rows in a bounded heap while going through the rows once
+   *
+   * @return the first numRows rows, in order
+   */
+  public List<Object[]> top(Iterator<Object[]> rows, int numRows) {
+    if (numRows <= 0) return new ArrayList<Object[]>();
+
+    // max-heap of the rows kept so far, its head being the first row to drop
+    PriorityQueue<Object[]> heap = new PriorityQueue<Object[]>(numRows, Collections.reverseOrder(this));
+    while (rows.hasNext()) {
+      Object[] row = rows.next();
+      if (heap.size() < numRows) {
+        heap.add(row);
+      } else if (this.compare(row, heap.peek()) < 0) {
+        heap.poll();
+        heap.add(row);
+      }
+    }
+
+    List<Object[]> top = new ArrayList<Object[]>(heap);
+    Collections.sort(top, this);
+    return top;
+  }
+}
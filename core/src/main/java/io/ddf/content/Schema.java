@@ -26,6 +26,8 @@ public class Schema implements Serializable {
 
   private DummyCoding dummyCoding;
 
+  private FactorDictionary mFactorDictionary;
+
   /**
    * Constructor that can take a list of columns in the following format:
    * "<name> <type>, <name> <type>". For example,
@@ -183,36 +185,29 @@ public class Schema implements Serializable {
       i += 1;
     }
 
-    List<Column> columns = this.getColumns();
-    Iterator<Column> it = columns.iterator();
+    for (Column column : mColumns) {
+      if (column.getColumnClass() == ColumnClass.FACTOR && column.getOptionalFactor() != null
+          && column.getOptionalFactor().getLevels() != null) {
+        //recompute level
+        List<String> levels = new ArrayList<String>(column.getOptionalFactor().getLevels());
+        column.getOptionalFactor().setLevels(levels, true);
+      }
+    }
+
+    // Dummy codes are the dictionary codes, so that encoded factor columns can be used as-is
+    FactorDictionary dictionary = this.generateFactorDictionary();
     int count = 0;
-    while (it.hasNext()) {
-      Column currentColumn = it.next();
-      int currentColumnIndex = this.getColumnIndex(currentColumn.getName());
+    for (int pos = 0; pos < dictionary.size(); pos++) {
+      int currentColumnIndex = dictionary.getColumnIndexes()[pos];
+      String[] levels = dictionary.getLevelsAt(pos);
       HashMap<String, java.lang.Double> temp = new HashMap<String, java.lang.Double>();
-      // loop
-      if (currentColumn.getColumnClass() == ColumnClass.FACTOR) {
-        //set as factor
-        //recompute level
-        List<String> levels = new ArrayList(currentColumn.getOptionalFactor().getLevels());
-        currentColumn.getOptionalFactor().setLevels(levels, true);
-
-        Map<String, Integer> currentColumnFactor = currentColumn.getOptionalFactor().getLevelMap();
-        Iterator<String> iterator = currentColumnFactor.keySet()
-            .iterator();
-
-        //TODO update this code
-        i = 0;
-        temp = new HashMap<String, java.lang.Double>();
-        while (iterator.hasNext()) {
-          String columnValue = iterator.next();
-          temp.put(columnValue, Double.parseDouble(i + ""));
-          i += 1;
-        }
-        dc.getMapping().put(currentColumnIndex, temp);
-        count += temp.size() - 1;
+      for (int code = 0; code < levels.length; code++) {
+        temp.put(levels[code], (double) code);
       }
+      dc.getMapping().put(currentColumnIndex, temp);
+      count += temp.size() - 1;
     }
+    dc.setFactorDictionary(dictionary);
     dc.setNumDummyCoding(count);
 
     // TODO hardcode remove this
@@ -239,6 +234,36 @@ public class Schema implements Serializable {
 
   }
 
+  /**
+   * (Re)builds the {@link FactorDictionary} of this schema's factor columns from their current levels. A
+   * {@link DummyCoding} built from a previous dictionary is dropped, as its codes no longer match.
+   *
+   * @return the new dictionary
+   * @throws DDFException
+   */
+  public FactorDictionary generateFactorDictionary() throws DDFException {
+    this.setFactorDictionary(FactorDictionary.fromSchema(this));
+    return this.mFactorDictionary;
+  }
+
+  /**
+   * @return the last generated {@link FactorDictionary}, or null if none has been generated yet
+   */
+  public FactorDictionary getFactorDictionary() {
+    return mFactorDictionary;
+  }
+
+  public void setFactorDictionary(FactorDictionary factorDictionary) {
+    this.mFactorDictionary = factorDictionary;
+    if (dummyCoding != null && dummyCoding.getFactorDictionary() != factorDictionary) {
+      dummyCoding = null;
+    }
+  }
+
+  /**
+   * @return the dummy coding of the current {@link FactorDictionary}, or null if none has been generated since the
+   * dictionary was last replaced
+   */
   public DummyCoding getDummyCoding() {
     return dummyCoding;
   }
@@ -360,6 +385,15 @@ public class Schema implements Serializable {
       return mOptionalFactor;
     }
 
+    /**
+     * @return a copy of this column for a DDF derived from the DDF of this column, which does not share its factor. The
+     * factor of the copy is set from this one by {@link IHandleMetaData#copyFactor}, so that changing the factor of
+     * either DDF does not change the other.
+     */
+    public Column copyWithoutFactor() {
+      return new Column(this.getName(), this.getType());
+    }
+
     @Override
     public Column clone() {
       Column clonedColumn = new Column(this.getName(), this.getType());
@@ -568,6 +602,7 @@ public class Schema implements Serializable {
     private Integer numDummyCoding;
     public int[] xCols;
     private Integer numberFeatures = 0;
+    private FactorDictionary mFactorDictionary;
 
     public void toPrint() {
 
@@ -610,6 +645,17 @@ public class Schema implements Serializable {
       this.xCols = xCols;
     }
 
+    /**
+     * @return the dictionary whose codes this dummy coding's mapping was built from
+     */
+    public FactorDictionary getFactorDictionary() {
+      return mFactorDictionary;
+    }
+
+    public void setFactorDictionary(FactorDictionary factorDictionary) {
+      this.mFactorDictionary = factorDictionary;
+    }
+
     public Integer getNumberFeatures() {
       return numberFeatures;
     }
@@ -10,13 +10,18 @@ import io.ddf.DDF;
 import io.ddf.datasource.SQLDataSourceDescriptor;
 import io.ddf.exception.DDFException;
 import io.ddf.misc.ADDFFunctionalGroupHandler;
+import io.ddf.util.ReservoirSampler;
 import scala.Int;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 
 /**
  *
@@ -37,21 +42,124 @@ public class ViewHandler extends ADDFFunctionalGroupHandler implements IHandleVi
   // }
 
   @Override
-  public List<Object[]> getRandomSample(int numSamples, boolean withReplacement, int seed) {
-    // TODO Auto-generated method stub
-    return null;
+  public List<Object[]> getRandomSample(int numSamples, boolean withReplacement, int seed) throws DDFException {
+    ReservoirSampler<Object[]> sampler = new ReservoirSampler<Object[]>(numSamples,
+        ReservoirSampler.partitionSeed(seed, 0));
+    for (Object[] row : this.getRows()) {
+      sampler.offer(row);
+    }
+    return withReplacement ? sampler.getSampleWithReplacement(seed) : sampler.getSample();
   }
 
   @Override
   public DDF getRandomSampleByNum(int numSamples, boolean withReplacement,
-                                  int seed) {
-    return null;
+                                  int seed) throws DDFException {
+    return this.newSampleDDF(this.getRandomSample(numSamples, withReplacement, seed));
   }
 
   @Override
-  public DDF getRandomSample(double percent, boolean withReplacement, int seed) {
-    // TODO Auto-generated method stub
-    return null;
+  public DDF getRandomSample(double percent, boolean withReplacement, int seed) throws DDFException {
+    if (percent > 1 || percent < 0) {
+      throw new IllegalArgumentException("Sampling fraction must be from 0 to 1");
+    }
+    Random random = new Random(ReservoirSampler.partitionSeed(seed, 0));
+    List<Object[]> sample = new ArrayList<Object[]>();
+    for (Object[] row : this.getRows()) {
+      int copies = withReplacement ? poisson(percent, random) : (random.nextDouble() < percent ? 1 : 0);
+      for (int i = 0; i < copies; i++) sample.add(row);
+    }
+    return this.newSampleDDF(sample);
+  }
+
+  @Override
+  public DDF getStratifiedSample(String column, Map<String, Integer> sizes, int seed) throws DDFException {
+    int columnIndex = this.getStratumColumnIndex(column);
+
+    Map<String, ReservoirSampler<Object[]>> samplers = new LinkedHashMap<String, ReservoirSampler<Object[]>>();
+    for (Map.Entry<String, Integer> size : sizes.entrySet()) {
+      samplers.put(size.getKey(), new ReservoirSampler<Object[]>(size.getValue(),
+          ReservoirSampler.partitionSeed(seed ^ size.getKey().hashCode(), 0)));
+    }
+    for (Object[] row : this.getRows()) {
+      ReservoirSampler<Object[]> sampler = samplers.get(stratumOf(row, columnIndex));
+      if (sampler != null) sampler.offer(row);
+    }
+
+    List<Object[]> sample = new ArrayList<Object[]>();
+    for (ReservoirSampler<Object[]> sampler : samplers.values()) {
+      sample.addAll(sampler.getSample());
+    }
+    return this.newSampleDDF(sample);
+  }
+
+  @Override
+  public DDF getStratifiedSampleByFraction(String column, Map<String, Double> fractions, int seed)
+      throws DDFException {
+    int columnIndex = this.getStratumColumnIndex(column);
+
+    Random random = new Random(ReservoirSampler.partitionSeed(seed, 0));
+    List<Object[]> sample = new ArrayList<Object[]>();
+    for (Object[] row : this.getRows()) {
+      Double fraction = fractions.get(stratumOf(row, columnIndex));
+      if (fraction != null && random.nextDouble() < fraction) sample.add(row);
+    }
+    return this.newSampleDDF(sample);
+  }
+
+  protected int getStratumColumnIndex(String column) throws DDFException {
+    int columnIndex = this.getDDF().getColumnIndex(column);
+    if (columnIndex < 0) {
+      throw new DDFException(String.format("Column %s does not exists", column));
+    }
+    return columnIndex;
+  }
+
+  /**
+   * @return the stratum of a row, i.e., the string value of its stratification column, "null" for NULL
+   */
+  public static String stratumOf(Object[] row, int columnIndex) {
+    Object value = row[columnIndex];
+    return value == null ? "null" : value.toString();
+  }
+
+  /**
+   * Number of copies of a row in a sample with replacement of the given expected fraction
+   */
+  public static int poisson(double mean, Random random) {
+    // Knuth's algorithm, fine for the small means of sampling fractions
+    double limit = Math.exp(-mean);
+    int k = 0;
+    double p = random.nextDouble();
+    while (p > limit) {
+      k++;
+      p *= random.nextDouble();
+    }
+    return k;
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<Object[]> getRows() throws DDFException {
+    Object rows = this.getDDF().getRepresentationHandler().get(List.class, Object[].class);
+    if (!(rows instanceof List)) {
+      throw new DDFException("Unable to get the rows of " + this.getDDF().getTableName());
+    }
+    return (List<Object[]>) rows;
+  }
+
+  private DDF newSampleDDF(List<Object[]> rows) throws DDFException {
+    List<Schema.Column> columns = new ArrayList<Schema.Column>();
+    for (Schema.Column column : this.getDDF().getSchema().getColumns()) {
+      columns.add(column.copyWithoutFactor());
+    }
+    DDF sample = this.newLocalDDF(rows, columns);
+    sample.getMetaDataHandler().copyFactor(this.getDDF());
+    return sample;
+  }
+
+  private DDF newLocalDDF(List<Object[]> rows, List<Schema.Column> columns) throws DDFException {
+    Schema schema = new Schema(this.getDDF().getSchemaHandler().newTableName(), columns);
+    return this.getManager().newDDF(this.getManager(), rows, new Class<?>[] { List.class, Object[].class }, null,
+        schema);
   }
 
 
@@ -69,6 +177,36 @@ public class ViewHandler extends ADDFFunctionalGroupHandler implements IHandleVi
     return (temp.VIEWS.head(numRows));
   }
 
+  /**
+   * Reads the rows one by one and stops as soon as it has numRows
+   */
+  @Override
+  public List<Object[]> headTyped(int numRows) throws DDFException {
+    List<Object[]> head = new ArrayList<Object[]>();
+    Iterator<Object[]> rows = this.getRows().iterator();
+    while (head.size() < numRows && rows.hasNext()) {
+      head.add(rows.next());
+    }
+    return head;
+  }
+
+  /**
+   * Keeps the top numRows rows in a bounded heap while reading the rows once, instead of sorting them all
+   */
+  @Override
+  public List<Object[]> topTyped(int numRows, String orderColumns, String mode) throws DDFException {
+    RowComparator comparator = RowComparator.parse(this.getDDF().getSchema(), orderColumns, mode);
+    return comparator.top(this.getRows().iterator(), numRows);
+  }
+
+  /**
+   * The rows of DDFs held locally are not partitioned
+   */
+  @Override
+  public DDF repartitionBy(List<String> columns, int numPartitions) throws DDFException {
+    throw new DDFException("Partitioning is not supported by engine " + this.getEngine());
+  }
+
   @Override
   public DDF project(String... columnNames) throws DDFException {
     if (columnNames == null || columnNames.length == 0) throw new DDFException("columnNames must be specified");
@@ -158,6 +296,10 @@ public class ViewHandler extends ADDFFunctionalGroupHandler implements IHandleVi
   }
 
   protected DDF _subset(List<Column> columnExpr, Expression filter) throws DDFException {
+    if (this.getDDF().getRepresentationHandler().has(List.class, Object[].class)) {
+      return this.subsetRows(columnExpr, filter);
+    }
+
     updateVectorName(filter, this.getDDF());
     mLog.info("Updated filter: " + filter);
 
@@ -180,6 +322,29 @@ public class ViewHandler extends ADDFFunctionalGroupHandler implements IHandleVi
   }
 
 
+  /**
+   * Subsets DDFs whose rows are held locally, e.g., by the basic engine, with a predicate and a projector compiled
+   * once from the expressions, instead of going through SQL
+   */
+  protected DDF subsetRows(List<Column> columnExpr, Expression filter) throws DDFException {
+    Schema schema = this.getDDF().getSchema();
+    ExpressionCompiler compiler = new ExpressionCompiler(schema);
+    ExpressionCompiler.RowPredicate predicate = compiler.compilePredicate(filter);
+    ExpressionCompiler.RowProjector projector = compiler.compileProjector(columnExpr);
+
+    List<Object[]> rows = new ArrayList<Object[]>();
+    Iterator<Object[]> filtered = ExpressionCompiler.filter(this.getRows().iterator(), predicate, projector);
+    while (filtered.hasNext()) {
+      rows.add(filtered.next());
+    }
+
+    List<Schema.Column> columns = new ArrayList<Schema.Column>(columnExpr.size());
+    for (Column column : columnExpr) {
+      columns.add(schema.getColumn(compiler.resolveIndex(column)).clone());
+    }
+    return this.newLocalDDF(rows, columns);
+  }
+
   /**
    * Base class for any Expression node in the AST, could be either an Operator or a Value
    */
@@ -2,6 +2,7 @@ package io.ddf.etl;
 
 
 import io.ddf.DDF;
+import io.ddf.etl.Types.JoinStrategy;
 import io.ddf.etl.Types.JoinType;
 import io.ddf.exception.DDFException;
 import io.ddf.misc.IHandleDDFFunctionalGroup;
@@ -13,5 +14,25 @@ public interface IHandleJoins extends IHandleDDFFunctionalGroup {
   public DDF join(DDF anotherDDF, JoinType joinType, List<String> byColumns, List<String> byLeftColumns,
       List<String> byRightColumns) throws DDFException;
 
+  /**
+   * Same as {@link #join(DDF, JoinType, List, List, List)}, with a hint on how to join. The strategy actually used is
+   * recorded in the metadata of the result, under {@link #JOIN_STRATEGY_PROPERTY}.
+   */
+  public DDF join(DDF anotherDDF, JoinType joinType, List<String> byColumns, List<String> byLeftColumns,
+      List<String> byRightColumns, JoinStrategy strategy) throws DDFException;
+
+  public static final String JOIN_STRATEGY_PROPERTY = "join.strategy";
+
   public DDF merge(DDF anotherDDF) throws DDFException;
+
+  /**
+   * Appends the rows of batch to this DDF in place. Unlike {@link #merge(DDF)}, the data already held by this DDF,
+   * cached or not, is kept as is and the batch is added to it as a new segment, so frequent small appends do not copy
+   * or re-cache the whole DDF. Small segments may be compacted in the background. The DDF keeps its name, table and
+   * factors, and its factor levels and cached summary are updated from the batch alone.
+   *
+   * @param batch rows to append, with the same column types as this DDF
+   * @return this DDF
+   */
+  public DDF append(DDF batch) throws DDFException;
 }
@@ -18,6 +18,23 @@ public interface IHandleMissingData extends IHandleDDFFunctionalGroup {
   public DDF fillNA(String value, FillMethod method, long limit, AggregateFunction function,
       Map<String, String> columnsToValues, List<String> columns) throws DDFException;
 
+  /**
+   * @param columns columns to count NAs in, null for all columns of the DDF
+   * @return the number of NAs in each column, in the order of columns
+   */
+  public Map<String, Long> getNACounts(List<String> columns) throws DDFException;
+
+  /**
+   * The NA profile of a DDF, i.e., its NA counts and the aggregates used to fill NAs, is cached in its metadata
+   * properties, valid for the data version under this property
+   */
+  public static final String NA_PROFILE_VERSION_PROPERTY = "na.profile.version";
+
+  /**
+   * Prefix of the metadata properties caching the number of NAs of each column
+   */
+  public static final String NA_COUNT_PROPERTY_PREFIX = "na.count.";
+
 
   public enum Axis {
     ROW, COLUMN;
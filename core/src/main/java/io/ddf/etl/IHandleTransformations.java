@@ -13,6 +13,14 @@ public interface IHandleTransformations extends IHandleDDFFunctionalGroup {
 
   public DDF transformScaleStandard() throws DDFException;
 
+  /**
+   * Fits a scaling of the numeric columns of the DDF, to be applied to it or to other DDFs with
+   * {@link #transformScale(ScalingTransform)}
+   */
+  public ScalingTransform fitScaling(ScalingTransform.Method method) throws DDFException;
+
+  public DDF transformScale(ScalingTransform scaling) throws DDFException;
+
   public DDF transformNativeRserve(String transformExpression);
 
   public DDF transformPython(String[] transformFunctions, String[] destColumns, String[][] sourceColumns);
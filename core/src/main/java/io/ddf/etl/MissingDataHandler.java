@@ -1,9 +1,11 @@
 package io.ddf.etl;
 
 
+import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import io.ddf.DDF;
+import io.ddf.content.IHandleMetaData;
 import io.ddf.content.Schema.Column;
 import io.ddf.content.Schema.ColumnType;
 import io.ddf.exception.DDFException;
@@ -11,15 +13,25 @@ import io.ddf.misc.ADDFFunctionalGroupHandler;
 import io.ddf.types.AggregateTypes.AggregateFunction;
 import org.apache.commons.collections.MapUtils;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 /**
  * Handle missing data, based on NA handling methods in Pandas DataFrame
+ * <p/>
+ * The NA counts of the columns and the aggregates used to fill them are profiled together, in one query over the DDF
+ * whatever the number of columns, and cached in the metadata properties of the DDF until its data changes.
  */
 public class MissingDataHandler extends ADDFFunctionalGroupHandler implements IHandleMissingData {
 
+  private static final String NUM_ROWS_PROPERTY = "na.profile.rows";
+  private static final String AGGREGATE_PROPERTY_PREFIX = "na.aggregate.";
+
+
   public MissingDataHandler(DDF theDDF) {
     super(theDDF);
     // TODO Auto-generated constructor stub
@@ -46,25 +58,32 @@ public class MissingDataHandler extends ADDFFunctionalGroupHandler implements IH
     String sqlCmd = "";
 
     if (axis == Axis.ROW) { // drop row with NA
+      // columns profiled without NAs never count, so they are left out of the filter
+      List<String> columnsWithNA = Lists.newArrayList();
+      for (String column : columns) {
+        if (this.getCachedNACount(column) != 0) columnsWithNA.add(column);
+      }
+
       if (thresh > 0) {
         if (thresh > numcols) {
           throw new DDFException(
               "Required number of non-NA values per row must be less than or equal the number of columns.");
         } else {
-          sqlCmd = dropNARowSQL(numcols - thresh + 1, columns);
+          sqlCmd = dropNARowSQL(numcols - thresh + 1, columnsWithNA);
         }
       } else if (how == NAChecking.ANY) {
-        sqlCmd = dropNARowSQL(1, columns);
+        sqlCmd = dropNARowSQL(1, columnsWithNA);
 
       } else if (how == NAChecking.ALL) {
-        sqlCmd = dropNARowSQL(numcols, columns);
+        sqlCmd = dropNARowSQL(numcols, columnsWithNA);
       }
 
       newddf = this.getManager().sql2ddf(String.format(sqlCmd, this.getDDF().getTableName()), false);
 
     } else if (axis == Axis.COLUMN) { // drop column with NA
       List<String> cols = Lists.newArrayList();
-      long numrows = this.getDDF().getNumRows();
+      this.profile(columns, null, Collections.<String>emptyList());
+      long numrows = Long.parseLong(this.getDDF().getMetaDataHandler().getProperty(NUM_ROWS_PROPERTY));
       if (thresh > 0) {
         if (thresh > numrows) {
           throw new DDFException(
@@ -91,6 +110,8 @@ public class MissingDataHandler extends ADDFFunctionalGroupHandler implements IH
   }
 
   private String dropNARowSQL(long thresh, List<String> columns) {
+    if (columns.isEmpty()) return "SELECT * FROM %s";
+
     StringBuffer caseCmd = new StringBuffer("(");
 
 
@@ -111,19 +132,91 @@ public class MissingDataHandler extends ADDFFunctionalGroupHandler implements IH
 
   private List<String> selectedColumns(long thresh, List<String> columns) throws DDFException {
     List<String> cols = Lists.newArrayList();
+    Map<String, Long> naCounts = this.getNACounts(columns);
     for (String column : columns) {
-      if (numberOfNAPerColumn(column) < thresh) {
+      if (naCounts.get(column) < thresh) {
         cols.add(column);
       }
     }
     return cols;
   }
 
-  private long numberOfNAPerColumn(String column) throws DDFException {
-    return Long
-        .parseLong(this.getDDF()
-            .sql(String.format("SELECT COUNT(*) FROM %%s WHERE %s IS NULL", column), "Unable to run the query.")
-            .getRows().get(0));
+  @Override
+  public Map<String, Long> getNACounts(List<String> columns) throws DDFException {
+    if (columns == null) {
+      columns = this.getDDF().getColumnNames();
+    }
+    this.profile(columns, null, Collections.<String>emptyList());
+
+    Map<String, Long> naCounts = new LinkedHashMap<String, Long>();
+    for (String column : columns) {
+      naCounts.put(column, this.getCachedNACount(column));
+    }
+    return naCounts;
+  }
+
+  /**
+   * @return the number of NAs of the column in the cached profile, or -1 if it has not been profiled
+   */
+  private synchronized long getCachedNACount(String column) {
+    IHandleMetaData metaData = this.getDDF().getMetaDataHandler();
+    String count = metaData.getProperty(NA_COUNT_PROPERTY_PREFIX + column);
+    if (count == null || !this.isProfileValid(metaData)) return -1;
+    return "null".equalsIgnoreCase(count) ? 0 : Long.parseLong(count);
+  }
+
+  private boolean isProfileValid(IHandleMetaData metaData) {
+    return String.valueOf(metaData.getDataVersion()).equals(metaData.getProperty(NA_PROFILE_VERSION_PROPERTY));
+  }
+
+  /**
+   * Makes sure the cached profile has the row count, the NA counts of naColumns and the aggregates by function of
+   * aggregatedColumns, computing all those missing in a single query
+   */
+  private synchronized void profile(List<String> naColumns, AggregateFunction function,
+      List<String> aggregatedColumns) throws DDFException {
+    IHandleMetaData metaData = this.getDDF().getMetaDataHandler();
+    if (!this.isProfileValid(metaData)) {
+      // profiled from data that has since changed
+      for (String key : new ArrayList<String>(metaData.getProperties().keySet())) {
+        if (key.equals(NUM_ROWS_PROPERTY) || key.startsWith(NA_COUNT_PROPERTY_PREFIX)
+            || key.startsWith(AGGREGATE_PROPERTY_PREFIX)) {
+          metaData.setProperty(key, null);
+        }
+      }
+      metaData.setProperty(NA_PROFILE_VERSION_PROPERTY, String.valueOf(metaData.getDataVersion()));
+    }
+
+    List<String> keys = Lists.newArrayList();
+    List<String> expressions = Lists.newArrayList();
+    if (metaData.getProperty(NUM_ROWS_PROPERTY) == null) {
+      keys.add(NUM_ROWS_PROPERTY);
+      expressions.add("COUNT(*)");
+    }
+    for (String column : naColumns) {
+      if (metaData.getProperty(NA_COUNT_PROPERTY_PREFIX + column) == null) {
+        keys.add(NA_COUNT_PROPERTY_PREFIX + column);
+        expressions.add(String.format("SUM(CASE WHEN %s IS NULL THEN 1 ELSE 0 END)", column));
+      }
+    }
+    for (String column : aggregatedColumns) {
+      if (metaData.getProperty(aggregatePropertyKey(function, column)) == null) {
+        keys.add(aggregatePropertyKey(function, column));
+        expressions.add(function.toString(column));
+      }
+    }
+    if (expressions.isEmpty()) return;
+
+    String sqlCmd = String.format("SELECT %s FROM %%s", Joiner.on(", ").join(expressions));
+    mLog.info("NA profile sql command: " + sqlCmd);
+    String[] cells = this.getDDF().sql(sqlCmd, "Unable to profile NAs").getRows().get(0).split("\t", -1);
+    for (int i = 0; i < keys.size(); i++) {
+      metaData.setProperty(keys.get(i), cells[i]);
+    }
+  }
+
+  private static String aggregatePropertyKey(AggregateFunction function, String column) {
+    return AGGREGATE_PROPERTY_PREFIX + function.name().toLowerCase() + "." + column;
   }
 
 
@@ -150,6 +243,14 @@ public class MissingDataHandler extends ADDFFunctionalGroupHandler implements IH
     }
 
     if (method == null) {
+      if (Strings.isNullOrEmpty(value) && MapUtils.isEmpty(columnsToValues) && function != null) {
+        // NA counts and the aggregates of all numeric columns to fill, in one pass
+        List<String> numericColumns = Lists.newArrayList();
+        for (String col : columns) {
+          if (this.getDDF().getColumn(col).isNumeric()) numericColumns.add(col);
+        }
+        this.profile(columns, function, numericColumns);
+      }
       String sqlCmd = fillNAWithValueSQL(value, function, columnsToValues, columns);
       mLog.info("FillNA sql command: " + sqlCmd);
       newddf = this.getManager().sql2ddf(String.format(sqlCmd, this.getDDF().getTableName()), false);
@@ -169,7 +270,7 @@ public class MissingDataHandler extends ADDFFunctionalGroupHandler implements IH
     List<String> columns = this.getDDF().getColumnNames();
 
     for (String col : columns) {
-      if (columnsToFill.contains(col)) {
+      if (columnsToFill.contains(col) && this.getCachedNACount(col) != 0) {
         if (!Strings.isNullOrEmpty(value)) { // fill by value
 
           if (this.getDDF().getColumn(col).isNumeric()) {
@@ -195,7 +296,7 @@ public class MissingDataHandler extends ADDFFunctionalGroupHandler implements IH
           if (function != null) {// fill by function
             Column curColumn = this.getDDF().getColumn(col);
             if (this.getDDF().getColumn(col).isNumeric()) {
-              double filledValue = this.getDDF().getAggregationHandler().aggregateOnColumn(function, col);
+              double filledValue = this.getCachedAggregate(function, col);
               if (curColumn.getType() == ColumnType.DOUBLE) {
                 caseCmd.append(fillNACaseSql(col, filledValue));
               } else {
@@ -219,6 +320,14 @@ public class MissingDataHandler extends ADDFFunctionalGroupHandler implements IH
     return sqlCmd;
   }
 
+  private double getCachedAggregate(AggregateFunction function, String column) throws DDFException {
+    String aggregate = this.getDDF().getMetaDataHandler().getProperty(aggregatePropertyKey(function, column));
+    if (aggregate == null) {
+      return this.getDDF().getAggregationHandler().aggregateOnColumn(function, column);
+    }
+    return "null".equalsIgnoreCase(aggregate) ? Double.NaN : Double.parseDouble(aggregate);
+  }
+
   private String fillNACaseSql(String column, String filledValue) {
     return String.format(" (CASE WHEN %s IS NULL THEN %s ELSE %s END) AS %s,", column, filledValue, column, column);
   }
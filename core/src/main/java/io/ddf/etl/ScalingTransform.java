@@ -0,0 +1,138 @@
+package io.ddf.etl;
+
+
+import io.ddf.DDF;
+import io.ddf.analytics.Summary;
+import io.ddf.content.Schema.Column;
+import io.ddf.content.Schema.ColumnClass;
+import io.ddf.exception.DDFException;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A fitted scaling of the numeric columns of a DDF, mapping each value x of a column to (x - offset) / scale. The
+ * offsets and scales are captured once from the summary of the DDF it is fitted on, then the transform can be kept,
+ * serialized, and applied to any DDF with these columns, e.g., to scale a test set like the training set it was fitted
+ * on. Applying it is a single projection, without computing any statistics.
+ */
+public class ScalingTransform implements Serializable {
+
+  private static final long serialVersionUID = 2983410458173625364L;
+
+
+  public enum Method {
+    /**
+     * Subtract the min, divide by (max - min)
+     */
+    MIN_MAX,
+    /**
+     * Subtract the mean, divide by the standard deviation
+     */
+    STANDARD
+  }
+
+
+  private final Method mMethod;
+  private final String[] mColumns;
+  private final double[] mOffsets;
+  private final double[] mScales;
+
+
+  public ScalingTransform(Method method, String[] columns, double[] offsets, double[] scales) {
+    mMethod = method;
+    mColumns = columns;
+    mOffsets = offsets;
+    mScales = scales;
+  }
+
+  /**
+   * Fits the scaling of the numeric, non-factor columns of the DDF, from its summary. Summaries are cached per data
+   * version, so fitting a DDF whose summary is known does not scan it again.
+   */
+  public static ScalingTransform fit(DDF ddf, Method method) throws DDFException {
+    Summary[] summaries = ddf.getSummary();
+    List<Column> columns = ddf.getSchema().getColumns();
+
+    List<String> names = new ArrayList<String>();
+    List<double[]> parameters = new ArrayList<double[]>();
+    for (int i = 0; i < columns.size(); i++) {
+      Column col = columns.get(i);
+      if (!col.isNumeric() || col.getColumnClass() == ColumnClass.FACTOR || summaries[i] == null) continue;
+
+      names.add(col.getName());
+      if (method == Method.MIN_MAX) {
+        parameters.add(new double[] { summaries[i].min(), summaries[i].max() - summaries[i].min() });
+      } else {
+        parameters.add(new double[] { summaries[i].mean(), summaries[i].stdev() });
+      }
+    }
+
+    double[] offsets = new double[names.size()];
+    double[] scales = new double[names.size()];
+    for (int i = 0; i < offsets.length; i++) {
+      offsets[i] = parameters.get(i)[0];
+      scales[i] = parameters.get(i)[1];
+    }
+    return new ScalingTransform(method, names.toArray(new String[names.size()]), offsets, scales);
+  }
+
+  /**
+   * @return a new DDF with the scaled columns of ddf, and its other columns as they are
+   */
+  public DDF apply(DDF ddf) throws DDFException {
+    List<String> names = Arrays.asList(mColumns);
+    for (String name : mColumns) {
+      if (ddf.getColumn(name) == null) {
+        throw new DDFException(String.format("Column %s to scale is not in %s", name, ddf.getTableName()));
+      }
+    }
+
+    // Compose a transformation query
+    StringBuffer sqlCmdBuffer = new StringBuffer("SELECT ");
+    for (Column col : ddf.getSchema().getColumns()) {
+      int i = names.indexOf(col.getName());
+      if (i < 0) {
+        sqlCmdBuffer.append(col.getName());
+      } else {
+        sqlCmdBuffer.append(String.format("((%s - %s) / %s) as %s", col.getName(), mOffsets[i], mScales[i],
+            col.getName()));
+      }
+      sqlCmdBuffer.append(", ");
+    }
+    sqlCmdBuffer.setLength(sqlCmdBuffer.length() - 2);
+    sqlCmdBuffer.append(" FROM ").append(ddf.getTableName());
+
+    DDF newddf = ddf.getManager().sql2ddf(sqlCmdBuffer.toString(), false);
+    newddf.getMetaDataHandler().copyFactor(ddf);
+    return newddf;
+  }
+
+  public Method getMethod() {
+    return mMethod;
+  }
+
+  public String[] getColumns() {
+    return mColumns;
+  }
+
+  public double[] getOffsets() {
+    return mOffsets;
+  }
+
+  public double[] getScales() {
+    return mScales;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder(mMethod.name()).append(" scaling of ");
+    for (int i = 0; i < mColumns.length; i++) {
+      if (i > 0) sb.append(", ");
+      sb.append(String.format("%s: (x - %s) / %s", mColumns[i], mOffsets[i], mScales[i]));
+    }
+    return sb.toString();
+  }
+}
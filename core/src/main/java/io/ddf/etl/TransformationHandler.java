@@ -4,9 +4,7 @@ package io.ddf.etl;
 import com.google.common.base.Joiner;
 import com.google.common.collect.Lists;
 import io.ddf.DDF;
-import io.ddf.analytics.Summary;
 import io.ddf.content.Schema.Column;
-import io.ddf.content.Schema.ColumnClass;
 import io.ddf.datasource.SQLDataSourceDescriptor;
 import io.ddf.exception.DDFException;
 import io.ddf.misc.ADDFFunctionalGroupHandler;
@@ -22,57 +20,22 @@ public class TransformationHandler extends ADDFFunctionalGroupHandler implements
 
   @Override
   public DDF transformScaleMinMax() throws DDFException {
-    Summary[] summaryArr = this.getDDF().getSummary();
-    List<Column> columns = this.getDDF().getSchema().getColumns();
-
-    // Compose a transformation query
-    StringBuffer sqlCmdBuffer = new StringBuffer("SELECT ");
-
-    for (int i = 0; i < columns.size(); i++) {
-      Column col = columns.get(i);
-      if (!col.isNumeric() || col.getColumnClass() == ColumnClass.FACTOR) {
-        sqlCmdBuffer.append(col.getName()).append(" ");
-      } else {
-        // subtract min, divide by (max - min)
-        sqlCmdBuffer.append(String.format("((%s - %s) / %s) as %s ", col.getName(), summaryArr[i].min(),
-            (summaryArr[i].max() - summaryArr[i].min()), col.getName()));
-      }
-      sqlCmdBuffer.append(",");
-    }
-    sqlCmdBuffer.setLength(sqlCmdBuffer.length() - 1);
-    sqlCmdBuffer.append("FROM ").append(this.getDDF().getTableName());
-
-    DDF newddf = this.getManager().sql2ddf(sqlCmdBuffer.toString(), false);
-    newddf.getMetaDataHandler().copyFactor(this.getDDF());
-    return newddf;
+    return this.transformScale(this.fitScaling(ScalingTransform.Method.MIN_MAX));
   }
 
   @Override
   public DDF transformScaleStandard() throws DDFException {
-    Summary[] summaryArr = this.getDDF().getSummary();
-    List<Column> columns = this.getDDF().getSchema().getColumns();
-
-    // Compose a transformation query
-    StringBuffer sqlCmdBuffer = new StringBuffer("SELECT ");
-
-    for (int i = 0; i < columns.size(); i++) {
-      Column col = columns.get(i);
-      if (!col.isNumeric() || col.getColumnClass() == ColumnClass.FACTOR) {
-        sqlCmdBuffer.append(col.getName());
-      } else {
-        // subtract mean, divide by stdev
-        sqlCmdBuffer.append(String.format("((%s - %s) / %s) as %s ", col.getName(), summaryArr[i].mean(),
-            summaryArr[i].stdev(), col.getName()));
-      }
-      sqlCmdBuffer.append(",");
-    }
-    sqlCmdBuffer.setLength(sqlCmdBuffer.length() - 1);
-    sqlCmdBuffer.append("FROM ").append(this.getDDF().getTableName());
+    return this.transformScale(this.fitScaling(ScalingTransform.Method.STANDARD));
+  }
 
-    DDF newddf = this.getManager().sql2ddf(sqlCmdBuffer.toString(), false);
-    newddf.getMetaDataHandler().copyFactor(this.getDDF());
-    return newddf;
+  @Override
+  public ScalingTransform fitScaling(ScalingTransform.Method method) throws DDFException {
+    return ScalingTransform.fit(this.getDDF(), method);
+  }
 
+  @Override
+  public DDF transformScale(ScalingTransform scaling) throws DDFException {
+    return scaling.apply(this.getDDF());
   }
 
   public DDF transformNativeRserve(String transformExpression) {
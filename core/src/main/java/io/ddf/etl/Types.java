@@ -19,6 +19,15 @@ public class Types {
   }
 
 
+  /**
+   * How the rows of two DDFs are matched in a join. AUTO lets the join handler pick one from the estimated size of
+   * each side. CO_PARTITIONED joins partition by partition DDFs already hash-partitioned on their join keys.
+   * SORT_MERGE is only available to engines which support it, the Spark engine rejects it.
+   */
+  static public enum JoinStrategy {
+    AUTO, BROADCAST_HASH, SHUFFLE_HASH, SORT_MERGE, CO_PARTITIONED
+  }
+
   ;
 
 }
@@ -108,6 +108,11 @@ public class MLFacade implements ISupportML {
     return this.getMLSupporter().CVRandom(k, trainingSize, seed);
   }
 
+  public List<IModel> CVTrain(List<CrossValidationSet> sets, String trainMethodName, Object... args)
+      throws DDFException {
+    return this.getMLSupporter().CVTrain(sets, trainMethodName, args);
+  }
+
   public IModel als(int rank, int iteration, double lamda) throws DDFException {
     return this.train("collaborativeFiltering", rank, iteration, lamda);
   }
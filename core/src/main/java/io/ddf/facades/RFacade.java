@@ -4,11 +4,14 @@ package io.ddf.facades;
 import com.google.common.base.Joiner;
 import com.google.common.collect.Lists;
 import io.ddf.DDF;
+import io.ddf.analytics.ContingencyTable;
+import io.ddf.analytics.GroupedDDF;
 import io.ddf.analytics.IHandleAggregation;
 import io.ddf.exception.DDFException;
 import io.ddf.types.AggregateTypes.AggregateField;
 import io.ddf.types.AggregateTypes.AggregateFunction;
 import io.ddf.types.AggregateTypes.AggregationResult;
+import io.ddf.types.AggregateTypes.TypedAggregationResult;
 
 import java.util.List;
 import java.util.regex.Matcher;
@@ -56,6 +59,11 @@ public class RFacade implements IHandleAggregation {
     return null;
   }
 
+  @Override
+  public TypedAggregationResult aggregateTyped(List<AggregateField> fields) throws DDFException {
+    return mAggregationHandler.aggregateTyped(fields);
+  }
+
   // ///// Aggregate operations
 
   // aggregate(cbind(mpg,hp) ~ vs + am, mtcars, FUN=mean)
@@ -119,4 +127,19 @@ public class RFacade implements IHandleAggregation {
     return null;
   }
 
+  @Override
+  public ContingencyTable contingencyTable(List<String> columns) throws DDFException {
+    return mAggregationHandler.contingencyTable(columns);
+  }
+
+  @Override
+  public GroupedDDF groupedBy(List<String> groupedColumns) throws DDFException {
+    return mAggregationHandler.groupedBy(groupedColumns);
+  }
+
+  @Override
+  public DDF agg(List<String> groupedColumns, List<String> aggregateFunctions) throws DDFException {
+    return mAggregationHandler.agg(groupedColumns, aggregateFunctions);
+  }
+
 }
@@ -3,6 +3,7 @@ package io.ddf.facades;
 
 import io.ddf.DDF;
 import io.ddf.etl.IHandleTransformations;
+import io.ddf.etl.ScalingTransform;
 import io.ddf.exception.DDFException;
 
 import java.util.ArrayList;
@@ -71,6 +72,16 @@ public class TransformFacade implements IHandleTransformations {
     return mTransformationHandler.transformScaleStandard();
   }
 
+  @Override
+  public ScalingTransform fitScaling(ScalingTransform.Method method) throws DDFException {
+    return mTransformationHandler.fitScaling(method);
+  }
+
+  @Override
+  public DDF transformScale(ScalingTransform scaling) throws DDFException {
+    return mTransformationHandler.transformScale(scaling);
+  }
+
   @Override
   public DDF transformUDF(List<String> transformExpressions, List<String> columns) throws DDFException {
     return mTransformationHandler.transformUDF(transformExpressions, columns);
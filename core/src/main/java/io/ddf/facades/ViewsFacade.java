@@ -8,6 +8,7 @@ import io.ddf.content.ViewHandler.Expression;
 import io.ddf.exception.DDFException;
 
 import java.util.List;
+import java.util.Map;
 
 public class ViewsFacade implements IHandleViews {
   private DDF mDDF;
@@ -38,21 +39,32 @@ public class ViewsFacade implements IHandleViews {
   }
 
   @Override
-  public List<Object[]> getRandomSample(int numSamples, boolean withReplacement, int seed) {
+  public List<Object[]> getRandomSample(int numSamples, boolean withReplacement, int seed) throws DDFException {
     return mViewHandler.getRandomSample(numSamples, withReplacement, seed);
   }
 
   @Override
   public DDF getRandomSampleByNum(int numSamples, boolean withReplacement,
-                                  int seed) {
+                                  int seed) throws DDFException {
     return mViewHandler.getRandomSampleByNum(numSamples, withReplacement, seed);
   }
 
   @Override
-  public DDF getRandomSample(double percent, boolean withReplacement, int seed) {
+  public DDF getRandomSample(double percent, boolean withReplacement, int seed) throws DDFException {
     return mViewHandler.getRandomSample(percent, withReplacement, seed);
   }
 
+  @Override
+  public DDF getStratifiedSample(String column, Map<String, Integer> sizes, int seed) throws DDFException {
+    return mViewHandler.getStratifiedSample(column, sizes, seed);
+  }
+
+  @Override
+  public DDF getStratifiedSampleByFraction(String column, Map<String, Double> fractions, int seed)
+      throws DDFException {
+    return mViewHandler.getStratifiedSampleByFraction(column, fractions, seed);
+  }
+
   @Override
   public List<String> head(int numRows) throws DDFException {
     return mViewHandler.head(numRows);
@@ -63,10 +75,25 @@ public class ViewsFacade implements IHandleViews {
     return mViewHandler.top(numRows, orderedCols, mode);
   }
 
-  public List<Object[]> getRandomSample(int numSamples) {
+  @Override
+  public List<Object[]> headTyped(int numRows) throws DDFException {
+    return mViewHandler.headTyped(numRows);
+  }
+
+  @Override
+  public List<Object[]> topTyped(int numRows, String orderedCols, String mode) throws DDFException {
+    return mViewHandler.topTyped(numRows, orderedCols, mode);
+  }
+
+  public List<Object[]> getRandomSample(int numSamples) throws DDFException {
     return getRandomSample(numSamples, false, 1);
   }
 
+  @Override
+  public DDF repartitionBy(List<String> columns, int numPartitions) throws DDFException {
+    return mViewHandler.repartitionBy(columns, numPartitions);
+  }
+
   @Override
   public DDF project(String... columnNames) throws DDFException {
     return mViewHandler.project(columnNames);
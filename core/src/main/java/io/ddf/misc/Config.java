@@ -32,6 +32,15 @@ public class Config {
     return String.format("%s/%s", getRuntimeDir(), getGlobalValue(ConfigConstant.FIELD_BASIC_PERSISTENCE_DIRECTORY));
   }
 
+  /**
+   * Returns the directory to which the model registry evicts models, creating one if necessary.
+   */
+  public static String getModelRegistryDir() throws IOException {
+    String dir = getGlobalValue(ConfigConstant.FIELD_MODEL_REGISTRY_DIRECTORY);
+    if (Strings.isNullOrEmpty(dir)) dir = "models";
+    return Utils.locateOrCreateDirectory(String.format("%s/%s", getRuntimeDir(), dir));
+  }
+
 
   public static String getValue(ConfigConstant section, ConfigConstant key) {
     return getValue(section.toString(), key.toString());
@@ -170,7 +179,12 @@ public class Config {
     SECTION_GLOBAL("global"), 
     
     FIELD_RUNTIME_DIR("RuntimeDir"), FIELD_NAMESPACE("Namespace"), FIELD_DDF("DDF"), FIELD_DDF_MANAGER("DDFManager"),
-    FIELD_BASIC_PERSISTENCE_DIRECTORY("BasicPersistenceDir"),
+    FIELD_BASIC_PERSISTENCE_DIRECTORY("BasicPersistenceDir"), FIELD_MAX_FACTOR_LEVELS("MAX_FACTOR_LEVELS"),
+    FIELD_BROADCAST_JOIN_THRESHOLD("BROADCAST_JOIN_THRESHOLD"),
+    FIELD_APPEND_COMPACTION_THRESHOLD("APPEND_COMPACTION_THRESHOLD"),
+    FIELD_RSERVE_CHUNK_ROWS("RSERVE_CHUNK_ROWS"),
+    FIELD_MAPREDUCE_COMBINE_VALUES("MAPREDUCE_COMBINE_VALUES"),
+    FIELD_MODEL_REGISTRY_DIRECTORY("ModelRegistryDir"), FIELD_MODEL_REGISTRY_MAX_BYTES("MODEL_REGISTRY_MAX_BYTES"),
 
     JDBC_DRIVER("Driver"), DEFAULT_JDBC_DRIVER("com.mysql.jdbc"),
     SFDC_JDBC_DRIVER("Driver"), DEFAULT_SFDC_JDBC_DRIVER("cdata.jdbc.salesforce.SalesforceDriver"),
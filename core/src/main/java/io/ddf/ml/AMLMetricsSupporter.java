@@ -37,4 +37,14 @@ public class AMLMetricsSupporter extends ADDFFunctionalGroupHandler implements I
     return 0;
   }
 
+  @Override
+  public Evaluation evaluate(DDF predictionDDF, Evaluation.Metric... metrics) throws DDFException {
+    throw new DDFException(String.format("evaluate is not supported by %s", this.getClass().getName()));
+  }
+
+  @Override
+  public RocCurve[] rocCurves(DDF predictionDDF, String labelColumn, String... scoreColumns) throws DDFException {
+    throw new DDFException(String.format("rocCurves is not supported by %s", this.getClass().getName()));
+  }
+
 }
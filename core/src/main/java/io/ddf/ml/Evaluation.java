@@ -0,0 +1,149 @@
+package io.ddf.ml;
+
+
+import io.ddf.analytics.Summary;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The metrics of a prediction DDF, whose first column is yTrue and second column is yPredict, as computed together by
+ * {@link ISupportMLMetrics#evaluate(io.ddf.DDF, Evaluation.Metric...)}. A metric which was not requested is NaN, or
+ * null for the residual summary, confusion matrix and ROC.
+ */
+public class Evaluation implements Serializable {
+
+  private static final long serialVersionUID = -3207183519430871254L;
+
+
+  public enum Metric {
+    R2, RMSE, MAE, RESIDUALS,
+    /**
+     * Binary classification metrics, yTrue being 0 or 1 and yPredict being the probability or score of 1
+     */
+    CONFUSION_MATRIX, LOG_LOSS, ROC
+  }
+
+
+  /**
+   * The threshold on yPredict above which the confusion matrix counts a prediction as positive
+   */
+  public static final double DEFAULT_THRESHOLD = 0.5;
+
+  /**
+   * The number of thresholds of the ROC curve
+   */
+  public static final int DEFAULT_ALPHA_LENGTH = 10000;
+
+
+  private final Set<Metric> mMetrics;
+  private final long mCount;
+  private double mR2 = Double.NaN;
+  private double mRmse = Double.NaN;
+  private double mMae = Double.NaN;
+  private Summary mResiduals;
+  private long[][] mConfusionMatrix;
+  private double mLogLoss = Double.NaN;
+  private RocMetric mRoc;
+
+
+  public Evaluation(Set<Metric> metrics, long count) {
+    mMetrics = metrics.isEmpty() ? EnumSet.allOf(Metric.class) : EnumSet.copyOf(metrics);
+    mCount = count;
+  }
+
+  public Set<Metric> getMetrics() {
+    return mMetrics;
+  }
+
+  /**
+   * @return the number of rows evaluated
+   */
+  public long getCount() {
+    return mCount;
+  }
+
+  public double getR2() {
+    return mR2;
+  }
+
+  public Evaluation setR2(double r2) {
+    mR2 = r2;
+    return this;
+  }
+
+  public double getRmse() {
+    return mRmse;
+  }
+
+  public Evaluation setRmse(double rmse) {
+    mRmse = rmse;
+    return this;
+  }
+
+  public double getMae() {
+    return mMae;
+  }
+
+  public Evaluation setMae(double mae) {
+    mMae = mae;
+    return this;
+  }
+
+  /**
+   * @return the summary of the residuals yTrue - yPredict
+   */
+  public Summary getResiduals() {
+    return mResiduals;
+  }
+
+  public Evaluation setResiduals(Summary residuals) {
+    mResiduals = residuals;
+    return this;
+  }
+
+  /**
+   * @return the counts of { { true negatives, false positives }, { false negatives, true positives } }
+   */
+  public long[][] getConfusionMatrix() {
+    return mConfusionMatrix;
+  }
+
+  public Evaluation setConfusionMatrix(long[][] confusionMatrix) {
+    mConfusionMatrix = confusionMatrix;
+    return this;
+  }
+
+  public double getLogLoss() {
+    return mLogLoss;
+  }
+
+  public Evaluation setLogLoss(double logLoss) {
+    mLogLoss = logLoss;
+    return this;
+  }
+
+  public RocMetric getRoc() {
+    return mRoc;
+  }
+
+  public Evaluation setRoc(RocMetric roc) {
+    mRoc = roc;
+    return this;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("Evaluation of ").append(mCount).append(" rows:");
+    if (mMetrics.contains(Metric.R2)) sb.append(" r2=").append(mR2);
+    if (mMetrics.contains(Metric.RMSE)) sb.append(" rmse=").append(mRmse);
+    if (mMetrics.contains(Metric.MAE)) sb.append(" mae=").append(mMae);
+    if (mResiduals != null) sb.append(" residuals=[").append(mResiduals).append("]");
+    if (mConfusionMatrix != null) sb.append(" confusion=").append(Arrays.deepToString(mConfusionMatrix));
+    if (mMetrics.contains(Metric.LOG_LOSS)) sb.append(" logloss=").append(mLogLoss);
+    if (mRoc != null) sb.append(" auc=").append(mRoc.auc);
+    return sb.toString();
+  }
+}
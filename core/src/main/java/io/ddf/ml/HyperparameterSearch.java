@@ -0,0 +1,319 @@
+package io.ddf.ml;
+
+
+import io.ddf.DDF;
+import io.ddf.analytics.Summary;
+import io.ddf.content.IHandleRepresentations;
+import io.ddf.exception.DDFException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Searches the parameters of a train method, e.g., logisticRegressionWithSGD, by training a model per fold for each
+ * trial set of parameters, and scoring it on the test set of the fold.
+ * <p/>
+ * The training data of each fold is converted and cached once, before any trial, so that the trials all train from the
+ * same cached representation, and its test set is cached so that the trials all score on it without recomputing it.
+ * Once the search is done, only what it cached is uncached; representations the caller had cached stay cached. Trials
+ * are submitted to a bounded pool of threads, whose Spark jobs run at the same time. The trials are returned as a
+ * leaderboard, best mean score first.
+ * <p/>
+ * <code>
+ * List<Trial> leaderboard = new HyperparameterSearch(ddf.ML.CVKFold(3, seed), "logisticRegressionWithSGD")
+ * .run(HyperparameterSearch.grid(new Object[] { 10, 50 }, new Object[] { 0.1, 1.0 }));
+ * </code>
+ */
+public class HyperparameterSearch {
+
+  private static final Logger LOG = LoggerFactory.getLogger(HyperparameterSearch.class);
+
+  public static final int DEFAULT_MAX_CONCURRENT_TRIALS = 4;
+
+
+  /**
+   * Scores a model on a test set, the higher the better, e.g., the opposite of a loss
+   */
+  public interface Scorer {
+    double score(IModel model, DDF testSet) throws DDFException;
+  }
+
+
+  /**
+   * Scores a model by its R2 score on the test set, whose last column is the label
+   */
+  public static class R2Scorer implements Scorer {
+    @Override
+    public double score(IModel model, DDF testSet) throws DDFException {
+      // summaries are cached, so the mean is only computed by the first trial of the fold
+      Summary[] summaries = testSet.getSummary();
+      double meanYTrue = summaries[summaries.length - 1].mean();
+
+      DDF predictions = testSet.ML.applyModel(model, true);
+      return predictions.getMLMetricsSupporter().r2score(meanYTrue);
+    }
+  }
+
+
+  /**
+   * A set of parameters, with its model and score on each fold
+   */
+  public static class Trial {
+    private final Object[] mParams;
+    private final IModel[] mModels;
+    private final double[] mScores;
+    private long mTrainMillis = 0;
+    private long mScoreMillis = 0;
+    private long mElapsedMillis = 0;
+    private Exception mError;
+
+
+    Trial(Object[] params, int numFolds) {
+      mParams = params;
+      mModels = new IModel[numFolds];
+      mScores = new double[numFolds];
+    }
+
+    public Object[] getParams() {
+      return mParams;
+    }
+
+    public IModel[] getModels() {
+      return mModels;
+    }
+
+    public double[] getScores() {
+      return mScores;
+    }
+
+    /**
+     * @return the mean score over the folds, NaN if the trial failed
+     */
+    public double getMeanScore() {
+      if (mError != null) return Double.NaN;
+      double sum = 0;
+      for (double score : mScores) {
+        sum += score;
+      }
+      return sum / mScores.length;
+    }
+
+    /**
+     * @return the time spent training the models of all the folds
+     */
+    public long getTrainMillis() {
+      return mTrainMillis;
+    }
+
+    /**
+     * @return the time spent scoring the models of all the folds
+     */
+    public long getScoreMillis() {
+      return mScoreMillis;
+    }
+
+    /**
+     * @return the time from starting the first fold of the trial to finishing the last one
+     */
+    public long getElapsedMillis() {
+      return mElapsedMillis;
+    }
+
+    /**
+     * @return the error that failed the trial, if any
+     */
+    public Exception getError() {
+      return mError;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s: score %s, trained in %d ms, scored in %d ms%s", Arrays.toString(mParams),
+          this.getMeanScore(), mTrainMillis, mScoreMillis, mError == null ? "" : ", failed: " + mError.getMessage());
+    }
+  }
+
+
+  private final List<CrossValidationSet> mFolds;
+  private final String mTrainMethodName;
+  private Scorer mScorer = new R2Scorer();
+  private int mMaxConcurrentTrials = DEFAULT_MAX_CONCURRENT_TRIALS;
+
+
+  public HyperparameterSearch(List<CrossValidationSet> folds, String trainMethodName) throws DDFException {
+    if (folds == null || folds.isEmpty()) throw new DDFException("At least one fold is required");
+    mFolds = folds;
+    mTrainMethodName = trainMethodName;
+  }
+
+  public HyperparameterSearch setScorer(Scorer scorer) {
+    mScorer = scorer;
+    return this;
+  }
+
+  public HyperparameterSearch setMaxConcurrentTrials(int maxConcurrentTrials) {
+    mMaxConcurrentTrials = Math.max(1, maxConcurrentTrials);
+    return this;
+  }
+
+  /**
+   * @param values the candidate values of each parameter
+   * @return all the combinations of the candidate values
+   */
+  public static List<Object[]> grid(Object[]... values) {
+    List<Object[]> trials = new ArrayList<Object[]>();
+    trials.add(new Object[0]);
+    for (Object[] candidates : values) {
+      List<Object[]> extended = new ArrayList<Object[]>();
+      for (Object[] trial : trials) {
+        for (Object candidate : candidates) {
+          Object[] params = Arrays.copyOf(trial, trial.length + 1);
+          params[trial.length] = candidate;
+          extended.add(params);
+        }
+      }
+      trials = extended;
+    }
+    return trials;
+  }
+
+  /**
+   * @param values the candidate values of each parameter
+   * @return at most numTrials distinct combinations of the candidate values, drawn at random
+   */
+  public static List<Object[]> random(int numTrials, long seed, Object[]... values) {
+    List<Object[]> all = grid(values);
+    if (all.size() <= numTrials) return all;
+
+    Random random = new Random(seed);
+    Set<Integer> drawn = new HashSet<Integer>();
+    List<Object[]> trials = new ArrayList<Object[]>();
+    while (trials.size() < numTrials) {
+      int i = random.nextInt(all.size());
+      if (drawn.add(i)) trials.add(all.get(i));
+    }
+    return trials;
+  }
+
+  /**
+   * Runs the trials, each being the parameters of the train method after the training data
+   *
+   * @return the trials, best mean score first, failed trials last
+   */
+  public List<Trial> run(List<Object[]> trials) throws DDFException {
+    if (trials.isEmpty()) return new ArrayList<Trial>();
+
+    ExecutorService executor = null;
+    // the representations cached here, the folds belong to the caller, who may have cached others
+    Map<IHandleRepresentations, List<String>> cached = new IdentityHashMap<IHandleRepresentations, List<String>>();
+    try {
+      // convert and cache the training data of each fold once for all the trials, and the test set they score on
+      for (CrossValidationSet fold : mFolds) {
+        ISupportML mlSupporter = fold.getTrainSet().getMLSupporter();
+        if (mlSupporter instanceof MLSupporter) {
+          addCached(cached, fold.getTrainSet().getRepresentationHandler(),
+              ((MLSupporter) mlSupporter).cacheTrainingData(mTrainMethodName, trials.get(0)));
+        }
+        IHandleRepresentations testRepresentations = fold.getTestSet().getRepresentationHandler();
+        addCached(cached, testRepresentations, testRepresentations.cacheRepresentations(new ArrayList<String>(
+            testRepresentations.getAllRepresentations().keySet())));
+      }
+
+      executor = Executors.newFixedThreadPool(Math.min(mMaxConcurrentTrials, trials.size()));
+      List<Future<Trial>> futures = new ArrayList<Future<Trial>>();
+      for (final Object[] params : trials) {
+        futures.add(executor.submit(new Callable<Trial>() {
+          @Override
+          public Trial call() {
+            return runTrial(params);
+          }
+        }));
+      }
+
+      List<Trial> leaderboard = new ArrayList<Trial>();
+      for (Future<Trial> future : futures) {
+        try {
+          leaderboard.add(future.get());
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new DDFException("Interrupted while searching hyperparameters", e);
+        } catch (ExecutionException e) {
+          throw new DDFException("Error while searching hyperparameters", e.getCause());
+        }
+      }
+
+      Collections.sort(leaderboard, new Comparator<Trial>() {
+        @Override
+        public int compare(Trial a, Trial b) {
+          double scoreA = a.getMeanScore();
+          double scoreB = b.getMeanScore();
+          // failed trials have a NaN score, which Double.compare would sort above any other score
+          if (Double.isNaN(scoreA) || Double.isNaN(scoreB)) {
+            return Boolean.compare(Double.isNaN(scoreA), Double.isNaN(scoreB));
+          }
+          return Double.compare(scoreB, scoreA);
+        }
+      });
+      return leaderboard;
+    } finally {
+      if (executor != null) executor.shutdownNow();
+      for (Map.Entry<IHandleRepresentations, List<String>> entry : cached.entrySet()) {
+        entry.getKey().uncacheRepresentations(entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * Adds the representations just cached, as a DDF may be in several folds
+   */
+  private static void addCached(Map<IHandleRepresentations, List<String>> cached,
+      IHandleRepresentations representations, List<String> typeSpecs) {
+    List<String> previous = cached.get(representations);
+    if (previous == null) {
+      cached.put(representations, new ArrayList<String>(typeSpecs));
+    } else {
+      previous.addAll(typeSpecs);
+    }
+  }
+
+  /**
+   * Trains and scores a model on each fold, one after the other; a failing fold fails the trial, not the search
+   */
+  private Trial runTrial(Object[] params) {
+    Trial trial = new Trial(params, mFolds.size());
+    long start = System.currentTimeMillis();
+    try {
+      for (int i = 0; i < mFolds.size(); i++) {
+        CrossValidationSet fold = mFolds.get(i);
+
+        long trainStart = System.currentTimeMillis();
+        trial.mModels[i] = fold.getTrainSet().ML.train(mTrainMethodName, params);
+        long trainEnd = System.currentTimeMillis();
+        trial.mScores[i] = mScorer.score(trial.mModels[i], fold.getTestSet());
+        trial.mTrainMillis += trainEnd - trainStart;
+        trial.mScoreMillis += System.currentTimeMillis() - trainEnd;
+      }
+    } catch (Exception e) {
+      LOG.warn(String.format("Trial %s of %s failed", Arrays.toString(params), mTrainMethodName), e);
+      trial.mError = e;
+    }
+    trial.mElapsedMillis = System.currentTimeMillis() - start;
+    LOG.info(String.format("Trial of %s: %s", mTrainMethodName, trial));
+    return trial;
+  }
+}
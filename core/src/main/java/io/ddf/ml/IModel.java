@@ -12,6 +12,8 @@ public interface IModel {
 
   public Object predict(double[] features) throws DDFException;
 
+  public double[] predict(double[][] features) throws DDFException;
+
   public Object getRawModel();
 
   public void setRawModel(Object rawModel);
@@ -59,4 +59,11 @@ public interface ISupportML extends IHandleDDFFunctionalGroup {
   List<CrossValidationSet> CVKFold(int k, Long seed) throws DDFException;
 
   List<CrossValidationSet> CVRandom(int k, double trainingSize, Long seed) throws DDFException;
+
+  /**
+   * Trains a model on the train set of each of the given cross validation sets, at the same time where the engine can
+   *
+   * @return the models, in the order of the sets
+   */
+  List<IModel> CVTrain(List<CrossValidationSet> sets, String trainMethodName, Object... args) throws DDFException;
 }
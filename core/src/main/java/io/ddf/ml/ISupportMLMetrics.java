@@ -14,4 +14,14 @@ public interface ISupportMLMetrics extends IHandleDDFFunctionalGroup {
   public RocMetric roc(DDF predictionDDF, int alpha_length) throws DDFException;
 
   public double rmse(DDF predictionDDF, boolean implicitPref) throws DDFException;
+
+  /**
+   * Computes the requested metrics of a prediction DDF of (yTrue, yPredict) together, all of them if none is requested
+   */
+  public Evaluation evaluate(DDF predictionDDF, Evaluation.Metric... metrics) throws DDFException;
+
+  /**
+   * Computes the ROC and precision-recall curves of each score column against the binary label column together
+   */
+  public RocCurve[] rocCurves(DDF predictionDDF, String labelColumn, String... scoreColumns) throws DDFException;
 }
@@ -4,7 +4,15 @@ package io.ddf.ml;
 import io.ddf.exception.DDFException;
 import io.ddf.util.Utils.ClassMethod;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Helper classes to identify/locate the train()/predict() methods in a given class or object
@@ -15,6 +23,63 @@ public class MLClassMethods {
   public static final String DEFAULT_PREDICT_METHOD_NAME = "predict";
   public static final Class<?>[] DEFAULT_PREDICT_METHOD_ARG_TYPES = new Class<?>[] { double[].class };
 
+  // train methods resolved so far, by class#method name and argument types
+  private static final ConcurrentMap<List<Object>, TrainMethod> sTrainMethods =
+      new ConcurrentHashMap<List<Object>, TrainMethod>();
+
+  // predict methods resolved so far, by model class and argument type
+  private static final ConcurrentMap<List<Class<?>>, MethodHandle> sPredictHandles =
+      new ConcurrentHashMap<List<Class<?>>, MethodHandle>();
+
+
+  /**
+   * Locates the train method for the given arguments, once per class#method name and argument types
+   */
+  public static TrainMethod getTrainMethod(String classHashMethodName, Object[] trainMethodArgs) throws DDFException {
+    List<Object> key = new ArrayList<Object>();
+    key.add(classHashMethodName);
+    for (Object arg : trainMethodArgs) {
+      key.add(arg == null ? Object.class : arg.getClass());
+    }
+    TrainMethod trainMethod = sTrainMethods.get(key);
+    if (trainMethod != null) return trainMethod;
+
+    trainMethod = new TrainMethod(classHashMethodName, DEFAULT_TRAIN_METHOD_NAME, trainMethodArgs);
+    if (trainMethod.getMethod() == null) {
+      throw new DDFException(String.format("Cannot locate method specified by %s", classHashMethodName));
+    }
+    TrainMethod existing = sTrainMethods.putIfAbsent(key, trainMethod);
+    return existing != null ? existing : trainMethod;
+  }
+
+  /**
+   * Locates the predict method of a model taking a single argument of the given type, once per model class.
+   *
+   * @return a handle of type (Object, Object)Object on the method, taking the model then the argument, and returning
+   *         the prediction boxed
+   */
+  public static MethodHandle getPredictHandle(Object model, Class<?> argType) throws DDFException {
+    List<Class<?>> key = Arrays.<Class<?>>asList(model.getClass(), argType);
+    MethodHandle handle = sPredictHandles.get(key);
+    if (handle != null) return handle;
+
+    Method method = new PredictMethod(model, DEFAULT_PREDICT_METHOD_NAME, new Class<?>[] { argType }).getMethod();
+    if (method == null) {
+      throw new DDFException(String.format("Cannot locate method specified by %s", DEFAULT_PREDICT_METHOD_NAME));
+    }
+
+    try {
+      method.setAccessible(true);
+      handle = MethodHandles.lookup().unreflect(method)
+          .asType(MethodType.methodType(Object.class, Object.class, Object.class));
+    } catch (IllegalAccessException e) {
+      throw new DDFException(String.format("Cannot access method %s of %s", method.getName(),
+          model.getClass().getName()), e);
+    }
+    MethodHandle existing = sPredictHandles.putIfAbsent(key, handle);
+    return existing != null ? existing : handle;
+  }
+
 
   /**
    *
@@ -4,6 +4,7 @@ package io.ddf.ml;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import io.ddf.DDF;
+import io.ddf.content.IHandleRepresentations;
 import io.ddf.content.Schema;
 import io.ddf.exception.DDFException;
 import io.ddf.misc.ADDFFunctionalGroupHandler;
@@ -100,10 +101,7 @@ public class MLSupporter extends ADDFFunctionalGroupHandler implements ISupportM
     String mappedName = Config.getValueWithGlobalDefault(this.getEngine(), trainMethodName);
     if (!Strings.isNullOrEmpty(mappedName)) trainMethodName = mappedName;
 
-    TrainMethod trainMethod = new TrainMethod(trainMethodName, MLClassMethods.DEFAULT_TRAIN_METHOD_NAME, paramArgs);
-    if (trainMethod.getMethod() == null) {
-      throw new DDFException(String.format("Cannot locate method specified by %s", trainMethodName));
-    }
+    TrainMethod trainMethod = MLClassMethods.getTrainMethod(trainMethodName, paramArgs);
 
     // Now we need to map the DDF and its column specs to the input format expected by the method we're invoking
     Object[] allArgs = this.buildArgsForMethod(trainMethod.getMethod(), paramArgs);
@@ -131,6 +129,29 @@ public class MLSupporter extends ADDFFunctionalGroupHandler implements ISupportM
   }
 
 
+  /**
+   * Converts the DDF into the representation the given train method takes, and caches it, so that training with this
+   * method again, e.g., with other parameters, neither converts the DDF nor recomputes the representation
+   *
+   * @return the representations cached by this call, see {@link IHandleRepresentations#cacheRepresentations}
+   */
+  public List<String> cacheTrainingData(String trainMethodName, Object... paramArgs) throws DDFException {
+    if (paramArgs == null) paramArgs = new Object[0];
+
+    String mappedName = Config.getValueWithGlobalDefault(this.getEngine(), trainMethodName);
+    if (!Strings.isNullOrEmpty(mappedName)) trainMethodName = mappedName;
+
+    TrainMethod trainMethod = MLClassMethods.getTrainMethod(trainMethodName, paramArgs);
+    List<ParamInfo> paramInfos = new MethodInfo(trainMethod.getMethod()).getParamInfos();
+    if (paramInfos == null || paramInfos.isEmpty()) return new ArrayList<String>();
+
+    this.convertDDF(paramInfos.get(0));
+    IHandleRepresentations representationHandler = this.getDDF().getRepresentationHandler();
+    return representationHandler.cacheRepresentations(new ArrayList<String>(
+        representationHandler.getAllRepresentations().keySet()));
+  }
+
+
   @SuppressWarnings("unchecked")
   private Object[] buildArgsForMethod(Method method, Object[] paramArgs) throws DDFException {
     MethodInfo methodInfo = new MethodInfo(method);
@@ -219,4 +240,17 @@ public class MLSupporter extends ADDFFunctionalGroupHandler implements ISupportM
   public List<CrossValidationSet> CVRandom(int k, double trainingSize, Long seed) throws DDFException {
     return new ArrayList<CrossValidationSet>();
   }
+
+  /**
+   * Base implementation trains the sets one after the other
+   */
+  @Override
+  public List<IModel> CVTrain(List<CrossValidationSet> sets, String trainMethodName, Object... args)
+      throws DDFException {
+    List<IModel> models = new ArrayList<IModel>();
+    for (CrossValidationSet set : sets) {
+      models.add(set.getTrainSet().ML.train(trainMethodName, args));
+    }
+    return models;
+  }
 }
@@ -7,10 +7,10 @@ import io.ddf.DDF;
 import io.ddf.DDFManager;
 import io.ddf.content.Schema;
 import io.ddf.exception.DDFException;
-import io.ddf.ml.MLClassMethods.PredictMethod;
 import org.apache.commons.lang.StringUtils;
 
 import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Type;
 import java.util.*;
 
@@ -31,6 +31,9 @@ public class Model implements IModel, Serializable {
 
   private String mClass = this.getClass().getName(); //for serialization
 
+  // the predict method bound to mRawModel, method handles are not serializable
+  private transient MethodHandle mPredictHandle;
+
   public Model(Object rawModel) {
     mRawModel = rawModel;
 
@@ -52,6 +55,7 @@ public class Model implements IModel, Serializable {
   public void setRawModel(Object rawModel) {
     this.mRawModel = rawModel;
     this.modelType = rawModel.getClass().getName();
+    this.mPredictHandle = null;
   }
 
 
@@ -75,18 +79,64 @@ public class Model implements IModel, Serializable {
     return this.mTrainedColumns;
   }
 
+  /**
+   * Predicts with the predict method of the raw model, which is resolved once per model class and argument type, then
+   * kept bound to the raw model
+   */
   @Override
   public Double predict(double[] point) throws DDFException {
+    return this.invokePredict(this.getPredictHandle(), point);
+  }
 
-    PredictMethod predictMethod = new PredictMethod(this.getRawModel(), MLClassMethods.DEFAULT_PREDICT_METHOD_NAME,
-        new Class<?>[] { point.getClass() });
+  /**
+   * Predicts the points one after the other, resolving the predict method once for all of them
+   */
+  @Override
+  public double[] predict(double[][] points) throws DDFException {
+    MethodHandle predictHandle = this.getPredictHandle();
+    double[] predictions = new double[points.length];
+    for (int i = 0; i < points.length; i++) {
+      predictions[i] = this.invokePredict(predictHandle, points[i]);
+    }
+    return predictions;
+  }
 
-    if (predictMethod.getMethod() == null) {
-      throw new DDFException(String.format("Cannot locate method specified by %s",
-          MLClassMethods.DEFAULT_PREDICT_METHOD_NAME));
+  /**
+   * Override this when the predict method of the raw model does not take a double[]
+   *
+   * @return the type of the argument of the predict method
+   */
+  protected Class<?> getPredictArgumentType() {
+    return double[].class;
+  }
+
+  /**
+   * Override this along with {@link #getPredictArgumentType()}
+   *
+   * @return the point as the argument of the predict method
+   */
+  protected Object toPredictArgument(double[] point) {
+    return point;
+  }
+
+  private MethodHandle getPredictHandle() throws DDFException {
+    if (mPredictHandle == null) {
+      mPredictHandle = MLClassMethods.getPredictHandle(this.getRawModel(), this.getPredictArgumentType())
+          .bindTo(this.getRawModel());
     }
+    return mPredictHandle;
+  }
 
-    Object prediction = predictMethod.instanceInvoke(point);
+  private Double invokePredict(MethodHandle predictHandle, double[] point) throws DDFException {
+    Object prediction;
+    try {
+      prediction = (Object) predictHandle.invokeExact(this.toPredictArgument(point));
+    } catch (Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new DDFException(String.format("Error while invoking method %s on object %s",
+          MLClassMethods.DEFAULT_PREDICT_METHOD_NAME, this.getRawModel().getClass().getName()), t);
+    }
 
     if (prediction instanceof Double) {
       return (Double) prediction;
@@ -0,0 +1,29 @@
+package io.ddf.ml;
+
+
+import io.ddf.exception.DDFException;
+
+import java.util.Map;
+
+/**
+ * Converts a class of raw models to and from named primitive arrays, e.g., the weights and intercept of a linear model,
+ * to be written by {@link ModelFormat}. Register one with {@link ModelFormat#register(String, ModelCodec)}.
+ */
+public interface ModelCodec {
+
+  /**
+   * @return the arrays of the raw model, each a double[] or a byte[], in the order to write them
+   */
+  Map<String, Object> encode(Object rawModel) throws DDFException;
+
+  /**
+   * @return the raw model from the arrays of a model file, read with {@link ModelFile#getDoubles(String)} or
+   * {@link ModelFile#getDoubleBuffer(String)} for the large ones
+   */
+  Object decode(ModelFile file) throws DDFException;
+
+  /**
+   * @return about the number of bytes the raw model holds, without encoding it
+   */
+  long sizeOf(Object rawModel) throws DDFException;
+}
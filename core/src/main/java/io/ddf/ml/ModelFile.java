@@ -0,0 +1,192 @@
+package io.ddf.ml;
+
+
+import io.ddf.exception.DDFException;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A model file written by {@link ModelFormat}, whose header is read when it is opened, and whose arrays are only read
+ * when asked for. Arrays of at least {@link ModelFormat#MAPPED_ARRAY_BYTES} are memory-mapped rather than read into a
+ * temporary buffer, and stay valid after the file is closed. Decoded models still hold their arrays on the heap: codecs
+ * copy the arrays out of the file, once.
+ */
+public class ModelFile implements Closeable {
+
+  static class ArrayEntry {
+    final byte mType;
+    final int mLength;
+    final long mOffset;
+
+    ArrayEntry(byte type, int length, long offset) {
+      mType = type;
+      mLength = length;
+      mOffset = offset;
+    }
+
+    long getByteLength() {
+      return mType == ModelFormat.TYPE_DOUBLES ? 8L * mLength : mLength;
+    }
+  }
+
+
+  private final File mFile;
+  private final RandomAccessFile mRandomAccessFile;
+  private final int mVersion;
+  private final String mModelClass;
+  private final String mName;
+  private final String mRawModelType;
+  private final String[] mTrainedColumns;
+  private final Map<String, ArrayEntry> mArrays = new LinkedHashMap<String, ArrayEntry>();
+
+
+  public ModelFile(File file) throws DDFException {
+    mFile = file;
+    try {
+      mRandomAccessFile = new RandomAccessFile(file, "r");
+    } catch (IOException e) {
+      throw new DDFException(String.format("Cannot open model file %s", file), e);
+    }
+
+    try {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(
+          mRandomAccessFile.getChannel())));
+      if (in.readInt() != ModelFormat.MAGIC) throw new DDFException(String.format("%s is not a model file", file));
+      mVersion = in.readShort();
+      if (mVersion > ModelFormat.VERSION) {
+        throw new DDFException(String.format("Model file %s has version %d, newer than the supported version %d", file,
+            mVersion, ModelFormat.VERSION));
+      }
+
+      mModelClass = in.readUTF();
+      mName = in.readUTF();
+      mRawModelType = in.readUTF();
+      int numColumns = in.readInt();
+      if (numColumns < 0) {
+        mTrainedColumns = null;
+      } else {
+        mTrainedColumns = new String[numColumns];
+        for (int i = 0; i < numColumns; i++) {
+          mTrainedColumns[i] = in.readUTF();
+        }
+      }
+
+      int numArrays = in.readInt();
+      for (int i = 0; i < numArrays; i++) {
+        String key = in.readUTF();
+        mArrays.put(key, new ArrayEntry(in.readByte(), in.readInt(), in.readLong()));
+      }
+    } catch (IOException e) {
+      this.close();
+      throw new DDFException(String.format("Cannot read the header of model file %s", file), e);
+    } catch (DDFException e) {
+      this.close();
+      throw e;
+    }
+  }
+
+  public File getFile() {
+    return mFile;
+  }
+
+  public int getVersion() {
+    return mVersion;
+  }
+
+  /**
+   * @return the class of the {@link Model}, e.g., io.ddf.spark.ml.Model
+   */
+  public String getModelClass() {
+    return mModelClass;
+  }
+
+  public String getName() {
+    return mName;
+  }
+
+  /**
+   * @return the class of the raw model
+   */
+  public String getRawModelType() {
+    return mRawModelType;
+  }
+
+  public String[] getTrainedColumns() {
+    return mTrainedColumns;
+  }
+
+  public List<String> getArrayNames() {
+    return new ArrayList<String>(mArrays.keySet());
+  }
+
+  /**
+   * @return the array, memory-mapped if it is large, so that it can be copied out without an intermediate copy
+   */
+  public DoubleBuffer getDoubleBuffer(String name) throws DDFException {
+    return this.getBuffer(name, ModelFormat.TYPE_DOUBLES).asDoubleBuffer();
+  }
+
+  public double[] getDoubles(String name) throws DDFException {
+    DoubleBuffer buffer = this.getDoubleBuffer(name);
+    double[] doubles = new double[buffer.remaining()];
+    buffer.get(doubles);
+    return doubles;
+  }
+
+  public byte[] getBytes(String name) throws DDFException {
+    ByteBuffer buffer = this.getBuffer(name, ModelFormat.TYPE_BYTES);
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  private ByteBuffer getBuffer(String name, byte type) throws DDFException {
+    ArrayEntry entry = mArrays.get(name);
+    if (entry == null || entry.mType != type) {
+      throw new DDFException(String.format("Model file %s has no %s array %s", mFile,
+          type == ModelFormat.TYPE_DOUBLES ? "double" : "byte", name));
+    }
+
+    long byteLength = entry.getByteLength();
+    FileChannel channel = mRandomAccessFile.getChannel();
+    try {
+      if (byteLength >= ModelFormat.MAPPED_ARRAY_BYTES) {
+        return channel.map(FileChannel.MapMode.READ_ONLY, entry.mOffset, byteLength);
+      }
+
+      ByteBuffer buffer = ByteBuffer.allocate((int) byteLength);
+      long position = entry.mOffset;
+      while (buffer.hasRemaining()) {
+        int read = channel.read(buffer, position);
+        if (read < 0) throw new DDFException(String.format("Model file %s is truncated in array %s", mFile, name));
+        position += read;
+      }
+      buffer.flip();
+      return buffer;
+    } catch (IOException e) {
+      throw new DDFException(String.format("Cannot read array %s of model file %s", name, mFile), e);
+    }
+  }
+
+  @Override
+  public void close() {
+    try {
+      mRandomAccessFile.close();
+    } catch (IOException e) {
+      // nothing to do, the file was only read
+    }
+  }
+}
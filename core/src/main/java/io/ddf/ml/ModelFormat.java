@@ -0,0 +1,263 @@
+package io.ddf.ml;
+
+
+import com.google.common.collect.MapMaker;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+import io.ddf.exception.DDFException;
+import org.apache.commons.lang.SerializationException;
+import org.apache.commons.lang.SerializationUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A compact, versioned binary format for {@link Model}s, as opposed to the JSON of {@link Model#toJson()}.
+ * <p/>
+ * A model file is a header, then the arrays of the raw model, each aligned on 8 bytes:
+ * <pre>
+ * int magic "DDFM", short version
+ * UTF model class, UTF name, UTF raw model class
+ * int number of trained columns (-1 if unknown), UTF each trained column
+ * int number of arrays, for each: UTF name, byte type (1: double[], 2: byte[]), int length, long offset in the file
+ * the arrays, big-endian
+ * </pre>
+ * The arrays of a raw model are given by the {@link ModelCodec} registered for its class. A raw model without a codec
+ * is written as a single byte[] of its Java serialization, so that it must be {@link Serializable}.
+ */
+public class ModelFormat {
+
+  public static final int MAGIC = 0x4444464D; // "DDFM"
+
+  public static final short VERSION = 1;
+
+  /**
+   * Arrays of at least this many bytes are memory-mapped when they are read, instead of being read into a temporary
+   * buffer. The decoded model still gets its own copy of the array on the heap.
+   */
+  public static final long MAPPED_ARRAY_BYTES = 1 << 20;
+
+  static final byte TYPE_DOUBLES = 1;
+
+  static final byte TYPE_BYTES = 2;
+
+  private static final int WRITE_BUFFER_BYTES = 1 << 16;
+
+  private static final Map<String, ModelCodec> sCodecs = new ConcurrentHashMap<String, ModelCodec>();
+
+
+  /**
+   * Writes the raw model as the Java serialization of the raw model, when no codec is registered for its class
+   */
+  public static class JavaSerializationCodec implements ModelCodec {
+
+    static final String ARRAY_NAME = "serialized";
+
+    // the serialized sizes of the raw models, by identity, for as long as they are referenced
+    private final Map<Object, Long> mSizes = new MapMaker().weakKeys().makeMap();
+
+    @Override
+    public Map<String, Object> encode(Object rawModel) throws DDFException {
+      if (!(rawModel instanceof Serializable)) {
+        throw new DDFException(String.format("No codec for raw model %s, which is not serializable",
+            rawModel.getClass().getName()));
+      }
+
+      Map<String, Object> arrays = new LinkedHashMap<String, Object>();
+      try {
+        arrays.put(ARRAY_NAME, SerializationUtils.serialize((Serializable) rawModel));
+      } catch (SerializationException e) {
+        throw new DDFException(String.format("Cannot serialize raw model %s", rawModel.getClass().getName()), e);
+      }
+      return arrays;
+    }
+
+    @Override
+    public Object decode(ModelFile file) throws DDFException {
+      try {
+        return SerializationUtils.deserialize(file.getBytes(ARRAY_NAME));
+      } catch (SerializationException e) {
+        throw new DDFException(String.format("Cannot deserialize the raw model of %s", file.getFile()), e);
+      }
+    }
+
+    /**
+     * Counts the bytes of the serialization without keeping them, once per raw model
+     */
+    @Override
+    public long sizeOf(Object rawModel) throws DDFException {
+      Long size = mSizes.get(rawModel);
+      if (size != null) return size;
+      if (!(rawModel instanceof Serializable)) {
+        throw new DDFException(String.format("No codec for raw model %s, which is not serializable",
+            rawModel.getClass().getName()));
+      }
+
+      CountingOutputStream counter = new CountingOutputStream(ByteStreams.nullOutputStream());
+      try {
+        ObjectOutputStream out = new ObjectOutputStream(counter);
+        out.writeObject(rawModel);
+        out.close();
+      } catch (IOException e) {
+        throw new DDFException(String.format("Cannot serialize raw model %s", rawModel.getClass().getName()), e);
+      }
+      size = counter.getCount();
+      mSizes.put(rawModel, size);
+      return size;
+    }
+  }
+
+
+  private static final ModelCodec sJavaSerializationCodec = new JavaSerializationCodec();
+
+
+  public static void register(String rawModelClass, ModelCodec codec) {
+    sCodecs.put(rawModelClass, codec);
+  }
+
+  public static ModelCodec getCodec(String rawModelClass) {
+    ModelCodec codec = sCodecs.get(rawModelClass);
+    return codec != null ? codec : sJavaSerializationCodec;
+  }
+
+  public static long sizeOf(Model model) throws DDFException {
+    Object rawModel = model.getRawModel();
+    return rawModel == null ? 0 : getCodec(rawModel.getClass().getName()).sizeOf(rawModel);
+  }
+
+  public static void write(Model model, File file) throws DDFException {
+    Object rawModel = model.getRawModel();
+    if (rawModel == null) throw new DDFException(String.format("Model %s has no raw model to write", model.getName()));
+    String rawModelType = rawModel.getClass().getName();
+    Map<String, Object> arrays = getCodec(rawModelType).encode(rawModel);
+
+    byte[] header;
+    try {
+      // the header has the same length whatever the offsets, so it is sized before the offsets are known
+      int headerLength = writeHeader(model, rawModelType, arrays, 0).length;
+      header = writeHeader(model, rawModelType, arrays, align(headerLength));
+    } catch (IOException e) {
+      throw new DDFException(String.format("Cannot write the header of model %s", model.getName()), e);
+    }
+
+    FileOutputStream out = null;
+    try {
+      out = new FileOutputStream(file);
+      FileChannel channel = out.getChannel();
+      writeFully(channel, ByteBuffer.wrap(header));
+
+      ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES);
+      for (Object array : arrays.values()) {
+        // pad up to the offset of the array
+        long position = channel.position();
+        writeFully(channel, ByteBuffer.allocate((int) (align(position) - position)));
+
+        if (array instanceof double[]) {
+          double[] doubles = (double[]) array;
+          for (int i = 0; i < doubles.length; ) {
+            buffer.clear();
+            int n = Math.min(doubles.length - i, WRITE_BUFFER_BYTES / 8);
+            buffer.asDoubleBuffer().put(doubles, i, n);
+            buffer.limit(n * 8);
+            writeFully(channel, buffer);
+            i += n;
+          }
+        } else {
+          writeFully(channel, ByteBuffer.wrap((byte[]) array));
+        }
+      }
+    } catch (IOException e) {
+      throw new DDFException(String.format("Cannot write model %s to %s", model.getName(), file), e);
+    } finally {
+      if (out != null) {
+        try {
+          out.close();
+        } catch (IOException e) {
+          // the write already failed if the file is incomplete
+        }
+      }
+    }
+  }
+
+  public static Model read(File file) throws DDFException {
+    ModelFile modelFile = new ModelFile(file);
+    try {
+      Object rawModel = getCodec(modelFile.getRawModelType()).decode(modelFile);
+
+      Model model;
+      try {
+        model = (Model) Class.forName(modelFile.getModelClass()).getConstructor(Object.class).newInstance(rawModel);
+      } catch (Exception e) {
+        throw new DDFException(String.format("Cannot instantiate model class %s", modelFile.getModelClass()), e);
+      }
+      model.setName(modelFile.getName());
+      model.setTrainedColumns(modelFile.getTrainedColumns());
+      return model;
+    } finally {
+      modelFile.close();
+    }
+  }
+
+  private static byte[] writeHeader(Model model, String rawModelType, Map<String, Object> arrays, long dataOffset)
+      throws IOException, DDFException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(MAGIC);
+    out.writeShort(VERSION);
+    out.writeUTF(model.getClass().getName());
+    out.writeUTF(model.getName());
+    out.writeUTF(rawModelType);
+
+    String[] columns = model.getTrainedColumns();
+    out.writeInt(columns == null ? -1 : columns.length);
+    if (columns != null) {
+      for (String column : columns) {
+        out.writeUTF(column);
+      }
+    }
+
+    out.writeInt(arrays.size());
+    long offset = dataOffset;
+    for (Map.Entry<String, Object> entry : arrays.entrySet()) {
+      Object array = entry.getValue();
+      long byteLength;
+      out.writeUTF(entry.getKey());
+      if (array instanceof double[]) {
+        out.writeByte(TYPE_DOUBLES);
+        out.writeInt(((double[]) array).length);
+        byteLength = 8L * ((double[]) array).length;
+      } else if (array instanceof byte[]) {
+        out.writeByte(TYPE_BYTES);
+        out.writeInt(((byte[]) array).length);
+        byteLength = ((byte[]) array).length;
+      } else {
+        throw new DDFException(String.format("Array %s of raw model %s is neither a double[] nor a byte[]",
+            entry.getKey(), rawModelType));
+      }
+      out.writeLong(offset);
+      offset = align(offset + byteLength);
+    }
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  private static long align(long position) {
+    return (position + 7) & ~7L;
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+}
@@ -0,0 +1,157 @@
+package io.ddf.ml;
+
+
+import io.ddf.exception.DDFException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The models of a DDFManager, by name, keeping at most about maxBytes of them in memory. When more are added, the
+ * least recently used models are written to the directory in the {@link ModelFormat}, and read back when they are
+ * asked for again. Models which cannot be written, e.g., an {@link IModel} which is not a {@link Model}, or whose raw
+ * model holds RDDs, are kept in memory, and still count towards maxBytes, as {@link #UNKNOWN_MODEL_BYTES} if their size
+ * is not known.
+ * <p/>
+ * Each registry writes its models to its own subdirectory of the directory, in files named after the URL-encoded name
+ * of the model, so that no two models, of the same registry or not, share a file.
+ */
+public class ModelRegistry {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ModelRegistry.class);
+
+  public static final String FILE_EXTENSION = ".ddfm";
+
+  /**
+   * The size counted for a model whose size cannot be estimated
+   */
+  public static final long UNKNOWN_MODEL_BYTES = 1L << 20;
+
+  private final long mMaxBytes;
+  private final File mDirectory;
+  // the subdirectory of this registry, created on the first eviction
+  private File mRegistryDirectory;
+
+  // the models in memory, least recently used first
+  private final LinkedHashMap<String, IModel> mResident = new LinkedHashMap<String, IModel>(16, 0.75f, true);
+  private final Map<String, Long> mSizes = new HashMap<String, Long>();
+  private final Map<String, File> mEvicted = new HashMap<String, File>();
+  private final Set<String> mPinned = new HashSet<String>();
+  private long mResidentBytes = 0;
+
+
+  public ModelRegistry(long maxBytes, File directory) {
+    mMaxBytes = maxBytes;
+    mDirectory = directory;
+  }
+
+  public synchronized void add(IModel model) {
+    String name = model.getName();
+    this.remove(name);
+
+    long size = UNKNOWN_MODEL_BYTES;
+    if (model instanceof Model) {
+      try {
+        size = ModelFormat.sizeOf((Model) model);
+      } catch (DDFException e) {
+        LOG.warn(String.format("Model %s cannot be written, it will be kept in memory", name), e);
+        mPinned.add(name);
+      }
+    } else {
+      mPinned.add(name);
+    }
+
+    mResident.put(name, model);
+    mSizes.put(name, size);
+    mResidentBytes += size;
+    this.evict();
+  }
+
+  /**
+   * @return the model, read back from its file if it was evicted, or null if there is no such model
+   */
+  public synchronized IModel get(String name) throws DDFException {
+    IModel model = mResident.get(name);
+    if (model != null || !mEvicted.containsKey(name)) return model;
+
+    File file = mEvicted.remove(name);
+    model = ModelFormat.read(file);
+    LOG.info(String.format("Reloaded model %s from %s", name, file));
+    if (!file.delete()) file.deleteOnExit();
+
+    mResident.put(name, model);
+    mResidentBytes += mSizes.get(name);
+    this.evict();
+    return model;
+  }
+
+  public synchronized boolean contains(String name) {
+    return mResident.containsKey(name) || mEvicted.containsKey(name);
+  }
+
+  public synchronized void remove(String name) {
+    if (mResident.remove(name) != null) mResidentBytes -= mSizes.get(name);
+    File file = mEvicted.remove(name);
+    if (file != null && !file.delete()) file.deleteOnExit();
+    mSizes.remove(name);
+    mPinned.remove(name);
+  }
+
+  public synchronized long getResidentBytes() {
+    return mResidentBytes;
+  }
+
+  public synchronized boolean isResident(String name) {
+    return mResident.containsKey(name);
+  }
+
+  /**
+   * Writes out the least recently used models until the others fit in maxBytes, always keeping the most recently used
+   * one in memory. Models which cannot be written are skipped, but still count towards maxBytes.
+   */
+  private void evict() {
+    Iterator<Map.Entry<String, IModel>> iterator = mResident.entrySet().iterator();
+    int numResident = mResident.size();
+    while (mResidentBytes > mMaxBytes && numResident > 1 && iterator.hasNext()) {
+      Map.Entry<String, IModel> entry = iterator.next();
+      numResident--;
+      String name = entry.getKey();
+      if (mPinned.contains(name)) continue;
+
+      File file;
+      try {
+        file = new File(this.getRegistryDirectory(), URLEncoder.encode(name, "UTF-8") + FILE_EXTENSION);
+        ModelFormat.write((Model) entry.getValue(), file);
+      } catch (IOException | DDFException e) {
+        LOG.warn(String.format("Cannot evict model %s, it will be kept in memory", name), e);
+        mPinned.add(name);
+        continue;
+      }
+
+      // registered after the directory, so deleted before it
+      file.deleteOnExit();
+      iterator.remove();
+      mEvicted.put(name, file);
+      mResidentBytes -= mSizes.get(name);
+      LOG.info(String.format("Evicted model %s of %d bytes to %s", name, mSizes.get(name), file));
+    }
+  }
+
+  private File getRegistryDirectory() throws IOException {
+    if (mRegistryDirectory == null) {
+      mRegistryDirectory = Files.createTempDirectory(mDirectory.toPath(), "registry").toFile();
+      mRegistryDirectory.deleteOnExit();
+    }
+    return mRegistryDirectory;
+  }
+}
@@ -0,0 +1,179 @@
+package io.ddf.ml;
+
+
+import java.io.Serializable;
+
+/**
+ * The ROC and precision-recall curves of one score column against a binary label, with a point per distinct
+ * threshold, highest threshold first. At a threshold t, a row is predicted positive if its score is >= t.
+ * <p/>
+ * The curves are exact when they have a point per distinct score. When the scores were compressed into fewer
+ * thresholds, every point is still exact, but the AUC is off by at most {@link #getAucErrorBound()}, the pairs of a
+ * positive and a negative whose scores fall between two consecutive thresholds being counted as ties.
+ */
+public class RocCurve implements Serializable {
+
+  private static final long serialVersionUID = -6519217830215471839L;
+
+  private final String mName;
+  private final double[] mThresholds;
+  private final long[] mTruePositives;
+  private final long[] mFalsePositives;
+  private final long mPositives;
+  private final long mNegatives;
+  private final double mAucErrorBound;
+  private final double mAuc;
+
+
+  /**
+   * @param thresholds     the thresholds, in decreasing order
+   * @param truePositives  the number of positives whose score is >= each threshold
+   * @param falsePositives the number of negatives whose score is >= each threshold
+   */
+  public RocCurve(String name, double[] thresholds, long[] truePositives, long[] falsePositives, long positives,
+      long negatives, double aucErrorBound) {
+    mName = name;
+    mThresholds = thresholds;
+    mTruePositives = truePositives;
+    mFalsePositives = falsePositives;
+    mPositives = positives;
+    mNegatives = negatives;
+    mAucErrorBound = aucErrorBound;
+    mAuc = this.computeAUC();
+  }
+
+  private double computeAUC() {
+    if (mPositives == 0 || mNegatives == 0) return Double.NaN;
+
+    // trapezoids from (0, 0) through each point, a trapezoid counting the ties of its threshold as half
+    double area = 0;
+    long previousTp = 0;
+    long previousFp = 0;
+    for (int i = 0; i < mThresholds.length; i++) {
+      area += (mFalsePositives[i] - previousFp) * (double) (mTruePositives[i] + previousTp);
+      previousTp = mTruePositives[i];
+      previousFp = mFalsePositives[i];
+    }
+    return area / 2 / mPositives / mNegatives;
+  }
+
+  public String getName() {
+    return mName;
+  }
+
+  public double[] getThresholds() {
+    return mThresholds;
+  }
+
+  public long[] getTruePositives() {
+    return mTruePositives;
+  }
+
+  public long[] getFalsePositives() {
+    return mFalsePositives;
+  }
+
+  public long getPositives() {
+    return mPositives;
+  }
+
+  public long getNegatives() {
+    return mNegatives;
+  }
+
+  public double getAuc() {
+    return mAuc;
+  }
+
+  /**
+   * @return 0 if the curve is exact, else the most the AUC can be off by
+   */
+  public double getAucErrorBound() {
+    return mAucErrorBound;
+  }
+
+  public double[] getTpr() {
+    double[] tpr = new double[mThresholds.length];
+    for (int i = 0; i < tpr.length; i++) {
+      tpr[i] = mPositives == 0 ? 0 : (double) mTruePositives[i] / mPositives;
+    }
+    return tpr;
+  }
+
+  public double[] getFpr() {
+    double[] fpr = new double[mThresholds.length];
+    for (int i = 0; i < fpr.length; i++) {
+      fpr[i] = mNegatives == 0 ? 0 : (double) mFalsePositives[i] / mNegatives;
+    }
+    return fpr;
+  }
+
+  public double[] getPrecision() {
+    double[] precision = new double[mThresholds.length];
+    for (int i = 0; i < precision.length; i++) {
+      long predictedPositives = mTruePositives[i] + mFalsePositives[i];
+      precision[i] = predictedPositives == 0 ? 1 : (double) mTruePositives[i] / predictedPositives;
+    }
+    return precision;
+  }
+
+  /**
+   * @return the recall, the same as the true positive rate
+   */
+  public double[] getRecall() {
+    return this.getTpr();
+  }
+
+  /**
+   * @return the area under the precision-recall curve, by trapezoids from recall 0 at the precision of the highest
+   * threshold
+   */
+  public double getAreaUnderPR() {
+    if (mPositives == 0 || mThresholds.length == 0) return Double.NaN;
+    double[] precision = this.getPrecision();
+    double[] recall = this.getRecall();
+
+    double area = 0;
+    double previousPrecision = precision[0];
+    double previousRecall = 0;
+    for (int i = 0; i < precision.length; i++) {
+      area += (recall[i] - previousRecall) * (precision[i] + previousPrecision) / 2;
+      previousPrecision = precision[i];
+      previousRecall = recall[i];
+    }
+    return area;
+  }
+
+  /**
+   * @return the curve as a RocMetric, with a row per threshold, lowest threshold first, of threshold, tpr, fpr,
+   * precision, recall, sensitivity, specificity, f1 and accuracy, like {@link RocMetric#pred}
+   */
+  public RocMetric toRocMetric() {
+    double[][] pred = new double[mThresholds.length][];
+    for (int i = 0; i < mThresholds.length; i++) {
+      double tp = mTruePositives[i];
+      double fp = mFalsePositives[i];
+      double fn = mPositives - tp;
+      double tn = mNegatives - fp;
+
+      double[] row = new double[9];
+      row[0] = mThresholds[i];
+      row[1] = mPositives == 0 ? tp : tp / mPositives;
+      row[2] = mNegatives == 0 ? fp : fp / mNegatives;
+      row[3] = tp / (tp + fp);
+      row[4] = row[1];
+      row[5] = row[1];
+      row[6] = tn / (tn + fp);
+      row[7] = 2 * tp / (2 * tp + fp + fn);
+      row[8] = (tp + tn) / (tp + tn + fp + fn);
+      pred[mThresholds.length - 1 - i] = row;
+    }
+    return new RocMetric(pred, mAuc);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("RocCurve %s: auc = %.4f (+/- %.4f), %d thresholds, %d positives, %d negatives", mName, mAuc,
+        mAucErrorBound, mThresholds.length, mPositives, mNegatives);
+  }
+}
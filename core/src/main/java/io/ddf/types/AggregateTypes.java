@@ -7,8 +7,12 @@ import io.ddf.exception.DDFException;
 import io.ddf.util.Utils;
 import org.apache.commons.lang.StringUtils;
 
+import java.io.Serializable;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class AggregateTypes {
   public enum AggregateFunction {
@@ -72,6 +76,137 @@ public class AggregateTypes {
       return result;
     }
 
+    /**
+     * Renders a {@link TypedAggregationResult} into the tab-joined keys and rounded values of this class
+     */
+    public static AggregationResult newInstance(TypedAggregationResult typedResult) {
+      AggregationResult result = new AggregationResult();
+
+      for (Map.Entry<GroupKey, double[]> group : typedResult.getGroups().entrySet()) {
+        double[] values = group.getValue();
+        double[] rounded = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+          rounded[i] = Utils.roundUp(values[i]);
+        }
+        result.put(group.getKey().toString(), rounded);
+      }
+
+      return result;
+    }
+  }
+
+
+  /**
+   * The values of the GROUP BY columns of one group, kept as the engine returned them
+   */
+  public static class GroupKey implements Serializable {
+
+    private static final long serialVersionUID = 3207591622375834870L;
+
+    private final Object[] mValues;
+
+
+    public GroupKey(Object... values) {
+      mValues = values;
+    }
+
+    public int size() {
+      return mValues.length;
+    }
+
+    public Object get(int i) {
+      return mValues[i];
+    }
+
+    public Object[] getValues() {
+      return mValues;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof GroupKey && Arrays.equals(mValues, ((GroupKey) other).mValues);
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(mValues);
+    }
+
+    /**
+     * @return the values joined by tabs, with "null" for null values, as in {@link AggregationResult}
+     */
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < mValues.length; i++) {
+        if (i > 0) sb.append('\t');
+        sb.append(mValues[i] == null ? "null" : mValues[i].toString());
+      }
+      return sb.toString();
+    }
+  }
+
+
+  /**
+   * Result of an aggregation as typed values: for each group, a {@link GroupKey} of the GROUP BY values and a double[]
+   * of the aggregated values, in the order of the aggregated fields. NULL aggregates are Double.NaN. Values are not
+   * rounded; rendering into strings is left to {@link #toAggregationResult()}.
+   */
+  public static class TypedAggregationResult implements Serializable {
+
+    private static final long serialVersionUID = -1439386210387457734L;
+
+    private final List<String> mGroupColumns;
+    private final List<String> mValueColumns;
+    private final Map<GroupKey, double[]> mGroups = new LinkedHashMap<GroupKey, double[]>();
+
+
+    public TypedAggregationResult(List<String> groupColumns, List<String> valueColumns) {
+      mGroupColumns = groupColumns;
+      mValueColumns = valueColumns;
+    }
+
+    public static TypedAggregationResult newInstance(List<AggregateField> fields) {
+      List<String> groupColumns = Lists.newArrayList();
+      List<String> valueColumns = Lists.newArrayList();
+      for (AggregateField field : fields) {
+        if (field.isAggregated()) valueColumns.add(field.toString());
+        else groupColumns.add(field.getColumn());
+      }
+      return new TypedAggregationResult(groupColumns, valueColumns);
+    }
+
+    public List<String> getGroupColumns() {
+      return mGroupColumns;
+    }
+
+    public List<String> getValueColumns() {
+      return mValueColumns;
+    }
+
+    public Map<GroupKey, double[]> getGroups() {
+      return mGroups;
+    }
+
+    public void put(GroupKey key, double[] values) {
+      mGroups.put(key, values);
+    }
+
+    /**
+     * @param keyValues the GROUP BY values of the group, typed as the engine returns them
+     * @return the aggregated values of that group, or null if there is no such group
+     */
+    public double[] get(Object... keyValues) {
+      return mGroups.get(new GroupKey(keyValues));
+    }
+
+    public int size() {
+      return mGroups.size();
+    }
+
+    public AggregationResult toAggregationResult() {
+      return AggregationResult.newInstance(this);
+    }
   }
 
 
@@ -0,0 +1,88 @@
+package io.ddf.util;
+
+
+import java.io.Serializable;
+
+/**
+ * A HyperLogLog cardinality estimator over 64-bit hashes (Flajolet et al., 2007), with the small-range linear counting
+ * correction. With the default precision of 12 it uses 4KB of registers and has a standard error of about 1.6%.
+ * Estimators built with the same precision can be merged, e.g., across partitions.
+ */
+public class HyperLogLog implements Serializable {
+
+  private static final long serialVersionUID = 6180354627397245398L;
+
+  public static final int DEFAULT_PRECISION = 12;
+
+  private final int mPrecision;
+  private final byte[] mRegisters;
+
+
+  public HyperLogLog() {
+    this(DEFAULT_PRECISION);
+  }
+
+  public HyperLogLog(int precision) {
+    if (precision < 4 || precision > 18) {
+      throw new IllegalArgumentException("Precision must be between 4 and 18, was " + precision);
+    }
+    mPrecision = precision;
+    mRegisters = new byte[1 << precision];
+  }
+
+  /**
+   * @param hash a well-mixed 64-bit hash of the item
+   */
+  public void offerHash(long hash) {
+    int index = (int) (hash >>> (64 - mPrecision));
+    long rest = (hash << mPrecision) | (1L << (mPrecision - 1));
+    byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+    if (rank > mRegisters[index]) mRegisters[index] = rank;
+  }
+
+  public HyperLogLog merge(HyperLogLog other) {
+    if (other.mPrecision != mPrecision) {
+      throw new IllegalArgumentException("Cannot merge HyperLogLogs of different precisions");
+    }
+    for (int i = 0; i < mRegisters.length; i++) {
+      if (other.mRegisters[i] > mRegisters[i]) mRegisters[i] = other.mRegisters[i];
+    }
+    return this;
+  }
+
+  public long cardinality() {
+    int m = mRegisters.length;
+    double sum = 0;
+    int zeros = 0;
+    for (byte register : mRegisters) {
+      sum += 1.0 / (1L << register);
+      if (register == 0) zeros++;
+    }
+
+    double alpha = m == 16 ? 0.673 : m == 32 ? 0.697 : m == 64 ? 0.709 : 0.7213 / (1 + 1.079 / m);
+    double estimate = alpha * m * m / sum;
+
+    if (estimate <= 2.5 * m && zeros > 0) {
+      estimate = m * Math.log((double) m / zeros);
+    }
+    return Math.round(estimate);
+  }
+
+  /**
+   * 64-bit hash of a string, good enough both as a HyperLogLog input and as a collision-resistant key
+   */
+  public static long hash(String s) {
+    // FNV-1a over the chars, followed by the MurmurHash3 finalizer
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < s.length(); i++) {
+      h ^= s.charAt(i);
+      h *= 0x100000001b3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
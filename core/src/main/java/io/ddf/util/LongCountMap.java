@@ -0,0 +1,246 @@
+package io.ddf.util;
+
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash map from primitive long keys to long counts, with an optional label per key (e.g., the
+ * original string a key was hashed from). Keys and counts are kept in primitive arrays, so counting does not box or
+ * allocate per increment.
+ * <p/>
+ * When labels are given, an entry is identified by its key and its label, so two labels whose keys collide, e.g., two
+ * strings with the same 64-bit hash, are counted separately rather than merged.
+ * <p/>
+ * A slot is empty iff its count is 0; counts are therefore always positive, and entries can only be dropped in bulk
+ * via {@link #decrementAll(long)}, which rebuilds the table.
+ */
+public class LongCountMap<L> implements Serializable {
+
+  private static final long serialVersionUID = -5364838567313478912L;
+
+  private static final int MIN_CAPACITY = 16;
+
+  private long[] mKeys;
+  private long[] mCounts;
+  private Object[] mLabels;
+  private int mSize = 0;
+  private int mMask;
+
+
+  public LongCountMap() {
+    this(MIN_CAPACITY);
+  }
+
+  /**
+   * @param expectedSize number of keys the map can hold without resizing
+   */
+  public LongCountMap(int expectedSize) {
+    this.allocate(tableSizeFor(expectedSize));
+  }
+
+  private static int tableSizeFor(int expectedSize) {
+    // keep the load factor at or below 0.5
+    int size = MIN_CAPACITY;
+    while (size < 2L * expectedSize) size <<= 1;
+    return size;
+  }
+
+  private void allocate(int tableSize) {
+    mKeys = new long[tableSize];
+    mCounts = new long[tableSize];
+    mLabels = new Object[tableSize];
+    mMask = tableSize - 1;
+    mSize = 0;
+  }
+
+  /**
+   * 64-bit finalizer of MurmurHash3, to spread keys that differ only in their high bits
+   */
+  private static int slotFor(long key, int mask) {
+    key ^= key >>> 33;
+    key *= 0xff51afd7ed558ccdL;
+    key ^= key >>> 33;
+    return (int) key & mask;
+  }
+
+  /**
+   * @return the slot of the entry of key and label, or the empty slot where to insert it. A null label matches any.
+   */
+  private int findSlot(long key, Object label) {
+    int slot = slotFor(key, mMask);
+    while (mCounts[slot] != 0 && (mKeys[slot] != key || (label != null && !label.equals(mLabels[slot])))) {
+      slot = (slot + 1) & mMask;
+    }
+    return slot;
+  }
+
+  /**
+   * Adds delta to the count of key, inserting it with the given label if absent
+   *
+   * @return the new count
+   */
+  public long increment(long key, L label, long delta) {
+    if (delta <= 0) return this.get(key, label);
+
+    int slot = this.findSlot(key, label);
+    if (mCounts[slot] == 0) {
+      mKeys[slot] = key;
+      mLabels[slot] = label;
+      mCounts[slot] = delta;
+      if (++mSize * 2 > mKeys.length) this.rehash(mKeys.length << 1);
+      return delta;
+    }
+    mCounts[slot] += delta;
+    return mCounts[slot];
+  }
+
+  public long increment(long key, L label) {
+    return this.increment(key, label, 1L);
+  }
+
+  public long get(long key) {
+    return mCounts[this.findSlot(key, null)];
+  }
+
+  /**
+   * @return the count of the entry of key and label, 0 if absent
+   */
+  public long get(long key, L label) {
+    return mCounts[this.findSlot(key, label)];
+  }
+
+  public boolean containsKey(long key) {
+    return this.get(key) != 0;
+  }
+
+  @SuppressWarnings("unchecked")
+  public L getLabel(long key) {
+    int slot = this.findSlot(key, null);
+    return mCounts[slot] == 0 ? null : (L) mLabels[slot];
+  }
+
+  public int size() {
+    return mSize;
+  }
+
+  public boolean isEmpty() {
+    return mSize == 0;
+  }
+
+  /**
+   * @return the sum of all counts
+   */
+  public long total() {
+    long total = 0;
+    for (long count : mCounts) total += count;
+    return total;
+  }
+
+  /**
+   * Adds all counts of another map into this one
+   */
+  @SuppressWarnings("unchecked")
+  public LongCountMap<L> merge(LongCountMap<L> other) {
+    for (int slot = 0; slot < other.mCounts.length; slot++) {
+      if (other.mCounts[slot] != 0) this.increment(other.mKeys[slot], (L) other.mLabels[slot], other.mCounts[slot]);
+    }
+    return this;
+  }
+
+  /**
+   * @return a copy of this map, which can be changed without changing this one
+   */
+  public LongCountMap<L> copy() {
+    LongCountMap<L> copy = new LongCountMap<L>(mSize);
+    copy.merge(this);
+    return copy;
+  }
+
+  /**
+   * Subtracts delta from every count, dropping the keys whose count falls to 0 or below
+   *
+   * @return the sum of the counts that were subtracted
+   */
+  public long decrementAll(long delta) {
+    if (delta <= 0) return 0;
+
+    long[] keys = mKeys;
+    long[] counts = mCounts;
+    Object[] labels = mLabels;
+    this.allocate(tableSizeFor(mSize));
+
+    long removed = 0;
+    for (int slot = 0; slot < counts.length; slot++) {
+      if (counts[slot] == 0) continue;
+      removed += Math.min(delta, counts[slot]);
+      long remaining = counts[slot] - delta;
+      if (remaining > 0) this.put(keys[slot], labels[slot], remaining);
+    }
+    return removed;
+  }
+
+  /**
+   * @return the k-th largest count (1-based), or 0 if there are fewer than k keys
+   */
+  public long kthLargestCount(int k) {
+    if (k <= 0 || k > mSize) return 0;
+    long[] counts = this.counts();
+    Arrays.sort(counts);
+    return counts[counts.length - k];
+  }
+
+  /**
+   * @return the keys, compacted into a new array in table order
+   */
+  public long[] keys() {
+    long[] keys = new long[mSize];
+    int i = 0;
+    for (int slot = 0; slot < mCounts.length; slot++) {
+      if (mCounts[slot] != 0) keys[i++] = mKeys[slot];
+    }
+    return keys;
+  }
+
+  /**
+   * @return the counts, compacted into a new array in the same order as {@link #keys()}
+   */
+  public long[] counts() {
+    long[] counts = new long[mSize];
+    int i = 0;
+    for (int slot = 0; slot < mCounts.length; slot++) {
+      if (mCounts[slot] != 0) counts[i++] = mCounts[slot];
+    }
+    return counts;
+  }
+
+  /**
+   * @return the labels, compacted into a new array in the same order as {@link #keys()}
+   */
+  public Object[] labels() {
+    Object[] labels = new Object[mSize];
+    int i = 0;
+    for (int slot = 0; slot < mCounts.length; slot++) {
+      if (mCounts[slot] != 0) labels[i++] = mLabels[slot];
+    }
+    return labels;
+  }
+
+  private void put(long key, Object label, long count) {
+    int slot = this.findSlot(key, label);
+    if (mCounts[slot] == 0) mSize++;
+    mKeys[slot] = key;
+    mLabels[slot] = label;
+    mCounts[slot] = count;
+  }
+
+  private void rehash(int tableSize) {
+    long[] keys = mKeys;
+    long[] counts = mCounts;
+    Object[] labels = mLabels;
+    this.allocate(tableSize);
+    for (int slot = 0; slot < counts.length; slot++) {
+      if (counts[slot] != 0) this.put(keys[slot], labels[slot], counts[slot]);
+    }
+  }
+}
@@ -0,0 +1,183 @@
+package io.ddf.util;
+
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Fixed-size uniform sampling without replacement in one pass. Each offered item gets a uniform random key and the
+ * sampler keeps the items with the smallest keys, in a max-heap. Once the reservoir is full, the number of items to
+ * skip before the next one enters is drawn at once from a geometric distribution, so most items cost no random draw.
+ * <p/>
+ * Samplers over disjoint parts of the data, e.g., partitions, are merged by keeping the smallest keys of both, which
+ * selects from each side in proportion to the number of items it has seen. Since that does not depend on the order of
+ * merges, sampling with a fixed seed per partition is deterministic however the partial samples are combined.
+ */
+public class ReservoirSampler<T> implements Serializable {
+
+  private static final long serialVersionUID = 2583917434528113874L;
+
+  private final int mCapacity;
+  private final double[] mKeys;
+  private final Object[] mItems;
+  private final Random mRandom;
+  private int mSize = 0;
+  private long mNumSeen = 0;
+  // number of items still to skip before the next one enters the full reservoir
+  private long mSkip = 0;
+
+
+  public ReservoirSampler(int capacity, long seed) {
+    if (capacity < 0) throw new IllegalArgumentException("Sample size must not be negative");
+    mCapacity = capacity;
+    mKeys = new double[capacity];
+    mItems = new Object[capacity];
+    mRandom = new Random(seed);
+  }
+
+  /**
+   * @return a seed for the given partition, well mixed so that partitions get unrelated random streams
+   */
+  public static long partitionSeed(long seed, int partition) {
+    long h = seed * 0x9E3779B97F4A7C15L + partition;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  public void offer(T item) {
+    mNumSeen++;
+    if (mCapacity == 0) return;
+
+    if (mSize < mCapacity) {
+      this.insert(item, mRandom.nextDouble());
+      if (mSize == mCapacity) mSkip = this.nextSkip();
+    } else if (mSkip > 0) {
+      mSkip--;
+    } else {
+      // the accepted key is uniform below the current largest key
+      this.replaceLargest(item, mKeys[0] * mRandom.nextDouble());
+      mSkip = this.nextSkip();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  public ReservoirSampler<T> merge(ReservoirSampler<T> other) {
+    if (other.mCapacity != mCapacity) {
+      throw new IllegalArgumentException("Cannot merge samplers of different sizes");
+    }
+    mNumSeen += other.mNumSeen;
+    for (int i = 0; i < other.mSize; i++) {
+      if (mSize < mCapacity) {
+        this.insert((T) other.mItems[i], other.mKeys[i]);
+      } else if (other.mKeys[i] < mKeys[0]) {
+        this.replaceLargest((T) other.mItems[i], other.mKeys[i]);
+      }
+    }
+    if (mSize == mCapacity) mSkip = this.nextSkip();
+    return this;
+  }
+
+  /**
+   * @return number of items offered to this sampler and all samplers merged into it
+   */
+  public long getNumSeen() {
+    return mNumSeen;
+  }
+
+  public int size() {
+    return mSize;
+  }
+
+  /**
+   * @return the sampled items, in random order
+   */
+  @SuppressWarnings("unchecked")
+  public List<T> getSample() {
+    Integer[] order = new Integer[mSize];
+    for (int i = 0; i < mSize; i++) order[i] = i;
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        return Double.compare(mKeys[a], mKeys[b]);
+      }
+    });
+
+    List<T> sample = new ArrayList<T>(mSize);
+    for (int i : order) sample.add((T) mItems[i]);
+    return sample;
+  }
+
+  /**
+   * Derives a sample with replacement of up to the capacity of this sampler: numSamples draws over all items seen are
+   * simulated, and each distinct drawn item is mapped to the next item of the sample without replacement.
+   *
+   * @param seed
+   * @return
+   */
+  public List<T> getSampleWithReplacement(long seed) {
+    List<T> distinct = this.getSample();
+    List<T> sample = new ArrayList<T>(mCapacity);
+    if (mNumSeen == 0) return sample;
+
+    Random random = new Random(seed);
+    Map<Long, Integer> positions = new HashMap<Long, Integer>();
+    for (int i = 0; i < mCapacity; i++) {
+      long drawn = (long) (random.nextDouble() * mNumSeen);
+      Integer position = positions.get(drawn);
+      if (position == null) {
+        position = positions.size();
+        positions.put(drawn, position);
+      }
+      sample.add(distinct.get(position));
+    }
+    return sample;
+  }
+
+  private long nextSkip() {
+    double threshold = mKeys[0];
+    if (threshold >= 1.0) return 0;
+    if (threshold <= 0.0) return Long.MAX_VALUE;
+    // number of failures before the first key below threshold
+    return (long) Math.floor(Math.log(mRandom.nextDouble()) / Math.log1p(-threshold));
+  }
+
+  // ////// max-heap on keys ////////
+
+  private void insert(T item, double key) {
+    int i = mSize++;
+    while (i > 0) {
+      int parent = (i - 1) >>> 1;
+      if (mKeys[parent] >= key) break;
+      mKeys[i] = mKeys[parent];
+      mItems[i] = mItems[parent];
+      i = parent;
+    }
+    mKeys[i] = key;
+    mItems[i] = item;
+  }
+
+  private void replaceLargest(T item, double key) {
+    int i = 0;
+    while (true) {
+      int child = 2 * i + 1;
+      if (child >= mSize) break;
+      if (child + 1 < mSize && mKeys[child + 1] > mKeys[child]) child++;
+      if (mKeys[child] <= key) break;
+      mKeys[i] = mKeys[child];
+      mItems[i] = mItems[child];
+      i = child;
+    }
+    mKeys[i] = key;
+    mItems[i] = item;
+  }
+}
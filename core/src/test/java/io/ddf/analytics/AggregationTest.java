@@ -6,6 +6,9 @@ import io.ddf.types.AggregateTypes.AggregateField;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.List;
+
 import static org.junit.Assert.assertTrue;
 
 public class AggregationTest {
@@ -31,4 +34,28 @@ public class AggregationTest {
   public void testAggregateTypes() {
     Assert.assertEquals("COUNT(*) AS m", AggregateField.fromFieldSpec("count(*)").setName("m").toString());
   }
+
+  @Test
+  public void testAggregateCubeRollUp() {
+    Assert.assertNull(AggregateCube.parseAggregates(Arrays.asList("m=avg(depdelay)", "s=stddev(arrdelay)")));
+    // unnamed aggregates are left to the direct aggregation, which names them
+    Assert.assertNull(AggregateCube.parseAggregates(Arrays.asList("m=avg(depdelay)", "count(*)")));
+
+    List<AggregateCube.Aggregate> fine = AggregateCube.parseAggregates(Arrays.asList("m=avg(depdelay)", "n=count(*)"));
+    AggregateCube cube = new AggregateCube(Arrays.asList("year", "month", "carrier"), fine, 0L);
+    Assert.assertEquals("SELECT SUM(depdelay) AS cube_measure_0,COUNT(depdelay) AS cube_measure_1,"
+        + "COUNT(*) AS cube_measure_2 , year,month,carrier FROM {1} GROUP BY year,month,carrier", cube.toCubeSql());
+    Assert.assertEquals("SELECT cube_measure_0 / cube_measure_1 AS m,cube_measure_2 AS n , year,month,carrier FROM {1}",
+        cube.toProjectionSql(fine));
+
+    List<AggregateCube.Aggregate> coarse = AggregateCube.parseAggregates(Arrays.asList("n = count(1)",
+        "m=mean(depdelay)"));
+    Assert.assertTrue(cube.covers(Arrays.asList("year"), coarse));
+    Assert.assertEquals("SELECT SUM(cube_measure_2) AS n,SUM(cube_measure_0) / SUM(cube_measure_1) AS m , year "
+        + "FROM {1} GROUP BY year", cube.toRollUpSql(Arrays.asList("year"), coarse));
+
+    Assert.assertFalse(cube.covers(Arrays.asList("origin"), coarse));
+    Assert.assertFalse(cube.covers(Arrays.asList("year"),
+        AggregateCube.parseAggregates(Arrays.asList("x=max(arrdelay)"))));
+  }
 }
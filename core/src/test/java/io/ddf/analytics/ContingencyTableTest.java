@@ -0,0 +1,53 @@
+package io.ddf.analytics;
+
+
+import io.ddf.content.FactorDictionary;
+import io.ddf.exception.DDFException;
+import io.ddf.types.AggregateTypes.AggregationResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ContingencyTableTest {
+
+  private ContingencyTable newTable() throws DDFException {
+    ContingencyTable table = new ContingencyTable(new String[] { "origin", "carrier" },
+        new String[][] { { "IAD", "SFO" }, { "AA", "WN" } });
+    table.add(new int[] { 0, 0 }, 10);
+    table.add(new int[] { 0, 1 }, 20);
+    table.add(new int[] { 1, 0 }, 30);
+    table.add(new int[] { 1, 1 }, 40);
+    return table;
+  }
+
+  @Test
+  public void testCountsAndMargins() throws DDFException {
+    ContingencyTable table = newTable();
+    table.add(new int[] { 1, FactorDictionary.NA_CODE });
+
+    Assert.assertEquals(100, table.getTotal());
+    Assert.assertEquals(4, table.getNumNonEmptyCells());
+    Assert.assertEquals(30, table.getCount(1, 0));
+    Assert.assertArrayEquals(new long[] { 30, 70 }, table.getMargin(0));
+    Assert.assertArrayEquals(new long[] { 40, 60 }, table.getMargin(1));
+    Assert.assertArrayEquals(new long[] { 10, 20, 30, 40 }, table.toDense());
+    Assert.assertArrayEquals(new long[] { 30, 40 }, table.toDenseMatrix()[1]);
+
+    AggregationResult result = table.toAggregationResult();
+    Assert.assertEquals(20, result.get("IAD\tWN")[0], 0);
+  }
+
+  @Test
+  public void testMerge() throws DDFException {
+    ContingencyTable table = newTable().merge(newTable());
+    Assert.assertEquals(200, table.getTotal());
+    Assert.assertEquals(80, table.getCount(1, 1));
+  }
+
+  @Test
+  public void testChiSquare() throws DDFException {
+    ContingencyTable.ChiSquareTest test = newTable().chiSquareTest();
+    Assert.assertEquals(0.7937, test.getStatistic(), 1e-4);
+    Assert.assertEquals(1, test.getDegreesOfFreedom());
+    Assert.assertEquals(0.3730, test.getPValue(), 1e-4);
+  }
+}
@@ -0,0 +1,123 @@
+package io.ddf.content;
+
+
+import io.ddf.content.ExpressionCompiler.RowPredicate;
+import io.ddf.content.ViewHandler.Column;
+import io.ddf.content.ViewHandler.Expression;
+import io.ddf.content.ViewHandler.IntVal;
+import io.ddf.content.ViewHandler.OperationName;
+import io.ddf.content.ViewHandler.Operator;
+import io.ddf.content.ViewHandler.StringVal;
+import io.ddf.exception.DDFException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+public class ExpressionCompilerTest {
+
+  private final Object[] sfo = new Object[] { "SFO", 10 };
+  private final Object[] iad = new Object[] { "IAD", 30 };
+  private final Object[] unknown = new Object[] { "JFK", null };
+
+  private ExpressionCompiler newCompiler() throws DDFException {
+    return new ExpressionCompiler(new Schema("flights", "origin string, delay int"));
+  }
+
+  private static Column column(String name) {
+    Column column = new Column();
+    column.setName(name);
+    return column;
+  }
+
+  private static Operator operator(OperationName name, Expression... operands) {
+    Operator operator = new Operator();
+    operator.setName(name);
+    operator.setOperarands(operands);
+    return operator;
+  }
+
+  private static IntVal intVal(int value) {
+    IntVal val = new IntVal();
+    val.value = value;
+    return val;
+  }
+
+  private static StringVal stringVal(String value) {
+    StringVal val = new StringVal();
+    val.setValue(value);
+    return val;
+  }
+
+  @Test
+  public void testComparison() throws DDFException {
+    RowPredicate predicate = newCompiler().compilePredicate(operator(OperationName.gt, column("delay"), intVal(15)));
+    Assert.assertFalse(predicate.test(sfo));
+    Assert.assertTrue(predicate.test(iad));
+    Assert.assertFalse(predicate.test(unknown));
+  }
+
+  @Test
+  public void testThreeValuedLogic() throws DDFException {
+    Expression delayed = operator(OperationName.gt, column("delay"), intVal(15));
+    // NOT (delay > 15) is unknown, not true, for a NULL delay
+    RowPredicate notDelayed = newCompiler().compilePredicate(operator(OperationName.neg, delayed));
+    Assert.assertTrue(notDelayed.test(sfo));
+    Assert.assertFalse(notDelayed.test(unknown));
+
+    RowPredicate delayedOrNull = newCompiler().compilePredicate(operator(OperationName.or, delayed,
+        operator(OperationName.isnull, column("delay"))));
+    Assert.assertFalse(delayedOrNull.test(sfo));
+    Assert.assertTrue(delayedOrNull.test(iad));
+    Assert.assertTrue(delayedOrNull.test(unknown));
+  }
+
+  @Test
+  public void testGrepAndProjection() throws DDFException {
+    ExpressionCompiler compiler = newCompiler();
+    RowPredicate predicate = compiler.compilePredicate(operator(OperationName.grep_ic, stringVal("ia"),
+        column("origin")));
+    Assert.assertTrue(predicate.test(iad));
+    Assert.assertFalse(predicate.test(sfo));
+
+    Column delay = new Column();
+    delay.setIndex(1);
+    Assert.assertArrayEquals(new Object[] { 30, "IAD" },
+        compiler.compileProjector(Arrays.asList(delay, column("origin"))).project(iad));
+  }
+
+  @Test
+  public void testBatchFilter() throws DDFException {
+    ExpressionCompiler compiler = newCompiler();
+    // origin >= 'IAD' compares strings through String.compareTo, delay < 20 on the whole batch at once
+    RowPredicate predicate = compiler.compilePredicate(operator(OperationName.and,
+        operator(OperationName.ge, column("origin"), stringVal("IAD")),
+        operator(OperationName.neg, operator(OperationName.lt, column("delay"), intVal(20)))));
+
+    List<Object[]> rows = new ArrayList<Object[]>();
+    for (int i = 0; i < 3 * ExpressionCompiler.BATCH_SIZE; i++) {
+      rows.add(i % 3 == 0 ? sfo : (i % 3 == 1 ? iad : unknown));
+    }
+    Column origin = column("origin");
+    Iterator<Object[]> filtered = ExpressionCompiler.filter(rows.iterator(), predicate,
+        compiler.compileProjector(Arrays.asList(origin)));
+
+    int numRows = 0;
+    while (filtered.hasNext()) {
+      Assert.assertArrayEquals(new Object[] { "IAD" }, filtered.next());
+      numRows++;
+    }
+    Assert.assertEquals(ExpressionCompiler.BATCH_SIZE, numRows);
+    for (Object[] row : rows) {
+      Assert.assertEquals(row == iad, predicate.test(row));
+    }
+  }
+
+  @Test(expected = DDFException.class)
+  public void testUnknownColumn() throws DDFException {
+    newCompiler().compilePredicate(operator(OperationName.eq, column("dest"), stringVal("SFO")));
+  }
+}
@@ -0,0 +1,97 @@
+package io.ddf.content;
+
+
+import io.ddf.Factor;
+import io.ddf.util.LongCountMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+public class FactorLevelCounterTest {
+
+  @Test
+  public void testExactCounts() throws Exception {
+    FactorLevelCounter counter = new FactorLevelCounter(10);
+    for (String value : new String[] { "IAD", "ISP", "IAD", null, "IND", "IAD", "ISP" }) {
+      counter.add(value);
+    }
+
+    Assert.assertFalse(counter.isApproximate());
+    Assert.assertEquals(6, counter.getTotal());
+    Assert.assertEquals(0, counter.getOtherCount());
+    Assert.assertEquals(3, counter.getEstimatedNumLevels());
+
+    Map<String, Integer> levelCounts = counter.getLevelCounts();
+    Assert.assertArrayEquals(new String[] { "IAD", "ISP", "IND" }, levelCounts.keySet().toArray());
+    Assert.assertEquals(3, (int) levelCounts.get("IAD"));
+    Assert.assertEquals(2, (int) levelCounts.get("ISP"));
+    Assert.assertEquals(1, (int) levelCounts.get("IND"));
+
+    Factor<String> factor = new Factor<String>(null, "origin");
+    counter.applyTo(factor);
+    Assert.assertEquals(3, factor.getLevels().size());
+    Assert.assertFalse(factor.isApproximate());
+  }
+
+  @Test
+  public void testHeavyHittersAcrossPartitions() throws Exception {
+    FactorLevelCounter left = new FactorLevelCounter(3);
+    FactorLevelCounter right = new FactorLevelCounter(3);
+    for (int i = 0; i < 1000; i++) {
+      left.add("frequent");
+      right.add(i % 2 == 0 ? "common" : "rare" + i);
+    }
+
+    FactorLevelCounter counter = left.merge(right);
+    Assert.assertTrue(counter.isApproximate());
+    Assert.assertEquals(2000, counter.getTotal());
+
+    Map<String, Integer> levelCounts = counter.getLevelCounts();
+    Assert.assertTrue(levelCounts.size() <= 3);
+    // any value above n/(maxLevels+1) must survive, underestimated by at most that much
+    Assert.assertTrue(levelCounts.get("frequent") >= 1000 - 2000 / 4);
+    Assert.assertTrue(levelCounts.get("common") >= 500 - 2000 / 4);
+    Assert.assertTrue(counter.getOtherCount() > 0);
+    Assert.assertTrue(Math.abs(counter.getEstimatedNumLevels() - 502) < 502 * 0.1);
+
+    // reading the counts does not shrink the summary any further
+    Assert.assertEquals(levelCounts, counter.getLevelCounts());
+
+    // the other count is the rest of the total: the rare values, and what the kept counts miss of the true ones
+    long kept = 0;
+    for (int count : levelCounts.values()) kept += count;
+    Assert.assertEquals(2000 - kept, counter.getOtherCount());
+    Assert.assertTrue(counter.getOtherCount() >= 499);
+    Assert.assertTrue(counter.getOtherCount() <= 500 + 3 * 2000 / 4);
+
+    Factor<String> factor = new Factor<String>(null, "origin");
+    counter.applyTo(factor);
+    List<String> levels = factor.getLevels();
+    Assert.assertEquals(Factor.OTHER_LEVEL, levels.get(levels.size() - 1));
+    Assert.assertEquals(counter.getOtherCount(), (long) factor.getLevelCounts().get(Factor.OTHER_LEVEL));
+    long sum = 0;
+    for (int count : factor.getLevelCounts().values()) sum += count;
+    Assert.assertEquals(2000, sum);
+
+    FactorDictionary dictionary = new FactorDictionary(new int[] { 0 }, new String[][] {
+        levels.toArray(new String[levels.size()]) });
+    Assert.assertEquals(levels.indexOf("frequent"), dictionary.encode(0, "frequent"));
+    Assert.assertEquals(levels.size() - 1, dictionary.encode(0, "rare1"));
+    Assert.assertEquals(FactorDictionary.NA_CODE, dictionary.encode(0, null));
+  }
+
+  @Test
+  public void testCollidingKeysAreCountedSeparately() {
+    LongCountMap<String> counts = new LongCountMap<String>();
+    counts.increment(42L, "a");
+    counts.increment(42L, "b");
+    counts.increment(42L, "a");
+
+    Assert.assertEquals(2, counts.size());
+    Assert.assertEquals(2, counts.get(42L, "a"));
+    Assert.assertEquals(1, counts.get(42L, "b"));
+    Assert.assertEquals(3, counts.total());
+  }
+}
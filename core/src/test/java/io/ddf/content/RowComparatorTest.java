@@ -0,0 +1,49 @@
+package io.ddf.content;
+
+
+import io.ddf.exception.DDFException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class RowComparatorTest {
+
+  private Schema newSchema() throws DDFException {
+    return new Schema("flights", "origin string, delay int");
+  }
+
+  private List<Object[]> newRows() {
+    return Arrays.asList(new Object[] { "SFO", 10 }, new Object[] { "IAD", 30 }, new Object[] { "SFO", null },
+        new Object[] { "IAD", 20 }, new Object[] { "JFK", 5 });
+  }
+
+  @Test
+  public void testTopDescending() throws DDFException {
+    RowComparator comparator = RowComparator.parse(newSchema(), "delay", "desc");
+    List<Object[]> top = comparator.top(newRows().iterator(), 3);
+
+    Assert.assertEquals(3, top.size());
+    Assert.assertEquals(30, top.get(0)[1]);
+    Assert.assertEquals(20, top.get(1)[1]);
+    Assert.assertEquals(10, top.get(2)[1]);
+  }
+
+  @Test
+  public void testTopWithSeveralColumns() throws DDFException {
+    RowComparator comparator = RowComparator.parse(newSchema(), "origin, delay", "desc");
+    List<Object[]> top = comparator.top(newRows().iterator(), 10);
+
+    Assert.assertEquals(5, top.size());
+    Assert.assertArrayEquals(new Object[] { "IAD", 30 }, top.get(0));
+    Assert.assertArrayEquals(new Object[] { "JFK", 5 }, top.get(2));
+    // NULLs come first, so last in descending order
+    Assert.assertArrayEquals(new Object[] { "SFO", null }, top.get(4));
+  }
+
+  @Test(expected = DDFException.class)
+  public void testUnknownColumn() throws DDFException {
+    RowComparator.parse(newSchema(), "arrdelay", "asc");
+  }
+}
@@ -1,9 +1,12 @@
 package io.ddf.content;
 
 
+import io.ddf.Factor;
 import io.ddf.exception.DDFException;
+import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.HashMap;
 
 public class SchemaTest {
@@ -48,4 +51,40 @@ public class SchemaTest {
       assert(column.getType().toString() != null);
     }
   }
+
+  @Test
+  public void testFactorDictionaryAndDummyCoding() throws DDFException {
+    Schema schema = new Schema("t", "origin string, distance double, carrier string, delay double");
+    Factor<String> origin = new Factor<String>(null, "origin");
+    origin.setLevels(Arrays.asList("IAD", "IND", "ISP"));
+    schema.getColumn("origin").setAsFactor(origin);
+    Factor<String> carrier = new Factor<String>(null, "carrier");
+    carrier.setLevels(Arrays.asList("WN", "AA"));
+    schema.getColumn("carrier").setAsFactor(carrier);
+
+    schema.generateDummyCoding();
+    FactorDictionary dictionary = schema.getFactorDictionary();
+    Assert.assertSame(dictionary, schema.getDummyCoding().getFactorDictionary());
+    Assert.assertEquals(2, dictionary.size());
+    Assert.assertFalse(dictionary.hasColumn(1));
+    Assert.assertEquals(1, dictionary.getPosition(2));
+
+    Assert.assertEquals(2, dictionary.encode(0, "ISP"));
+    Assert.assertEquals(FactorDictionary.NA_CODE, dictionary.encode(0, "JFK"));
+    Assert.assertEquals(FactorDictionary.NA_CODE, dictionary.encode(2, null));
+    Assert.assertEquals("AA", dictionary.decode(2, 1));
+    Assert.assertArrayEquals(new int[] { 1, 0 }, dictionary.encodeRow(new Object[] { "IND", 1.0, "WN", 2.0 }));
+
+    // dummy codes are the dictionary codes
+    Assert.assertEquals(2.0, schema.getDummyCoding().getMapping().get(0).get("ISP"), 0.0);
+    Assert.assertEquals(3, schema.getDummyCoding().getNumDummyCoding().intValue());
+
+    // a new dictionary drops the dummy coding built from the previous one
+    origin.setLevels(Arrays.asList("IAD", "IND", "ISP", "JFK"));
+    schema.generateFactorDictionary();
+    Assert.assertNull(schema.getDummyCoding());
+    schema.generateDummyCoding();
+    Assert.assertSame(schema.getFactorDictionary(), schema.getDummyCoding().getFactorDictionary());
+    Assert.assertEquals(3.0, schema.getDummyCoding().getMapping().get(0).get("JFK"), 0.0);
+  }
 }
@@ -0,0 +1,208 @@
+package io.ddf.ml;
+
+
+import io.ddf.exception.DDFException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.DoubleBuffer;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ */
+public class ModelFormatTest {
+
+  public static class WeightsModel {
+    private final double[] mWeights;
+
+    public WeightsModel(double[] weights) {
+      mWeights = weights;
+    }
+
+    public double predict(double[] point) {
+      double prediction = 0;
+      for (int i = 0; i < point.length; i++) {
+        prediction += mWeights[i] * point[i];
+      }
+      return prediction;
+    }
+  }
+
+  public static class WeightsModelCodec implements ModelCodec {
+    @Override
+    public Map<String, Object> encode(Object rawModel) {
+      Map<String, Object> arrays = new LinkedHashMap<String, Object>();
+      arrays.put("tag", new byte[] { 1, 2, 3 });
+      arrays.put("weights", ((WeightsModel) rawModel).mWeights);
+      return arrays;
+    }
+
+    @Override
+    public Object decode(ModelFile file) throws DDFException {
+      Assert.assertArrayEquals(new byte[] { 1, 2, 3 }, file.getBytes("tag"));
+      return new WeightsModel(file.getDoubles("weights"));
+    }
+
+    @Override
+    public long sizeOf(Object rawModel) {
+      return 8L * ((WeightsModel) rawModel).mWeights.length;
+    }
+  }
+
+  public static class UnwritableModel {
+  }
+
+  public static class UnwritableModelCodec implements ModelCodec {
+    @Override
+    public Map<String, Object> encode(Object rawModel) throws DDFException {
+      throw new DDFException("Unwritable model");
+    }
+
+    @Override
+    public Object decode(ModelFile file) throws DDFException {
+      throw new DDFException("Unwritable model");
+    }
+
+    @Override
+    public long sizeOf(Object rawModel) {
+      return 8000;
+    }
+  }
+
+  static {
+    ModelFormat.register(WeightsModel.class.getName(), new WeightsModelCodec());
+    ModelFormat.register(UnwritableModel.class.getName(), new UnwritableModelCodec());
+  }
+
+  private static File newTempFile() throws IOException {
+    File file = File.createTempFile("model", ModelRegistry.FILE_EXTENSION);
+    file.deleteOnExit();
+    return file;
+  }
+
+  @Test
+  public void testWriteReadWithCodec() throws Exception {
+    // more than MAPPED_ARRAY_BYTES of weights, so that they are memory-mapped when read
+    double[] weights = new double[300000];
+    for (int i = 0; i < weights.length; i++) {
+      weights[i] = i * 0.5;
+    }
+    Model model = new Model(new WeightsModel(weights));
+    model.setTrainedColumns(new String[] { "a", "b" });
+
+    File file = newTempFile();
+    ModelFormat.write(model, file);
+
+    ModelFile modelFile = new ModelFile(file);
+    Assert.assertEquals(ModelFormat.VERSION, modelFile.getVersion());
+    Assert.assertEquals(model.getName(), modelFile.getName());
+    Assert.assertEquals(WeightsModel.class.getName(), modelFile.getRawModelType());
+    DoubleBuffer mapped = modelFile.getDoubleBuffer("weights");
+    Assert.assertEquals(weights.length, mapped.remaining());
+    Assert.assertEquals(weights[12345], mapped.get(12345), 0.0);
+    modelFile.close();
+
+    Model copy = ModelFormat.read(file);
+    Assert.assertEquals(model.getName(), copy.getName());
+    Assert.assertArrayEquals(new String[] { "a", "b" }, copy.getTrainedColumns());
+    Assert.assertArrayEquals(weights, ((WeightsModel) copy.getRawModel()).mWeights, 0.0);
+    Assert.assertEquals(4.0, copy.predict(new double[] { 1, 2, 3 }), 0.0);
+  }
+
+  @Test
+  public void testWriteReadSerializable() throws Exception {
+    Model model = new Model(new ModelTest.LinearModel(1, 2));
+    File file = newTempFile();
+    ModelFormat.write(model, file);
+
+    Model copy = ModelFormat.read(file);
+    Assert.assertNull(copy.getTrainedColumns());
+    Assert.assertEquals(5.0, copy.predict(new double[] { 1, 2 }), 0.0);
+  }
+
+  @Test(expected = DDFException.class)
+  public void testReadNewerVersion() throws Exception {
+    File file = newTempFile();
+    ModelFormat.write(new Model(new ModelTest.LinearModel(1)), file);
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    raf.seek(4);
+    raf.writeShort(ModelFormat.VERSION + 1);
+    raf.close();
+
+    ModelFormat.read(file);
+  }
+
+  @Test(expected = DDFException.class)
+  public void testWriteNotSerializable() throws Exception {
+    ModelFormat.write(new Model(new Object()), newTempFile());
+  }
+
+  @Test
+  public void testRegistryEvictsAndReloads() throws Exception {
+    File directory = Files.createTempDirectory("models").toFile();
+    directory.deleteOnExit();
+    // room for two models of 1000 weights, or of 8000 bytes
+    ModelRegistry registry = new ModelRegistry(16000, directory);
+    IModel unwritable = new Model(new UnwritableModel());
+    registry.add(unwritable);
+
+    Model[] models = new Model[3];
+    for (int i = 0; i < models.length; i++) {
+      double[] weights = new double[1000];
+      weights[0] = i;
+      models[i] = new Model(new WeightsModel(weights));
+      registry.add(models[i]);
+    }
+
+    // the least recently used models were evicted, the unwritable one is kept in memory and counted
+    Assert.assertFalse(registry.isResident(models[0].getName()));
+    Assert.assertFalse(registry.isResident(models[1].getName()));
+    Assert.assertTrue(registry.isResident(models[2].getName()));
+    Assert.assertTrue(registry.isResident(unwritable.getName()));
+    Assert.assertTrue(registry.contains(models[0].getName()));
+    Assert.assertEquals(16000, registry.getResidentBytes());
+
+    IModel reloaded = registry.get(models[0].getName());
+    Assert.assertEquals(models[0].getName(), reloaded.getName());
+    Assert.assertEquals(0.0, reloaded.predict(new double[] { 1 }));
+    Assert.assertTrue(registry.isResident(models[0].getName()));
+    Assert.assertFalse(registry.isResident(models[2].getName()));
+
+    Assert.assertSame(unwritable, registry.get(unwritable.getName()));
+    Assert.assertNull(registry.get("no such model"));
+
+    registry.remove(models[1].getName());
+    Assert.assertFalse(registry.contains(models[1].getName()));
+
+    // a model of unknown size still counts
+    ModelRegistry other = new ModelRegistry(16000, directory);
+    other.add(new Model(new Object()));
+    Assert.assertEquals(ModelRegistry.UNKNOWN_MODEL_BYTES, other.getResidentBytes());
+  }
+
+  @Test
+  public void testRegistryFileNamesAreDistinct() throws Exception {
+    File directory = Files.createTempDirectory("models").toFile();
+    directory.deleteOnExit();
+    // only the most recently used model stays in memory
+    ModelRegistry registry = new ModelRegistry(0, directory);
+
+    String[] names = { "a/b", "a_b", "a.b" };
+    for (int i = 0; i < names.length; i++) {
+      Model model = new Model(new WeightsModel(new double[] { i }));
+      model.setName(names[i]);
+      registry.add(model);
+    }
+    registry.add(new Model(new WeightsModel(new double[] { -1 })));
+
+    for (int i = 0; i < names.length; i++) {
+      Assert.assertFalse(registry.isResident(names[i]));
+      Assert.assertEquals(i, registry.get(names[i]).predict(new double[] { 1 }), 0.0);
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package io.ddf.ml;
+
+
+import io.ddf.exception.DDFException;
+import org.apache.commons.lang.SerializationUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.Serializable;
+
+/**
+ */
+public class ModelTest {
+
+  public static class LinearModel implements Serializable {
+    private double[] mWeights;
+
+    public LinearModel(double... weights) {
+      mWeights = weights;
+    }
+
+    public double predict(double[] point) {
+      double prediction = 0;
+      for (int i = 0; i < mWeights.length; i++) {
+        prediction += mWeights[i] * point[i];
+      }
+      return prediction;
+    }
+  }
+
+  public static class ClassModel implements Serializable {
+    public int predict(double[] point) {
+      return point[0] > 0 ? 1 : 0;
+    }
+  }
+
+  @Test
+  public void testPredict() throws DDFException {
+    Model model = new Model(new LinearModel(1, 2));
+    Assert.assertEquals(5.0, model.predict(new double[] { 1, 2 }), 0.0);
+    Assert.assertEquals(-3.0, model.predict(new double[] { -1, -1 }), 0.0);
+
+    Assert.assertEquals(1.0, new Model(new ClassModel()).predict(new double[] { 3 }), 0.0);
+  }
+
+  @Test
+  public void testBatchPredict() throws DDFException {
+    Model model = new Model(new LinearModel(1, 2));
+    double[] predictions = model.predict(new double[][] { { 1, 2 }, { -1, -1 }, { 0, 0 } });
+    Assert.assertArrayEquals(new double[] { 5, -3, 0 }, predictions, 0.0);
+  }
+
+  @Test
+  public void testPredictAfterSerialization() throws DDFException {
+    Model model = new Model(new LinearModel(1, 2));
+    model.predict(new double[] { 1, 2 });
+
+    Model copy = (Model) SerializationUtils.clone(model);
+    Assert.assertEquals(5.0, copy.predict(new double[] { 1, 2 }), 0.0);
+
+    copy.setRawModel(new LinearModel(2, 2));
+    Assert.assertEquals(6.0, copy.predict(new double[] { 1, 2 }), 0.0);
+  }
+
+  @Test(expected = DDFException.class)
+  public void testPredictWithoutPredictMethod() throws DDFException {
+    new Model("not a model").predict(new double[] { 1 });
+  }
+}
@@ -12,6 +12,7 @@ import io.ddf.spark.datasource.SparkDataSourceManager;
 import io.ddf.spark.etl.DateParseUDF;
 import io.ddf.spark.etl.DateTimeExtractUDF;
 import io.ddf.spark.etl.DateUDF;
+import io.ddf.spark.ml.SparkModelCodecs;
 import io.ddf.spark.util.SparkUtils;
 import io.ddf.spark.util.Utils;
 import org.apache.commons.lang.StringUtils;
@@ -71,6 +72,8 @@ public class SparkDDFManager extends DDFManager {
 
     // register SparkSQL UDFs
     this.registerUDFs();
+    // write the MLlib models of the model registry as arrays of weights
+    SparkModelCodecs.register();
     this.mDataSourceManager = new SparkDataSourceManager(this);
   }
   // TODO: Dynamically load UDFs
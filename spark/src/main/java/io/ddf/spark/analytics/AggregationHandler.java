@@ -0,0 +1,281 @@
+package io.ddf.spark.analytics;
+
+
+import io.ddf.DDF;
+import io.ddf.Factor;
+import io.ddf.analytics.ContingencyTable;
+import io.ddf.content.FactorDictionary;
+import io.ddf.content.FactorLevelCounter;
+import io.ddf.content.Schema.Column;
+import io.ddf.content.Schema.ColumnClass;
+import io.ddf.content.Schema.ColumnType;
+import io.ddf.exception.DDFException;
+import io.ddf.spark.SparkDDF;
+import io.ddf.spark.SparkDDFManager;
+import io.ddf.spark.content.GetMultiFactor;
+import io.ddf.spark.content.SchemaHandler;
+import io.ddf.types.AggregateTypes.AggregateField;
+import io.ddf.types.AggregateTypes.GroupKey;
+import io.ddf.types.AggregateTypes.TypedAggregationResult;
+import org.apache.spark.api.java.function.FlatMapFunction;
+import org.apache.spark.api.java.function.Function2;
+import org.apache.spark.broadcast.Broadcast;
+import org.apache.spark.rdd.RDD;
+import org.apache.spark.sql.DataFrame;
+import org.apache.spark.sql.Row;
+import scala.reflect.ClassTag$;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aggregates on Spark SQL, reading the result DataFrame rows as typed values instead of going through the tab-joined
+ * text rows of {@link io.ddf.DDFManager#sql}
+ */
+public class AggregationHandler extends io.ddf.analytics.AggregationHandler {
+
+  public AggregationHandler(DDF theDDF) {
+    super(theDDF);
+  }
+
+  private DataFrame runSql(String sqlCmd) {
+    return ((SparkDDFManager) this.getManager()).getHiveContext().sql(sqlCmd);
+  }
+
+  @Override
+  protected TypedAggregationResult computeAggregation(String sqlCmd, List<AggregateField> fields) throws DDFException {
+    TypedAggregationResult result = TypedAggregationResult.newInstance(fields);
+    int numFields = fields.size();
+    int numGroupColumns = result.getGroupColumns().size();
+
+    boolean[] isAggregated = new boolean[numFields];
+    for (int i = 0; i < numFields; i++) {
+      isAggregated[i] = fields.get(i).isAggregated();
+    }
+
+    for (Row row : this.runSql(sqlCmd).collect()) {
+      Object[] keyValues = new Object[numGroupColumns];
+      double[] values = new double[numFields - numGroupColumns];
+      int k = 0, v = 0;
+      for (int i = 0; i < numFields; i++) {
+        if (isAggregated[i]) values[v++] = toDouble(row, i);
+        else keyValues[k++] = row.get(i);
+      }
+      result.put(new GroupKey(keyValues), values);
+    }
+    return result;
+  }
+
+  @Override
+  protected double[] computeScalars(String sqlCmd) throws DDFException {
+    Row[] rows = this.runSql(sqlCmd).collect();
+    if (rows.length == 0) {
+      throw new DDFException("Query returned no rows: " + sqlCmd);
+    }
+
+    Row row = rows[0];
+    double[] values = new double[row.length()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = toDouble(row, i);
+    }
+    return values;
+  }
+
+  /**
+   * Counts the co-occurrences of the levels of the given columns in one pass, one sparse {@link ContingencyTable} per
+   * partition, merged on the driver. When all columns are factors with exact levels, the pass is over the
+   * dictionary-encoded factor codes. Otherwise the levels are counted into a local dictionary, leaving the schema as it
+   * is, and the pass is over the rows. If any column has more distinct values than MAX_FACTOR_LEVELS, the table comes
+   * from the exact GROUP BY of {@link io.ddf.analytics.AggregationHandler#contingencyTable(List)}, so that no value is
+   * left out. Rows with a NULL in any column are left out, as in R.
+   */
+  @Override
+  public ContingencyTable contingencyTable(List<String> columns) throws DDFException {
+    SchemaHandler schemaHandler = (SchemaHandler) this.getDDF().getSchemaHandler();
+    String[] columnNames = columns.toArray(new String[columns.size()]);
+    List<Integer> columnIndexes = new ArrayList<Integer>();
+    List<ColumnType> columnTypes = new ArrayList<ColumnType>();
+    boolean hasExactLevels = true;
+    for (String column : columnNames) {
+      Column col = schemaHandler.getColumn(column);
+      if (col == null) {
+        throw new DDFException("Column not found: " + column);
+      }
+      Factor<?> factor = col.getOptionalFactor();
+      if (factor != null && factor.isApproximate()) {
+        return super.contingencyTable(columns);
+      }
+      hasExactLevels &= col.getColumnClass() == ColumnClass.FACTOR && factor != null && factor.getLevels() != null;
+      columnIndexes.add(schemaHandler.getColumnIndex(column));
+      columnTypes.add(col.getType());
+    }
+
+    if (hasExactLevels) {
+      return this.contingencyTableFromCodes(schemaHandler, columnNames);
+    }
+
+    RDD<Object[]> rows = ((SparkDDF) this.getDDF()).getRDD(Object[].class);
+    int maxLevels = SchemaHandler.getMaxFactorLevels(this.getEngine());
+    Map<Integer, FactorLevelCounter> levelCounters = GetMultiFactor.getFactorLevelCounters(rows, columnIndexes,
+        columnTypes, maxLevels, Object[].class);
+    String[][] levels = new String[columnNames.length][];
+    int[] indexes = new int[columnNames.length];
+    for (int d = 0; d < columnNames.length; d++) {
+      FactorLevelCounter levelCounter = levelCounters.get(columnIndexes.get(d));
+      if (levelCounter == null) levelCounter = new FactorLevelCounter(maxLevels);
+      if (levelCounter.isApproximate()) {
+        mLog.info(String.format("Column %s has more than %d distinct values, cross-tabulating with GROUP BY",
+            columnNames[d], maxLevels));
+        return super.contingencyTable(columns);
+      }
+      levels[d] = levelCounter.getLevelCounts().keySet().toArray(new String[0]);
+      Arrays.sort(levels[d]);
+      indexes[d] = columnIndexes.get(d);
+    }
+
+    FactorDictionary dictionary = new FactorDictionary(indexes, levels);
+    int[] positions = new int[columnNames.length];
+    for (int d = 0; d < columnNames.length; d++) {
+      positions[d] = d;
+    }
+    Broadcast<FactorDictionary> broadcast = ((SparkDDFManager) this.getManager()).getSparkContext().broadcast(
+        dictionary, ClassTag$.MODULE$.<FactorDictionary>apply(FactorDictionary.class));
+    try {
+      return rows.toJavaRDD().mapPartitions(new RowContingencyTableMapper(columnNames, positions, broadcast))
+          .reduce(new ContingencyTableReducer());
+    } finally {
+      broadcast.unpersist(false);
+    }
+  }
+
+  private ContingencyTable contingencyTableFromCodes(SchemaHandler schemaHandler, String[] columnNames)
+      throws DDFException {
+    FactorDictionary dictionary = schemaHandler.getSchema().getFactorDictionary();
+    if (!covers(dictionary, schemaHandler, Arrays.asList(columnNames))) {
+      schemaHandler.generateFactorDictionary();
+    }
+    Broadcast<FactorDictionary> broadcast = schemaHandler.getFactorDictionaryBroadcast();
+    dictionary = broadcast.value();
+
+    int[] positions = new int[columnNames.length];
+    for (int d = 0; d < columnNames.length; d++) {
+      positions[d] = dictionary.getPosition(schemaHandler.getColumnIndex(columnNames[d]));
+    }
+
+    @SuppressWarnings("unchecked")
+    RDD<int[]> codes = (RDD<int[]>) this.getDDF().getRepresentationHandler().get(RDD.class, int[].class);
+    if (codes == null) {
+      throw new DDFException("Error getting factor codes");
+    }
+
+    return codes.toJavaRDD().mapPartitions(new ContingencyTableMapper(columnNames, positions, broadcast))
+        .reduce(new ContingencyTableReducer());
+  }
+
+  private static boolean covers(FactorDictionary dictionary, SchemaHandler schemaHandler, List<String> columns) {
+    if (dictionary == null) return false;
+    for (String column : columns) {
+      int columnIndex = schemaHandler.getColumnIndex(column);
+      List<?> levels = schemaHandler.getColumn(column).getOptionalFactor().getLevels();
+      if (!dictionary.hasColumn(columnIndex) || levels == null || dictionary.getNumLevels(columnIndex) != levels.size()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+
+  @SuppressWarnings("serial")
+  private static class ContingencyTableMapper implements FlatMapFunction<Iterator<int[]>, ContingencyTable> {
+    private final String[] mColumnNames;
+    private final int[] mPositions;
+    private final Broadcast<FactorDictionary> mDictionary;
+
+
+    ContingencyTableMapper(String[] columnNames, int[] positions, Broadcast<FactorDictionary> dictionary) {
+      mColumnNames = columnNames;
+      mPositions = positions;
+      mDictionary = dictionary;
+    }
+
+    @Override
+    public Iterable<ContingencyTable> call(Iterator<int[]> rows) throws Exception {
+      FactorDictionary dictionary = mDictionary.value();
+      String[][] levels = new String[mPositions.length][];
+      for (int d = 0; d < mPositions.length; d++) {
+        levels[d] = dictionary.getLevelsAt(mPositions[d]);
+      }
+
+      ContingencyTable table = new ContingencyTable(mColumnNames, levels);
+      int[] cell = new int[mPositions.length];
+      while (rows.hasNext()) {
+        int[] rowCodes = rows.next();
+        for (int d = 0; d < mPositions.length; d++) {
+          cell[d] = rowCodes[mPositions[d]];
+        }
+        table.add(cell);
+      }
+      return Collections.singletonList(table);
+    }
+  }
+
+
+  /**
+   * Encodes the rows with a dictionary of the tabulated columns only, in dictionary order
+   */
+  @SuppressWarnings("serial")
+  private static class RowContingencyTableMapper implements FlatMapFunction<Iterator<Object[]>, ContingencyTable> {
+    private final String[] mColumnNames;
+    private final int[] mPositions;
+    private final Broadcast<FactorDictionary> mDictionary;
+
+
+    RowContingencyTableMapper(String[] columnNames, int[] positions, Broadcast<FactorDictionary> dictionary) {
+      mColumnNames = columnNames;
+      mPositions = positions;
+      mDictionary = dictionary;
+    }
+
+    @Override
+    public Iterable<ContingencyTable> call(Iterator<Object[]> rows) throws Exception {
+      FactorDictionary dictionary = mDictionary.value();
+      String[][] levels = new String[mPositions.length][];
+      for (int d = 0; d < mPositions.length; d++) {
+        levels[d] = dictionary.getLevelsAt(mPositions[d]);
+      }
+
+      ContingencyTable table = new ContingencyTable(mColumnNames, levels);
+      while (rows.hasNext()) {
+        table.add(dictionary.encodeRow(rows.next()));
+      }
+      return Collections.singletonList(table);
+    }
+  }
+
+
+  @SuppressWarnings("serial")
+  private static class ContingencyTableReducer implements Function2<ContingencyTable, ContingencyTable, ContingencyTable> {
+    @Override
+    public ContingencyTable call(ContingencyTable a, ContingencyTable b) throws Exception {
+      return a.merge(b);
+    }
+  }
+
+  private static double toDouble(Row row, int i) throws DDFException {
+    if (row.isNullAt(i)) return Double.NaN;
+
+    Object value = row.get(i);
+    if (value instanceof Number) {
+      return ((Number) value).doubleValue();
+    }
+    try {
+      return Double.parseDouble(value.toString());
+    } catch (NumberFormatException e) {
+      throw new DDFException(String.format("Aggregated value %s is not numeric", value), e);
+    }
+  }
+}
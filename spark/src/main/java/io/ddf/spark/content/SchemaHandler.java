@@ -4,21 +4,30 @@
 package io.ddf.spark.content;
 
 
+import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import io.ddf.DDF;
 import io.ddf.Factor;
+import io.ddf.content.FactorDictionary;
+import io.ddf.content.FactorLevelCounter;
 import io.ddf.content.IHandleRepresentations;
 import io.ddf.content.Schema;
 import io.ddf.content.Schema.Column;
 import io.ddf.content.Schema.ColumnType;
 import io.ddf.exception.DDFException;
+import io.ddf.misc.Config;
+import io.ddf.misc.Config.ConfigConstant;
 import io.ddf.spark.SparkDDF;
+import io.ddf.spark.SparkDDFManager;
 import io.ddf.spark.util.SparkUtils;
+import org.apache.spark.broadcast.Broadcast;
 import org.apache.spark.rdd.RDD;
 import org.apache.spark.sql.DataFrame;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import scala.reflect.ClassTag$;
 
 
 public class SchemaHandler extends io.ddf.content.SchemaHandler {
@@ -27,6 +36,10 @@ public class SchemaHandler extends io.ddf.content.SchemaHandler {
     super(theDDF);
   }
 
+  public static final int DEFAULT_MAX_FACTOR_LEVELS = 10000;
+
+  private Broadcast<FactorDictionary> mFactorDictionaryBroadcast;
+
   public static Schema getSchemaFromDataFrame(DataFrame rdd) {
     return SparkUtils.schemaFromDataFrame(rdd);
   }
@@ -62,12 +75,16 @@ public class SchemaHandler extends io.ddf.content.SchemaHandler {
   public void computeFactorLevelsAndLevelCounts() throws DDFException {
     List<Integer> columnIndexes = new ArrayList<Integer>();
     List<Schema.ColumnType> columnTypes = new ArrayList<Schema.ColumnType>();
+    boolean hasKnownLevelsOnly = false;
 
     for (Column col : this.getColumns()) {
       if (col.getColumnClass() == Schema.ColumnClass.FACTOR) {
         Factor<?> colFactor = col.getOptionalFactor();
 
-        if (colFactor == null || colFactor.getLevelCounts() == null || colFactor.getLevels() == null) {
+        if (colFactor != null && colFactor.getLevels() != null && colFactor.getLevelCounts() == null) {
+          // levels are already known, these can be counted on the factor codes
+          hasKnownLevelsOnly = true;
+        } else if (colFactor == null || colFactor.getLevelCounts() == null || colFactor.getLevels() == null) {
           if (colFactor == null) {
             colFactor = this.setAsFactor(col.getName());
           }
@@ -78,40 +95,197 @@ public class SchemaHandler extends io.ddf.content.SchemaHandler {
       }
     }
 
-    Map<Integer, Map<String, Integer>> listLevelCounts;
+    if (hasKnownLevelsOnly) {
+      this.computeLevelCountsFromFactorCodes();
+    }
+
+    Map<Integer, FactorLevelCounter> levelCounters;
     IHandleRepresentations repHandler = this.getDDF().getRepresentationHandler();
     if (columnIndexes.size() > 0) {
+      int maxLevels = getMaxFactorLevels(this.getEngine());
       try {
         if (repHandler.has(RDD.class, Object[].class)) {
           RDD<Object[]> rdd = ((SparkDDF) this.getDDF()).getRDD(Object[].class);
-          listLevelCounts = GetMultiFactor.getFactorCounts(rdd,
-              columnIndexes, columnTypes, Object[].class);
+          levelCounters = GetMultiFactor.getFactorLevelCounters(rdd,
+              columnIndexes, columnTypes, maxLevels, Object[].class);
         } else {
           RDD<Object[]> rdd = ((SparkDDF) this.getDDF()).getRDD(Object[].class);
           if (rdd == null) {
             throw new DDFException("RDD is null");
           }
-          listLevelCounts = GetMultiFactor.getFactorCounts(rdd, columnIndexes, columnTypes, Object[].class);
+          levelCounters = GetMultiFactor.getFactorLevelCounters(rdd, columnIndexes, columnTypes, maxLevels,
+              Object[].class);
         }
       } catch (DDFException e) {
         throw new DDFException("Error getting factor level counts", e);
       }
 
-      if (listLevelCounts == null) {
+      if (levelCounters == null) {
         throw new DDFException("Error getting factor levels counts");
       }
 
       for (Integer colIndex : columnIndexes) {
         Column column = this.getColumn(this.getColumnName(colIndex));
-        Map<String, Integer> levelCounts = listLevelCounts.get(colIndex);
-        if(levelCounts != null) {
+        FactorLevelCounter levelCounter = levelCounters.get(colIndex);
+        if(levelCounter != null) {
           Factor<?> factor = column.getOptionalFactor();
-          List<String> levels = new ArrayList<String>(levelCounts.keySet());
-          factor.setLevelCounts(levelCounts);
-          factor.setLevels(levels, false);
+          levelCounter.applyTo(factor);
+          if (factor.isApproximate()) {
+            mLog.info(String.format("Column %s has about %d distinct values, keeping its %d most frequent as levels",
+                column.getName(), factor.getEstimatedNumLevels(), maxLevels));
+          }
         }
       }
     }
   }
-}
 
+  /**
+   * Updates the levels and level counts of the factors of this DDF with the rows of batch, appended to it, counting
+   * only the appended rows. Existing levels keep their codes and new ones come after them, up to MAX_FACTOR_LEVELS
+   * levels, beyond which new values are counted under {@link Factor#OTHER_LEVEL}. Factors whose levels have not been
+   * counted yet are left to be counted on next use.
+   */
+  public void appendFactorLevels(DDF batch) throws DDFException {
+    List<Integer> columnIndexes = new ArrayList<Integer>();
+    List<Schema.ColumnType> columnTypes = new ArrayList<Schema.ColumnType>();
+    for (Column col : this.getColumns()) {
+      Factor<?> factor = col.getOptionalFactor();
+      if (col.getColumnClass() == Schema.ColumnClass.FACTOR && factor != null && factor.getLevels() != null
+          && factor.getLevelCounts() != null) {
+        columnIndexes.add(this.getColumnIndex(col.getName()));
+        columnTypes.add(col.getType());
+      }
+    }
+    if (columnIndexes.isEmpty()) return;
+
+    int maxLevels = getMaxFactorLevels(this.getEngine());
+    RDD<Object[]> rows = ((SparkDDF) batch).getRDD(Object[].class);
+    Map<Integer, FactorLevelCounter> levelCounters = GetMultiFactor.getFactorLevelCounters(rows, columnIndexes,
+        columnTypes, maxLevels, Object[].class);
+    for (Integer colIndex : columnIndexes) {
+      FactorLevelCounter levelCounter = levelCounters.get(colIndex);
+      if (levelCounter != null) {
+        appendLevels(this.getColumn(this.getColumnName(colIndex)).getOptionalFactor(), levelCounter, maxLevels);
+      }
+    }
+
+    if (this.getSchema().getFactorDictionary() != null) {
+      // codes of the new levels are not in the dictionary yet
+      this.generateFactorDictionary();
+    }
+  }
+
+  static void appendLevels(Factor<?> factor, FactorLevelCounter appended, int maxLevels) throws DDFException {
+    Map<String, Integer> levelCounts = new LinkedHashMap<String, Integer>(factor.getLevelCounts());
+    List<String> levels = new ArrayList<String>(factor.getLevels());
+    // the existing levels, the other level included, keep their position and so their code, new ones come after them
+    boolean hadOtherLevel = levels.contains(Factor.OTHER_LEVEL);
+    int numLevels = hadOtherLevel ? levels.size() - 1 : levels.size();
+    Integer previousOtherCount = levelCounts.get(Factor.OTHER_LEVEL);
+    long otherCount = appended.getOtherCount();
+    // the appended levels come most frequent first, so these are the new levels kept when reaching maxLevels
+    for (Map.Entry<String, Integer> entry : appended.getLevelCounts().entrySet()) {
+      Integer count = levelCounts.get(entry.getKey());
+      if (Factor.OTHER_LEVEL.equals(entry.getKey())) {
+        otherCount += entry.getValue();
+      } else if (count != null) {
+        levelCounts.put(entry.getKey(), (int) Math.min((long) count + entry.getValue(), Integer.MAX_VALUE));
+      } else if (numLevels < maxLevels) {
+        levels.add(entry.getKey());
+        levelCounts.put(entry.getKey(), entry.getValue());
+        numLevels++;
+      } else {
+        otherCount += entry.getValue();
+      }
+    }
+
+    long totalOtherCount = otherCount + (previousOtherCount == null ? 0 : previousOtherCount);
+    if (totalOtherCount > 0) {
+      if (!hadOtherLevel) levels.add(Factor.OTHER_LEVEL);
+      levelCounts.put(Factor.OTHER_LEVEL, (int) Math.min(totalOtherCount, Integer.MAX_VALUE));
+    }
+
+    factor.setLevelCounts(levelCounts);
+    factor.setLevels(levels, factor.isOrdered());
+    factor.setApproximate(factor.isApproximate() || otherCount > 0);
+    factor.setOtherLevelCount(factor.getOtherLevelCount() + otherCount);
+    factor.setEstimatedNumLevels(factor.isApproximate() ? Math.max(levels.size(), Math.max(
+        factor.getEstimatedNumLevels(), appended.getEstimatedNumLevels())) : levels.size());
+  }
+
+  /**
+   * @return the maximum number of levels counted exactly per factor column, from the MAX_FACTOR_LEVELS setting
+   */
+  public static int getMaxFactorLevels(String engine) {
+    String value = Config.getValueWithGlobalDefault(engine, ConfigConstant.FIELD_MAX_FACTOR_LEVELS);
+    try {
+      return Strings.isNullOrEmpty(value) ? DEFAULT_MAX_FACTOR_LEVELS : Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      return DEFAULT_MAX_FACTOR_LEVELS;
+    }
+  }
+
+  /**
+   * Counts the levels of every factor column whose levels are known but whose counts are not, by scanning the
+   * dictionary-encoded factor codes rather than the string values.
+   */
+  private void computeLevelCountsFromFactorCodes() throws DDFException {
+    FactorDictionary dictionary = this.generateFactorDictionary();
+    if (dictionary.isEmpty()) return;
+
+    @SuppressWarnings("unchecked")
+    RDD<int[]> codes = (RDD<int[]>) this.getDDF().getRepresentationHandler().get(RDD.class, int[].class);
+    if (codes == null) {
+      throw new DDFException("Error getting factor codes");
+    }
+
+    Map<Integer, Map<String, Integer>> levelCounts = GetMultiFactor.getFactorCodeCounts(codes, dictionary);
+    for (int columnIndex : dictionary.getColumnIndexes()) {
+      Factor<?> factor = this.getColumn(this.getColumnName(columnIndex)).getOptionalFactor();
+      if (factor.getLevelCounts() == null) {
+        factor.setLevelCounts(levelCounts.get(columnIndex));
+      }
+    }
+  }
+
+  /**
+   * Regenerates the {@link FactorDictionary} of this DDF's schema. Factor codes encoded with a previous dictionary are
+   * dropped, so that they get re-encoded on next use.
+   *
+   * @return the new dictionary
+   * @throws DDFException
+   */
+  public FactorDictionary generateFactorDictionary() throws DDFException {
+    FactorDictionary dictionary = this.getSchema().generateFactorDictionary();
+    this.getDDF().getRepresentationHandler().remove(RDD.class, int[].class);
+    return dictionary;
+  }
+
+  @Override
+  public void generateDummyCoding() throws NumberFormatException, DDFException {
+    super.generateDummyCoding();
+    // dummy coding has regenerated the dictionary, so previously encoded factor codes are stale
+    this.getDDF().getRepresentationHandler().remove(RDD.class, int[].class);
+  }
+
+  /**
+   * @return the broadcast of the current {@link FactorDictionary}, generating the dictionary if necessary. The same
+   * broadcast is reused as long as the dictionary does not change.
+   * @throws DDFException
+   */
+  public synchronized Broadcast<FactorDictionary> getFactorDictionaryBroadcast() throws DDFException {
+    FactorDictionary dictionary = this.getSchema().getFactorDictionary();
+    if (dictionary == null) {
+      dictionary = this.generateFactorDictionary();
+    }
+
+    if (mFactorDictionaryBroadcast == null || mFactorDictionaryBroadcast.value() != dictionary) {
+      if (mFactorDictionaryBroadcast != null) {
+        mFactorDictionaryBroadcast.unpersist(false);
+      }
+      mFactorDictionaryBroadcast = ((SparkDDFManager) this.getManager()).getSparkContext()
+          .broadcast(dictionary, ClassTag$.MODULE$.<FactorDictionary>apply(FactorDictionary.class));
+    }
+    return mFactorDictionaryBroadcast;
+  }
+}
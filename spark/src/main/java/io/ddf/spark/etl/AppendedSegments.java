@@ -0,0 +1,178 @@
+package io.ddf.spark.etl;
+
+
+import io.ddf.content.Representation;
+import io.ddf.spark.SparkDDF;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.sql.DataFrame;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SQLContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The rows of a DDF that has been appended to: its original data, left as it was, followed by one segment per
+ * appended batch. Each segment is cached on its own and the DDF's DataFrame is the union of the base and the segments,
+ * which reads the cached partitions of each, so an append only caches the batch.
+ * <p/>
+ * Many small segments make many small partitions, so once there are more than the compaction threshold, the segments
+ * are coalesced into one in the background. The DDF reads the old segments until the compacted one is cached, and the
+ * compacted segment is only installed if the DDF has not been changed in some other way since the last append.
+ */
+class AppendedSegments {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AppendedSegments.class);
+
+  private static final ExecutorService COMPACTION_EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "ddf-segment-compaction");
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  private final SparkDDF mDDF;
+  private final SQLContext mSqlContext;
+  private final DataFrame mBase;
+  private final List<DataFrame> mSegments = new ArrayList<DataFrame>();
+  private final int mCompactionThreshold;
+  private boolean mIsCompacting = false;
+  private boolean mIsDiscarded = false;
+  // the data version of the DDF and the DataFrame it reads, as of the last install
+  private long mDataVersion;
+  private DataFrame mInstalled;
+
+
+  AppendedSegments(SparkDDF ddf, SQLContext sqlContext, DataFrame base, int compactionThreshold) {
+    mDDF = ddf;
+    mSqlContext = sqlContext;
+    mBase = base;
+    mCompactionThreshold = compactionThreshold;
+    mDataVersion = ddf.getMetaDataHandler().getDataVersion();
+  }
+
+  /**
+   * Caches the batch as a new segment, with the column names of the base, makes the DDF read it after the existing
+   * rows, and increases the data version of the DDF
+   *
+   * @return the new data version of the DDF
+   */
+  synchronized long append(DataFrame batch) {
+    DataFrame segment = mSqlContext.createDataFrame(batch.javaRDD(), mBase.schema());
+    segment.persist();
+    mSegments.add(segment);
+    this.install();
+    mDDF.getMetaDataHandler().increaseDataVersion();
+    mDataVersion = mDDF.getMetaDataHandler().getDataVersion();
+
+    if (!mIsCompacting && mSegments.size() > mCompactionThreshold) {
+      mIsCompacting = true;
+      COMPACTION_EXECUTOR.submit(new Compaction(new ArrayList<DataFrame>(mSegments)));
+    }
+    return mDataVersion;
+  }
+
+  /**
+   * Called when the DDF no longer reads these segments: uncaches them, and keeps a running compaction from installing
+   * them back
+   */
+  synchronized void discard() {
+    mIsDiscarded = true;
+    for (DataFrame segment : mSegments) {
+      segment.unpersist(false);
+    }
+    mSegments.clear();
+  }
+
+  /**
+   * @return whether the DDF still reads the union of the last install, i.e., it was not changed in some other way
+   */
+  private boolean isInstalled() {
+    if (mIsDiscarded || mDDF.getMetaDataHandler().getDataVersion() != mDataVersion) return false;
+    Representation rep = mDDF.getRepresentationHandler().getAllRepresentations()
+        .get(Representation.typeSpecsToString(DataFrame.class));
+    return rep != null && rep.getValue() == mInstalled;
+  }
+
+  synchronized int getNumSegments() {
+    return mSegments.size();
+  }
+
+  /**
+   * Replaces the representations of the DDF with the union of the base and the segments, and re-registers its table on
+   * the union. The representations are swapped rather than reset, since resetting would uncache the base.
+   */
+  private void install() {
+    DataFrame union = mBase;
+    for (DataFrame segment : mSegments) {
+      union = union.unionAll(segment);
+    }
+
+    Map<String, Representation> reps = new HashMap<String, Representation>();
+    Representation rep = new Representation(union, DataFrame.class);
+    reps.put(rep.getTypeSpecsString(), rep);
+    mDDF.getRepresentationHandler().setRepresentations(reps);
+    union.registerTempTable(mDDF.getTableName());
+    mInstalled = union;
+  }
+
+  /**
+   * Coalesces the given segments, the first ones of the DDF, into one segment with as many partitions as a segment
+   * has on average
+   */
+  private class Compaction implements Runnable {
+    private final List<DataFrame> mCompacted;
+
+
+    Compaction(List<DataFrame> compacted) {
+      mCompacted = compacted;
+    }
+
+    @Override
+    public void run() {
+      try {
+        DataFrame union = mCompacted.get(0);
+        for (int i = 1; i < mCompacted.size(); i++) {
+          union = union.unionAll(mCompacted.get(i));
+        }
+        int numPartitions = Math.max(1, union.rdd().partitions().length / mCompacted.size());
+        JavaRDD<Row> rows = union.javaRDD().coalesce(numPartitions);
+        DataFrame segment = mSqlContext.createDataFrame(rows, mBase.schema());
+        segment.persist();
+        // cache it before the DDF reads it
+        segment.count();
+
+        synchronized (AppendedSegments.this) {
+          if (!AppendedSegments.this.isInstalled()) {
+            // the DDF was changed since, installing the segments would undo that change
+            segment.unpersist(false);
+            return;
+          }
+          // segments are only ever added after these, so they are still the first ones
+          mSegments.subList(0, mCompacted.size()).clear();
+          mSegments.add(0, segment);
+          AppendedSegments.this.install();
+        }
+        for (DataFrame compacted : mCompacted) {
+          compacted.unpersist(false);
+        }
+        LOG.info(String.format("Compacted %d segments of %s", mCompacted.size(), mDDF.getTableName()));
+      } catch (Exception e) {
+        LOG.error(String.format("Error while compacting segments of %s", mDDF.getTableName()), e);
+      } finally {
+        synchronized (AppendedSegments.this) {
+          mIsCompacting = false;
+        }
+      }
+    }
+  }
+}
@@ -1,42 +1,87 @@
 package io.ddf.spark.etl;
 
 
+import com.google.common.base.Strings;
 import io.ddf.DDF;
+import io.ddf.analytics.AStatisticsSupporter;
+import io.ddf.content.IHandleViews;
 import io.ddf.content.Schema;
 import io.ddf.content.Schema.Column;
 import io.ddf.etl.IHandleJoins;
+import io.ddf.etl.Types.JoinStrategy;
 import io.ddf.etl.Types.JoinType;
 import io.ddf.exception.DDFException;
 import io.ddf.misc.ADDFFunctionalGroupHandler;
+import io.ddf.misc.Config;
+import io.ddf.misc.Config.ConfigConstant;
+import io.ddf.spark.SparkDDF;
+import io.ddf.spark.SparkDDFManager;
+import io.ddf.spark.content.SchemaHandler;
 import io.ddf.spark.util.SparkUtils;
+import org.apache.spark.rdd.RDD;
 import org.apache.spark.sql.DataFrame;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.hive.HiveContext;
+import org.apache.spark.storage.RDDInfo;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 
+/**
+ * Joins DDFs with a strategy picked from the estimated size of each side, unless the caller gives one:
+ * <ul>
+ * <li>BROADCAST_HASH when the side that may be hashed is below BROADCAST_JOIN_THRESHOLD bytes, so the large side is
+ * never shuffled</li>
+ * <li>SHUFFLE_HASH otherwise, both sides being hash-partitioned on their join keys into spark.sql.shuffle.partitions
+ * partitions</li>
+ * </ul>
+ * DDFs hash-partitioned on their join keys with {@link IHandleViews#repartitionBy} are joined partition by partition
+ * (CO_PARTITIONED) before any of these are considered. SORT_MERGE is not available on this version of Spark SQL.
+ * These joins run at the RDD level, without changing the settings of the shared HiveContext. Keys of types that cannot
+ * be matched that way, e.g., a DECIMAL with a DOUBLE, are joined by Spark SQL, and the result records the strategy
+ * Spark SQL planned.
+ * Sizes come from the storage of cached DDFs when available, or from a row count bounded by the broadcast threshold
+ * divided by an estimated row width, so a DDF too large to broadcast is only scanned until that is known.
+ */
 public class JoinHandler extends ADDFFunctionalGroupHandler implements IHandleJoins {
 
+  public static final long DEFAULT_BROADCAST_JOIN_THRESHOLD = 10L * 1024 * 1024;
+
+  static final String SHUFFLE_PARTITIONS_CONF = "spark.sql.shuffle.partitions";
+  static final int DEFAULT_SHUFFLE_PARTITIONS = 200;
+
+  public static final int DEFAULT_APPEND_COMPACTION_THRESHOLD = 8;
+
+  // rows appended to this DDF, once anything is, and the data version they make up
+  private AppendedSegments mSegments;
+  private long mSegmentsVersion;
+
 
   public JoinHandler(DDF theDDF) {
     super(theDDF);
-    // TODO Auto-generated constructor stub
   }
 
   @Override
   public DDF join(DDF anotherDDF, JoinType joinType, List<String> byColumns, List<String> byLeftColumns,
       List<String> byRightColumns) throws DDFException {
+    return this.join(anotherDDF, joinType, byColumns, byLeftColumns, byRightColumns, JoinStrategy.AUTO);
+  }
+
+  @Override
+  public DDF join(DDF anotherDDF, JoinType joinType, List<String> byColumns, List<String> byLeftColumns,
+      List<String> byRightColumns, JoinStrategy strategy) throws DDFException {
 
     String leftTableName = getDDF().getTableName();
     String rightTableName = anotherDDF.getTableName();
     List<String> rightColumns = anotherDDF.getColumnNames();
     List<String> leftColumns = getDDF().getColumnNames();
-    
-    HashSet<String> rightColumnNameSet = new HashSet<String>();
-    for (String colname : rightColumns) {
-      rightColumnNameSet.add(colname);
-    }
 
-    String joinSqlCommand = "SELECT lt.*,%s FROM %s lt %s JOIN %s rt ON (%s)";
+    LinkedHashSet<String> rightColumnNameSet = new LinkedHashSet<String>(rightColumns);
+    List<String> leftKeys = new ArrayList<String>();
+    List<String> rightKeys = new ArrayList<String>();
+
+    String joinSqlCommand = "SELECT lt.*%s FROM %s lt %s JOIN %s rt ON (%s)";
     String joinLeftSemiCommand = "SELECT lt.* FROM %s lt %s JOIN %s rt ON (%s)";
     String joinConditionString = "";
 
@@ -44,6 +89,8 @@ public class JoinHandler extends ADDFFunctionalGroupHandler implements IHandleJo
       for (int i = 0; i < byColumns.size(); i++) {
         joinConditionString += String.format("lt.%s = rt.%s AND ", byColumns.get(i), byColumns.get(i));
         rightColumnNameSet.remove(byColumns.get(i));
+        leftKeys.add(byColumns.get(i));
+        rightKeys.add(byColumns.get(i));
       }
     } else {
       if (byLeftColumns != null && byRightColumns != null && byLeftColumns.size() == byRightColumns.size()
@@ -51,6 +98,8 @@ public class JoinHandler extends ADDFFunctionalGroupHandler implements IHandleJo
         for (int i = 0; i < byLeftColumns.size(); i++) {
           joinConditionString += String.format("lt.%s = rt.%s AND ", byLeftColumns.get(i), byRightColumns.get(i));
           rightColumnNameSet.remove(byRightColumns.get(i));
+          leftKeys.add(byLeftColumns.get(i));
+          rightKeys.add(byRightColumns.get(i));
         }
       } else {
         throw new DDFException(String.format("Left and right column specifications are missing or not compatible"),
@@ -60,18 +109,18 @@ public class JoinHandler extends ADDFFunctionalGroupHandler implements IHandleJo
     joinConditionString = joinConditionString.substring(0, joinConditionString.length() - 5); //remove " AND " at the end
 
     // we will not select column that is already in left table
+    List<String> rightOutputColumns = new ArrayList<String>(rightColumnNameSet);
+    List<String> rightOutputNames = new ArrayList<String>();
     String rightSelectColumns = "";
-    
-    for (String colname : leftColumns) {
-      if (rightColumnNameSet.contains(colname)) {
-        rightColumnNameSet.remove(colname);
-        rightColumnNameSet.add(String.format("%s AS r_%s", colname,colname));
+    for (String colname : rightOutputColumns) {
+      if (leftColumns.contains(colname)) {
+        rightOutputNames.add("r_" + colname);
+        rightSelectColumns += String.format(",rt.%s AS r_%s", colname, colname);
+      } else {
+        rightOutputNames.add(colname);
+        rightSelectColumns += String.format(",rt.%s", colname);
       }
     }
-    for (String name : rightColumnNameSet) {
-      rightSelectColumns += String.format("rt.%s,", name);
-    }
-    rightSelectColumns = rightSelectColumns.substring(0, rightSelectColumns.length() - 1); // remove "," at the end
 
     try {
       if (joinType == JoinType.LEFTSEMI) {
@@ -85,16 +134,354 @@ public class JoinHandler extends ADDFFunctionalGroupHandler implements IHandleJo
       throw new DDFException(String.format("Error while joinType.getStringRepr()"), null);
     }
 
-    mLog.info("Join SQL command: " +joinSqlCommand);
+    DDF rightDDF = anotherDDF;
+    Boolean buildLeft = null;
+    if (strategy == null) strategy = JoinStrategy.AUTO;
+    boolean coPartitioned = this.isCoPartitioned(this.getDDF(), leftKeys, rightDDF, rightKeys);
+    if (strategy == JoinStrategy.SORT_MERGE) {
+      throw new DDFException("Sort-merge joins are not supported by this version of Spark SQL, use SHUFFLE_HASH");
+    }
+    if (strategy == JoinStrategy.CO_PARTITIONED && !coPartitioned) {
+      throw new DDFException(String.format("%s and %s are not partitioned the same way on %s and %s", leftTableName,
+          rightTableName, leftKeys, rightKeys));
+    }
+    if (strategy == JoinStrategy.AUTO && coPartitioned) {
+      strategy = JoinStrategy.CO_PARTITIONED;
+    }
+    boolean keysMatch = this.haveSameKeyTypes(this.getDDF(), leftKeys, rightDDF, rightKeys);
+    long leftSize = -1;
+    long rightSize = -1;
+    if (strategy == JoinStrategy.AUTO || strategy == JoinStrategy.BROADCAST_HASH) {
+      long broadcastThreshold = getThreshold(ConfigConstant.FIELD_BROADCAST_JOIN_THRESHOLD,
+          DEFAULT_BROADCAST_JOIN_THRESHOLD);
+      // nothing above the broadcast threshold changes the strategy, so no DDF is scanned further than that
+      leftSize = this.estimateSizeInBytes(this.getDDF(), broadcastThreshold);
+      rightSize = this.estimateSizeInBytes(rightDDF, broadcastThreshold);
+      mLog.info(String.format("Estimated join sizes: %s = %d bytes, %s = %d bytes", leftTableName, leftSize,
+          rightTableName, rightSize));
+
+      boolean canBuildLeft = keysMatch && BroadcastHashJoin.canBuild(joinType, true);
+      boolean canBuildRight = keysMatch && BroadcastHashJoin.canBuild(joinType, false);
+      if (strategy == JoinStrategy.BROADCAST_HASH) {
+        if (!canBuildLeft && !canBuildRight) {
+          throw new DDFException(String.format("Cannot broadcast either side of a %s join on %s", joinType, leftKeys));
+        }
+        buildLeft = canBuildLeft && (!canBuildRight || leftSize < rightSize);
+      } else if (canBuildRight && rightSize <= broadcastThreshold && (!canBuildLeft || rightSize <= leftSize)) {
+        strategy = JoinStrategy.BROADCAST_HASH;
+        buildLeft = false;
+      } else if (canBuildLeft && leftSize <= broadcastThreshold) {
+        strategy = JoinStrategy.BROADCAST_HASH;
+        buildLeft = true;
+      } else {
+        strategy = JoinStrategy.SHUFFLE_HASH;
+      }
+    }
+
+    if (strategy == JoinStrategy.CO_PARTITIONED || strategy == JoinStrategy.SHUFFLE_HASH) {
+      // each partition of the smaller side is hashed, the sizes are only looked up, as neither side is broadcast
+      if (leftSize < 0) leftSize = this.getKnownSizeInBytes(this.getDDF());
+      if (rightSize < 0) rightSize = this.getKnownSizeInBytes(rightDDF);
+      buildLeft = leftSize < rightSize;
+    }
+
+    DDF resultDDF;
+    if (strategy == JoinStrategy.CO_PARTITIONED) {
+      mLog.info(String.format("Co-partitioned join of %s and %s, hashing %s", leftTableName, rightTableName,
+          buildLeft ? leftTableName : rightTableName));
+      resultDDF = this.coPartitionedJoin(rightDDF, joinType, leftKeys, rightKeys, rightOutputColumns,
+          rightOutputNames, buildLeft);
+    } else if (strategy == JoinStrategy.BROADCAST_HASH) {
+      mLog.info(String.format("Broadcast hash join of %s and %s, broadcasting %s", leftTableName, rightTableName,
+          buildLeft ? leftTableName : rightTableName));
+      resultDDF = this.broadcastHashJoin(rightDDF, joinType, leftKeys, rightKeys, rightOutputColumns, rightOutputNames,
+          buildLeft);
+    } else if (keysMatch) {
+      mLog.info(String.format("Shuffle hash join of %s and %s, hashing %s", leftTableName, rightTableName,
+          buildLeft ? leftTableName : rightTableName));
+      resultDDF = this.shuffleHashJoin(rightDDF, joinType, leftKeys, rightKeys, rightOutputColumns, rightOutputNames,
+          buildLeft);
+    } else {
+      mLog.info(String.format("Join SQL command: %s", joinSqlCommand));
+      resultDDF = this.sql2ddf(joinSqlCommand);
+      strategy = getPlannedStrategy(resultDDF);
+    }
+    resultDDF.getMetaDataHandler().setProperty(JOIN_STRATEGY_PROPERTY, strategy.name());
+    return resultDDF;
+  }
+
+  private DDF broadcastHashJoin(DDF rightDDF, JoinType joinType, List<String> leftKeys, List<String> rightKeys,
+      List<String> rightOutputColumns, List<String> rightOutputNames, boolean buildLeft) throws DDFException {
+    DataFrame left = (DataFrame) this.getDDF().getRepresentationHandler().get(DataFrame.class);
+    DataFrame right = (DataFrame) rightDDF.getRepresentationHandler().get(DataFrame.class);
+
+    int[] rightOutput = new int[rightOutputColumns.size()];
+    for (int i = 0; i < rightOutput.length; i++) {
+      rightOutput[i] = rightDDF.getColumnIndex(rightOutputColumns.get(i));
+    }
+    HiveContext hiveContext = ((SparkDDFManager) this.getManager()).getHiveContext();
+    DataFrame joined = BroadcastHashJoin.join(hiveContext, left, right, columnIndexes(this.getDDF(), leftKeys),
+        columnIndexes(rightDDF, rightKeys), joinType, rightOutput,
+        rightOutputNames.toArray(new String[rightOutputNames.size()]), buildLeft);
+
+    Schema schema = SparkUtils.schemaFromDataFrame(joined);
+    schema.setTableName(this.getDDF().getSchemaHandler().newTableName());
+    return this.getManager().newDDF(this.getManager(), joined, new Class<?>[] { DataFrame.class }, null, schema);
+  }
+
+  /**
+   * Hash-partitions both sides on their join keys, then joins them partition by partition as a co-partitioned join
+   */
+  private DDF shuffleHashJoin(DDF rightDDF, JoinType joinType, List<String> leftKeys, List<String> rightKeys,
+      List<String> rightOutputColumns, List<String> rightOutputNames, boolean buildLeft) throws DDFException {
+    DataFrame left = (DataFrame) this.getDDF().getRepresentationHandler().get(DataFrame.class);
+    DataFrame right = (DataFrame) rightDDF.getRepresentationHandler().get(DataFrame.class);
+    HiveContext hiveContext = ((SparkDDFManager) this.getManager()).getHiveContext();
+    int numPartitions = DEFAULT_SHUFFLE_PARTITIONS;
+    try {
+      numPartitions = Integer.parseInt(hiveContext.getConf(SHUFFLE_PARTITIONS_CONF,
+          String.valueOf(DEFAULT_SHUFFLE_PARTITIONS)).trim());
+    } catch (NumberFormatException e) {
+      mLog.warn(String.format("Invalid %s, using %d partitions", SHUFFLE_PARTITIONS_CONF, numPartitions));
+    }
+
+    int[] leftKeyIndexes = columnIndexes(this.getDDF(), leftKeys);
+    int[] rightKeyIndexes = columnIndexes(rightDDF, rightKeys);
+    RDD<Row> leftRows = CoPartitionedJoin.hashPartition(left.rdd(), leftKeyIndexes, numPartitions);
+    RDD<Row> rightRows = CoPartitionedJoin.hashPartition(right.rdd(), rightKeyIndexes, numPartitions);
+
+    int[] rightOutput = new int[rightOutputColumns.size()];
+    for (int i = 0; i < rightOutput.length; i++) {
+      rightOutput[i] = rightDDF.getColumnIndex(rightOutputColumns.get(i));
+    }
+    DataFrame joined = CoPartitionedJoin.join(hiveContext, left, leftRows, right, rightRows, leftKeyIndexes,
+        rightKeyIndexes, joinType, rightOutput, rightOutputNames.toArray(new String[rightOutputNames.size()]),
+        buildLeft);
+
+    Schema schema = SparkUtils.schemaFromDataFrame(joined);
+    schema.setTableName(this.getDDF().getSchemaHandler().newTableName());
+    return this.getManager().newDDF(this.getManager(), joined, new Class<?>[] { DataFrame.class }, null, schema);
+  }
+
+  private DDF coPartitionedJoin(DDF rightDDF, JoinType joinType, List<String> leftKeys, List<String> rightKeys,
+      List<String> rightOutputColumns, List<String> rightOutputNames, boolean buildLeft) throws DDFException {
+    DataFrame left = (DataFrame) this.getDDF().getRepresentationHandler().get(DataFrame.class);
+    DataFrame right = (DataFrame) rightDDF.getRepresentationHandler().get(DataFrame.class);
+    @SuppressWarnings("unchecked")
+    RDD<Row> leftRows = (RDD<Row>) this.getDDF().getRepresentationHandler().get(RDD.class, Row.class);
+    @SuppressWarnings("unchecked")
+    RDD<Row> rightRows = (RDD<Row>) rightDDF.getRepresentationHandler().get(RDD.class, Row.class);
+
+    int[] rightOutput = new int[rightOutputColumns.size()];
+    for (int i = 0; i < rightOutput.length; i++) {
+      rightOutput[i] = rightDDF.getColumnIndex(rightOutputColumns.get(i));
+    }
+    HiveContext hiveContext = ((SparkDDFManager) this.getManager()).getHiveContext();
+    DataFrame joined = CoPartitionedJoin.join(hiveContext, left, leftRows, right, rightRows,
+        columnIndexes(this.getDDF(), leftKeys), columnIndexes(rightDDF, rightKeys), joinType, rightOutput,
+        rightOutputNames.toArray(new String[rightOutputNames.size()]), buildLeft);
+
+    Schema schema = SparkUtils.schemaFromDataFrame(joined);
+    schema.setTableName(this.getDDF().getSchemaHandler().newTableName());
+    return this.getManager().newDDF(this.getManager(), joined, new Class<?>[] { DataFrame.class }, null, schema);
+  }
+
+  /**
+   * @return whether both DDFs were hash-partitioned, by {@link io.ddf.content.IHandleViews#repartitionBy}, on exactly
+   * their join keys into the same number of partitions, and still hold these partitioned rows
+   */
+  boolean isCoPartitioned(DDF left, List<String> leftKeys, DDF right, List<String> rightKeys) {
+    int leftPartitions = getNumPartitions(left, leftKeys);
+    return leftPartitions > 0 && leftPartitions == getNumPartitions(right, rightKeys)
+        && this.haveSameKeyTypes(left, leftKeys, right, rightKeys);
+  }
+
+  /**
+   * @return the number of partitions of the DDF if it is hash-partitioned on keys, or -1
+   */
+  private int getNumPartitions(DDF ddf, List<String> keys) {
+    String columns = ddf.getMetaDataHandler().getProperty(IHandleViews.PARTITION_COLUMNS_PROPERTY);
+    String numPartitions = ddf.getMetaDataHandler().getProperty(IHandleViews.NUM_PARTITIONS_PROPERTY);
+    if (columns == null || numPartitions == null || !ddf.getRepresentationHandler().has(RDD.class, Row.class)) {
+      return -1;
+    }
+
+    String[] partitionColumns = columns.split(",");
+    if (partitionColumns.length != keys.size()) return -1;
+    for (int i = 0; i < partitionColumns.length; i++) {
+      if (!partitionColumns[i].equalsIgnoreCase(keys.get(i))) return -1;
+    }
+
     try {
-      DDF resultDDF = this.getManager().sql2ddf(joinSqlCommand, false);
-      return resultDDF;
+      RDD<?> rows = (RDD<?>) ddf.getRepresentationHandler().get(RDD.class, Row.class);
+      int n = Integer.parseInt(numPartitions);
+      return rows.partitioner().isDefined() && rows.partitions().length == n ? n : -1;
+    } catch (Exception e) {
+      mLog.debug("Unable to get the partitioning of " + ddf.getTableName(), e);
+      return -1;
+    }
+  }
+
+  private DDF sql2ddf(String joinSqlCommand) throws DDFException {
+    try {
+      return this.getManager().sql2ddf(joinSqlCommand, false);
     } catch (Exception e) {
-      e.printStackTrace();
       throw new DDFException(String.format("Error while executing query QueryExecutionException"), e);
     }
+  }
+
+  /**
+   * @return the strategy of the join Spark SQL planned for the DDF: BROADCAST_HASH if it broadcasts a side,
+   * SHUFFLE_HASH otherwise
+   */
+  private JoinStrategy getPlannedStrategy(DDF ddf) throws DDFException {
+    DataFrame df = (DataFrame) ddf.getRepresentationHandler().get(DataFrame.class);
+    String plan = df.queryExecution().executedPlan().toString();
+    return plan.contains("Broadcast") ? JoinStrategy.BROADCAST_HASH : JoinStrategy.SHUFFLE_HASH;
+  }
+
+  /**
+   * @return the estimated size of the DDF in bytes, or Long.MAX_VALUE if it is not known and the DDF has more rows
+   * than fit in limit bytes, which are only counted up to that
+   */
+  long estimateSizeInBytes(DDF ddf, long limit) throws DDFException {
+    long knownSize = this.getKnownSizeInBytes(ddf);
+    if (knownSize != Long.MAX_VALUE) return knownSize;
+
+    long rowWidth = estimateRowWidth(ddf.getSchema());
+    long maxRows = Math.max(limit / rowWidth, 1);
+    RDD<?> rdd = (RDD<?>) ddf.getRepresentationHandler().get(RDD.class, Row.class);
+    if (rdd == null) return Long.MAX_VALUE;
+    long numRows = SparkUtils.countUpTo(rdd, maxRows);
+    return numRows > maxRows ? Long.MAX_VALUE : numRows * rowWidth;
+  }
+
+  /**
+   * @return the size of the DDF in bytes if it is known without scanning the DDF, from its cached partitions or its
+   * cached row count, or Long.MAX_VALUE
+   */
+  private long getKnownSizeInBytes(DDF ddf) {
+    long cachedSize = this.getCachedSizeInBytes(ddf);
+    if (cachedSize >= 0) return cachedSize;
+    long numRows = ddf.getMetaDataHandler().getCachedNumRows();
+    return numRows >= 0 ? numRows * estimateRowWidth(ddf.getSchema()) : Long.MAX_VALUE;
+  }
+
+  /**
+   * @return the size of the cached table or RDD[Row] of the DDF, scaled up if only some partitions are cached, or -1
+   * if the DDF is not cached
+   */
+  private long getCachedSizeInBytes(DDF ddf) {
+    String tableName = "In-memory table " + ddf.getTableName();
+    int rddId = -1;
+    if (ddf.getRepresentationHandler().has(RDD.class, Row.class)) {
+      try {
+        rddId = ((RDD<?>) ddf.getRepresentationHandler().get(RDD.class, Row.class)).id();
+      } catch (DDFException e) {
+        mLog.debug("Unable to get the RDD[Row] of " + ddf.getTableName(), e);
+      }
+    }
 
+    for (RDDInfo info : ((SparkDDFManager) this.getManager()).getSparkContext().getRDDStorageInfo()) {
+      if ((info.id() == rddId || tableName.equals(info.name())) && info.numCachedPartitions() > 0) {
+        long size = info.memSize() + info.diskSize();
+        return size * info.numPartitions() / info.numCachedPartitions();
+      }
+    }
+    return -1;
   }
+
+  static long estimateRowWidth(Schema schema) {
+    long width = 16;
+    for (Column column : schema.getColumns()) {
+      if (column.getType() == null) {
+        width += 32;
+        continue;
+      }
+      switch (column.getType()) {
+        case TINYINT:
+        case BOOLEAN:
+          width += 1;
+          break;
+        case SMALLINT:
+          width += 2;
+          break;
+        case INT:
+        case FLOAT:
+        case DATE:
+          width += 4;
+          break;
+        case BIGINT:
+        case DOUBLE:
+        case TIMESTAMP:
+          width += 8;
+          break;
+        case DECIMAL:
+          width += 16;
+          break;
+        default:
+          width += 32;
+      }
+    }
+    return width;
+  }
+
+  /**
+   * @return whether the keys of both sides can be matched by value after the widening of
+   * {@link BroadcastHashJoin#keyOf}: same types, integral with integral, or FLOAT with DOUBLE. A DECIMAL only matches a
+   * DECIMAL, as converting it to a double could make distinct keys equal.
+   */
+  private boolean haveSameKeyTypes(DDF left, List<String> leftKeys, DDF right, List<String> rightKeys) {
+    for (int i = 0; i < leftKeys.size(); i++) {
+      Column leftColumn = left.getSchema().getColumn(leftKeys.get(i));
+      Column rightColumn = right.getSchema().getColumn(rightKeys.get(i));
+      if (leftColumn == null || rightColumn == null) return false;
+      if ((leftColumn.getType() == Schema.ColumnType.DECIMAL) != (rightColumn.getType() == Schema.ColumnType.DECIMAL)) {
+        return false;
+      }
+      boolean bothNumeric = leftColumn.isNumeric() && rightColumn.isNumeric();
+      boolean bothIntegral = isIntegral(leftColumn) && isIntegral(rightColumn);
+      if (leftColumn.getType() != rightColumn.getType() && !(bothNumeric && (bothIntegral
+          || !isIntegral(leftColumn) && !isIntegral(rightColumn)))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isIntegral(Column column) {
+    if (column.getType() == null) return false;
+    switch (column.getType()) {
+      case TINYINT:
+      case SMALLINT:
+      case INT:
+      case BIGINT:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static int[] columnIndexes(DDF ddf, List<String> columns) throws DDFException {
+    int[] indexes = new int[columns.size()];
+    for (int i = 0; i < indexes.length; i++) {
+      indexes[i] = ddf.getColumnIndex(columns.get(i));
+      if (indexes[i] < 0) {
+        throw new DDFException(String.format("Column %s does not exists", columns.get(i)));
+      }
+    }
+    return indexes;
+  }
+
+  private long getThreshold(ConfigConstant field, long defaultValue) {
+    String value = Config.getValueWithGlobalDefault(this.getEngine(), field);
+    try {
+      return Strings.isNullOrEmpty(value) ? defaultValue : Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      return defaultValue;
+    }
+  }
+
   @Override
   public DDF merge(DDF anotherDDF) throws DDFException {
     DataFrame rdd1 = ((DataFrame) this.getDDF().getRepresentationHandler().get(DataFrame.class));
@@ -103,4 +490,42 @@ public class JoinHandler extends ADDFFunctionalGroupHandler implements IHandleJo
     Schema schema = SparkUtils.schemaFromDataFrame(newRDD);
     return this.getManager().newDDF(newRDD, new Class<?>[]{DataFrame.class}, null, schema);
   }
+
+  @Override
+  public synchronized DDF append(DDF batch) throws DDFException {
+    DDF ddf = this.getDDF();
+    List<Column> columns = ddf.getSchema().getColumns();
+    List<Column> batchColumns = batch.getSchema().getColumns();
+    if (columns.size() != batchColumns.size()) {
+      throw new DDFException(String.format("Cannot append %d columns to %d columns", batchColumns.size(),
+          columns.size()));
+    }
+    for (int i = 0; i < columns.size(); i++) {
+      if (columns.get(i).getType() != batchColumns.get(i).getType()) {
+        throw new DDFException(String.format("Cannot append column %s of type %s to column %s of type %s",
+            batchColumns.get(i).getName(), batchColumns.get(i).getType(), columns.get(i).getName(),
+            columns.get(i).getType()));
+      }
+    }
+
+    DataFrame batchDF = (DataFrame) batch.getRepresentationHandler().get(DataFrame.class);
+    long dataVersion = ddf.getMetaDataHandler().getDataVersion();
+    if (mSegments == null || mSegmentsVersion != dataVersion) {
+      // first append, or the DDF was changed in some other way since the last one
+      if (mSegments != null) mSegments.discard();
+      DataFrame base = (DataFrame) ddf.getRepresentationHandler().get(DataFrame.class);
+      mSegments = new AppendedSegments((SparkDDF) ddf, ((SparkDDFManager) this.getManager()).getHiveContext(), base,
+          (int) getThreshold(ConfigConstant.FIELD_APPEND_COMPACTION_THRESHOLD, DEFAULT_APPEND_COMPACTION_THRESHOLD));
+    }
+
+    if (ddf.getSchemaHandler() instanceof SchemaHandler) {
+      ((SchemaHandler) ddf.getSchemaHandler()).appendFactorLevels(batch);
+    }
+    mSegmentsVersion = mSegments.append(batchDF);
+    if (ddf.getStatisticsSupporter() instanceof AStatisticsSupporter) {
+      ((AStatisticsSupporter) ddf.getStatisticsSupporter()).appendSummary(batch, dataVersion);
+    }
+    mLog.info(String.format("Appended to %s, now in %d segments", ddf.getTableName(), mSegments.getNumSegments()));
+    return ddf;
+  }
 }
@@ -6,6 +6,8 @@ import io.ddf.DDFManager;
 import io.ddf.content.Schema;
 import io.ddf.exception.DDFException;
 import io.ddf.ml.AMLMetricsSupporter;
+import io.ddf.ml.Evaluation;
+import io.ddf.ml.RocCurve;
 import io.ddf.ml.RocMetric;
 import io.ddf.spark.SparkDDF;
 import org.apache.spark.api.java.JavaRDD;
@@ -15,6 +17,9 @@ import org.apache.spark.mllib.recommendation.Rating;
 import org.apache.spark.mllib.regression.LabeledPoint;
 import org.apache.spark.rdd.RDD;
 
+import java.util.Arrays;
+import java.util.EnumSet;
+
 public class MLMetricsSupporter extends AMLMetricsSupporter {
 
   private Boolean sIsNonceInitialized = false;
@@ -155,6 +160,40 @@ public class MLMetricsSupporter extends AMLMetricsSupporter {
     return (rc.ROC(rddLabeledPoint, alpha_length));
   }
 
+  /**
+   * Computes all the requested metrics in one pass over the (yTrue, yPredict) rows of predictionDDF, see
+   * {@link MetricsAggregator}
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public Evaluation evaluate(DDF predictionDDF, Evaluation.Metric... metrics) throws DDFException {
+    RDD<double[]> predictionRDD = (RDD<double[]>) predictionDDF.getRepresentationHandler()
+        .get(RDD.class, double[].class);
+    EnumSet<Evaluation.Metric> requested = EnumSet.noneOf(Evaluation.Metric.class);
+    requested.addAll(Arrays.asList(metrics));
+    return MetricsAggregator.evaluate(predictionRDD, requested);
+  }
+
+  /**
+   * Computes the curves of all the score columns together, in one pass and exact up to
+   * {@link ROCComputer#DEFAULT_MAX_BINS()} distinct scores per column, in two passes otherwise, see
+   * {@link ROCComputer#ROCCurves}
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public RocCurve[] rocCurves(DDF predictionDDF, String labelColumn, String... scoreColumns) throws DDFException {
+    int labelIndex = predictionDDF.getColumnIndex(labelColumn);
+    if (labelIndex < 0) throw new DDFException(String.format("Label column %s does not exist", labelColumn));
+    int[] scoreIndices = new int[scoreColumns.length];
+    for (int i = 0; i < scoreColumns.length; i++) {
+      scoreIndices[i] = predictionDDF.getColumnIndex(scoreColumns[i]);
+      if (scoreIndices[i] < 0) throw new DDFException(String.format("Score column %s does not exist", scoreColumns[i]));
+    }
+
+    RDD<double[]> rdd = (RDD<double[]>) predictionDDF.getRepresentationHandler().get(RDD.class, double[].class);
+    return new ROCComputer().ROCCurves(rdd, labelIndex, scoreIndices, scoreColumns, ROCComputer.DEFAULT_MAX_BINS());
+  }
+
   public MLMetricsSupporter(DDF theDDF) {
     super(theDDF);
     this.initialize();
@@ -11,8 +11,8 @@ import io.ddf.ml.IModel;
 import io.ddf.types.TupleMatrixVector;
 import io.ddf.util.Utils.MethodInfo.ParamInfo;
 import io.ddf.spark.SparkDDF;
+import io.ddf.spark.SparkDDFManager;
 import io.ddf.spark.analytics.CrossValidation;
-import org.apache.commons.lang.ArrayUtils;
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.function.FlatMapFunction;
 import org.apache.spark.api.java.function.Function;
@@ -21,16 +21,27 @@ import org.apache.spark.mllib.linalg.Vector;
 import org.apache.spark.mllib.recommendation.Rating;
 import org.apache.spark.mllib.regression.LabeledPoint;
 import org.apache.spark.rdd.RDD;
+import org.apache.spark.sql.DataFrame;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.StructField;
 
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 
 public class MLSupporter extends io.ddf.ml.MLSupporter implements Serializable {
 
+  /**
+   * Number of samples scored at once by applyModel
+   */
+  public static final int PREDICT_BATCH_SIZE = 1024;
+
   public MLSupporter(DDF theDDF) {
     super(theDDF);
   }
@@ -128,10 +139,9 @@ public class MLSupporter extends io.ddf.ml.MLSupporter implements Serializable {
     List<Schema.Column> outputColumns = new ArrayList<Schema.Column>();
 
     if (includeFeatures) {
-      outputColumns = ddf.getSchema().getColumns();
-      // set columns features of result ddf to Double type
-      for (Schema.Column col : outputColumns) {
-        col.setType(Schema.ColumnType.DOUBLE);
+      // columns features of result ddf are of Double type, copied rather than changing the columns of ddf
+      for (Schema.Column col : ddf.getSchema().getColumns()) {
+        outputColumns.add(new Schema.Column(col.getName(), "double"));
       }
     } else if (!includeFeatures && hasLabels) {
       outputColumns.add(new Schema.Column("ytrue", "double"));
@@ -141,9 +151,18 @@ public class MLSupporter extends io.ddf.ml.MLSupporter implements Serializable {
     Schema schema = new Schema(null, outputColumns);
 
     if (double[].class.equals(resultUnitType)) {
-      DDF resultDDF = this.getManager()
-          .newDDF(this.getManager(), result.rdd(), new Class<?>[] { RDD.class, double[].class }, null, schema);
+      // emit the predictions as a DataFrame of doubles, rather than having it converted through Object[] rows, and keep
+      // them as double[] for the metrics that read them so
+      List<StructField> fields = new ArrayList<StructField>();
+      for (Schema.Column col : outputColumns) {
+        fields.add(DataTypes.createStructField(col.getName(), DataTypes.DoubleType, true));
+      }
+      DataFrame dataFrame = ((SparkDDFManager) this.getManager()).getHiveContext()
+          .createDataFrame(((JavaRDD<double[]>) result).map(new DoublesToRow()), DataTypes.createStructType(fields));
 
+      DDF resultDDF = this.getManager()
+          .newDDF(this.getManager(), dataFrame, new Class<?>[] { DataFrame.class }, null, schema);
+      resultDDF.getRepresentationHandler().add(result.rdd(), RDD.class, double[].class);
       return resultDDF;
     } else if (Object[].class.equals(resultUnitType)) {
       DDF resultDDF = this.getManager()
@@ -154,6 +173,24 @@ public class MLSupporter extends io.ddf.ml.MLSupporter implements Serializable {
   }
 
 
+  private static class DoublesToRow implements Function<double[], Row> {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public Row call(double[] values) {
+      Object[] row = new Object[values.length];
+      for (int i = 0; i < values.length; i++) {
+        row[i] = values[i];
+      }
+      return RowFactory.create(row);
+    }
+  }
+
+  /**
+   * Predicts the samples of a partition lazily, by batches of {@link #PREDICT_BATCH_SIZE} samples scored at once by the
+   * model, so that a task holds no more than a batch of samples and predictions whatever the size of its partition
+   */
   private static class PredictMapper<I, O> implements FlatMapFunction<Iterator<I>, O> {
 
     private static final long serialVersionUID = 1L;
@@ -174,132 +211,153 @@ public class MLSupporter extends io.ddf.ml.MLSupporter implements Serializable {
       mIncludeFeatures = includeFeatures;
     }
 
-    @SuppressWarnings("unchecked")
     @Override
-    public Iterable<O> call(Iterator<I> samples) throws DDFException {
-      List<O> results = new ArrayList<O>();
-
+    public Iterable<O> call(final Iterator<I> samples) throws DDFException {
+      if (!double[].class.equals(mOutputType) && !Object[].class.equals(mOutputType)) {
+        throw new DDFException(String.format("Unsupported output type %s", mOutputType));
+      }
 
-      while (samples.hasNext()) {
+      return new Iterable<O>() {
+        @Override
+        public Iterator<O> iterator() {
+          return new PredictIterator(samples);
+        }
+      };
+    }
 
 
-        I sample = samples.next();
-        O outputRow = null;
+    private class PredictIterator implements Iterator<O> {
+      private final Iterator<I> mSamples;
+      // the current batch, reused from batch to batch
+      private final double[][] mFeatures = new double[PREDICT_BATCH_SIZE][];
+      private final double[] mLabels = new double[PREDICT_BATCH_SIZE];
+      // labels and features of Object[] samples, which are output as they are
+      private final Object[] mObjectLabels = new Object[PREDICT_BATCH_SIZE];
+      private final Object[][] mObjectFeatures = new Object[PREDICT_BATCH_SIZE][];
+      private double[] mPredictions;
+      private int mSize = 0;
+      private int mPosition = 0;
 
-        try {
-          if (sample instanceof LabeledPoint || sample instanceof double[]) {
 
+      PredictIterator(Iterator<I> samples) {
+        mSamples = samples;
+      }
 
-            double label = 0;
-            double[] features;
+      @Override
+      public boolean hasNext() {
+        if (mPosition < mSize) return true;
 
-            if (sample instanceof LabeledPoint) {
-              LabeledPoint s = (LabeledPoint) sample;
-              label = s.label();
-              features = s.features().toArray();
+        try {
+          this.predictNextBatch();
+        } catch (Exception e) {
+          throw new RuntimeException(new DDFException(String.format("Error predicting with model %s",
+              mModel.getRawModel().getClass().getName()), e));
+        }
+        return mSize > 0;
+      }
 
+      @SuppressWarnings("unchecked")
+      @Override
+      public O next() {
+        if (!this.hasNext()) throw new NoSuchElementException();
+
+        int i = mPosition++;
+        int numFeatures = mIncludeFeatures ? mFeatures[i].length : 0;
+        int numLabels = mHasLabels ? 1 : 0;
+
+        if (double[].class.equals(mOutputType)) {
+          double[] outputRow = new double[numFeatures + numLabels + 1];
+          if (mIncludeFeatures) System.arraycopy(mFeatures[i], 0, outputRow, 0, numFeatures);
+          if (mHasLabels) outputRow[numFeatures] = mLabels[i];
+          outputRow[numFeatures + numLabels] = mPredictions[i];
+          return (O) outputRow;
+
+        } else {
+          Object[] outputRow = new Object[numFeatures + numLabels + 1];
+          if (mIncludeFeatures) {
+            if (mObjectFeatures[i] != null) {
+              System.arraycopy(mObjectFeatures[i], 0, outputRow, 0, numFeatures);
             } else {
-              double[] s = (double[]) sample;
-              if (mHasLabels) {
-                label = s[s.length - 1];
-                features = Arrays.copyOf(s, s.length - 1);
-              } else {
-                features = s;
-              }
-            }
-
-            if (double[].class.equals(mOutputType)) {
-              if (mHasLabels) {
-                outputRow = (O) new double[] { label, (Double) this.mModel.predict(features) };
-              } else {
-                outputRow = (O) new double[] { (Double) this.mModel.predict(features) };
-              }
-
-              if (mIncludeFeatures) {
-                outputRow = (O) ArrayUtils.addAll(features, (double[]) outputRow);
-              }
-
-            } else if (Object[].class.equals(mOutputType)) {
-              if (mHasLabels) {
-                outputRow = (O) new Object[] { label, this.mModel.predict(features) };
-              } else {
-                outputRow = (O) new Object[] { this.mModel.predict(features)};
-              }
-
-              if (mIncludeFeatures) {
-                Object[] oFeatures = new Object[features.length];
-                for (int i = 0; i < features.length; i++) {
-                  oFeatures[i] = (Object) features[i];
-                }
-                outputRow = (O) ArrayUtils.addAll(oFeatures, (Object[]) outputRow);
+              for (int j = 0; j < numFeatures; j++) {
+                outputRow[j] = mFeatures[i][j];
               }
-
-            } else {
-              throw new DDFException(String.format("Unsupported output type %s", mOutputType));
-            }
-
-
-          } else if (sample instanceof Vector) {
-            Double label = 0.0;
-            double[] features;
-            Vector vector = (Vector) sample;
-            if (mHasLabels) {
-              label = vector.apply(vector.size() - 1);
-              features = Arrays.copyOf(vector.toArray(), vector.size() - 1);
-            } else {
-              features = vector.toArray();
             }
+          }
+          if (mHasLabels) outputRow[numFeatures] = mObjectFeatures[i] != null ? mObjectLabels[i] : mLabels[i];
+          outputRow[numFeatures + numLabels] = mPredictions[i];
+          return (O) outputRow;
+        }
+      }
 
-            if (double[].class.equals(mOutputType)) {
-              if (mHasLabels) {
-                outputRow = (O) new double[] { label, (Double) this.mModel.predict(features) };
-              } else {
-                outputRow = (O) new double[] { (Double) this.mModel.predict(features) };
-              }
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
 
-              if (mIncludeFeatures) {
-                outputRow = (O) ArrayUtils.addAll(features, (double[]) outputRow);
-              }
-            }
-          } else if (sample instanceof Object[]) {
-            Object label = null;
-            Object[] features;
-
-            Object[] s = (Object[]) sample;
-            if (mHasLabels) {
-              label = s[s.length - 1];
-              features = Arrays.copyOf(s, s.length - 1);
-            } else {
-              features = s;
-            }
+      private void predictNextBatch() throws DDFException {
+        mSize = 0;
+        mPosition = 0;
+        while (mSize < PREDICT_BATCH_SIZE && mSamples.hasNext()) {
+          this.parse(mSamples.next(), mSize++);
+        }
+        if (mSize == 0) return;
 
-            double[] dFeatures = new double[features.length];
-            for (int i = 0; i < features.length; i++) {
-              dFeatures[i] = (Double) features[i];
-            }
+        mPredictions = mModel.predict(mSize == PREDICT_BATCH_SIZE ? mFeatures : Arrays.copyOf(mFeatures, mSize));
+      }
 
-            if (mHasLabels) {
-              outputRow = (O) new Object[] { label, this.mModel.predict(dFeatures) };
-            } else {
-              outputRow = (O) new Object[] { this.mModel.predict(dFeatures) };
-            }
+      /**
+       * Sets the label and the features of the i-th sample of the batch
+       */
+      private void parse(I sample, int i) throws DDFException {
+        mLabels[i] = 0;
+        mObjectLabels[i] = null;
+        mObjectFeatures[i] = null;
+
+        if (sample instanceof LabeledPoint) {
+          LabeledPoint s = (LabeledPoint) sample;
+          mLabels[i] = s.label();
+          // the values of a dense vector, not a copy of them
+          mFeatures[i] = s.features().toArray();
+
+        } else if (sample instanceof double[]) {
+          double[] s = (double[]) sample;
+          if (mHasLabels) {
+            mLabels[i] = s[s.length - 1];
+            mFeatures[i] = Arrays.copyOf(s, s.length - 1);
+          } else {
+            mFeatures[i] = s;
+          }
 
-            if (mIncludeFeatures) {
-              outputRow = (O) ArrayUtils.addAll(features, (Object[]) outputRow);
-            }
+        } else if (sample instanceof Vector) {
+          Vector vector = (Vector) sample;
+          if (mHasLabels) {
+            mLabels[i] = vector.apply(vector.size() - 1);
+            mFeatures[i] = Arrays.copyOf(vector.toArray(), vector.size() - 1);
+          } else {
+            mFeatures[i] = vector.toArray();
+          }
 
+        } else if (sample instanceof Object[]) {
+          Object[] s = (Object[]) sample;
+          Object[] features;
+          if (mHasLabels) {
+            mObjectLabels[i] = s[s.length - 1];
+            features = Arrays.copyOf(s, s.length - 1);
           } else {
-            throw new DDFException(String.format("Unsupported input type %s", mInputType));
+            features = s;
           }
-          results.add(outputRow);
 
-        } catch (Exception e) {
-          throw new DDFException(String.format("Error predicting with model %s", this.mModel.getRawModel().getClass()
-              .getName()), e);
+          double[] dFeatures = new double[features.length];
+          for (int j = 0; j < features.length; j++) {
+            dFeatures[j] = (Double) features[j];
+          }
+          mObjectFeatures[i] = features;
+          mFeatures[i] = dFeatures;
+
+        } else {
+          throw new DDFException(String.format("Unsupported input type %s", mInputType));
         }
       }
-
-      return results;
     }
   }
 
@@ -344,4 +402,10 @@ public class MLSupporter extends io.ddf.ml.MLSupporter implements Serializable {
   public List<CrossValidationSet> CVRandom(int k, double trainingSize, Long seed) throws DDFException {
     return CrossValidation.DDFRandomSplit(this.getDDF(), k, trainingSize, seed);
   }
+
+  @Override
+  public List<IModel> CVTrain(List<CrossValidationSet> sets, String trainMethodName, Object... args)
+      throws DDFException {
+    return CrossValidation.trainFolds(sets, trainMethodName, args);
+  }
 }
@@ -1,8 +1,6 @@
 package io.ddf.spark.ml;
 
 
-import io.ddf.exception.DDFException;
-import io.ddf.ml.MLClassMethods;
 import org.apache.spark.mllib.linalg.Vector;
 import org.apache.spark.mllib.linalg.Vectors;
 /**
@@ -14,20 +12,12 @@ public class Model extends io.ddf.ml.Model {
   }
 
   @Override
-  public Double predict(double[] point) throws DDFException {
-    MLClassMethods.PredictMethod predictMethod= new MLClassMethods.PredictMethod(this.getRawModel(), MLClassMethods.DEFAULT_PREDICT_METHOD_NAME,
-      new Class<?>[]{Vector.class});
-    if(predictMethod.getMethod() == null) {
-      throw new DDFException(String.format("Cannot locate method specified by %s", MLClassMethods.DEFAULT_PREDICT_METHOD_NAME));
+  protected Class<?> getPredictArgumentType() {
+    return Vector.class;
+  }
 
-    }
-    Object prediction = predictMethod.instanceInvoke(Vectors.dense(point));
-    if(prediction instanceof Double) {
-      return (Double) prediction;
-    } else if (prediction instanceof Integer) {
-      return ((Integer) prediction).doubleValue();
-    } else {
-      throw new DDFException(String.format("Error getting prediction from model %s", this.getRawModel().getClass().getName()));
-    }
+  @Override
+  protected Object toPredictArgument(double[] point) {
+    return Vectors.dense(point);
   }
 }
@@ -1,9 +1,10 @@
 package io.ddf.spark.analytics
 
-import io.ddf.ml.CrossValidationSet
-import org.apache.spark.{TaskContext, Partition}
+import io.ddf.ml.{IModel, CrossValidationSet}
 import org.apache.spark.rdd.RDD
+import org.apache.spark.storage.StorageLevel
 import java.util.Random
+import java.util.concurrent.{ExecutionException, Callable, Executors}
 import io.ddf.{DDFManager, DDF}
 import java.util.{List => JList}
 import io.ddf.exception.DDFException
@@ -12,72 +13,105 @@ import io.ddf.content.Schema
 import io.ddf.spark.SparkDDF
 import org.apache.spark.sql.catalyst.expressions.Row
 
-private[spark]
-class SeededPartition(val prev: Partition, val seed: Int) extends Partition with Serializable {
-  override val index: Int = prev.index
-}
+import scala.collection.JavaConversions._
 
-private[spark]
-class RandomSplitRDD[T: ClassManifest](
-                                        prev: RDD[T],
-                                        seed: Long,
-                                        lower: Double,
-                                        upper: Double,
-                                        isTraining: Boolean)
-  extends RDD[T](prev) {
-
-  override def getPartitions: Array[Partition] = {
-    val rg = new Random(seed)
-    firstParent[T].partitions.map(x => new SeededPartition(x, rg.nextInt))
-  }
+object CrossValidation {
 
-  override def getPreferredLocations(split: Partition): Seq[String] =
-    firstParent[T].preferredLocations(split.asInstanceOf[SeededPartition].prev)
-
-  override def compute(splitIn: Partition, context: TaskContext): Iterator[T] = {
-    val split = splitIn.asInstanceOf[SeededPartition]
-    val rand = new Random(split.seed)
-    // This is equivalent to taking a random sample without replacement
-    // for for the train set and leave the rest as the test set.
-    // The results are stable accross compute() calls due to deterministic RNG.
-    if (isTraining) {
-      firstParent[T].iterator(split.prev, context).filter(x => {
-        val z = rand.nextDouble;
-        z < lower || z >= upper
-      })
-    } else {
-      firstParent[T].iterator(split.prev, context).filter(x => {
-        val z = rand.nextDouble;
-        lower <= z && z < upper
-      })
+  /**
+   * Number of folds trained at the same time by trainFolds
+   */
+  val MAX_CONCURRENT_FOLDS = 8
+
+  /**
+   * Tags each element with a random long, from a generator seeded by the seed and the index of its partition, and
+   * caches the tagged elements. The random numbers of every split are derived from the tags, see {@link #draw}, so the
+   * parent is computed and the random numbers are generated once for all the splits, which are then filters over the
+   * cached partitions. The tagged RDD is computed here, so that the splits, possibly used at the same time, only ever
+   * read it from the cache. It is unpersisted by the context cleaner once the splits are no longer referenced.
+   */
+  def tagElements[T](rdd: RDD[T], seed: Long)(implicit _cm: ClassManifest[T]): RDD[(Long, T)] = {
+    val tagged = rdd.mapPartitionsWithIndex {
+      (index, partition) =>
+        val rand = new Random(seed * 31 + index)
+        partition.map(x => (rand.nextLong(), x))
     }
+    tagged.persist(StorageLevel.MEMORY_AND_DISK)
+    tagged.count()
+    tagged
+  }
+
+  /**
+   * @return the i-th random double in [0, 1) of an element with the given tag, independent of the other ones
+   */
+  def draw(tag: Long, i: Int): Double = {
+    // the SplitMix64 mixing of the tag and i
+    var z = tag + (i + 1) * 0x9E3779B97F4A7C15L
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL
+    z = z ^ (z >>> 31)
+    (z >>> 11) * (1.0 / (1L << 53))
   }
-}
 
-object CrossValidation {
   /** Return an Iterator of size k of (train, test) RDD Tuple
     * for which the probability of each element belonging to each split is (trainingSize, 1-trainingSize).
-    * The train & test data across k split are shuffled differently (different random seed for each iteration).
+    * The train & test data across k split are shuffled differently (a different random number for each iteration).
     */
   def randomSplit[T](rdd: RDD[T], numSplits: Int, trainingSize: Double, seed: Long)(implicit _cm: ClassManifest[T]): Iterator[(RDD[T], RDD[T])] = {
     require(0 < trainingSize && trainingSize < 1)
-    val rg = new Random(seed)
-    (1 to numSplits).map(_ => rg.nextInt).map(z =>
-      (new RandomSplitRDD(rdd, z, 0, 1.0 - trainingSize, true),
-        new RandomSplitRDD(rdd, z, 0, 1.0 - trainingSize, false))).toIterator
+    val tagged = tagElements(rdd, seed)
+    (0 until numSplits).map {
+      i =>
+        (tagged.filter(x => draw(x._1, i) >= 1.0 - trainingSize).map(_._2),
+          tagged.filter(x => draw(x._1, i) < 1.0 - trainingSize).map(_._2))
+    }.toIterator
   }
 
   /** Return an Iterator of of size k of (train, test) RDD Tuple
     * for which the probability of each element belonging to either split is ((k-1)/k, 1/k).
-    * The location of the test data is shifted consistently between folds
-    * so that the resulting test sets are pair-wise disjoint.
+    * Each element is in the test data of one fold, so that the resulting test sets are pair-wise disjoint.
     */
   def kFoldSplit[T](rdd: RDD[T], numSplits: Int, seed: Long)(implicit _cm: ClassManifest[T]): Iterator[(RDD[T], RDD[T])] = {
     require(numSplits > 0)
-    (for (lower <- 0.0 until 1.0 by 1.0 / numSplits)
-    yield (new RandomSplitRDD(rdd, seed, lower, lower + 1.0 / numSplits, true),
-        new RandomSplitRDD(rdd, seed, lower, lower + 1.0 / numSplits, false))
-      ).toIterator
+    val tagged = tagElements(rdd, seed)
+    def fold(tag: Long): Int = math.min((draw(tag, 0) * numSplits).toInt, numSplits - 1)
+
+    (0 until numSplits).map {
+      i => (tagged.filter(x => fold(x._1) != i).map(_._2), tagged.filter(x => fold(x._1) == i).map(_._2))
+    }.toIterator
+  }
+
+  /**
+   * Trains a model on the train set of each cross validation set, running the training jobs of up to
+   * MAX_CONCURRENT_FOLDS sets at the same time. With splits from {@link #DDFKFoldSplit} or {@link #DDFRandomSplit}, the
+   * jobs all read the same cached data.
+   *
+   * @return the models, in the order of the sets
+   */
+  def trainFolds(sets: JList[CrossValidationSet], trainMethodName: String, args: Array[Object]): JList[IModel] = {
+    val executor = Executors.newFixedThreadPool(math.max(1, math.min(sets.size, MAX_CONCURRENT_FOLDS)))
+    try {
+      val futures = sets.map {
+        set => executor.submit(new Callable[IModel] {
+          override def call(): IModel = set.getTrainSet.ML.train(trainMethodName, args: _*)
+        })
+      }.toList
+
+      val models: JList[IModel] = new util.ArrayList[IModel]()
+      futures.foreach {
+        future =>
+          try {
+            models.add(future.get())
+          } catch {
+            case e: ExecutionException => e.getCause match {
+              case ddfException: DDFException => throw ddfException
+              case cause => throw new DDFException(cause)
+            }
+          }
+      }
+      models
+    } finally {
+      executor.shutdownNow()
+    }
   }
 
   def DDFRandomSplit(ddf: DDF, numSplits: Int, trainingSize: Double, seed: Long): JList[CrossValidationSet] = {
@@ -0,0 +1,50 @@
+package io.ddf.spark.content
+
+import io.ddf.DDF
+import io.ddf.content.{FactorDictionary, Representation, ConvertFunction}
+import io.ddf.exception.DDFException
+import org.apache.spark.broadcast.Broadcast
+import org.apache.spark.sql.DataFrame
+import org.apache.spark.sql.catalyst.expressions.Row
+
+/**
+ * Dictionary-encodes the factor columns of a DataFrame into RDD[Array[Int]], one array of factor codes per row in
+ * the order of the DDF's [[io.ddf.content.FactorDictionary]]. The dictionary is broadcast once and shared by every
+ * consumer of the codes (level counts, dummy coding, ML feature building).
+ */
+class DataFrame2FactorCodes(@transient ddf: DDF) extends ConvertFunction(ddf) {
+
+  override def apply(representation: Representation): Representation = {
+    val dictionary = ddf.getSchemaHandler.asInstanceOf[SchemaHandler].getFactorDictionaryBroadcast
+    val rddCodes = representation.getValue match {
+      case df: DataFrame => df.rdd.mapPartitions {
+        rows => DataFrame2FactorCodes.encode(rows, dictionary)
+      }
+      case _ => throw new DDFException("Error getting RDD[Array[Int]] of factor codes")
+    }
+    new Representation(rddCodes, RepresentationHandler.RDD_FACTOR_CODES.getTypeSpecsString)
+  }
+}
+
+object DataFrame2FactorCodes {
+
+  def encode(rows: Iterator[Row], broadcast: Broadcast[FactorDictionary]): Iterator[Array[Int]] = {
+    val dictionary = broadcast.value
+    val columnIndexes = dictionary.getColumnIndexes
+    val numFactors = columnIndexes.length
+    rows.map {
+      row => encodeRow(row, dictionary, columnIndexes, numFactors)
+    }
+  }
+
+  def encodeRow(row: Row, dictionary: FactorDictionary, columnIndexes: Array[Int], numFactors: Int): Array[Int] = {
+    val codes = new Array[Int](numFactors)
+    var pos = 0
+    while (pos < numFactors) {
+      val idx = columnIndexes(pos)
+      codes(pos) = if (row.isNullAt(idx)) FactorDictionary.NA_CODE else dictionary.encodeAt(pos, row(idx))
+      pos += 1
+    }
+    codes
+  }
+}
@@ -5,11 +5,12 @@ import org.apache.spark.sql.catalyst.expressions.Row
 import io.ddf.content.Schema.DummyCoding
 import io.ddf.types.TupleMatrixVector
 import java.util.{List => JList}
-import io.ddf.content.{Representation, ConvertFunction}
+import io.ddf.content.{FactorDictionary, Representation, ConvertFunction}
 import io.ddf.exception.DDFException
 import io.ddf.types.{Matrix, Vector}
 import io.ddf.spark.ml.TransformRow
 import io.ddf.content.Schema.{ColumnType, Column}
+import org.apache.spark.rdd.RDD
 import org.apache.spark.sql.DataFrame
 
 /**
@@ -18,11 +19,25 @@ class DataFrame2MatrixVector(@transient ddf: DDF) extends ConvertFunction(ddf) {
 
   override def apply(representation: Representation): Representation = {
     val columns = ddf.getSchemaHandler.getColumns
+    // the dummy coding is dropped whenever the factor dictionary is replaced, so that its column positions always
+    // match the dictionary the factor codes are encoded with
+    if (ddf.getSchema.getDummyCoding == null) {
+      ddf.getSchemaHandler.generateDummyCoding()
+    }
     val dummyCoding = ddf.getSchema.getDummyCoding
     val rddMatrixVector = representation.getValue match {
       case rdd: DataFrame => {
-        rdd.rdd.mapPartitions {
-          rows => rowsToMatrixVector(rows, columns, dummyCoding)
+        val dictionary = if (dummyCoding != null) dummyCoding.getFactorDictionary else null
+        if (dictionary == null || dictionary.isEmpty) {
+          // no factor column, so no codes to read
+          rdd.rdd.mapPartitions(rows => rowsToMatrixVector(rows, Iterator.empty, columns, dummyCoding))
+        } else {
+          // factor columns are read from their dictionary codes, which are row-aligned with the DataFrame's rows
+          val factorCodes = ddf.getRepresentationHandler.get(classOf[RDD[_]], classOf[Array[Int]])
+            .asInstanceOf[RDD[Array[Int]]]
+          rdd.rdd.zipPartitions(factorCodes) {
+            (rows, codes) => rowsToMatrixVector(rows, codes, columns, dummyCoding)
+          }
         }
       }
       case _ => throw new DDFException("Error getting RDD[(Matrix, Vector)]")
@@ -30,9 +45,12 @@ class DataFrame2MatrixVector(@transient ddf: DDF) extends ConvertFunction(ddf) {
     new Representation(rddMatrixVector, RepresentationHandler.RDD_MATRIX_VECTOR.getTypeSpecsString)
   }
 
-  private def rowsToMatrixVector(rows: Iterator[Row], columns: JList[Column], dc: DummyCoding): Iterator[TupleMatrixVector] = {
+  private def rowsToMatrixVector(rows: Iterator[Row], codes: Iterator[Array[Int]], columns: JList[Column],
+                                 dc: DummyCoding): Iterator[TupleMatrixVector] = {
 
     val listRows = rows.toList
+    val listCodes = codes.toArray
+    val dictionary = dc.getFactorDictionary
     val numRows = listRows.size
     val numCols = columns.size
     val X = if (dc != null) {
@@ -52,16 +70,21 @@ class DataFrame2MatrixVector(@transient ddf: DDF) extends ConvertFunction(ddf) {
     val doubleExtractor = getDoubleExtractor(columns.toArray(new Array[Column](columns.size)))
     while (rowIdx < numRows) {
       var inputRow = listRows(rowIdx)
+      val rowCodes = if (listCodes.isEmpty) null else listCodes(rowIdx)
       X.put(rowIdx, 0, 1.0) // bias term
       var columnValue = 0.0
       var newValue: Double = -1.0
       val paddingBiasIndex = 1
       var columnIndex = 0
-      var columnStringValue = ""
       while (columnIndex < numCols - 1) {
         if (transformRow.hasCategoricalColumn() && transformRow.hasCategoricalColumn(columnIndex)) {
-          columnStringValue = inputRow(columnIndex).toString()
-          newValue = dc.getMapping.get(columnIndex).get(columnStringValue)
+          val code = rowCodes(dictionary.getPosition(columnIndex))
+          // an NA or unseen level has no dummy column, dummy coding it as the base level would be wrong
+          if (code == FactorDictionary.NA_CODE) {
+            throw new DDFException(String.format("Factor column %s has a missing or unknown level in row %s",
+              columns.get(columnIndex).getName, inputRow))
+          }
+          newValue = code
         }
         else {
           //          println(">>> don't have dummyCoding")
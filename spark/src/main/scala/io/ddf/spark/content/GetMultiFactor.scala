@@ -2,9 +2,9 @@ package io.ddf.spark.content
 
 import org.apache.spark.rdd.RDD
 import java.util.{Map => JMap}
-import java.util.{HashMap => JHMap}
 import java.util.{List => JList}
 import java.lang.{Integer => JInt}
+import io.ddf.content.{FactorDictionary, FactorLevelCounter}
 import io.ddf.content.Schema.ColumnType
 import io.ddf.exception.DDFException
 import scala.collection.JavaConversions._
@@ -22,18 +22,34 @@ object GetMultiFactor {
   }
 
   def getFactorCounts[T](rdd: RDD[T], columnIndexes: JList[JInt], columnTypes: JList[ColumnType])(implicit tag: ClassTag[T]): JMap[JInt, JMap[String, JInt]] = {
+    val counters = getFactorLevelCounters(rdd, columnIndexes, columnTypes, Integer.MAX_VALUE / 2)(tag)
+    val result = new java.util.HashMap[JInt, JMap[String, JInt]]()
+    for ((idx, counter) <- counters) {
+      result.put(idx, counter.getLevelCounts)
+    }
+    result
+  }
+
+  //For Java interoperability
+  def getFactorLevelCounters[T](rdd: RDD[T], columnIndexes: JList[JInt], columnTypes: JList[ColumnType],
+                                maxLevels: Int, rddUnit: Class[T]): JMap[JInt, FactorLevelCounter] = {
+
+    getFactorLevelCounters(rdd, columnIndexes, columnTypes, maxLevels)(ClassTag(rddUnit))
+  }
+
+  /**
+   * Counts the levels of the given columns in bounded memory: each column keeps at most maxLevels levels, see
+   * [[io.ddf.content.FactorLevelCounter]].
+   */
+  def getFactorLevelCounters[T](rdd: RDD[T], columnIndexes: JList[JInt], columnTypes: JList[ColumnType],
+                                maxLevels: Int)(implicit tag: ClassTag[T]): JMap[JInt, FactorLevelCounter] = {
     val columnIndexesWithTypes = (columnIndexes zip columnTypes).toList
 
     tag.runtimeClass match {
-      //      case tp if tp == classOf[TablePartition] => {
-      //        val mapper = new TablePartitionMapper(columnIndexesWithTypes)
-      //        val rddTP = rdd.asInstanceOf[RDD[TablePartition]]
-      //        rddTP.filter(table => table.numRows > 0).map(mapper).reduce(new MultiFactorReducer)
-      //      }
       case arrObj if arrObj == classOf[Array[Object]] => {
-        val mapper = new ArraryObjectMultiFactorMapper(columnIndexesWithTypes)
+        val mapper = new ArraryObjectMultiFactorMapper(columnIndexesWithTypes, maxLevels)
         val rddArrObj = rdd.asInstanceOf[RDD[Array[Object]]]
-        rddArrObj.mapPartitions(mapper).fold(new java.util.HashMap[JInt, JMap[String, JInt]]())(new MultiFactorReducer)
+        rddArrObj.mapPartitions(mapper).fold(new java.util.HashMap[JInt, FactorLevelCounter]())(new MultiFactorReducer)
       }
       case _ => {
         throw new DDFException("Cannot get multi factor for RDD[%s]".format(tag.toString))
@@ -41,6 +57,56 @@ object GetMultiFactor {
     }
   }
 
+  /**
+   * Counts the levels of dictionary-encoded factor columns. Each partition only increments primitive counters indexed
+   * by the factor codes; level names are attached on the driver once the per-partition counts are merged.
+   *
+   * @return level counts keyed by column index, same as [[getFactorCounts]]
+   */
+  def getFactorCodeCounts(codes: RDD[Array[Int]], dictionary: FactorDictionary): JMap[JInt, JMap[String, JInt]] = {
+    val numLevels = (0 until dictionary.size).map(pos => dictionary.getNumLevelsAt(pos)).toArray
+    val zero = numLevels.map(n => new Array[Long](n))
+
+    val counts = codes.mapPartitions {
+      iter => {
+        val partCounts = numLevels.map(n => new Array[Long](n))
+        while (iter.hasNext) {
+          val row = iter.next()
+          var pos = 0
+          while (pos < row.length) {
+            val code = row(pos)
+            if (code != FactorDictionary.NA_CODE) partCounts(pos)(code) += 1
+            pos += 1
+          }
+        }
+        Iterator(partCounts)
+      }
+    }.fold(zero)(mergeCodeCounts)
+
+    val result = new java.util.HashMap[JInt, JMap[String, JInt]]()
+    for (pos <- 0 until dictionary.size) {
+      val levelCounts = new java.util.LinkedHashMap[String, JInt]()
+      for (code <- 0 until numLevels(pos) if counts(pos)(code) > 0) {
+        levelCounts.put(dictionary.decodeAt(pos, code), counts(pos)(code).toInt)
+      }
+      result.put(dictionary.getColumnIndexes()(pos), levelCounts)
+    }
+    result
+  }
+
+  private def mergeCodeCounts(a: Array[Array[Long]], b: Array[Array[Long]]): Array[Array[Long]] = {
+    var pos = 0
+    while (pos < a.length) {
+      var code = 0
+      while (code < a(pos).length) {
+        a(pos)(code) += b(pos)(code)
+        code += 1
+      }
+      pos += 1
+    }
+    a
+  }
+
   //Ta
 
   //  class TablePartitionMapper(indexsWithTypes: List[(JInt, ColumnType)])
@@ -76,51 +142,43 @@ object GetMultiFactor {
   //  }
 
   // TODO review (what is this for?) @huan @freeman
-  class ArraryObjectMultiFactorMapper(indexsWithTypes: List[(JInt, ColumnType)])
-    extends Function1[Iterator[Array[Object]], Iterator[JMap[JInt, JMap[String, JInt]]]] with Serializable {
+  class ArraryObjectMultiFactorMapper(indexsWithTypes: List[(JInt, ColumnType)], maxLevels: Int)
+    extends Function1[Iterator[Array[Object]], Iterator[JMap[JInt, FactorLevelCounter]]] with Serializable {
     @Override
-    def apply(iter: Iterator[Array[Object]]): Iterator[JMap[JInt, JMap[String, JInt]]] = {
-      val aMap: JMap[JInt, JMap[String, JInt]] = new java.util.HashMap[JInt, JMap[String, JInt]]()
+    def apply(iter: Iterator[Array[Object]]): Iterator[JMap[JInt, FactorLevelCounter]] = {
+      val aMap: JMap[JInt, FactorLevelCounter] = new java.util.HashMap[JInt, FactorLevelCounter]()
+      val counters = indexsWithTypes.map {
+        case (idx, typ) => {
+          val counter = new FactorLevelCounter(maxLevels)
+          aMap.put(idx, counter)
+          (idx.intValue, typ, counter)
+        }
+      }.toArray
       while (iter.hasNext) {
         val row = iter.next()
-        val typeIter = indexsWithTypes.iterator
-        while (typeIter.hasNext) {
-          val (idx, typ) = typeIter.next()
-          val value: Option[String] = Option(row(idx)) match {
-            case Some(x) => typ match {
-              case ColumnType.TINYINT => Option(x.asInstanceOf[Byte].toString)
-              case ColumnType.SMALLINT => Option(x.asInstanceOf[Short].toString)
-              case ColumnType.INT => Option(x.asInstanceOf[Int].toString)
-              case ColumnType.BIGINT => Option(x.asInstanceOf[Long].toString)
-              case ColumnType.DOUBLE => Option(x.asInstanceOf[Double].toString)
-              case ColumnType.DECIMAL => Option(x.asInstanceOf[java.math.BigDecimal].toString)
-              case ColumnType.FLOAT => Option(x.asInstanceOf[Float].toString)
-              case ColumnType.STRING => Option(x.asInstanceOf[String])
+        var i = 0
+        while (i < counters.length) {
+          val (idx, typ, counter) = counters(i)
+          val x = row(idx)
+          if (x != null) {
+            counter.add(typ match {
+              case ColumnType.TINYINT => x.asInstanceOf[Byte].toString
+              case ColumnType.SMALLINT => x.asInstanceOf[Short].toString
+              case ColumnType.INT => x.asInstanceOf[Int].toString
+              case ColumnType.BIGINT => x.asInstanceOf[Long].toString
+              case ColumnType.DOUBLE => x.asInstanceOf[Double].toString
+              case ColumnType.DECIMAL => x.asInstanceOf[java.math.BigDecimal].toString
+              case ColumnType.FLOAT => x.asInstanceOf[Float].toString
+              case ColumnType.STRING => x.asInstanceOf[String]
               case unknown => x match {
-                case y: java.lang.Integer => Option(y.toString)
-                case y: java.lang.Double => Option(y.toString)
-                case y: java.lang.String => Option(y)
-                case y: java.lang.Long => Option(y.toString)
-              }
-            }
-            case None => None
-          }
-          value match {
-            case Some(string) => {
-              Option(aMap.get(idx)) match {
-                case Some(map) => {
-                  val num = map.get(string)
-                  map.put(string, if (num == null) 1 else num + 1)
-                }
-                case None => {
-                  val newMap = new JHMap[String, JInt]()
-                  newMap.put(string, 1)
-                  aMap.put(idx, newMap)
-                }
+                case y: java.lang.Integer => y.toString
+                case y: java.lang.Double => y.toString
+                case y: java.lang.String => y
+                case y: java.lang.Long => y.toString
               }
-            }
-            case None =>
+            })
           }
+          i += 1
         }
       }
       Iterator(aMap)
@@ -128,19 +186,15 @@ object GetMultiFactor {
   }
 
   class MultiFactorReducer
-    extends Function2[JMap[JInt, JMap[String, JInt]], JMap[JInt, JMap[String, JInt]], JMap[JInt, JMap[String, JInt]]]
+    extends Function2[JMap[JInt, FactorLevelCounter], JMap[JInt, FactorLevelCounter], JMap[JInt, FactorLevelCounter]]
     with Serializable {
     @Override
-    def apply(map1: JMap[JInt, JMap[String, JInt]], map2: JMap[JInt, JMap[String, JInt]]): JMap[JInt, JMap[String, JInt]] = {
-      for ((idx, smap1) <- map1) {
+    def apply(map1: JMap[JInt, FactorLevelCounter], map2: JMap[JInt, FactorLevelCounter]): JMap[JInt, FactorLevelCounter] = {
+      for ((idx, counter1) <- map1) {
 
         Option(map2.get(idx)) match {
-          case Some(smap2) =>
-            for ((string, num) <- smap1) {
-              val aNum = smap2.get(string)
-              smap2.put(string, if (aNum == null) num else (aNum + num))
-            }
-          case None => map2.put(idx, smap1)
+          case Some(counter2) => counter2.merge(counter1)
+          case None => map2.put(idx, counter1)
         }
       }
       map2
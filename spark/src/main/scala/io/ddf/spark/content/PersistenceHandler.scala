@@ -3,7 +3,7 @@ package io.ddf.spark.content
 import com.google.common.base.Strings
 import io.basic.ddf.content.{PersistenceHandler => BPersistenceHandler}
 import io.ddf.DDF
-import io.ddf.content.Schema
+import io.ddf.content.{IHandleViews, Schema}
 import io.ddf.content.APersistenceHandler.PersistenceUri
 import io.ddf.util.Utils
 import io.ddf.util.Utils.JsonSerDes
@@ -38,10 +38,24 @@ class PersistenceHandler(ddf: DDF) extends BPersistenceHandler(ddf) {
     val folderPath = this.getFolderPath("adatao", ddf.getName, "")
     Utils.writeToFile(schemaFile, JsonSerDes.serialize(this.getDDF.getSchema) + "\n")
     val schemaRDD = ddf.getRepresentationHandler.get(classOf[SchemaRDD]).asInstanceOf[SchemaRDD]
+    // a hash-partitioned DDF is written one file per partition, i.e., bucket, and its partitioning next to it
+    val partitioningFile = this.getPartitioningFileName()
+    if (Utils.fileExists(partitioningFile)) {
+      Utils.deleteFile(partitioningFile)
+    }
+    val partitionColumns = ddf.getMetaDataHandler.getProperty(IHandleViews.PARTITION_COLUMNS_PROPERTY)
+    val numPartitions = ddf.getMetaDataHandler.getProperty(IHandleViews.NUM_PARTITIONS_PROPERTY)
+    if (partitionColumns != null && numPartitions != null) {
+      Utils.writeToFile(partitioningFile, s"$partitionColumns\t$numPartitions\n")
+    }
     schemaRDD.saveAsParquetFile(dataFile)
     new PersistenceUri(ddf.getEngine, folderPath)
   }
 
+  def getPartitioningFileName(): String = {
+    this.getFolderPath("adatao", ddf.getName, "partitioning")
+  }
+
   override def getDataFileName(): String = {
     this.getFolderPath("adatao", ddf.getName, "data")
   }
@@ -67,7 +81,19 @@ class PersistenceHandler(ddf: DDF) extends BPersistenceHandler(ddf) {
     val schema = JsonSerDes.loadFromFile(schemaPath).asInstanceOf[Schema]
 
     val ddf = manager.newDDF(manager, schemaRDD, Array(classOf[SchemaRDD]),null, schema)
-    ddf
+
+    // files are not read back one per partition, so hash-partition the buckets again, in one shuffle at load time
+    // rather than one at every join. Only the partitioned DDF is returned, so the one read from the files is removed
+    // from the manager rather than left behind.
+    val partitioningPath = this.getFolderPath(namespace, name, "partitioning")
+    if (Utils.fileExists(partitioningPath)) {
+      val Array(partitionColumns, numPartitions) = Utils.readFromFile(partitioningPath).trim.split("\t")
+      val partitioned = ddf.VIEWS.repartitionBy(partitionColumns.split(",").toList, numPartitions.toInt)
+      manager.removeDDF(ddf)
+      partitioned
+    } else {
+      ddf
+    }
   }
 
   def listPersistedDDFUris(): List[String] = {
@@ -14,6 +14,7 @@ import org.apache.spark.mllib.regression.LabeledPoint
 import org.apache.spark.rdd.RDD
 import org.apache.spark.sql.DataFrame
 import org.apache.spark.sql.catalyst.expressions.Row
+import org.apache.spark.storage.StorageLevel
 import org.python.core.PyObject
 import org.rosuda.REngine._
 
@@ -42,6 +43,7 @@ class RepresentationHandler(mDDF: DDF) extends RH(mDDF) {
   this.addConvertFunction(RDD_PYOBJ, RDD_ARR_OBJECT, new PyObj2ArrayObject(this.mDDF))
   this.addConvertFunction(RDD_ROW, RDD_PYOBJ, new RDDRow2PyObj(this.mDDF))
   this.addConvertFunction(DATAFRAME, RDD_MATRIX_VECTOR, new DataFrame2MatrixVector(this.mDDF))
+  this.addConvertFunction(DATAFRAME, RDD_FACTOR_CODES, new DataFrame2FactorCodes(this.mDDF))
   this.addConvertFunction(RDD_ROW, DATAFRAME, new Row2DataFrame(this.mDDF))
   this.addConvertFunction(DATAFRAME, RDD_ROW, new DataFrame2RDDRow(this.mDDF))
   this.addConvertFunction(RDD_ROW, RDD_RATING, new Row2Rating(this.mDDF))
@@ -113,6 +115,46 @@ class RepresentationHandler(mDDF: DDF) extends RH(mDDF) {
       dataFrame.unpersist()
     }
   }
+
+  /**
+   * Persists the RDDs, and the DataFrame as in [[cache]], among the given representations, unless already persisted
+   */
+  override def cacheRepresentations(typeSpecs: java.util.Collection[String]): java.util.List[String] = {
+    val cached = new java.util.ArrayList[String]()
+    typeSpecs.foreach {
+      key ⇒
+        val representation = mReps.get(key)
+        if (representation != null) representation.getValue match {
+          case rdd: RDD[_] if rdd.getStorageLevel == StorageLevel.NONE ⇒
+            mLog.info(this.getClass() + ": Persisting " + rdd)
+            rdd.persist
+            cached.add(key)
+          case dataFrame: DataFrame ⇒
+            val ddf = this.getDDF.asInstanceOf[SparkDDF]
+            ddf.saveAsTable()
+            if (!this.getManager.asInstanceOf[SparkDDFManager].getHiveContext.isCached(ddf.getTableName)) {
+              dataFrame.persist()
+              cached.add(key)
+            }
+          case _ ⇒
+        }
+    }
+    cached
+  }
+
+  override def uncacheRepresentations(typeSpecs: java.util.Collection[String]) = {
+    typeSpecs.foreach {
+      key ⇒
+        val representation = mReps.get(key)
+        if (representation != null) representation.getValue match {
+          case rdd: RDD[_] ⇒
+            mLog.info(this.getClass() + ": Unpersisting " + rdd)
+            rdd.unpersist(false)
+          case dataFrame: DataFrame ⇒ dataFrame.unpersist()
+          case _ ⇒
+        }
+    }
+  }
 }
 
 object RepresentationHandler {
@@ -132,4 +174,5 @@ object RepresentationHandler {
   val RDD_RATING = new Representation(classOf[RDD[_]], classOf[Rating])
   val RDD_DOUBLE = new Representation(classOf[RDD[_]], classOf[Double])
   val RDD_INT = new Representation(classOf[RDD[_]], classOf[Int])
+  val RDD_FACTOR_CODES = new Representation(classOf[RDD[_]], classOf[Array[Int]])
 }
@@ -6,11 +6,17 @@ package io.ddf.spark.content
 import io.ddf.DDF
 import io.ddf.content.IHandleViews
 import scala.collection.JavaConverters._
-import io.ddf.content.Schema
+import io.ddf.content.{ExpressionCompiler, Representation, RowComparator, Schema}
+import io.ddf.exception.DDFException
 import io.ddf.spark.{SparkDDFManager, SparkDDF}
+import io.ddf.spark.etl.CoPartitionedJoin
+import io.ddf.spark.util.SparkUtils
+import io.ddf.util.ReservoirSampler
 import org.apache.spark.sql.{DataFrame, Row}
 import org.apache.spark.rdd.RDD
 
+import scala.util.Random
+
 /**
  * RDD-based ViewHandler
  *
@@ -32,7 +38,7 @@ class ViewHandler(mDDF: DDF) extends io.ddf.content.ViewHandler(mDDF) with IHand
    * @param format
    * A scala.Enumeration that will be converted to an integer by calling
    * formatEnum.toString()
-   * @return
+   * @return a view DDF of the given columns only, with its representation for the format already set up
    */
   def get(columns: Array[Int], format: ViewFormat): DDF = {
     format match {
@@ -42,9 +48,7 @@ class ViewHandler(mDDF: DDF) extends io.ddf.content.ViewHandler(mDDF) with IHand
       case ViewFormat.TABLE_PARTITION => ViewHandler.getTablePartition(columns, mDDF)
       case ViewFormat.LABELED_POINT => ViewHandler.getLabeledPoint(columns, mDDF)
       case ViewFormat.LABELED_POINTS => ViewHandler.getLabeledPoints(columns, mDDF)
-      case _ => {}
     }
-    null
   }
 
   protected def getImpl(columns: Array[Int], format: String): DDF = {
@@ -53,10 +57,14 @@ class ViewHandler(mDDF: DDF) extends io.ddf.content.ViewHandler(mDDF) with IHand
 
   val MAX_SAMPLE_SIZE = 1000000;
 
-  override  def getRandomSampleByNum(numSamples: Int, withReplacement: Boolean,
-    seed:
-  Int): DDF = {
-    null.asInstanceOf[DDF]
+  override def getRandomSampleByNum(numSamples: Int, withReplacement: Boolean, seed: Int): DDF = {
+    if (numSamples > MAX_SAMPLE_SIZE) {
+      throw new IllegalArgumentException("Number of samples is currently limited to %d".format(MAX_SAMPLE_SIZE))
+    }
+    val df: DataFrame = mDDF.getRepresentationHandler.get(classOf[DataFrame]).asInstanceOf[DataFrame]
+    val rows = ViewHandler.reservoirSample(df.rdd, numSamples, withReplacement, seed)
+    val sparkContext = this.getManager.asInstanceOf[SparkDDFManager].getSparkContext
+    this.newSampleDDF(df, sparkContext.parallelize(rows.asScala, df.rdd.partitions.length))
   }
 
   override def getRandomSample(numSamples: Int, withReplacement: Boolean, seed: Int): java.util.List[Array[Object]] = {
@@ -65,15 +73,14 @@ class ViewHandler(mDDF: DDF) extends io.ddf.content.ViewHandler(mDDF) with IHand
     } else {
       if(mDDF.getRepresentationHandler.has(classOf[RDD[_]], classOf[Array[Object]])) {
         val rdd = mDDF.asInstanceOf[SparkDDF].getRDD(classOf[Array[Object]])
-        val sampleData = rdd.takeSample(withReplacement, numSamples, seed).toList.asJava
-        sampleData
+        ViewHandler.reservoirSample(rdd, numSamples, withReplacement, seed)
       } else {
         val rdd = mDDF.asInstanceOf[SparkDDF].getRDD(classOf[Row])
-        rdd.takeSample(withReplacement, numSamples, seed).map {
+        ViewHandler.reservoirSample(rdd, numSamples, withReplacement, seed).asScala.map {
           row => {
             row.toSeq.toArray.asInstanceOf[Array[Object]]
           }
-        }.toList.asJava
+        }.asJava
       }
     }
   }
@@ -93,36 +100,256 @@ class ViewHandler(mDDF: DDF) extends io.ddf.content.ViewHandler(mDDF) with IHand
       sampleDDF
     }
   }
+
+  /**
+   * Samples each stratum with its own reservoir in each partition, then merges the reservoirs of all partitions,
+   * so the whole stratified sample takes a single pass over the data.
+   */
+  override def getStratifiedSample(column: String, sizes: java.util.Map[String, Integer], seed: Int): DDF = {
+    val columnIndex = this.getStratumColumnIndex(column)
+    val df: DataFrame = mDDF.getRepresentationHandler.get(classOf[DataFrame]).asInstanceOf[DataFrame]
+    val stratumSizes: Map[String, Int] = sizes.asScala.map { case (stratum, size) => (stratum, size.intValue) }.toMap
+    if (stratumSizes.values.sum > MAX_SAMPLE_SIZE) {
+      throw new IllegalArgumentException("Number of samples is currently limited to %d".format(MAX_SAMPLE_SIZE))
+    }
+
+    val samplers = df.rdd.mapPartitionsWithIndex {
+      (partition, rows) => {
+        val samplers = stratumSizes.map {
+          case (stratum, size) =>
+            val partitionSeed = ReservoirSampler.partitionSeed(seed ^ stratum.hashCode, partition)
+            (stratum, new ReservoirSampler[Row](size, partitionSeed))
+        }
+        rows.foreach {
+          row => samplers.get(ViewHandler.stratumOf(row, columnIndex)).foreach(_.offer(row))
+        }
+        Iterator(samplers)
+      }
+    }.reduce {
+      (a, b) => a.map { case (stratum, sampler) => (stratum, sampler.merge(b(stratum))) }
+    }
+
+    val rows = stratumSizes.keys.toSeq.flatMap(stratum => samplers(stratum).getSample.asScala)
+    val sparkContext = this.getManager.asInstanceOf[SparkDDFManager].getSparkContext
+    this.newSampleDDF(df, sparkContext.parallelize(rows, df.rdd.partitions.length))
+  }
+
+  /**
+   * Keeps each row of a stratum with the probability given for the stratum. This is a plain transformation, nothing is
+   * collected to the driver.
+   */
+  override def getStratifiedSampleByFraction(column: String, fractions: java.util.Map[String, java.lang.Double],
+    seed: Int): DDF = {
+    val columnIndex = this.getStratumColumnIndex(column)
+    val df: DataFrame = mDDF.getRepresentationHandler.get(classOf[DataFrame]).asInstanceOf[DataFrame]
+    val stratumFractions: Map[String, Double] = fractions.asScala.map {
+      case (stratum, fraction) => (stratum, fraction.doubleValue)
+    }.toMap
+
+    val sampleRDD = df.rdd.mapPartitionsWithIndex {
+      (partition, rows) => {
+        val random = new Random(ReservoirSampler.partitionSeed(seed, partition))
+        rows.filter {
+          row => stratumFractions.get(ViewHandler.stratumOf(row, columnIndex)).exists(random.nextDouble() < _)
+        }
+      }
+    }
+    this.newSampleDDF(df, sampleRDD)
+  }
+
+  /**
+   * Takes the first rows of the DDF directly, scanning only as many partitions as needed to get numRows rows,
+   * instead of running a LIMIT query. The rows are formatted as the rows of {@link io.ddf.DDFManager#sql}.
+   */
+  override def head(numRows: Int): java.util.List[String] = {
+    val df: DataFrame = mDDF.getRepresentationHandler.get(classOf[DataFrame]).asInstanceOf[DataFrame]
+    val rows = mDDF.asInstanceOf[SparkDDF].getRDD(classOf[Row]).take(numRows)
+    rows.map(row => SparkUtils.row2txt(df.schema, row, "\t")).toList.asJava
+  }
+
+  override def headTyped(numRows: Int): java.util.List[Array[Object]] = {
+    mDDF.asInstanceOf[SparkDDF].getRDD(classOf[Row]).take(numRows).map(ViewHandler.toArray).toList.asJava
+  }
+
+  override def top(numRows: Int, orderColumns: String, mode: String): java.util.List[String] = {
+    val df: DataFrame = mDDF.getRepresentationHandler.get(classOf[DataFrame]).asInstanceOf[DataFrame]
+    this.topTyped(numRows, orderColumns, mode).asScala.map {
+      values => SparkUtils.row2txt(df.schema, Row.fromSeq(values), "\t")
+    }.asJava
+  }
+
+  /**
+   * Each partition keeps its top numRows rows in a bounded heap and only those are merged on the driver, so no
+   * global sort is needed.
+   */
+  override def topTyped(numRows: Int, orderColumns: String, mode: String): java.util.List[Array[Object]] = {
+    val comparator = RowComparator.parse(mDDF.getSchema, orderColumns, mode)
+    val rdd = mDDF.asInstanceOf[SparkDDF].getRDD(classOf[Row])
+    rdd.map(ViewHandler.toArray).takeOrdered(numRows)(Ordering.comparatorToOrdering(comparator)).toList.asJava
+  }
+
+  /**
+   * When the rows are already materialized as RDD[Array[Object]], e.g., after a conversion for ML, they are subset on
+   * the executors by the predicate and projector of [[io.ddf.content.ExpressionCompiler]], in batches, rather than by
+   * planning an SQL query over the DataFrame again.
+   */
+  override protected def _subset(columnExpr: java.util.List[io.ddf.content.ViewHandler.Column],
+                                 filter: io.ddf.content.ViewHandler.Expression): DDF = {
+    if (!mDDF.getRepresentationHandler.has(classOf[RDD[_]], classOf[Array[Object]])) {
+      return super._subset(columnExpr, filter)
+    }
+
+    val schema = mDDF.getSchema
+    val compiler = new ExpressionCompiler(schema)
+    val predicate = compiler.compilePredicate(filter)
+    val projector = compiler.compileProjector(columnExpr)
+    val rows = mDDF.asInstanceOf[SparkDDF].getRDD(classOf[Array[Object]]).mapPartitions {
+      iter => ExpressionCompiler.filter(iter.asJava, predicate, projector).asScala
+    }
+
+    val columns = columnExpr.asScala.map(column => schema.getColumn(compiler.resolveIndex(column)).clone())
+    val subsetSchema = new Schema(mDDF.getSchemaHandler.newTableName(), columns.asJava)
+    val manager = this.getManager
+    manager.newDDF(manager, rows, Array(classOf[RDD[_]], classOf[Array[Object]]), null, subsetSchema)
+  }
+
+  /**
+   * Hash-partitions the RDD[Row] of the DDF on the given columns and caches it. The new DDF keeps that RDD[Row] as
+   * representation, with its partitioner, and a DataFrame over it.
+   */
+  override def repartitionBy(columns: java.util.List[String], numPartitions: Int): DDF = {
+    if (columns == null || columns.isEmpty) {
+      throw new DDFException("columns must be specified")
+    }
+    if (numPartitions <= 0) {
+      throw new DDFException("Number of partitions must be positive, not %d".format(numPartitions))
+    }
+    val keys = columns.asScala.map(column => this.getStratumColumnIndex(column)).toArray
+
+    val df: DataFrame = mDDF.getRepresentationHandler.get(classOf[DataFrame]).asInstanceOf[DataFrame]
+    val rows = CoPartitionedJoin.hashPartition(df.rdd, keys, numPartitions).persist()
+    val hiveContext = this.getManager.asInstanceOf[SparkDDFManager].getHiveContext
+    val partitioned_df = hiveContext.createDataFrame(rows, df.schema)
+
+    val schema = new Schema(mDDF.getSchemaHandler.newTableName(), ViewHandler.copyColumns(mDDF))
+    val manager = this.getManager
+    val partitionedDDF = manager.newDDF(manager, partitioned_df, Array(classOf[DataFrame]), null, schema)
+    partitionedDDF.getRepresentationHandler.add(rows, classOf[RDD[_]], classOf[Row])
+    partitionedDDF.getMetaDataHandler.setProperty(IHandleViews.PARTITION_COLUMNS_PROPERTY,
+      columns.asScala.mkString(","))
+    partitionedDDF.getMetaDataHandler.setProperty(IHandleViews.NUM_PARTITIONS_PROPERTY, numPartitions.toString)
+    partitionedDDF.getMetaDataHandler.copyFactor(this.getDDF)
+    partitionedDDF
+  }
+
+  private def newSampleDDF(df: DataFrame, rows: RDD[Row]): DDF = {
+    val hiveContext = this.getManager.asInstanceOf[SparkDDFManager].getHiveContext
+    val sample_df = hiveContext.createDataFrame(rows, df.schema)
+    val schema = new Schema(mDDF.getSchemaHandler.newTableName(), ViewHandler.copyColumns(mDDF))
+    val manager = this.getManager
+    val sampleDDF = manager.newDDF(manager, sample_df, Array(classOf[DataFrame]), null, schema)
+    sampleDDF.getMetaDataHandler.copyFactor(this.getDDF)
+    sampleDDF
+  }
 }
 
 object ViewHandler {
-  def getDefault(cols: Array[Int], theDDF: DDF): DDF = {
 
-    null
+  /**
+   * @return copies of the columns of theDDF, or of those at the given indexes, which share neither the columns nor the
+   *         factors of theDDF, for a derived DDF whose factors are then copied by copyFactor
+   */
+  def copyColumns(theDDF: DDF, indexes: Seq[Int] = null): java.util.List[Schema.Column] = {
+    val columns = theDDF.getSchema.getColumns.asScala
+    val copied = if (indexes == null) columns else indexes.map(i => columns(i))
+    copied.map(_.copyWithoutFactor()).asJava
   }
 
-  def getArrayObject(cols: Array[Int], theDDF: DDF): DDF = {
+  /**
+   * Uniform sample of numSamples items of the RDD in one pass: each partition fills a seeded reservoir, and the
+   * reservoirs are merged into one in a tree on the executors, so that the driver does not receive every reservoir.
+   * Merging keeps the items with the smallest random keys, which does not depend on the order partitions are merged
+   * in, so the sample only depends on the seed and the partitioning.
+   */
+  def reservoirSample[T](rdd: RDD[T], numSamples: Int, withReplacement: Boolean, seed: Int): java.util.List[T] = {
+    val sampler = rdd.mapPartitionsWithIndex {
+      (partition, items) => {
+        val sampler = new ReservoirSampler[T](numSamples, ReservoirSampler.partitionSeed(seed, partition))
+        items.foreach(item => sampler.offer(item))
+        Iterator(sampler)
+      }
+    }.treeReduce((a, b) => a.merge(b))
 
-    null
+    if (withReplacement) sampler.getSampleWithReplacement(seed) else sampler.getSample
   }
 
-  def getArrayDouble(cols: Array[Int], theDDF: DDF): DDF = {
+  def toArray(row: Row): Array[Object] = row.toSeq.toArray.asInstanceOf[Array[Object]]
 
-    null
+  def stratumOf(row: Row, columnIndex: Int): String = {
+    if (row.isNullAt(columnIndex)) "null" else row.get(columnIndex).toString
   }
 
-  def getTablePartition(cols: Array[Int], theDDF: DDF): DDF = {
+  /**
+   * Projects theDDF on the given columns at the DataFrame level, before any conversion. The view DDF is a lazy
+   * projection of the parent's DataFrame, so it reads from the parent's cache when there is one, and later conversions
+   * of the view, e.g., to Array[Double], only touch the projected columns.
+   */
+  def project(cols: Array[Int], theDDF: DDF): DDF = {
+    if (cols == null || cols.isEmpty) {
+      throw new DDFException("columns must be specified")
+    }
+    val df = theDDF.getRepresentationHandler.get(classOf[DataFrame]).asInstanceOf[DataFrame]
+    val numColumns = df.columns.length
+    cols.find(i => i < 0 || i >= numColumns).foreach {
+      i => throw new DDFException("Column index %d is out of range [0, %d)".format(i, numColumns))
+    }
 
-    null
+    val view_df = df.select(cols.map(i => df.col(df.columns(i))): _*)
+    val schema = new Schema(theDDF.getSchemaHandler.newTableName(), copyColumns(theDDF, cols))
+    val manager = theDDF.getManager
+    val view = manager.newDDF(manager, view_df, Array(classOf[DataFrame]), null, schema)
+    view.getMetaDataHandler.copyFactor(theDDF)
+    view
   }
 
-  def getLabeledPoint(cols: Array[Int], theDDF: DDF): DDF = {
+  private def getView(cols: Array[Int], theDDF: DDF, representation: Representation): DDF = {
+    val view = project(cols, theDDF)
+    if (view.getRepresentationHandler.get(representation.getTypeSpecsString) == null) {
+      throw new DDFException("Unable to get representation %s of the view".format(representation.getTypeSpecsString))
+    }
+    view
+  }
 
-    null
+  def getDefault(cols: Array[Int], theDDF: DDF): DDF = {
+    project(cols, theDDF)
   }
 
-  def getLabeledPoints(cols: Array[Int], theDDF: DDF): DDF = {
+  def getArrayObject(cols: Array[Int], theDDF: DDF): DDF = {
+    getView(cols, theDDF, RepresentationHandler.RDD_ARR_OBJECT)
+  }
 
-    null
+  def getArrayDouble(cols: Array[Int], theDDF: DDF): DDF = {
+    getView(cols, theDDF, RepresentationHandler.RDD_ARR_DOUBLE)
+  }
+
+  /**
+   * Table partitions were the Shark representation, the view keeps the DataFrame that replaced them
+   */
+  def getTablePartition(cols: Array[Int], theDDF: DDF): DDF = {
+    project(cols, theDDF)
+  }
+
+  /**
+   * @param cols the feature columns followed by the label column
+   */
+  def getLabeledPoint(cols: Array[Int], theDDF: DDF): DDF = {
+    getView(cols, theDDF, RepresentationHandler.RDD_LABELED_POINT)
+  }
+
+  /**
+   * Same as getLabeledPoint, but with the points of each partition in a matrix and a vector
+   */
+  def getLabeledPoints(cols: Array[Int], theDDF: DDF): DDF = {
+    getView(cols, theDDF, RepresentationHandler.RDD_MATRIX_VECTOR)
   }
 }
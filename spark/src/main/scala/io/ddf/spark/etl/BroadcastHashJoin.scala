@@ -0,0 +1,143 @@
+package io.ddf.spark.etl
+
+import io.ddf.etl.Types.JoinType
+import io.ddf.exception.DDFException
+import org.apache.spark.sql.types.{StructField, StructType}
+import org.apache.spark.sql.{DataFrame, Row, SQLContext}
+
+import scala.collection.mutable
+
+/**
+ * Equi-join of a large DataFrame with a small one without shuffling the large one: the small (build) side is
+ * collected, hashed on its join keys and broadcast, then each partition of the large (streamed) side looks its rows up
+ * in the hash table. As in SQL, rows with a NULL key never match.
+ */
+object BroadcastHashJoin {
+
+  /**
+   * @return whether a join of this type can build its hash table on the given side, i.e., that side never has to
+   *         output its unmatched rows
+   */
+  def canBuild(joinType: JoinType, buildLeft: Boolean): Boolean = joinType match {
+    case JoinType.INNER => true
+    case JoinType.LEFT | JoinType.LEFTSEMI => !buildLeft
+    case JoinType.RIGHT => buildLeft
+    case _ => false
+  }
+
+  /**
+   * @param leftKeys         indexes of the key columns in left
+   * @param rightKeys        indexes of the key columns in right, matched in the same order
+   * @param rightOutput      indexes of the right columns to output after all the left columns
+   * @param rightOutputNames names of these columns in the output
+   * @param buildLeft        whether left is the small side to broadcast
+   */
+  def join(sqlContext: SQLContext, left: DataFrame, right: DataFrame, leftKeys: Array[Int], rightKeys: Array[Int],
+    joinType: JoinType, rightOutput: Array[Int], rightOutputNames: Array[String], buildLeft: Boolean): DataFrame = {
+    if (!canBuild(joinType, buildLeft)) {
+      throw new DDFException("Cannot broadcast the %s side of a %s join".format(if (buildLeft) "left" else "right",
+        joinType))
+    }
+
+    val (build, buildKeys, streamedKeys) = if (buildLeft) (left, leftKeys, rightKeys) else (right, rightKeys, leftKeys)
+    val table = mutable.HashMap[Seq[Any], mutable.ArrayBuffer[Row]]()
+    build.collect().foreach {
+      row =>
+        val key = keyOf(row, buildKeys)
+        if (key != null) table.getOrElseUpdate(key, mutable.ArrayBuffer[Row]()) += row
+    }
+    val broadcastTable = sqlContext.sparkContext.broadcast(table.mapValues(_.toArray).toMap)
+
+    val numLeftColumns = left.columns.length
+    val streamed = if (buildLeft) right else left
+    val rows = streamed.rdd.mapPartitions {
+      streamedRows => {
+        val table = broadcastTable.value
+        streamedRows.flatMap {
+          row =>
+            val key = keyOf(row, streamedKeys)
+            val matches = if (key == null) Array.empty[Row] else table.getOrElse(key, Array.empty[Row])
+            joinType match {
+              case JoinType.LEFTSEMI => if (matches.isEmpty) Iterator.empty else Iterator(row)
+              case JoinType.LEFT | JoinType.RIGHT if matches.isEmpty =>
+                Iterator(if (buildLeft) output(null, row, numLeftColumns, rightOutput)
+                else output(row, null, numLeftColumns, rightOutput))
+              case _ => matches.iterator.map {
+                m => if (buildLeft) output(m, row, numLeftColumns, rightOutput)
+                else output(row, m, numLeftColumns, rightOutput)
+              }
+            }
+        }
+      }
+    }
+
+    sqlContext.createDataFrame(rows, outputSchema(left, right, joinType, rightOutput, rightOutputNames))
+  }
+
+  /**
+   * @return all columns of leftRow followed by the rightOutput columns of rightRow, NULLs for a missing row
+   */
+  private[etl] def output(leftRow: Row, rightRow: Row, numLeftColumns: Int, rightOutput: Array[Int]): Row = {
+    val values = new Array[Any](numLeftColumns + rightOutput.length)
+    if (leftRow != null) {
+      var i = 0
+      while (i < numLeftColumns) {
+        values(i) = leftRow.get(i)
+        i += 1
+      }
+    }
+    if (rightRow != null) {
+      var i = 0
+      while (i < rightOutput.length) {
+        values(numLeftColumns + i) = rightRow.get(rightOutput(i))
+        i += 1
+      }
+    }
+    Row.fromSeq(values)
+  }
+
+  private[etl] def outputSchema(left: DataFrame, right: DataFrame, joinType: JoinType, rightOutput: Array[Int],
+    rightOutputNames: Array[String]): StructType = {
+    if (joinType == JoinType.LEFTSEMI) return left.schema
+
+    val leftFields = left.schema.fields.map {
+      field => if (joinType == JoinType.RIGHT || joinType == JoinType.FULL) field.copy(nullable = true) else field
+    }
+    val rightFields = rightOutput.zip(rightOutputNames).map {
+      case (i, name) =>
+        val field = right.schema.fields(i)
+        StructField(name, field.dataType, field.nullable || joinType == JoinType.LEFT || joinType == JoinType.FULL,
+          field.metadata)
+    }
+    StructType(leftFields ++ rightFields)
+  }
+
+  /**
+   * @return the join key of a row, with integral and fractional numbers widened so that, e.g., an int key matches a
+   *         bigint key, and decimals without their trailing zeros so that, e.g., 1.0 matches 1.00, or null if any key
+   *         column is NULL
+   */
+  def keyOf(row: Row, keys: Array[Int]): Seq[Any] = {
+    val key = new Array[Any](keys.length)
+    var i = 0
+    while (i < keys.length) {
+      if (row.isNullAt(keys(i))) return null
+      key(i) = row.get(keys(i)) match {
+        case b: Byte => b.toLong
+        case s: Short => s.toLong
+        case n: Int => n.toLong
+        case f: Float => f.toDouble
+        case d: java.math.BigDecimal => normalize(d)
+        case d: scala.math.BigDecimal => normalize(d.bigDecimal)
+        case v => v
+      }
+      i += 1
+    }
+    key.toSeq
+  }
+
+  private def normalize(d: java.math.BigDecimal): java.math.BigDecimal = {
+    // stripTrailingZeros leaves zeros of any scale unequal before Java 8
+    if (d.signum == 0) java.math.BigDecimal.ZERO else d.stripTrailingZeros
+  }
+}
@@ -0,0 +1,95 @@
+package io.ddf.spark.etl
+
+import io.ddf.etl.Types.JoinType
+import org.apache.spark.HashPartitioner
+import org.apache.spark.rdd.RDD
+import org.apache.spark.sql.{DataFrame, Row, SQLContext}
+
+import scala.collection.mutable
+
+/**
+ * Joins two RDD[Row] hash-partitioned the same way on their join keys, see {@link #hashPartition}, partition by
+ * partition: all rows with a given key are in the same partition index on both sides, so partition i of the left side
+ * only needs partition i of the right side and nothing is shuffled.
+ */
+object CoPartitionedJoin {
+
+  /**
+   * Hash-partitions rows on the given key columns. Keys are widened as in {@link BroadcastHashJoin#keyOf}, so an int
+   * key and a bigint key with the same value land in the same partition. Rows with a NULL key, which never match, all
+   * go to one partition.
+   */
+  def hashPartition(rows: RDD[Row], keys: Array[Int], numPartitions: Int): RDD[Row] = {
+    rows.map {
+      row =>
+        val key = BroadcastHashJoin.keyOf(row, keys)
+        (if (key == null) Seq.empty[Any] else key, row)
+    }.partitionBy(new HashPartitioner(numPartitions)).mapPartitions(_.map(_._2), preservesPartitioning = true)
+  }
+
+  /**
+   * @param buildLeft whether to hash the partitions of the left side rather than those of the right side, which then
+   *                  stream through, so that only the smaller side is held in memory
+   */
+  def join(sqlContext: SQLContext, left: DataFrame, leftRows: RDD[Row], right: DataFrame, rightRows: RDD[Row],
+    leftKeys: Array[Int], rightKeys: Array[Int], joinType: JoinType, rightOutput: Array[Int],
+    rightOutputNames: Array[String], buildLeft: Boolean): DataFrame = {
+    val numLeftColumns = left.columns.length
+    val (buildKeys, streamedKeys) = if (buildLeft) (leftKeys, rightKeys) else (rightKeys, leftKeys)
+    val isSemi = joinType == JoinType.LEFTSEMI
+    // whether the unmatched rows of the built side, and of the streamed side, are output
+    val isBuildOuter = joinType == JoinType.FULL || joinType == (if (buildLeft) JoinType.LEFT else JoinType.RIGHT)
+    val isStreamedOuter = joinType == JoinType.FULL || joinType == (if (buildLeft) JoinType.RIGHT else JoinType.LEFT)
+
+    val rows = leftRows.zipPartitions(rightRows) {
+      (leftPartition, rightPartition) => {
+        val (buildPartition, streamedPartition) =
+          if (buildLeft) (leftPartition, rightPartition) else (rightPartition, leftPartition)
+        def output(buildRow: Row, streamedRow: Row): Row =
+          if (buildLeft) BroadcastHashJoin.output(buildRow, streamedRow, numLeftColumns, rightOutput)
+          else BroadcastHashJoin.output(streamedRow, buildRow, numLeftColumns, rightOutput)
+
+        // hash the built partition, keeping track of the built rows matched for outer and semi joins
+        val table = mutable.HashMap[Seq[Any], mutable.ArrayBuffer[Row]]()
+        val unmatchedBuild = mutable.ArrayBuffer[Row]()
+        buildPartition.foreach {
+          row =>
+            val key = BroadcastHashJoin.keyOf(row, buildKeys)
+            if (key == null) unmatchedBuild += row
+            else table.getOrElseUpdate(key, mutable.ArrayBuffer[Row]()) += row
+        }
+        val matchedKeys = mutable.HashSet[Seq[Any]]()
+
+        val joined = streamedPartition.flatMap {
+          row =>
+            val key = BroadcastHashJoin.keyOf(row, streamedKeys)
+            val matches = if (key == null) None else table.get(key)
+            if (matches.isDefined) matchedKeys += key
+            if (isSemi) {
+              // a built left row is output once, after all its matches are known
+              if (buildLeft || matches.isEmpty) Iterator.empty else Iterator(row)
+            } else if (matches.isEmpty) {
+              if (isStreamedOuter) Iterator(output(null, row)) else Iterator.empty
+            } else {
+              matches.get.iterator.map(m => output(m, row))
+            }
+        }
+
+        // the built rows matched or not can only be known once the streamed partition is consumed
+        if (isSemi && buildLeft) {
+          joined ++ table.iterator.filter { case (key, _) => matchedKeys.contains(key) }.flatMap(_._2)
+        } else if (isBuildOuter) {
+          joined ++ {
+            val unmatched = table.iterator.filter { case (key, _) => !matchedKeys.contains(key) }.flatMap(_._2)
+            (unmatched ++ unmatchedBuild.iterator).map(row => output(row, null))
+          }
+        } else {
+          joined
+        }
+      }
+    }
+
+    sqlContext.createDataFrame(rows, BroadcastHashJoin.outputSchema(left, right, joinType, rightOutput,
+      rightOutputNames))
+  }
+}
@@ -0,0 +1,130 @@
+package io.ddf.spark.etl
+
+import java.util.Properties
+import java.util.concurrent.LinkedBlockingDeque
+
+import com.google.common.base.Charsets
+import com.google.common.hash.Hashing
+import org.python.core.{PyList, PyObject, Py}
+import org.python.util.PythonInterpreter
+
+import scala.collection.mutable
+
+/**
+ * Jython interpreters kept in each executor JVM and reused by the tasks it runs. Jython is initialized once per JVM,
+ * and each interpreter keeps the transform functions it has loaded, so that a partition neither starts an interpreter
+ * nor unmarshals the functions again. At most as many interpreters as there are cores stay idle; an interpreter whose
+ * use failed is dropped rather than reused.
+ */
+object JythonInterpreterPool {
+
+  private val MAX_IDLE_INTERPRETERS = Runtime.getRuntime.availableProcessors()
+
+  private val mIdle = new LinkedBlockingDeque[JythonInterpreter]()
+
+  @volatile private var mIsInitialized = false
+
+  def withInterpreter[T](f: JythonInterpreter ⇒ T): T = {
+    val interpreter = borrow()
+    var succeeded = false
+    try {
+      val result = f(interpreter)
+      succeeded = true
+      result
+    } finally {
+      if (succeeded) release(interpreter) else interpreter.close()
+    }
+  }
+
+  private def borrow(): JythonInterpreter = {
+    val interpreter = mIdle.pollFirst()
+    if (interpreter != null) return interpreter
+
+    if (!mIsInitialized) {
+      this.synchronized {
+        if (!mIsInitialized) {
+          val props = new Properties()
+          // prevent: console: Failed to install '': java.nio.charset.UnsupportedCharsetException: cp0.
+          props.put("python.console.encoding", "UTF-8")
+          //don't respect java accessibility, so that we can access protected members on subclasses
+          props.put("python.security.respectJavaAccessibility", "false")
+          // disable site
+          props.put("python.import.site", "false")
+
+          PythonInterpreter.initialize(System.getProperties, props, new Array[String](0))
+          mIsInitialized = true
+        }
+      }
+    }
+    new JythonInterpreter(new PythonInterpreter())
+  }
+
+  private def release(interpreter: JythonInterpreter) {
+    if (mIdle.size() >= MAX_IDLE_INTERPRETERS || !mIdle.offerFirst(interpreter)) interpreter.close()
+  }
+}
+
+/**
+ * A Jython interpreter, which remembers the transform functions already loaded in it by the hash of their code
+ */
+class JythonInterpreter(val interpreter: PythonInterpreter) {
+
+  private val mFunctions = mutable.HashMap[String, PyObject]()
+
+  interpreter.exec(
+    """
+      |import marshal, types, base64
+      |
+      |def load_code(code_string):
+      |  code = marshal.loads(base64.urlsafe_b64decode(code_string))
+      |  return types.FunctionType(code, globals(), "transformation_function")
+      |
+      |def apply_functions(funcs, dest_cols, src_cols, df_part):
+      |  for f, dest, src in zip(funcs, dest_cols, src_cols):
+      |    df_part[dest] = map(f, *[df_part[c] for c in src])
+      |  return df_part
+      |
+    """.stripMargin
+  )
+
+  private val mLoadCode = interpreter.get("load_code")
+
+  private val mApplyFunctions = interpreter.get("apply_functions")
+
+  /**
+   * @param transformFunction base64-encoded marshaled bytecode of a function
+   * @return the function, loaded once per interpreter
+   */
+  def function(transformFunction: String): PyObject = {
+    val hash = Hashing.sha1().hashString(transformFunction, Charsets.UTF_8).toString
+    mFunctions.getOrElseUpdate(hash, mLoadCode.__call__(Py.newString(transformFunction)))
+  }
+
+  /**
+   * Applies each function to the whole source columns of the partition at once, adding its result as the
+   * destination column
+   *
+   * @param partdf a dict of lists, one per column
+   */
+  def transform(transformFunctions: Array[String], destColumns: Array[String], sourceColumns: Array[Array[String]],
+                partdf: PyObject): PyObject = {
+    val funcs = new PyList()
+    transformFunctions.foreach(code ⇒ funcs.append(function(code)))
+    val dests = new PyList()
+    destColumns.foreach(dest ⇒ dests.append(Py.newString(dest)))
+    val srcs = new PyList()
+    sourceColumns.foreach {
+      src ⇒
+        val cols = new PyList()
+        src.foreach(c ⇒ cols.append(Py.newString(c)))
+        srcs.append(cols)
+    }
+    mApplyFunctions.__call__(Array[PyObject](funcs, dests, srcs, partdf))
+  }
+
+  def close() {
+    mFunctions.clear()
+    interpreter.cleanup()
+    interpreter.close()
+  }
+}
@@ -0,0 +1,111 @@
+package io.ddf.spark.etl
+
+import java.util.concurrent.LinkedBlockingDeque
+
+import io.ddf.exception.DDFException
+import org.rosuda.REngine.REXP
+import org.rosuda.REngine.Rserve.{RConnection, StartRserve}
+
+/**
+ * Rserve sessions kept open in each executor JVM and reused by the tasks it runs, so that a partition does not pay for
+ * connecting to Rserve, and whether Rserve runs is checked once rather than by every task. At most as many sessions
+ * as there are cores stay idle; a session whose use failed is closed rather than reused, as its R state is unknown.
+ */
+object RserveSessionPool {
+
+  private val MAX_IDLE_SESSIONS = Runtime.getRuntime.availableProcessors()
+
+  private val mIdle = new LinkedBlockingDeque[RserveSession]()
+
+  @volatile private var mIsRserveRunning = false
+
+  def withSession[T](f: RserveSession ⇒ T): T = {
+    val session = borrow()
+    var succeeded = false
+    try {
+      val result = f(session)
+      succeeded = true
+      result
+    } finally {
+      if (succeeded) release(session) else session.close()
+    }
+  }
+
+  private def borrow(): RserveSession = {
+    var session = mIdle.pollFirst()
+    while (session != null && !session.isConnected) {
+      session = mIdle.pollFirst()
+    }
+    if (session != null) return session
+
+    if (!mIsRserveRunning) {
+      this.synchronized {
+        // check if Rserve is running, if not: start it
+        if (!mIsRserveRunning && !StartRserve.checkLocalRserve()) throw new DDFException("Unable to start Rserve")
+        mIsRserveRunning = true
+      }
+    }
+    new RserveSession(new RConnection())
+  }
+
+  private def release(session: RserveSession) {
+    if (!session.isConnected) return
+    // the most recently used sessions are reused first, the others are closed beyond the limit
+    if (mIdle.size() >= MAX_IDLE_SESSIONS || !mIdle.offerFirst(session)) session.close()
+  }
+}
+
+/**
+ * An open Rserve connection, which remembers the R expressions last parsed in it. Beyond MAX_PARSED expressions, the
+ * least recently used one is forgotten and removed from R.
+ */
+class RserveSession(val connection: RConnection) {
+
+  private val mParsed = new java.util.LinkedHashMap[String, String](16, 0.75f, true) {
+    override def removeEldestEntry(eldest: java.util.Map.Entry[String, String]): Boolean = {
+      val evict = size() > RserveSession.MAX_PARSED
+      if (evict) connection.voidEval(String.format("rm(%s)", eldest.getValue))
+      evict
+    }
+  }
+
+  private var mNextParsed = 0
+
+  def isConnected: Boolean = connection.isConnected
+
+  /**
+   * Parses the R code once per session, as long as it is among the last MAX_PARSED expressions used
+   *
+   * @return the name of the R variable holding the parsed expression, to be evaluated with [[eval]]
+   */
+  def parse(code: String): String = {
+    val parsed = mParsed.get(code)
+    if (parsed != null) return parsed
+
+    val name = ".ddf.expr." + mNextParsed
+    connection.assign(".tmp.", code)
+    val r = connection.eval(String.format(
+      "r <- try(%s <- parse(text=.tmp.), silent=TRUE); if (inherits(r, 'try-error')) r else NULL", name))
+    if (r.inherits("try-error")) throw new DDFException("failed to parse R code: " + r.asString())
+    mNextParsed += 1
+    mParsed.put(code, name)
+    name
+  }
+
+  /**
+   * Evaluates an expression returned by [[parse]], raising the R error message if it fails
+   */
+  def eval(parsed: String, errMsgHeader: String): REXP = {
+    val r = connection.eval(String.format("r <- try(eval(%s), silent=TRUE)", parsed))
+    if (r != null && r.inherits("try-error")) throw new DDFException(errMsgHeader + ": " + r.asString())
+    r
+  }
+
+  def close() {
+    connection.close()
+  }
+}
+
+object RserveSession {
+  val MAX_PARSED = 64
+}
@@ -2,13 +2,13 @@ package io.ddf.spark.etl
 
 import org.apache.spark.sql.DataFrame
 import org.python.core._
-import org.python.util.PythonInterpreter
 
 import scala.collection.JavaConverters._
 import scala.collection.JavaConversions.asScalaIterator
 import scala.collection.JavaConversions.seqAsJavaList
 
 import org.apache.spark.SparkContext.rddToPairRDDFunctions
+import org.apache.spark.SparkContext.rddToOrderedRDDFunctions
 import org.apache.spark.rdd.RDD
 import org.apache.spark.storage.StorageLevel
 import org.rosuda.REngine.REXP
@@ -26,8 +26,13 @@ import _root_.io.ddf.content.Schema
 import _root_.io.ddf.content.Schema.Column
 import _root_.io.ddf.etl.{TransformationHandler ⇒ CoreTransformationHandler}
 import _root_.io.ddf.exception.DDFException
+import _root_.io.ddf.misc.Config
+import _root_.io.ddf.misc.Config.ConfigConstant
 import _root_.io.ddf.spark.util.SparkUtils
-import java.util.{Properties, ArrayList, List}
+import com.google.common.base.Strings
+import org.apache.spark.{Accumulable, Partitioner}
+import scala.collection.mutable.ArrayBuffer
+import java.util.{ArrayList, List}
 
 class TransformationHandler(mDDF: DDF) extends CoreTransformationHandler(mDDF) {
 
@@ -87,26 +92,50 @@ class TransformationHandler(mDDF: DDF) extends CoreTransformationHandler(mDDF) {
     }
 
     // 2. extract map key and shuffle!
-    val groupped = TransformationHandler.doShuffle(rMapped)
-
     // 3. reduce!
-    val rReduced = groupped.mapPartitions {
-      partdf ⇒
-        try {
-          TransformationHandler.postShufflePartitionMapper(partdf, reduceFuncDef)
-        } catch {
-          case e: Exception ⇒ {
-            e match {
-              case aExc: DDFException ⇒ throw aExc
-              case rserveExc: org.rosuda.REngine.Rserve.RserveException ⇒ {
-                throw new DDFException(rserveExc.getMessage, null)
-
+    val reducedPartitions = if (mapsideCombine) {
+      // the map outputs are already combined by reduce.func, so the reducers keep combining them as they arrive rather
+      // than grouping them, and never hold a whole key group
+      val combineValues = TransformationHandler.getMapReduceCombineValues(mDDF.getEngine)
+      TransformationHandler.doCombiningShuffle(rMapped).mapPartitions {
+        partdf ⇒
+          try {
+            TransformationHandler.combiningPartitionMapper(partdf, reduceFuncDef, combineValues)
+          } catch {
+            case e: Exception ⇒ {
+              e match {
+                case aExc: DDFException ⇒ throw aExc
+                case rserveExc: org.rosuda.REngine.Rserve.RserveException ⇒ {
+                  throw new DDFException(rserveExc.getMessage, null)
+
+                }
+                case _ ⇒ throw new DDFException(e.getMessage, null)
               }
-              case _ ⇒ throw new DDFException(e.getMessage, null)
             }
           }
-        }
-    }.filter {
+      }
+    } else {
+      val groupped = TransformationHandler.doShuffle(rMapped)
+      groupped.mapPartitions {
+        partdf ⇒
+          try {
+            TransformationHandler.postShufflePartitionMapper(partdf, reduceFuncDef)
+          } catch {
+            case e: Exception ⇒ {
+              e match {
+                case aExc: DDFException ⇒ throw aExc
+                case rserveExc: org.rosuda.REngine.Rserve.RserveException ⇒ {
+                  throw new DDFException(rserveExc.getMessage, null)
+
+                }
+                case _ ⇒ throw new DDFException(e.getMessage, null)
+              }
+            }
+          }
+      }
+    }
+
+    val rReduced = reducedPartitions.filter {
       partdf ⇒
         // mapPartitions after groupByKey may cause some empty partitions,
         // which will result in empty data.frame
@@ -126,44 +155,46 @@ class TransformationHandler(mDDF: DDF) extends CoreTransformationHandler(mDDF) {
     ddf
   }
 
-  override def transformNativeRserve(transformExpression: String): DDF = {
-
-    val dfrdd = mDDF.getRepresentationHandler.get(classOf[RDD[_]], classOf[REXP]).asInstanceOf[RDD[REXP]]
+  // metrics of the partitions of the last transformNativeRserve, filled in as they are computed
+  @volatile private var mRserveMetrics: Accumulable[ArrayBuffer[RservePartitionMetrics], RservePartitionMetrics] = null
 
-    // process each DF partition in R
-    val rMapped = dfrdd.map {
-      partdf ⇒
-        try {
-          // check if Rserve is running, if not: start it
-          if (!StartRserve.checkLocalRserve()) throw new RuntimeException("Unable to start Rserve")
-          // one connection for each compute job
-          val rconn = new RConnection()
-
-          // send the df.partition to R process environment
-          val dfvarname = "df.partition"
-          rconn.assign(dfvarname, partdf)
-
-          val expr = String.format("%s <- transform(%s, %s)", dfvarname, dfvarname, transformExpression)
-
-          // mLog.info(">>>>>>>>>>>>.expr=" + expr.toString())
-
-          // compute!
-          TransformationHandler.tryEval(rconn, expr, errMsgHeader = "failed to eval transform expression")
-
-          // transfer data to JVM
-          val partdfres = rconn.eval(dfvarname)
-
-          // uncomment this to print whole content of the df.partition for debug
-          // rconn.voidEval(String.format("print(%s)", dfvarname))
-          rconn.close()
+  /**
+   * @return the metrics of each partition of the last transformNativeRserve computed so far. A partition computed more
+   *         than once, e.g., the first one, which is also computed to find the result schema, is listed each time.
+   */
+  def getRserveMetrics: java.util.List[RservePartitionMetrics] = {
+    if (mRserveMetrics == null) new ArrayList[RservePartitionMetrics]()
+    else new ArrayList[RservePartitionMetrics](seqAsJavaList(mRserveMetrics.value))
+  }
 
-          partdfres
-        } catch {
-          case e: DDFException ⇒ {
-            throw new DDFException("Unable to perform NativeRserve transformation", e)
+  override def transformNativeRserve(transformExpression: String): DDF = {
 
+    val dfrdd = mDDF.getRepresentationHandler.get(classOf[RDD[_]], classOf[REXP]).asInstanceOf[RDD[REXP]]
+    val chunkRows = TransformationHandler.getRserveChunkRows(this.getEngine)
+    val metrics = dfrdd.sparkContext.accumulableCollection(ArrayBuffer[RservePartitionMetrics]())
+    mRserveMetrics = metrics
+
+    // process each DF partition in R, in a session of the executor's pool
+    val rMapped = dfrdd.mapPartitionsWithIndex {
+      (index, partdfs) ⇒ partdfs.map {
+        partdf ⇒
+          try {
+            RserveSessionPool.withSession {
+              session ⇒
+                val partitionMetrics = new RservePartitionMetrics(index)
+                val start = System.currentTimeMillis()
+                val result = TransformationHandler.transformInChunks(session, partdf, transformExpression, chunkRows,
+                  partitionMetrics)
+                partitionMetrics.millis = System.currentTimeMillis() - start
+                metrics += partitionMetrics
+                result
+            }
+          } catch {
+            case e: DDFException ⇒ {
+              throw new DDFException("Unable to perform NativeRserve transformation", e)
+            }
           }
-        }
+      }
     }
 
     // convert R-processed data partitions back to RDD[Array[Object]]
@@ -198,52 +229,13 @@ class TransformationHandler(mDDF: DDF) extends CoreTransformationHandler(mDDF) {
 
     val dfrdd = mDDF.getRepresentationHandler.get(classOf[RDD[_]], classOf[PyObject]).asInstanceOf[RDD[PyObject]]
 
-    // process each DF partition in Python
+    // process each DF partition in Python, with an interpreter of the executor that has loaded the functions
     val rMapped = dfrdd.map {
       partdf ⇒
         try {
-          val props = new Properties()
-
-          // prevent: console: Failed to install '': java.nio.charset.UnsupportedCharsetException: cp0.
-          props.put("python.console.encoding", "UTF-8")
-          //don't respect java accessibility, so that we can access protected members on subclasses
-          props.put("python.security.respectJavaAccessibility", "false")
-          // disable site
-          props.put("python.import.site", "false")
-
-          PythonInterpreter.initialize(System.getProperties, props, new Array[String](0))
-
-          val interpreter = new PythonInterpreter()
-
-          // when we do set() for a Array[String] variable, it will become array.array<> in jython,
-          // hence casting is needed in the python code later.
-          // Moreover loops will become awkward because __iter__ doesn't work with array.array
-          interpreter.set("transform_codes", transformFunctions)
-          interpreter.set("src_cols", sourceColumns)
-          interpreter.set("dest_cols", destColumns)
-          interpreter.set("df_part", partdf)
-
-          interpreter.exec(
-            """
-              |import marshal, types, base64
-              |
-              |def load_code(code_string):
-              |  code = marshal.loads(base64.urlsafe_b64decode(code_string))
-              |  return types.FunctionType(code, globals(), "transformation_function")
-              |
-              |funcs = [load_code(str(x)) for x in transform_codes]
-              |
-              |for f, dest, src in zip(funcs, [x for x in dest_cols], [y for y in src_cols]):
-              |  data_src = tuple(df_part[str(c)] for c in src)
-              |  df_part[str(dest)] = [f(*args) for args in zip(*data_src)]
-              |
-            """.stripMargin
-          )
-          val obj = interpreter.get("df_part")
-
-          interpreter.cleanup()
-          interpreter.close()
-          obj
+          JythonInterpreterPool.withInterpreter {
+            interpreter ⇒ interpreter.transform(transformFunctions, destColumns, sourceColumns, partdf)
+          }
         } catch {
           case e: PyException ⇒ throw new DDFException("Unable to perform Python transformation", e)
         }
@@ -275,6 +267,101 @@ object TransformationHandler {
     if (r.inherits("try-error")) throw new DDFException(errMsgHeader + ": " + r.asString())
   }
 
+  /**
+   * @return the RSERVE_CHUNK_ROWS setting, or Int.MaxValue, so that partitions are sent whole, when it is not set or
+   *         not positive. Chunking is opt-in as it changes what the expression computes, see [[transformInChunks]].
+   */
+  def getRserveChunkRows(engine: String): Int = {
+    val value = Config.getValueWithGlobalDefault(engine, ConfigConstant.FIELD_RSERVE_CHUNK_ROWS)
+    try {
+      val chunkRows = if (Strings.isNullOrEmpty(value)) 0 else value.trim.toInt
+      if (chunkRows > 0) chunkRows else Int.MaxValue
+    } catch {
+      case e: NumberFormatException ⇒ Int.MaxValue
+    }
+  }
+
+  /**
+   * Transforms a data.frame in R by chunks of at most chunkRows rows, so that R never holds more than a chunk and its
+   * result, whatever the size of the partition. The transform expression is parsed once per session, and each chunk
+   * takes a single eval that both transforms it and returns the result.
+   *
+   * The expression is evaluated on each chunk on its own, so it must be row-wise: an aggregate such as mean(x) in
+   * x - mean(x) would be the mean of the chunk rather than of the partition. With chunkRows at least the number of
+   * rows, the partition is sent whole, and aggregates are over the partition as without chunking.
+   */
+  def transformInChunks(session: RserveSession, partdf: REXP, transformExpression: String, chunkRows: Int,
+    metrics: RservePartitionMetrics): REXP = {
+    val dfvarname = "df.partition"
+    val parsed = session.parse(String.format("%s <- transform(%s, %s)", dfvarname, dfvarname, transformExpression))
+
+    val columns = partdf.asList()
+    val names = partdf.getAttribute("names").asStrings()
+    val numRows = if (columns.size() == 0) 0 else columns.at(0).length()
+
+    val results = ArrayBuffer[REXP]()
+    var from = 0
+    do {
+      val until = math.min(from + chunkRows, numRows)
+      val chunk = if (from == 0 && until == numRows) partdf else sliceDataFrame(columns, names, from, until)
+
+      // send the chunk to R process environment
+      session.connection.assign(dfvarname, chunk)
+      // compute and transfer the result to JVM
+      val result = session.eval(parsed, errMsgHeader = "failed to eval transform expression")
+      results += result
+
+      metrics.rows += until - from
+      metrics.chunks += 1
+      metrics.bytesSent += sizeOf(chunk)
+      metrics.bytesReceived += sizeOf(result)
+      from = until
+    } while (from < numRows)
+
+    if (results.size == 1) results.head else concatDataFrames(results)
+  }
+
+  private def sliceDataFrame(columns: RList, names: Array[String], from: Int, until: Int): REXP = {
+    val slices = (0 until columns.size()).map {
+      j ⇒ columns.at(j) match {
+        case v: REXPDouble ⇒ new REXPDouble(v.asDoubles().slice(from, until)).asInstanceOf[REXP]
+        case v: REXPInteger ⇒ new REXPInteger(v.asIntegers().slice(from, until)).asInstanceOf[REXP]
+        case v: REXPString ⇒ new REXPString(v.asStrings().slice(from, until)).asInstanceOf[REXP]
+        case _ ⇒ throw new DDFException("Only support atomic vectors of type int|double|string!")
+      }
+    }
+    REXP.createDataFrame(new RList(slices.toArray, names))
+  }
+
+  private def concatDataFrames(dfs: Seq[REXP]): REXP = {
+    val first = dfs.head.asList()
+    val names = dfs.head.getAttribute("names").asStrings()
+    val columns = (0 until first.size()).map {
+      j ⇒ first.at(j) match {
+        case v: REXPDouble ⇒ new REXPDouble(dfs.flatMap(_.asList().at(j).asDoubles()).toArray).asInstanceOf[REXP]
+        case v: REXPInteger ⇒ new REXPInteger(dfs.flatMap(_.asList().at(j).asIntegers()).toArray).asInstanceOf[REXP]
+        case v: REXPString ⇒ new REXPString(dfs.flatMap(_.asList().at(j).asStrings()).toArray).asInstanceOf[REXP]
+        case _ ⇒ throw new DDFException("Only support atomic vectors of type int|double|string!")
+      }
+    }
+    REXP.createDataFrame(new RList(columns.toArray, names))
+  }
+
+  /**
+   * @return the size of the values of a data.frame, about as Rserve sends them
+   */
+  private def sizeOf(df: REXP): Long = {
+    val columns = df.asList()
+    (0 until columns.size()).map {
+      j ⇒ columns.at(j) match {
+        case v: REXPDouble ⇒ 8L * v.length()
+        case v: REXPInteger ⇒ 4L * v.length()
+        case v: REXPString ⇒ v.asStrings().map(s ⇒ if (s == null) 2L else s.getBytes("UTF-8").length + 1L).sum
+        case v ⇒ 4L * v.length()
+      }
+    }.sum
+  }
+
   /**
    * eval the R expr and return all captured output
    */
@@ -474,6 +561,93 @@ object TransformationHandler {
     groupped
   }
 
+  // pre-amble
+  // copied from: https://github.com/adatao/RClient/blob/master/io.pa/R/mapreduce.R
+  // tests: https://github.com/adatao/RClient/blob/mapreduce/io.pa/inst/tests/test-mapreduce.r#L238
+  // should consider some packaging to synchronize code
+  private val POST_SHUFFLE_PREAMBLE =
+    """
+      |#' Emit keys and values for map/reduce.
+      |keyval <- function(key, val) {
+      |  if (! is.atomic(key))
+      |    stop(paste("keyval: key argument must be an atomic vector: ", paste(key, collapse=" ")))
+      |  if (! is.null(dim(key)))
+      |    stop(paste("keyval: key argument must be one-dimensional: dim(key) = ",
+      |               paste(dim(key), collapse=" ")))
+      |  nkey <- length(key)
+      |  nval <- if (! is.null(nrow(val))) nrow(val) else length(val)
+      |  if (nkey != nval)
+      |    stop(sprintf("keyval: key and val arguments must match in length/nrow: %s != %s", nkey, nval))
+      |  kv <- list(key=key, val=val);
+      |  attr(kv, "adatao-2d-kv-pair") <- T;
+      |  kv
+      |}
+      |
+      |#' Emit a single key and value pair for map/reduce.
+      |keyval.row <- function(key, val) {
+      |  if (! is.null(dim(key)))
+      |    stop(paste("keyval: key argument must be a scala value, not n-dimensional: dim(key) = ",
+      |               paste(dim(key), collapse=" ")))
+      |  if (length(key) != 1)
+      |    stop(paste("keyval.row: key argument must be a scalar value: ", paste(key, collapse=" ")))
+      |  if (! is.null(dim(val)))
+      |    stop(paste("keyval: val argument must be one-: dim(val) = ",
+      |               paste(dim(val), collapse=" ")))
+      |  kv <- list(key=key, val=val);
+      |  attr(kv, "adatao-1d-kv-pair") <- T;
+      |  kv
+      |}
+      |
+      |#' does the kv pair have a adatao-defined attr?
+      |is.adatao.kv <- function(kv) { (! is.null(attr(kv, "adatao-1d-kv-pair"))) | (! is.null(attr(kv, "adatao-2d-kv-pair"))) }
+      |
+      |#' should this be splitted?
+      |is.adatao.1d.kv <- function(kv) { ! is.null(attr(kv, "adatao-1d-kv-pair")) }
+      |
+      |# flatten the reduced kv pair.
+      |flatten.kvv <- function(rkv) {
+      |  if (length(rkv$val) > 1) {
+      |    row <- vector('list', length(rkv$val) + 1)
+      |    row[1] <- rkv$key
+      |    row[2:(length(rkv$val)+1)] <- rkv$val
+      |    names(row) <- c("key", names(rkv$val))
+      |    row
+      |  } else {
+      |    rkv
+      |  }
+      |}
+      |
+      |#' bind together list of values from the same keys as rows of a data.frame
+      |rbind.vv <- function(vvlist) {
+      |  df <- do.call(rbind.data.frame, vvlist)
+      |  if (length(vvlist) > 0) {
+      |    head <- vvlist[[1]]
+      |    if ( is.null(names(head)) ) {
+      |      if (length(head) == 1) {
+      |        names(df) <- c("val")
+      |      } else {
+      |        names(df) <- Map(function(x){ paste("val", x, sep="") }, 1:length(head))
+      |      }
+      |    }
+      |  }
+      |  df
+      |}
+      |
+      |handle.reduced.kv <- function(rkv) {
+      |  if (is.adatao.1d.kv(rkv)) {
+      |    row <- flatten.kvv(rkv)
+      |    row
+      |  } else if (is.adatao.kv(rkv)) {
+      |    df <- rkv$val
+      |    df$key <- rkv$key
+      |    df
+      |  } else {
+      |    print("skipping not-supported reduce.func output = "); str(rkv)
+      |    NULL
+      |  }
+      |}
+    """.stripMargin
+
   /**
    * serialize data to R, perform reduce,
    * then assemble each resulting partition as a data.frame of REXP in Java
@@ -483,92 +657,7 @@ object TransformationHandler {
     if (!StartRserve.checkLocalRserve()) throw new RuntimeException("Unable to start Rserve")
     val rconn = new RConnection()
 
-    // pre-amble
-    // copied from: https://github.com/adatao/RClient/blob/master/io.pa/R/mapreduce.R
-    // tests: https://github.com/adatao/RClient/blob/mapreduce/io.pa/inst/tests/test-mapreduce.r#L238
-    // should consider some packaging to synchronize code
-    rconn.voidEval(
-      """
-        |#' Emit keys and values for map/reduce.
-        |keyval <- function(key, val) {
-        |  if (! is.atomic(key))
-        |    stop(paste("keyval: key argument must be an atomic vector: ", paste(key, collapse=" ")))
-        |  if (! is.null(dim(key)))
-        |    stop(paste("keyval: key argument must be one-dimensional: dim(key) = ",
-        |               paste(dim(key), collapse=" ")))
-        |  nkey <- length(key)
-        |  nval <- if (! is.null(nrow(val))) nrow(val) else length(val)
-        |  if (nkey != nval)
-        |    stop(sprintf("keyval: key and val arguments must match in length/nrow: %s != %s", nkey, nval))
-        |  kv <- list(key=key, val=val);
-        |  attr(kv, "adatao-2d-kv-pair") <- T;
-        |  kv
-        |}
-        |
-        |#' Emit a single key and value pair for map/reduce.
-        |keyval.row <- function(key, val) {
-        |  if (! is.null(dim(key)))
-        |    stop(paste("keyval: key argument must be a scala value, not n-dimensional: dim(key) = ",
-        |               paste(dim(key), collapse=" ")))
-        |  if (length(key) != 1)
-        |    stop(paste("keyval.row: key argument must be a scalar value: ", paste(key, collapse=" ")))
-        |  if (! is.null(dim(val)))
-        |    stop(paste("keyval: val argument must be one-: dim(val) = ",
-        |               paste(dim(val), collapse=" ")))
-        |  kv <- list(key=key, val=val);
-        |  attr(kv, "adatao-1d-kv-pair") <- T;
-        |  kv
-        |}
-        |
-        |#' does the kv pair have a adatao-defined attr?
-        |is.adatao.kv <- function(kv) { (! is.null(attr(kv, "adatao-1d-kv-pair"))) | (! is.null(attr(kv, "adatao-2d-kv-pair"))) }
-        |
-        |#' should this be splitted?
-        |is.adatao.1d.kv <- function(kv) { ! is.null(attr(kv, "adatao-1d-kv-pair")) }
-        |
-        |# flatten the reduced kv pair.
-        |flatten.kvv <- function(rkv) {
-        |  if (length(rkv$val) > 1) {
-        |    row <- vector('list', length(rkv$val) + 1)
-        |    row[1] <- rkv$key
-        |    row[2:(length(rkv$val)+1)] <- rkv$val
-        |    names(row) <- c("key", names(rkv$val))
-        |    row
-        |  } else {
-        |    rkv
-        |  }
-        |}
-        |
-        |#' bind together list of values from the same keys as rows of a data.frame
-        |rbind.vv <- function(vvlist) {
-        |  df <- do.call(rbind.data.frame, vvlist)
-        |  if (length(vvlist) > 0) {
-        |    head <- vvlist[[1]]
-        |    if ( is.null(names(head)) ) {
-        |      if (length(head) == 1) {
-        |        names(df) <- c("val")
-        |      } else {
-        |        names(df) <- Map(function(x){ paste("val", x, sep="") }, 1:length(head))
-        |      }
-        |    }
-        |  }
-        |  df
-        |}
-        |
-        |handle.reduced.kv <- function(rkv) {
-        |  if (is.adatao.1d.kv(rkv)) {
-        |    row <- flatten.kvv(rkv)
-        |    row
-        |  } else if (is.adatao.kv(rkv)) {
-        |    df <- rkv$val
-        |    df$key <- rkv$key
-        |    df
-        |  } else {
-        |    print("skipping not-supported reduce.func output = "); str(rkv)
-        |    NULL
-        |  }
-        |}
-      """.stripMargin)
+    rconn.voidEval(POST_SHUFFLE_PREAMBLE)
 
     TransformationHandler.tryEval(rconn, "reduce.func <- " + reduceFuncDef,
       errMsgHeader = "fail to eval reduce.func definition")
@@ -578,34 +667,55 @@ object TransformationHandler {
 
     // we do this in a loop because each of the seqv could potentially be very large
     input.zipWithIndex.foreach {
-      case ((k: String, seqv: Seq[_]), i: Int) ⇒
+      case ((k: String, seqv: Seq[_]), i: Int) ⇒ reduceKey(rconn, k, seqv.asInstanceOf[Seq[REXP]], i)
+    }
 
-        // send data to R to compute reductions
-        rconn.assign("idx", new REXPInteger(i))
-        rconn.assign("reduce.key", k)
-        rconn.assign("reduce.serialized.vvlist", new REXPList(new RList(seqv)))
+    val result = collectReductions(rconn)
 
-        // print to Rserve log
-        rconn.voidEval("print(paste('====== processing key = ', reduce.key))")
+    // print to Rserve log
+    rconn.voidEval("print('==== reduce phase completed')")
 
-        TransformationHandler.tryEval(rconn, "reduce.vvlist <- lapply(reduce.serialized.vvlist, unserialize)",
-          errMsgHeader = "fail to unserialize shuffled values for key = " + k)
+    // done R computation for this partition
+    rconn.close()
 
-        TransformationHandler.tryEval(rconn, "reduce.vv <- rbind.vv(reduce.vvlist)",
-          errMsgHeader = "fail to merge (using rbind.vv) shuffled values for key = " + k)
+    // wrap it on a Iterator to satisfy mapPartitions
+    Iterator.single(result)
+  }
+
+  /**
+   * Reduces the values of a key, adding the result to the reductions list in R, at position i
+   */
+  private def reduceKey(rconn: RConnection, k: String, values: Seq[REXP], i: Int) {
+    // send data to R to compute reductions
+    rconn.assign("idx", new REXPInteger(i))
+    rconn.assign("reduce.key", k)
+    rconn.assign("reduce.serialized.vvlist", new REXPList(new RList(values)))
 
-        // reduce!
-        TransformationHandler.tryEval(rconn, "reduced.kv <- reduce.func(reduce.key, reduce.vv)",
-          errMsgHeader = "fail to apply reduce func to data partition")
+    // print to Rserve log
+    rconn.voidEval("print(paste('====== processing key = ', reduce.key))")
 
-        // flatten the nested val list if needed
-        TransformationHandler.tryEval(rconn, "reduced <- handle.reduced.kv(reduced.kv)",
-          errMsgHeader = "malformed reduce.func output, please run mapreduce.local to test your reduce.func")
+    TransformationHandler.tryEval(rconn, "reduce.vvlist <- lapply(reduce.serialized.vvlist, unserialize)",
+      errMsgHeader = "fail to unserialize shuffled values for key = " + k)
 
-        // assign reduced item to reductions list
-        rconn.voidEval("if (!is.null(reduced)) { reductions[[idx+1]] <- reduced } ")
-    }
+    TransformationHandler.tryEval(rconn, "reduce.vv <- rbind.vv(reduce.vvlist)",
+      errMsgHeader = "fail to merge (using rbind.vv) shuffled values for key = " + k)
 
+    // reduce!
+    TransformationHandler.tryEval(rconn, "reduced.kv <- reduce.func(reduce.key, reduce.vv)",
+      errMsgHeader = "fail to apply reduce func to data partition")
+
+    // flatten the nested val list if needed
+    TransformationHandler.tryEval(rconn, "reduced <- handle.reduced.kv(reduced.kv)",
+      errMsgHeader = "malformed reduce.func output, please run mapreduce.local to test your reduce.func")
+
+    // assign reduced item to reductions list
+    rconn.voidEval("if (!is.null(reduced)) { reductions[[idx+1]] <- reduced } ")
+  }
+
+  /**
+   * @return the reductions list in R, bound as the data.frame of a partition
+   */
+  private def collectReductions(rconn: RConnection): REXP = {
     // bind the reduced rows together, it contains rows of the resulting BigDataFrame
     TransformationHandler.tryEval(rconn, "reduced.partition <- do.call(rbind.data.frame, reductions)",
       errMsgHeader = "fail to use rbind.data.frame on reductions list, reduce.func cannot be combined as a BigDataFrame")
@@ -614,15 +724,113 @@ object TransformationHandler {
     rconn.voidEval("rownames(reduced.partition) <- NULL")
 
     // transfer reduced data back to JVM
-    val result = rconn.eval("reduced.partition")
+    rconn.eval("reduced.partition")
+  }
 
-    // print to Rserve log
-    rconn.voidEval("print('==== reduce phase completed')")
+  val DEFAULT_MAPREDUCE_COMBINE_VALUES = 100
 
-    // done R computation for this partition
-    rconn.close()
+  def getMapReduceCombineValues(engine: String): Int = {
+    val value = Config.getValueWithGlobalDefault(engine, ConfigConstant.FIELD_MAPREDUCE_COMBINE_VALUES)
+    try {
+      // combining a single value would never reduce it
+      if (Strings.isNullOrEmpty(value)) DEFAULT_MAPREDUCE_COMBINE_VALUES else math.max(value.trim.toInt, 2)
+    } catch {
+      case e: NumberFormatException ⇒ DEFAULT_MAPREDUCE_COMBINE_VALUES
+    }
+  }
 
-    // wrap it on a Iterator to satisfy mapPartitions
+  /**
+   * Hash-partitions the key-value pairs of the map outputs on their keys, sorting each partition by key, which spills
+   * to disk rather than grouping the values in memory
+   */
+  def doCombiningShuffle(rMapped: RDD[REXP]): RDD[(String, REXP)] = {
+    val pairs = rMapped.flatMap {
+      rexp ⇒
+        rexp.asList().iterator.map {
+          kv ⇒
+            val kvl = kv.asInstanceOf[REXP].asList
+            (kvl.at("key").asString(), kvl.at("val"))
+        }
+    }
+    pairs.repartitionAndSortWithinPartitions(Partitioner.defaultPartitioner(pairs))
+  }
+
+  /**
+   * Reduces the shuffled values of a partition, sorted by key, while they arrive, for a reduce.func that also combines
+   * its own outputs, as the map-side combine requires. The values of a key are buffered until there are combineValues
+   * of them, which reduce.func then combines into one, and the values left are reduced as in
+   * [[postShufflePartitionMapper]] as soon as the next key arrives. So no more than combineValues values are ever
+   * held, however many keys the partition has and however skewed they are.
+   */
+  def combiningPartitionMapper(input: Iterator[(String, REXP)], reduceFuncDef: String,
+    combineValues: Int): Iterator[REXP] = {
+    if (!input.hasNext) return Iterator.empty
+
+    val result = RserveSessionPool.withSession {
+      session ⇒
+        val rconn = session.connection
+        rconn.voidEval(POST_SHUFFLE_PREAMBLE)
+
+        TransformationHandler.tryEval(rconn, "reduce.func <- " + reduceFuncDef,
+          errMsgHeader = "fail to eval reduce.func definition")
+
+        rconn.voidEval("reduce.options <- options(stringsAsFactors = F)")
+
+        rconn.voidEval("reductions <- list()")
+        var key: String = null
+        var numKeys = 0
+        val values = ArrayBuffer[REXP]()
+        input.foreach {
+          case (k, v) ⇒
+            if (key != null && k != key) {
+              reduceKey(rconn, key, values, numKeys)
+              numKeys += 1
+              values.clear()
+            }
+            key = k
+            values += v
+            if (values.size >= combineValues) {
+              val combined = combine(rconn, k, values)
+              values.clear()
+              values += combined
+            }
+        }
+        reduceKey(rconn, key, values, numKeys)
+        val reduced = collectReductions(rconn)
+
+        // the session is reused, do not keep the options and the data of this partition in R
+        rconn.voidEval("options(reduce.options)")
+        rconn.voidEval("rm(list=ls())")
+        rconn.voidEval("print('==== reduce phase completed')")
+        reduced
+    }
     Iterator.single(result)
   }
+
+  /**
+   * @return the value of reduce.func applied to the values of a key, serialized as a map output value
+   */
+  private def combine(rconn: RConnection, k: String, values: Seq[REXP]): REXP = {
+    rconn.assign("reduce.key", k)
+    rconn.assign("reduce.serialized.vvlist", new REXPList(new RList(values)))
+    TransformationHandler.tryEval(rconn,
+      "combined.kv <- reduce.func(reduce.key, rbind.vv(lapply(reduce.serialized.vvlist, unserialize)))",
+      errMsgHeader = "fail to combine shuffled values for key = " + k)
+    rconn.eval("serialize(combined.kv$val, NULL)")
+  }
+}
+
+/**
+ * What transforming a partition in R took: rows and chunks sent, bytes of values sent to and received from R, and the
+ * time from sending the first chunk to getting the whole result back
+ */
+class RservePartitionMetrics(val partition: Int) extends Serializable {
+  var rows = 0L
+  var chunks = 0
+  var bytesSent = 0L
+  var bytesReceived = 0L
+  var millis = 0L
+
+  override def toString: String = String.format("partition %s: %s rows in %s chunks, %s bytes sent, %s received, %s ms",
+    partition.toString, rows.toString, chunks.toString, bytesSent.toString, bytesReceived.toString, millis.toString)
 }
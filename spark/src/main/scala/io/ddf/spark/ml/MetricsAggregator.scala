@@ -0,0 +1,181 @@
+package io.ddf.spark.ml
+
+import java.util.{EnumSet, Set ⇒ JSet}
+
+import io.ddf.analytics.Summary
+import io.ddf.exception.DDFException
+import io.ddf.ml.{Evaluation, RocMetric}
+import io.ddf.ml.Evaluation.Metric
+import org.apache.spark.rdd.RDD
+
+/**
+ * Computes the metrics of a prediction RDD of (yTrue, yPredict) in a single pass. Each partition folds its rows into
+ * one aggregator of primitive counters, and the aggregators of the partitions are merged by treeAggregate, so that
+ * neither a mean of yTrue nor any other metric needs a job of its own.
+ */
+object MetricsAggregator {
+
+  val TREE_DEPTH = 2
+
+  // bounds the probabilities of the log-loss away from 0 and 1
+  val EPSILON = 1e-15
+
+  def evaluate(rdd: RDD[Array[Double]], metrics: JSet[Metric]): Evaluation = {
+    val requested = if (metrics.isEmpty) EnumSet.allOf(classOf[Metric]) else EnumSet.copyOf(metrics)
+    val computeLogLoss = requested.contains(Metric.LOG_LOSS)
+    val alphaLength = if (requested.contains(Metric.ROC)) Evaluation.DEFAULT_ALPHA_LENGTH else 0
+    val threshold = Evaluation.DEFAULT_THRESHOLD
+
+    val aggregator = rdd.mapPartitions {
+      rows ⇒ Iterator(new MetricsAggregator(computeLogLoss, alphaLength, threshold).addAll(rows))
+    }.treeAggregate(new MetricsAggregator(computeLogLoss, alphaLength, threshold))(_.merge(_), _.merge(_), TREE_DEPTH)
+
+    if (aggregator.count == 0) throw new DDFException("No prediction to evaluate")
+    aggregator.toEvaluation(requested)
+  }
+}
+
+class MetricsAggregator(val computeLogLoss: Boolean, val alphaLength: Int, val threshold: Double)
+  extends Serializable {
+
+  var count = 0L
+  var naCount = 0L
+
+  // running mean and sum of squared deviations of yTrue, for the total sum of squares of R2
+  var yMean = 0.0
+  var ySS = 0.0
+
+  // running mean and sum of squared deviations of the residuals, for their summary
+  var residualMean = 0.0
+  var residualSS = 0.0
+  var residualMin = Double.MaxValue
+  var residualMax = -Double.MaxValue
+  var sumSquaredResiduals = 0.0
+  var sumAbsResiduals = 0.0
+
+  var trueNegatives = 0L
+  var falsePositives = 0L
+  var falseNegatives = 0L
+  var truePositives = 0L
+
+  var sumLogLoss = 0.0
+
+  // counts of the positives and negatives whose yPredict falls in each of the alphaLength thresholds of the ROC
+  val positives = new Array[Long](alphaLength)
+  val negatives = new Array[Long](alphaLength)
+
+  def add(yTrue: Double, yPredict: Double): this.type = {
+    if (yTrue.isNaN || yPredict.isNaN) {
+      naCount += 1
+      return this
+    }
+    count += 1
+
+    val yDelta = yTrue - yMean
+    yMean += yDelta / count
+    ySS += yDelta * (yTrue - yMean)
+
+    val residual = yTrue - yPredict
+    val residualDelta = residual - residualMean
+    residualMean += residualDelta / count
+    residualSS += residualDelta * (residual - residualMean)
+    if (residual < residualMin) residualMin = residual
+    if (residual > residualMax) residualMax = residual
+    sumSquaredResiduals += residual * residual
+    sumAbsResiduals += math.abs(residual)
+
+    val isPositive = yTrue == 1.0
+    if (yPredict > threshold) {
+      if (isPositive) truePositives += 1 else falsePositives += 1
+    } else {
+      if (isPositive) falseNegatives += 1 else trueNegatives += 1
+    }
+
+    if (computeLogLoss) {
+      val p = math.min(math.max(yPredict, MetricsAggregator.EPSILON), 1 - MetricsAggregator.EPSILON)
+      sumLogLoss -= (if (isPositive) math.log(p) else math.log(1 - p))
+    }
+
+    if (alphaLength > 0) {
+      val index = math.min(math.max(math.floor(yPredict * alphaLength).toInt, 0), alphaLength - 1)
+      if (isPositive) positives(index) += 1 else negatives(index) += 1
+    }
+    this
+  }
+
+  def addAll(rows: Iterator[Array[Double]]): this.type = {
+    while (rows.hasNext) {
+      val row = rows.next()
+      if (row.length < 2) throw new DDFException("Expected rows of (yTrue, yPredict)")
+      add(row(0), row(1))
+    }
+    this
+  }
+
+  def merge(other: MetricsAggregator): this.type = {
+    if (other.count > 0) {
+      val n = count + other.count
+
+      val yDelta = other.yMean - yMean
+      ySS += other.ySS + yDelta * yDelta * count * other.count / n
+      yMean += yDelta * other.count / n
+
+      val residualDelta = other.residualMean - residualMean
+      residualSS += other.residualSS + residualDelta * residualDelta * count * other.count / n
+      residualMean += residualDelta * other.count / n
+
+      count = n
+    }
+    naCount += other.naCount
+    residualMin = math.min(residualMin, other.residualMin)
+    residualMax = math.max(residualMax, other.residualMax)
+    sumSquaredResiduals += other.sumSquaredResiduals
+    sumAbsResiduals += other.sumAbsResiduals
+
+    trueNegatives += other.trueNegatives
+    falsePositives += other.falsePositives
+    falseNegatives += other.falseNegatives
+    truePositives += other.truePositives
+
+    sumLogLoss += other.sumLogLoss
+
+    var i = 0
+    while (i < alphaLength) {
+      positives(i) += other.positives(i)
+      negatives(i) += other.negatives(i)
+      i += 1
+    }
+    this
+  }
+
+  def toEvaluation(metrics: JSet[Metric]): Evaluation = {
+    val evaluation = new Evaluation(metrics, count)
+    if (metrics.contains(Metric.R2)) evaluation.setR2(if (ySS == 0) 1 else 1 - sumSquaredResiduals / ySS)
+    if (metrics.contains(Metric.RMSE)) evaluation.setRmse(math.sqrt(sumSquaredResiduals / count))
+    if (metrics.contains(Metric.MAE)) evaluation.setMae(sumAbsResiduals / count)
+    if (metrics.contains(Metric.RESIDUALS)) {
+      evaluation.setResiduals(new Summary(count, residualMean, residualSS, naCount, residualMin, residualMax))
+    }
+    if (metrics.contains(Metric.CONFUSION_MATRIX)) {
+      evaluation.setConfusionMatrix(Array(Array(trueNegatives, falsePositives), Array(falseNegatives, truePositives)))
+    }
+    if (metrics.contains(Metric.LOG_LOSS)) evaluation.setLogLoss(sumLogLoss / count)
+    if (metrics.contains(Metric.ROC)) evaluation.setRoc(roc())
+    evaluation
+  }
+
+  /**
+   * @return the ROC at each threshold from the counts of the thresholds, in the format of [[ROCComputer.ROC]]
+   */
+  def roc(): RocMetric = {
+    val pred = new Array[Array[Double]](alphaLength)
+    var i = 0
+    while (i < alphaLength) {
+      if (positives(i) + negatives(i) > 0) {
+        pred(i) = Array(i.toDouble / alphaLength, positives(i).toDouble, negatives(i).toDouble)
+      }
+      i += 1
+    }
+    new ROCComputer().rocMetric(pred, alphaLength)
+  }
+}
@@ -1,20 +1,67 @@
 package io.ddf.spark.ml
 
+import java.util.Arrays
+
 import org.apache.spark.rdd.RDD
-import io.ddf.ml.RocMetric
+import io.ddf.ml.{RocCurve, RocMetric}
 import org.apache.spark.mllib.regression.LabeledPoint
 import org.apache.spark.mllib.recommendation.Rating;
 import org.apache.spark.SparkContext._
 
 class ROCComputer extends Serializable {
 
+  /**
+   * Computes the ROC curve of each score column against the label column. Each partition sorts the scores it holds
+   * into a histogram per score column, and the histograms of the partitions are merged by treeAggregate. The curves
+   * are exact as long as a column has at most maxBins distinct scores, and are then computed in one pass over the data.
+   * <p/>
+   * Otherwise the intervals of the partitions overlap, and their merge is only a sketch of about maxBins weighted
+   * breakpoints of the scores. A second pass then bins the scores of every partition on these breakpoints, the same
+   * for all the partitions, so that the intervals of the merged histogram are disjoint, and the AUC error is bounded,
+   * see [[RocCurve]].
+   *
+   * @param data rows of doubles, the label being 1.0 for positives
+   */
+  def ROCCurves(data: RDD[Array[Double]], labelIndex: Int, scoreIndices: Array[Int], names: Array[String],
+                maxBins: Int = ROCComputer.DEFAULT_MAX_BINS): Array[RocCurve] = {
+    val numScores = scoreIndices.length
+    val sketches = data.mapPartitions {
+      rows ⇒ Iterator(ScoreHistogram.ofPartition(rows, labelIndex, scoreIndices, maxBins))
+    }.treeAggregate(Array.fill(numScores)(ScoreHistogram.EMPTY))(
+      ScoreHistogram.mergeAll(maxBins), ScoreHistogram.mergeAll(maxBins), ROCComputer.TREE_DEPTH)
+
+    val histograms = if (sketches.forall(_.isDisjoint)) {
+      sketches
+    } else {
+      val grids = data.context.broadcast(sketches.map(sketch ⇒ if (sketch.isDisjoint) null else sketch.breakpoints))
+      try {
+        val binned = data.mapPartitions {
+          rows ⇒ Iterator(ScoreHistogram.ofGrids(rows, labelIndex, scoreIndices, grids.value))
+        }.treeReduce(ScoreHistogram.mergeGrids, ROCComputer.TREE_DEPTH)
+        sketches.zip(binned).map { case (sketch, grid) ⇒ if (grid == null) sketch else grid.result() }
+      } finally {
+        grids.unpersist(false)
+      }
+    }
+
+    histograms.zip(names).map { case (histogram, name) ⇒ histogram.toRocCurve(name) }
+  }
+
   def ROC(XYData: RDD[LabeledPoint], alpha_length: Int): RocMetric = {
     var alpha: Array[Double] = new Array[Double](alpha_length)
     //    XYData.mapPartitions(f, preservesPartitioning)
     var roc = XYData.mapPartitions(mappingPredictToThreshold(alpha_length)).reduce(_.addIn(_))
 
     // TODO: check of roc is null
-    var pred = roc.pred
+    rocMetric(roc.pred, alpha_length)
+  }
+
+  /*
+   * compute the ROC metrics at each threshold, and the AUC, from the counts of each threshold
+   * input: Array: length = alpha_length
+   * each element: threshold, positve_frequency, negative_frequency, or null if no prediction falls in it
+   */
+  def rocMetric(pred: Array[Array[Double]], alpha_length: Int): RocMetric = {
     var previousVal: Double = Double.MaxValue
     var P: Double = 0.0
     var N: Double = 0.0
@@ -232,3 +279,338 @@ class ROCComputer extends Serializable {
 
   def mapPredictedRating(r: Double, implicitPrefs: Boolean) = if (implicitPrefs) math.max(math.min(r, 1.0), 0.0) else r
 }
+
+object ROCComputer {
+
+  val DEFAULT_MAX_BINS = 100000
+
+  val TREE_DEPTH = 2
+}
+
+/**
+ * Counts of the positives and negatives whose score falls in each of a list of closed intervals of scores
+ * [lows(i), highs(i)], sorted by their low score. An interval with lows(i) == highs(i) holds a single distinct score,
+ * so a histogram of such intervals only is exact. A histogram is only a valid ROC histogram if its intervals are
+ * disjoint, merged histograms whose intervals overlap being sketches of the distribution of the scores.
+ */
+class ScoreHistogram(val lows: Array[Double], val highs: Array[Double], val positives: Array[Long],
+                     val negatives: Array[Long]) extends Serializable {
+
+  def size: Int = lows.length
+
+  /**
+   * @return whether each interval ends before the next one starts
+   */
+  def isDisjoint: Boolean = {
+    var i = 1
+    while (i < size) {
+      if (highs(i - 1) >= lows(i)) return false
+      i += 1
+    }
+    true
+  }
+
+  /**
+   * @return the distinct low scores of the intervals, in increasing order, the first being the lowest score
+   */
+  def breakpoints: Array[Double] = {
+    val points = new Array[Double](size)
+    var n = 0
+    var i = 0
+    while (i < size) {
+      if (n == 0 || lows(i) > points(n - 1)) {
+        points(n) = lows(i)
+        n += 1
+      }
+      i += 1
+    }
+    Arrays.copyOf(points, n)
+  }
+
+  /**
+   * Merges the intervals of both histograms, then compresses the result into at most maxBins intervals. Equal single
+   * scores are added up, but overlapping intervals are kept apart rather than merged into their union, which would
+   * chain intervals that cover the same scores into one
+   */
+  def merge(other: ScoreHistogram, maxBins: Int): ScoreHistogram = {
+    if (other.size == 0) return this
+    if (this.size == 0) return other
+
+    val builder = new ScoreHistogram.Builder(size + other.size)
+    var i = 0
+    var j = 0
+    while (i < size || j < other.size) {
+      if (j >= other.size || (i < size && lows(i) <= other.lows(j))) {
+        builder.add(lows(i), highs(i), positives(i), negatives(i))
+        i += 1
+      } else {
+        builder.add(other.lows(j), other.highs(j), other.positives(j), other.negatives(j))
+        j += 1
+      }
+    }
+    builder.result().compress(maxBins)
+  }
+
+  /**
+   * @return a histogram of at most maxBins intervals, each merging consecutive intervals of this one that hold about
+   *         the same number of scores
+   */
+  def compress(maxBins: Int): ScoreHistogram = {
+    if (size <= maxBins) return this
+    var total = 0L
+    var i = 0
+    while (i < size) {
+      total += positives(i) + negatives(i)
+      i += 1
+    }
+
+    val builder = new ScoreHistogram.Builder(maxBins)
+    var before = 0L
+    i = 0
+    while (i < size) {
+      // the intervals of a group all start in the same maxBins-th of the scores
+      val group = before * maxBins / total
+      var high = highs(i)
+      var numPositives = 0L
+      var numNegatives = 0L
+      var end = i
+      while (end < size && (end == i || before * maxBins / total == group)) {
+        high = math.max(high, highs(end))
+        numPositives += positives(end)
+        numNegatives += negatives(end)
+        before += positives(end) + negatives(end)
+        end += 1
+      }
+      builder.add(lows(i), high, numPositives, numNegatives)
+      i = end
+    }
+    builder.result()
+  }
+
+  /**
+   * @return the curve with a point per interval, at its low score, highest first
+   */
+  def toRocCurve(name: String): RocCurve = {
+    val thresholds = new Array[Double](size)
+    val truePositives = new Array[Long](size)
+    val falsePositives = new Array[Long](size)
+    var tp = 0L
+    var fp = 0L
+    var tiedPairs = 0.0
+    var i = size - 1
+    while (i >= 0) {
+      tp += positives(i)
+      fp += negatives(i)
+      if (lows(i) < highs(i)) tiedPairs += positives(i).toDouble * negatives(i)
+      thresholds(size - 1 - i) = lows(i)
+      truePositives(size - 1 - i) = tp
+      falsePositives(size - 1 - i) = fp
+      i -= 1
+    }
+    // the pairs of an interval are counted as ties, a half, whereas each is either 0 or 1
+    val aucErrorBound = if (tp == 0 || fp == 0) 0.0 else tiedPairs / 2 / tp / fp
+    new RocCurve(name, thresholds, truePositives, falsePositives, tp, fp, aucErrorBound)
+  }
+}
+
+object ScoreHistogram {
+
+  val EMPTY = new ScoreHistogram(Array.empty, Array.empty, Array.empty, Array.empty)
+
+  /**
+   * The counts of the scores of one column on a grid of breakpoints, the interval of breakpoint k being
+   * [grid(k), grid(k + 1)), with the lowest and highest score actually seen in it
+   */
+  class GridCounts(val grid: Array[Double]) extends Serializable {
+    val lows = Array.fill(grid.length)(Double.PositiveInfinity)
+    val highs = Array.fill(grid.length)(Double.NegativeInfinity)
+    val positives = new Array[Long](grid.length)
+    val negatives = new Array[Long](grid.length)
+
+    def add(score: Double, isPositive: Boolean) {
+      val found = Arrays.binarySearch(grid, score)
+      // the grid starts at the lowest score, so that no score falls before it
+      val k = if (found >= 0) found else math.max(-found - 2, 0)
+      lows(k) = math.min(lows(k), score)
+      highs(k) = math.max(highs(k), score)
+      if (isPositive) positives(k) += 1 else negatives(k) += 1
+    }
+
+    def merge(other: GridCounts): GridCounts = {
+      var k = 0
+      while (k < grid.length) {
+        lows(k) = math.min(lows(k), other.lows(k))
+        highs(k) = math.max(highs(k), other.highs(k))
+        positives(k) += other.positives(k)
+        negatives(k) += other.negatives(k)
+        k += 1
+      }
+      this
+    }
+
+    /**
+     * @return the histogram of the non-empty intervals, which are disjoint
+     */
+    def result(): ScoreHistogram = {
+      val builder = new Builder(grid.length)
+      var k = 0
+      while (k < grid.length) {
+        if (positives(k) + negatives(k) > 0) builder.add(lows(k), highs(k), positives(k), negatives(k))
+        k += 1
+      }
+      builder.result()
+    }
+  }
+
+  /**
+   * Counts the scores of the rows of a partition on the grid of each score column, null for the columns that are not
+   * binned. Rows whose label or score is NaN are skipped.
+   */
+  def ofGrids(rows: Iterator[Array[Double]], labelIndex: Int, scoreIndices: Array[Int],
+              grids: Array[Array[Double]]): Array[GridCounts] = {
+    val counts = grids.map(grid ⇒ if (grid == null) null else new GridCounts(grid))
+    while (rows.hasNext) {
+      val row = rows.next()
+      val label = row(labelIndex)
+      if (!label.isNaN) {
+        var k = 0
+        while (k < counts.length) {
+          val score = row(scoreIndices(k))
+          if (counts(k) != null && !score.isNaN) counts(k).add(score, label == 1.0)
+          k += 1
+        }
+      }
+    }
+    counts
+  }
+
+  def mergeGrids(a: Array[GridCounts], b: Array[GridCounts]): Array[GridCounts] = {
+    var k = 0
+    while (k < a.length) {
+      if (a(k) != null) a(k).merge(b(k))
+      k += 1
+    }
+    a
+  }
+
+  def mergeAll(maxBins: Int)(a: Array[ScoreHistogram], b: Array[ScoreHistogram]): Array[ScoreHistogram] = {
+    val merged = new Array[ScoreHistogram](a.length)
+    var i = 0
+    while (i < a.length) {
+      merged(i) = a(i).merge(b(i), maxBins)
+      i += 1
+    }
+    merged
+  }
+
+  /**
+   * Builds the histogram of each score column of the rows of a partition, by sorting the scores of its positives and
+   * of its negatives as primitive arrays. Rows whose label or score is NaN are skipped.
+   */
+  def ofPartition(rows: Iterator[Array[Double]], labelIndex: Int, scoreIndices: Array[Int],
+                  maxBins: Int): Array[ScoreHistogram] = {
+    val numScores = scoreIndices.length
+    val positiveScores = Array.fill(numScores)(new Array[Double](16))
+    val negativeScores = Array.fill(numScores)(new Array[Double](16))
+    val numPositives = new Array[Int](numScores)
+    val numNegatives = new Array[Int](numScores)
+
+    while (rows.hasNext) {
+      val row = rows.next()
+      val label = row(labelIndex)
+      if (!label.isNaN) {
+        val isPositive = label == 1.0
+        var k = 0
+        while (k < numScores) {
+          val score = row(scoreIndices(k))
+          if (!score.isNaN) {
+            if (isPositive) {
+              if (numPositives(k) == positiveScores(k).length) {
+                positiveScores(k) = Arrays.copyOf(positiveScores(k), numPositives(k) * 2)
+              }
+              positiveScores(k)(numPositives(k)) = score
+              numPositives(k) += 1
+            } else {
+              if (numNegatives(k) == negativeScores(k).length) {
+                negativeScores(k) = Arrays.copyOf(negativeScores(k), numNegatives(k) * 2)
+              }
+              negativeScores(k)(numNegatives(k)) = score
+              numNegatives(k) += 1
+            }
+          }
+          k += 1
+        }
+      }
+    }
+
+    Array.tabulate(numScores) {
+      k ⇒ ofScores(positiveScores(k), numPositives(k), negativeScores(k), numNegatives(k)).compress(maxBins)
+    }
+  }
+
+  /**
+   * @return the exact histogram of the given scores, with an interval per distinct score
+   */
+  def ofScores(positiveScores: Array[Double], numPositives: Int, negativeScores: Array[Double],
+               numNegatives: Int): ScoreHistogram = {
+    Arrays.sort(positiveScores, 0, numPositives)
+    Arrays.sort(negativeScores, 0, numNegatives)
+
+    val builder = new Builder(16)
+    var i = 0
+    var j = 0
+    while (i < numPositives || j < numNegatives) {
+      val score = if (j >= numNegatives || (i < numPositives && positiveScores(i) <= negativeScores(j))) {
+        positiveScores(i)
+      } else {
+        negativeScores(j)
+      }
+      var p = 0L
+      while (i < numPositives && positiveScores(i) == score) {
+        p += 1
+        i += 1
+      }
+      var n = 0L
+      while (j < numNegatives && negativeScores(j) == score) {
+        n += 1
+        j += 1
+      }
+      builder.add(score, score, p, n)
+    }
+    builder.result()
+  }
+
+  /**
+   * Appends intervals in increasing order of their low score, adding up the counts of a single score equal to the
+   * previous one
+   */
+  class Builder(initialCapacity: Int) {
+    private var mLows = new Array[Double](math.max(initialCapacity, 1))
+    private var mHighs = new Array[Double](mLows.length)
+    private var mPositives = new Array[Long](mLows.length)
+    private var mNegatives = new Array[Long](mLows.length)
+    private var mSize = 0
+
+    def add(low: Double, high: Double, numPositives: Long, numNegatives: Long) {
+      if (mSize > 0 && low == high && mLows(mSize - 1) == low && mHighs(mSize - 1) == high) {
+        mPositives(mSize - 1) += numPositives
+        mNegatives(mSize - 1) += numNegatives
+        return
+      }
+      if (mSize == mLows.length) {
+        mLows = Arrays.copyOf(mLows, mSize * 2)
+        mHighs = Arrays.copyOf(mHighs, mSize * 2)
+        mPositives = Arrays.copyOf(mPositives, mSize * 2)
+        mNegatives = Arrays.copyOf(mNegatives, mSize * 2)
+      }
+      mLows(mSize) = low
+      mHighs(mSize) = high
+      mPositives(mSize) = numPositives
+      mNegatives(mSize) = numNegatives
+      mSize += 1
+    }
+
+    def result(): ScoreHistogram = new ScoreHistogram(Arrays.copyOf(mLows, mSize), Arrays.copyOf(mHighs, mSize),
+      Arrays.copyOf(mPositives, mSize), Arrays.copyOf(mNegatives, mSize))
+  }
+}
@@ -0,0 +1,126 @@
+package io.ddf.spark.ml
+
+import java.util.{LinkedHashMap, Map ⇒ JMap}
+
+import io.ddf.exception.DDFException
+import io.ddf.ml.{ModelCodec, ModelFile, ModelFormat}
+import org.apache.spark.mllib.classification.{LogisticRegressionModel, SVMModel}
+import org.apache.spark.mllib.clustering.KMeansModel
+import org.apache.spark.mllib.linalg.{Vector, Vectors}
+import org.apache.spark.mllib.recommendation.MatrixFactorizationModel
+import org.apache.spark.mllib.regression.{GeneralizedLinearModel, LassoModel, LinearRegressionModel, RidgeRegressionModel}
+
+/**
+ * The codecs of the MLlib models trained by DDF, writing their weights and cluster centers as double arrays rather
+ * than Java-serialized vectors
+ */
+object SparkModelCodecs {
+
+  @volatile private var mIsRegistered = false
+
+  def register() {
+    if (mIsRegistered) return
+    this.synchronized {
+      if (mIsRegistered) return
+      ModelFormat.register(classOf[LinearRegressionModel].getName, new GeneralizedLinearModelCodec(
+        (weights, params) ⇒ new LinearRegressionModel(weights, params(0))))
+      ModelFormat.register(classOf[LassoModel].getName, new GeneralizedLinearModelCodec(
+        (weights, params) ⇒ new LassoModel(weights, params(0))))
+      ModelFormat.register(classOf[RidgeRegressionModel].getName, new GeneralizedLinearModelCodec(
+        (weights, params) ⇒ new RidgeRegressionModel(weights, params(0))))
+      ModelFormat.register(classOf[LogisticRegressionModel].getName, new GeneralizedLinearModelCodec(
+        (weights, params) ⇒ {
+          val model = new LogisticRegressionModel(weights, params(0), params(1).toInt, params(2).toInt)
+          if (params(3).isNaN) model.clearThreshold() else model.setThreshold(params(3))
+        },
+        model ⇒ {
+          val logistic = model.asInstanceOf[LogisticRegressionModel]
+          Array(logistic.numFeatures, logistic.numClasses, logistic.getThreshold.getOrElse(Double.NaN))
+        }))
+      ModelFormat.register(classOf[SVMModel].getName, new GeneralizedLinearModelCodec(
+        (weights, params) ⇒ {
+          val model = new SVMModel(weights, params(0))
+          if (params(1).isNaN) model.clearThreshold() else model.setThreshold(params(1))
+        },
+        model ⇒ Array(model.asInstanceOf[SVMModel].getThreshold.getOrElse(Double.NaN))))
+      ModelFormat.register(classOf[KMeansModel].getName, new KMeansModelCodec)
+      ModelFormat.register(classOf[MatrixFactorizationModel].getName, new RDDModelCodec)
+      mIsRegistered = true
+    }
+  }
+}
+
+/**
+ * Writes the weights, then the intercept followed by the extra parameters of the model
+ */
+class GeneralizedLinearModelCodec(newModel: (Vector, Array[Double]) ⇒ GeneralizedLinearModel,
+                                  extraParams: GeneralizedLinearModel ⇒ Array[Double] = _ ⇒ Array.empty[Double])
+  extends ModelCodec {
+
+  override def encode(rawModel: Object): JMap[String, Object] = {
+    val model = rawModel.asInstanceOf[GeneralizedLinearModel]
+    val arrays = new LinkedHashMap[String, Object]()
+    arrays.put("params", model.intercept +: extraParams(model))
+    arrays.put("weights", model.weights.toArray)
+    arrays
+  }
+
+  override def decode(file: ModelFile): Object = newModel(Vectors.dense(file.getDoubles("weights")),
+    file.getDoubles("params"))
+
+  override def sizeOf(rawModel: Object): Long = 8L * rawModel.asInstanceOf[GeneralizedLinearModel].weights.size
+}
+
+/**
+ * Writes the cluster centers one after the other as a single array
+ */
+class KMeansModelCodec extends ModelCodec {
+
+  override def encode(rawModel: Object): JMap[String, Object] = {
+    val centers = rawModel.asInstanceOf[KMeansModel].clusterCenters
+    val dimension = if (centers.isEmpty) 0 else centers(0).size
+    val flattened = new Array[Double](centers.length * dimension)
+    for (i ← 0 until centers.length) {
+      System.arraycopy(centers(i).toArray, 0, flattened, i * dimension, dimension)
+    }
+
+    val arrays = new LinkedHashMap[String, Object]()
+    arrays.put("shape", Array[Double](centers.length, dimension))
+    arrays.put("centers", flattened)
+    arrays
+  }
+
+  override def decode(file: ModelFile): Object = {
+    val shape = file.getDoubles("shape")
+    val (k, dimension) = (shape(0).toInt, shape(1).toInt)
+    // the centers are copied straight out of the mapped file, without reading them all onto the heap first
+    val buffer = file.getDoubleBuffer("centers")
+    val centers = Array.fill(k) {
+      val center = new Array[Double](dimension)
+      buffer.get(center)
+      Vectors.dense(center)
+    }
+    new KMeansModel(centers)
+  }
+
+  override def sizeOf(rawModel: Object): Long = {
+    val centers = rawModel.asInstanceOf[KMeansModel].clusterCenters
+    8L * centers.map(_.size).sum
+  }
+}
+
+/**
+ * Models which hold RDDs cannot be written, e.g., the user and product factors of ALS, so they stay in memory
+ */
+class RDDModelCodec extends ModelCodec {
+
+  private def unsupported(rawModel: Object) = new DDFException(
+    String.format("Model %s holds RDDs, which cannot be written", rawModel.getClass.getName))
+
+  override def encode(rawModel: Object): JMap[String, Object] = throw unsupported(rawModel)
+
+  override def decode(file: ModelFile): Object = throw new DDFException(
+    String.format("Model file %s of %s holds RDDs, which cannot be read", file.getFile, file.getRawModelType))
+
+  override def sizeOf(rawModel: Object): Long = throw unsupported(rawModel)
+}
@@ -13,6 +13,21 @@ class TransformRow(xCols: Array[Int], mapping: JMap[java.lang.Integer, JMap[Stri
     numNewColumns += mapping.get(iterator2.next()).size() - 1
   }
 
+  // number of levels of each categorical column, indexed by column index (0 for non-categorical columns),
+  // so that dummy columns can be expanded from the int codes without going through the mapping
+  private val numLevels: Array[Int] = {
+    val maxIndex = if (mapping == null || mapping.isEmpty) -1 else mapping.keySet().toArray.map(_.asInstanceOf[Int]).max
+    val levels = new Array[Int](maxIndex + 1)
+    if (mapping != null) {
+      val iter = mapping.keySet().iterator()
+      while (iter.hasNext()) {
+        val idx = iter.next()
+        levels(idx) = mapping.get(idx).size
+      }
+    }
+    levels
+  }
+
   def hasCategoricalColumn(): Boolean = {
     return (mapping != null && mapping.size() > 0)
   }
@@ -101,7 +116,7 @@ class TransformRow(xCols: Array[Int], mapping: JMap[java.lang.Integer, JMap[Stri
 	 */
   def getNewRowFromCategoricalRow(columnValue: Double, originalColumnIndex: Int): Vector = {
     //k-1 level
-    var dummyCodingLength = mapping.get(originalColumnIndex).size - 1
+    var dummyCodingLength = numLevels(originalColumnIndex) - 1
     var ret: Vector = new Vector(dummyCodingLength)
     var j = 0
     var colVal = columnValue.asInstanceOf[Int]
@@ -239,6 +239,42 @@ object SparkUtils {
     }
   }
 
+  /**
+   * Counts the rows of rdd, but stops as soon as it has seen more than limit rows. Like RDD.take, it scans a few
+   * partitions first and more at each round, so a large RDD costs about limit rows instead of a full scan.
+   *
+   * @return the number of rows, or limit + 1 if there are more than limit
+   */
+  def countUpTo[T](rdd: RDD[T], limit: Long): Long = {
+    val numPartitions = rdd.partitions.length
+    var count = 0L
+    var numScanned = 0
+    while (count <= limit && numScanned < numPartitions) {
+      val numToScan = if (numScanned == 0) {
+        1
+      } else if (count == 0) {
+        numScanned * 4
+      } else {
+        // enough partitions for limit + 1 rows at the rate seen so far, with 50% to spare
+        val needed = math.ceil(1.5 * (limit + 1) * numScanned / count).toLong - numScanned
+        math.max(1L, math.min(needed, numScanned * 4L)).toInt
+      }
+      val remaining = limit + 1 - count
+      val partitions = numScanned until math.min(numScanned + numToScan, numPartitions)
+      val counts = rdd.sparkContext.runJob(rdd, (rows: Iterator[T]) => {
+        var n = 0L
+        while (n < remaining && rows.hasNext) {
+          rows.next()
+          n += 1
+        }
+        n
+      }, partitions, allowLocal = false)
+      count += counts.sum
+      numScanned += partitions.length
+    }
+    math.min(count, limit + 1)
+  }
+
   def getDataFrameWithValidColnames(df: DataFrame): DataFrame = {
     // remove '_' if '_' is at the start of a col name
     val colNames = df.columns.map { colName =>
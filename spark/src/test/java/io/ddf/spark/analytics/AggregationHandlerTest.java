@@ -2,10 +2,19 @@ package io.ddf.spark.analytics;
 
 
 import io.ddf.DDF;
+import io.ddf.analytics.ContingencyTable;
+import io.ddf.content.Schema.ColumnClass;
 import io.ddf.exception.DDFException;
 import io.ddf.spark.BaseTest;
+import io.ddf.types.AggregateTypes.AggregationResult;
+import io.ddf.types.AggregateTypes.TypedAggregationResult;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -39,6 +48,71 @@ public class AggregationHandlerTest extends BaseTest {
     Assert.assertEquals(5, ddf.VIEWS.head(5).size());
   }
 
+  @Test
+  public void testTypedAggregate() throws DDFException {
+    TypedAggregationResult typed = ddf.aggregateTyped("year, month, min(depdelay), max(arrdelay)");
+    Assert.assertEquals(Arrays.asList("year", "month"), typed.getGroupColumns());
+    Assert.assertEquals(2, typed.getValueColumns().size());
+
+    // group keys keep the int type of the columns
+    double[] values = typed.get(2010, 3);
+    Assert.assertNotNull(values);
+    Assert.assertArrayEquals(ddf.aggregate("year, month, min(depdelay), max(arrdelay)").get("2010\t3"), values, 0.01);
+    Assert.assertEquals(ddf.aggregate("year, month, count(*)").size(), typed.size());
+  }
+
+  @Test
+  public void testGroupByRollUp() throws DDFException {
+    List<String> aggregates = Arrays.asList("m=avg(depdelay)", "n=count(*)");
+
+    // the first groupBy materializes the cube, the coarser ones are rolled up from it
+    Assert.assertEquals(5, ddf.groupBy(Arrays.asList("year", "month", "dayofweek"), aggregates).getNumColumns());
+    Assert.assertEquals(13, ddf.groupBy(Arrays.asList("year", "month"), aggregates).getNumRows());
+    DDF byYear = ddf.groupBy(Arrays.asList("year"), aggregates);
+    Assert.assertEquals(ddf.aggregate("year, count(*)").size(), byYear.getNumRows());
+    Assert.assertEquals(ddf.aggregate("year, avg(depdelay)").get("2010")[0],
+        byYear.aggregate("year, max(m)").get("2010")[0], 0.01);
+  }
+
+  @Test
+  public void testXtabs() throws DDFException {
+    ColumnClass monthClass = ddf.getSchema().getColumn("month").getColumnClass();
+    ContingencyTable table = ddf.contingencyTable(Arrays.asList("year", "month"));
+    // the levels are counted locally, without setting the columns as factors
+    Assert.assertEquals(monthClass, ddf.getSchema().getColumn("month").getColumnClass());
+    Assert.assertEquals(2, table.getNumDimensions());
+    Assert.assertEquals(13, table.getNumNonEmptyCells());
+    Assert.assertEquals(ddf.getNumRows(), table.getTotal());
+
+    AggregationResult xtabs = ddf.xtabs("year, month, count(*)");
+    Assert.assertEquals(13, xtabs.size());
+    Assert.assertEquals(ddf.aggregate("year, month, count(*)").get("2010\t3")[0], xtabs.get("2010\t3")[0], 0);
+  }
+
+  @Test
+  public void testConcurrentGroupedAgg() throws Exception {
+    final List<String> aggregates = Arrays.asList("n=count(*)");
+    final List<List<String>> groupings = Arrays.asList(Arrays.asList("year", "month"), Arrays.asList("dayofweek"));
+    ExecutorService executor = Executors.newFixedThreadPool(groupings.size());
+    try {
+      List<Future<DDF>> results = new ArrayList<Future<DDF>>();
+      for (final List<String> grouping : groupings) {
+        results.add(executor.submit(new Callable<DDF>() {
+          @Override
+          public DDF call() throws Exception {
+            return ddf.groupedBy(grouping).agg(aggregates);
+          }
+        }));
+      }
+
+      // each result is grouped by its own keys, whatever the interleaving
+      Assert.assertEquals(Arrays.asList("n", "year", "month"), results.get(0).get().getColumnNames());
+      Assert.assertEquals(Arrays.asList("n", "dayofweek"), results.get(1).get().getColumnNames());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
 //  @Ignore
 //  public void testGroupBy() throws DDFException {
 //    List<String> l1 = Arrays.asList("year", "month");
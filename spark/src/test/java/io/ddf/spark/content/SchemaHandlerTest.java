@@ -0,0 +1,47 @@
+package io.ddf.spark.content;
+
+
+import io.ddf.Factor;
+import io.ddf.content.FactorLevelCounter;
+import io.ddf.exception.DDFException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class SchemaHandlerTest {
+
+  @Test
+  public void testAppendedLevelsKeepTheCodes() throws DDFException {
+    Factor<String> factor = new Factor<String>(null, "origin");
+    factor.setLevels(Arrays.asList("IAD", Factor.OTHER_LEVEL), false);
+    Map<String, Integer> levelCounts = new LinkedHashMap<String, Integer>();
+    levelCounts.put("IAD", 3);
+    levelCounts.put(Factor.OTHER_LEVEL, 2);
+    factor.setLevelCounts(levelCounts);
+
+    FactorLevelCounter appended = new FactorLevelCounter(10);
+    for (String value : new String[] { "ISP", "IAD", "ISP" }) {
+      appended.add(value);
+    }
+    SchemaHandler.appendLevels(factor, appended, 3);
+    // the other level keeps its code, the new level comes after it
+    Assert.assertEquals(Arrays.asList("IAD", Factor.OTHER_LEVEL, "ISP"), factor.getLevels());
+    Assert.assertEquals(4, (int) factor.getLevelCounts().get("IAD"));
+    Assert.assertEquals(2, (int) factor.getLevelCounts().get("ISP"));
+    Assert.assertEquals(2, (int) factor.getLevelCounts().get(Factor.OTHER_LEVEL));
+
+    appended = new FactorLevelCounter(10);
+    for (String value : new String[] { "IND", "JFK", "IND" }) {
+      appended.add(value);
+    }
+    SchemaHandler.appendLevels(factor, appended, 3);
+    // the other level does not count as one of the maximum 3 levels
+    Assert.assertEquals(Arrays.asList("IAD", Factor.OTHER_LEVEL, "ISP", "IND"), factor.getLevels());
+    Assert.assertEquals(2, (int) factor.getLevelCounts().get("IND"));
+    Assert.assertEquals(3, (int) factor.getLevelCounts().get(Factor.OTHER_LEVEL));
+    Assert.assertTrue(factor.isApproximate());
+  }
+}
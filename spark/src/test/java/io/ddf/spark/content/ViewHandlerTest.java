@@ -82,4 +82,26 @@ public class ViewHandlerTest extends BaseTest{
     DDF ddf2 = ddf.VIEWS.subset(columns, grep);
     Assert.assertEquals(2, ddf2.getNumRows());
   }
+
+  @Test
+  public void testHeadAndTop() throws DDFException {
+    createTableAirline();
+
+    DDF ddf = manager.sql2ddf("select * from airline", false);
+    Assert.assertEquals(3, ddf.VIEWS.head(3).size());
+    Assert.assertEquals(3, ddf.VIEWS.headTyped(3).size());
+    Assert.assertEquals(29, ddf.VIEWS.headTyped(3).get(0).length);
+
+    List<Object[]> top = ddf.VIEWS.topTyped(5, "arrdelay", "desc");
+    Assert.assertEquals(5, top.size());
+    int maxDelay = Integer.parseInt(manager.sql("select max(arrdelay) from airline", false).getRows().get(0));
+    Assert.assertEquals(maxDelay, ((Integer) top.get(0)[14]).intValue());
+    for (int i = 1; i < top.size(); i++) {
+      Assert.assertTrue((Integer) top.get(i - 1)[14] >= (Integer) top.get(i)[14]);
+    }
+
+    List<String> topRows = ddf.VIEWS.top(5, "arrdelay", "desc");
+    Assert.assertEquals(5, topRows.size());
+    Assert.assertEquals(String.valueOf(maxDelay), topRows.get(0).split("\t")[14]);
+  }
 }
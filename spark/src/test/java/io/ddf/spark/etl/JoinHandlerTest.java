@@ -2,6 +2,10 @@ package io.ddf.spark.etl;
 
 import java.util.Arrays;
 import io.ddf.DDF;
+import io.ddf.Factor;
+import io.ddf.content.IHandleViews;
+import io.ddf.etl.IHandleJoins;
+import io.ddf.etl.Types.JoinStrategy;
 import io.ddf.etl.Types.JoinType;
 import io.ddf.exception.DDFException;
 import io.ddf.spark.BaseTest;
@@ -27,5 +31,105 @@ public class JoinHandlerTest extends BaseTest {
     LOG.info("Column names: " +ddf.getColumnNames());
     Assert.assertEquals(25, ddf.getNumRows());
   }
-  
+
+  @Test
+  public void testJoinStrategies() throws DDFException {
+    // both tables are tiny, so broadcast either
+    DDF ddf = left_ddf.join(right_ddf, JoinType.INNER, Arrays.asList("cyl"), null, null);
+    Assert.assertEquals(JoinStrategy.BROADCAST_HASH.name(),
+        ddf.getMetaDataHandler().getProperty(IHandleJoins.JOIN_STRATEGY_PROPERTY));
+    Assert.assertEquals(left_ddf.getNumColumns() + right_ddf.getNumColumns() - 1, ddf.getNumColumns());
+
+    DDF joined = left_ddf.join(right_ddf, JoinType.INNER, Arrays.asList("cyl"), null, null, JoinStrategy.SHUFFLE_HASH);
+    Assert.assertEquals(25, joined.getNumRows());
+    Assert.assertEquals(JoinStrategy.SHUFFLE_HASH.name(),
+        joined.getMetaDataHandler().getProperty(IHandleJoins.JOIN_STRATEGY_PROPERTY));
+    Assert.assertEquals(ddf.getColumnNames(), joined.getColumnNames());
+
+    DDF semi = left_ddf.join(right_ddf, JoinType.LEFTSEMI, Arrays.asList("cyl"), null, null,
+        JoinStrategy.BROADCAST_HASH);
+    Assert.assertEquals(left_ddf.getNumColumns(), semi.getNumColumns());
+  }
+
+  @Test
+  public void testShuffleHashJoinBuildsEitherSide() throws DDFException {
+    for (JoinType joinType : new JoinType[] { JoinType.INNER, JoinType.LEFT, JoinType.RIGHT, JoinType.FULL,
+        JoinType.LEFTSEMI }) {
+      // the side whose row count is known is the smaller one, the other one is not scanned to find out
+      DDF left = manager.sql2ddf("select * from mtcars", false);
+      DDF right = manager.sql2ddf("select * from carowner", false);
+      left.getNumRows();
+      DDF buildLeft = left.join(right, joinType, Arrays.asList("cyl"), null, null, JoinStrategy.SHUFFLE_HASH);
+
+      left = manager.sql2ddf("select * from mtcars", false);
+      right = manager.sql2ddf("select * from carowner", false);
+      right.getNumRows();
+      DDF buildRight = left.join(right, joinType, Arrays.asList("cyl"), null, null, JoinStrategy.SHUFFLE_HASH);
+
+      Assert.assertEquals(buildRight.getColumnNames(), buildLeft.getColumnNames());
+      Assert.assertEquals(buildRight.getNumRows(), buildLeft.getNumRows());
+    }
+  }
+
+  @Test(expected = DDFException.class)
+  public void testSortMergeJoinNotSupported() throws DDFException {
+    left_ddf.join(right_ddf, JoinType.INNER, Arrays.asList("cyl"), null, null, JoinStrategy.SORT_MERGE);
+  }
+
+  @Test(expected = DDFException.class)
+  public void testCannotBroadcastFullJoin() throws DDFException {
+    left_ddf.join(right_ddf, JoinType.FULL, Arrays.asList("cyl"), null, null, JoinStrategy.BROADCAST_HASH);
+  }
+
+  @Test
+  public void testCoPartitionedJoin() throws DDFException {
+    DDF left = left_ddf.VIEWS.repartitionBy(Arrays.asList("cyl"), 4);
+    DDF right = right_ddf.VIEWS.repartitionBy(Arrays.asList("cyl"), 4);
+    Assert.assertEquals("cyl", left.getMetaDataHandler().getProperty(IHandleViews.PARTITION_COLUMNS_PROPERTY));
+    Assert.assertEquals(left_ddf.getNumRows(), left.getNumRows());
+
+    DDF ddf = left.join(right, JoinType.INNER, Arrays.asList("cyl"), null, null);
+    Assert.assertEquals(JoinStrategy.CO_PARTITIONED.name(),
+        ddf.getMetaDataHandler().getProperty(IHandleJoins.JOIN_STRATEGY_PROPERTY));
+    Assert.assertEquals(25, ddf.getNumRows());
+
+    DDF full = left.join(right, JoinType.FULL, Arrays.asList("cyl"), null, null);
+    DDF fullBySql = manager.sql2ddf("select lt.* from mtcars lt full outer join carowner rt on lt.cyl = rt.cyl",
+        false);
+    Assert.assertEquals(fullBySql.getNumRows(), full.getNumRows());
+
+    // partitioned on another number of partitions, so not co-partitioned
+    DDF other = right_ddf.VIEWS.repartitionBy(Arrays.asList("cyl"), 3);
+    Assert.assertFalse(JoinStrategy.CO_PARTITIONED.name().equals(left.join(other, JoinType.INNER, Arrays.asList("cyl"),
+        null, null).getMetaDataHandler().getProperty(IHandleJoins.JOIN_STRATEGY_PROPERTY)));
+  }
+
+  @Test
+  public void testAppend() throws DDFException {
+    DDF ddf = manager.sql2ddf("select * from mtcars where cyl = 4", false);
+    DDF batch = manager.sql2ddf("select * from mtcars where cyl = 6", false);
+    ddf.getSchemaHandler().setAsFactor("cyl");
+    ddf.getSchemaHandler().computeFactorLevelsAndLevelCounts();
+    Assert.assertEquals(11, ddf.getSummary()[0].count());
+
+    Assert.assertSame(ddf, ddf.append(batch));
+    Assert.assertEquals(18, ddf.getNumRows());
+    Assert.assertEquals(18, ddf.getSummary()[0].count());
+    DDF both = manager.sql2ddf("select * from mtcars where cyl = 4 or cyl = 6", false);
+    Assert.assertEquals(both.getSummary()[0].mean(), ddf.getSummary()[0].mean(), 1e-9);
+    Assert.assertEquals(both.getSummary()[0].min(), ddf.getSummary()[0].min(), 1e-9);
+
+    Factor<?> cyl = ddf.getSchemaHandler().getColumn("cyl").getOptionalFactor();
+    Assert.assertEquals(Arrays.asList("4", "6"), cyl.getLevels());
+    Assert.assertEquals(7, cyl.getLevelCounts().get("6").intValue());
+
+    // the table of the DDF reads the appended rows too
+    Assert.assertEquals("7", manager.sql(String.format("select count(*) from %s where cyl = 6", ddf.getTableName()),
+        false).getRows().get(0));
+  }
+
+  @Test(expected = DDFException.class)
+  public void testAppendMismatchingColumns() throws DDFException {
+    left_ddf.append(right_ddf);
+  }
 }
@@ -2,6 +2,7 @@ package io.ddf.spark.etl;
 
 
 import io.ddf.DDF;
+import io.ddf.etl.IHandleMissingData;
 import io.ddf.etl.IHandleMissingData.Axis;
 import io.ddf.etl.IHandleMissingData.NAChecking;
 import io.ddf.exception.DDFException;
@@ -62,4 +63,28 @@ public class MissingDataHandlerTest extends BaseTest {
     DDF ddf2 = ddf1.getMissingDataHandler().fillNA(null, null, 0, null, dict, null);
     Assert.assertEquals(301, ddf2.aggregate("year, sum(LateAircraftDelay)").get("2008")[0], 0.1);
   }
+
+  @Test
+  public void testNACounts() throws DDFException {
+    Map<String, Long> naCounts = ddf.getMissingDataHandler().getNACounts(null);
+    Assert.assertEquals(ddf.getNumColumns(), naCounts.size());
+    int numColumnsWithoutNA = 0;
+    for (long naCount : naCounts.values()) {
+      if (naCount == 0) numColumnsWithoutNA++;
+    }
+    Assert.assertEquals(22, numColumnsWithoutNA);
+
+    // cached in the metadata for the current data version
+    Assert.assertEquals(String.valueOf(ddf.getMetaDataHandler().getDataVersion()),
+        ddf.getMetaDataHandler().getProperty(IHandleMissingData.NA_PROFILE_VERSION_PROPERTY));
+    Assert.assertEquals(naCounts.get("securitydelay").toString(),
+        ddf.getMetaDataHandler().getProperty(IHandleMissingData.NA_COUNT_PROPERTY_PREFIX + "securitydelay"));
+
+    DDF filled = ddf.getMissingDataHandler().fillNA(null, null, 0, AggregateFunction.MEAN, null,
+        Arrays.asList("securitydelay", "lateaircraftdelay"));
+    Map<String, Long> filledNACounts = filled.getMissingDataHandler().getNACounts(
+        Arrays.asList("securitydelay", "lateaircraftdelay"));
+    Assert.assertEquals(0, filledNACounts.get("securitydelay").longValue());
+    Assert.assertEquals(0, filledNACounts.get("lateaircraftdelay").longValue());
+  }
 }
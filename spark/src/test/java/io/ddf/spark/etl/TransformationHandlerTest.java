@@ -8,12 +8,17 @@ import io.ddf.DDFManager;
 import io.ddf.analytics.Summary;
 import io.ddf.content.Schema;
 import io.ddf.content.Schema.ColumnType;
+import io.ddf.etl.ScalingTransform;
 import io.ddf.etl.TransformationHandler;
 import io.ddf.exception.DDFException;
+import io.ddf.misc.Config;
+import io.ddf.misc.Config.ConfigConstant;
 import io.ddf.spark.BaseTest;
+import org.apache.commons.lang.SerializationUtils;
 import org.junit.*;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class TransformationHandlerTest extends BaseTest {
@@ -38,6 +43,16 @@ public class TransformationHandlerTest extends BaseTest {
     Assert.assertNotNull(newddf);
     Assert.assertEquals("newcol", newddf.getColumnName(8));
     Assert.assertEquals(10, res.size());
+
+    // every partition has been transformed once the new DDF is counted
+    Assert.assertEquals(31, newddf.getNumRows());
+    List<RservePartitionMetrics> metrics = ((io.ddf.spark.etl.TransformationHandler) ddf.getTransformationHandler())
+        .getRserveMetrics();
+    Assert.assertFalse(metrics.isEmpty());
+    for (RservePartitionMetrics partitionMetrics : metrics) {
+      Assert.assertTrue(partitionMetrics.chunks() > 0);
+      Assert.assertTrue(partitionMetrics.bytesReceived() > partitionMetrics.bytesSent() || partitionMetrics.rows() == 0);
+    }
   }
 
   @Test
@@ -73,6 +88,30 @@ public class TransformationHandlerTest extends BaseTest {
     Assert.assertTrue(newddf.getSchemaHandler().getColumns().get(1).getType() == ColumnType.INT);
   }
 
+  @Test
+  public void testTransformMapReduceNativeCombining() throws DDFException {
+    // sum of month group by dayofweek, with the reducers combining every 2 values of a key
+    String mapFuncDef = "function(part) { keyval(key=part$dayofweek, val=part$month) }";
+    String reduceFuncDef = "function(key, vv) { keyval.row(key=key, val=sum(vv)) }";
+    String engine = manager.getEngine();
+    String combineValues = Config.getValue(engine, ConfigConstant.FIELD_MAPREDUCE_COMBINE_VALUES);
+    Config.set(engine, ConfigConstant.FIELD_MAPREDUCE_COMBINE_VALUES.toString(), "2");
+    try {
+      DDF combined = ddf.Transform.transformMapReduceNative(mapFuncDef, reduceFuncDef, true);
+      DDF grouped = ddf.Transform.transformMapReduceNative(mapFuncDef, reduceFuncDef, false);
+
+      List<String> combinedRows = combined.VIEWS.head(100);
+      List<String> groupedRows = grouped.VIEWS.head(100);
+      Collections.sort(combinedRows);
+      Collections.sort(groupedRows);
+      Assert.assertFalse(groupedRows.isEmpty());
+      Assert.assertEquals(groupedRows, combinedRows);
+    } finally {
+      Config.set(engine, ConfigConstant.FIELD_MAPREDUCE_COMBINE_VALUES.toString(),
+          Strings.isNullOrEmpty(combineValues) ? "" : combineValues);
+    }
+  }
+
   @Test
   public void testReservedFactor() throws DDFException {
     ddf.setAsFactor("year");
@@ -200,4 +239,21 @@ public class TransformationHandlerTest extends BaseTest {
     ddf.Transform.transformUDF("col1 = (arrtime - deptime)");
     ddf.Transform.transformUDF("col2 = (arrtime - arrdelay)");
   }
+
+  @Test
+  public void testFittedScaling() throws DDFException {
+    ScalingTransform scaling = ddf.Transform.fitScaling(ScalingTransform.Method.MIN_MAX);
+    Assert.assertEquals(8, scaling.getColumns().length);
+    DDF scaled = ddf.Transform.transformScale(scaling);
+    Assert.assertEquals(0, scaled.getSummary()[5].min(), 1e-9);
+    Assert.assertEquals(1, scaled.getSummary()[5].max(), 1e-9);
+
+    // another DDF is scaled with the parameters fitted on the first one
+    ScalingTransform copy = (ScalingTransform) SerializationUtils.clone(scaling);
+    DDF subset = manager.sql2ddf("select year, month, dayofweek, deptime, arrtime, " +
+        "distance, arrdelay, depdelay from airline limit 10", false);
+    DDF scaledSubset = subset.Transform.transformScale(copy);
+    Assert.assertEquals((subset.getSummary()[5].min() - scaling.getOffsets()[5]) / scaling.getScales()[5],
+        scaledSubset.getSummary()[5].min(), 1e-9);
+  }
 }
@@ -76,4 +76,22 @@ class CrossValidationSuite extends ATestSuite {
       assert(testTableName != tableName)
     }
   }
+
+  test("folds share one pass and train concurrently") {
+    val ddf = manager.sql2ddf("select year, month, dayofmonth from airline", false).asInstanceOf[SparkDDF]
+    val numRows = ddf.getNumRows
+    val sets = ddf.ML.CVKFold(3, 7)
+
+    // every row is in the test set of exactly one fold
+    val testSizes = sets.map(_.getTestSet.asInstanceOf[SparkDDF].getRDD(classOf[Array[Object]]).count())
+    assert(testSizes.sum === numRows)
+    for ((set, testSize) <- sets.zip(testSizes)) {
+      assert(set.getTrainSet.asInstanceOf[SparkDDF].getRDD(classOf[Array[Object]]).count() === numRows - testSize)
+    }
+
+    val models = ddf.ML.CVTrain(sets, "kmeans", 2: java.lang.Integer, 5: java.lang.Integer, 1: java.lang.Integer,
+      "random")
+    assert(models.size === 3)
+    assert(models.forall(_.getRawModel != null))
+  }
 }
@@ -3,6 +3,11 @@ package io.ddf.spark.analytics
 import io.ddf.DDF
 import io.ddf.ml.IModel
 import io.ddf.spark.{ATestSuite, SparkDDF}
+import org.apache.spark.api.java.JavaRDD
+import org.apache.spark.sql.DataFrame
+import org.apache.spark.sql.types.DoubleType
+
+import scala.collection.JavaConversions._
 
 /**
   */
@@ -33,4 +38,21 @@ class MLSupporterSuite extends ATestSuite {
     assert(numrows > 0)
     manager.shutdown
   }
+
+  test("Test batched prediction") {
+    val ddf: DDF = manager.sql2ddf("select year, month, dayofmonth from airline", false)
+    val kmeansModel: IModel = ddf.ML.KMeans(5, 5, 2, "random")
+    val pred: SparkDDF = ddf.ML.applyModel(kmeansModel, false, true).asInstanceOf[SparkDDF]
+
+    val rows = pred.getJavaRDD(classOf[Array[Double]]).getObject.asInstanceOf[JavaRDD[Array[Double]]].collect()
+    assert(rows.size === ddf.getNumRows)
+    rows.foreach {
+      row => assert(row(3) === kmeansModel.predict(row.take(3)).asInstanceOf[Double])
+    }
+
+    // the predictions are emitted as a DataFrame of doubles
+    val dataFrame = pred.getRepresentationHandler.get(classOf[DataFrame]).asInstanceOf[DataFrame]
+    assert(dataFrame.schema.fields.forall(_.dataType == DoubleType))
+    assert(dataFrame.count() === ddf.getNumRows)
+  }
 }
@@ -1,7 +1,11 @@
 package io.ddf.spark.analytics
 
 import scala.collection.JavaConversions._
+import io.ddf.ml.{Evaluation, HyperparameterSearch}
 import io.ddf.spark.{ATestSuite, SparkDDF}
+import org.apache.spark.rdd.RDD
+import org.apache.spark.sql.catalyst.expressions.Row
+import org.apache.spark.storage.StorageLevel
 
 /**
   */
@@ -51,4 +55,63 @@ class MLlibIntegrationSuite extends ATestSuite {
     val yPred = trainDDF.ML.applyModel(logRegModel, false, true)
     println(yPred.asInstanceOf[SparkDDF].getNumRows())
   }
+
+  test("test hyperparameter search") {
+    val trainDDF = manager.sql2ddf("select " +
+      "distance/1000, arrdelay/100, depdelay/100, delayed from airline_delayed", false)
+    val folds = trainDDF.ML.CVKFold(2, 1L: java.lang.Long)
+
+    // numIterations in {5, 10}, stepSize in {0.01, 0.1}, miniBatchFraction = 0.1
+    val trials = HyperparameterSearch.grid(Array[Object](5: java.lang.Integer, 10: java.lang.Integer),
+      Array[Object](0.01: java.lang.Double, 0.1: java.lang.Double), Array[Object](0.1: java.lang.Double))
+    assert(trials.size === 4)
+
+    // the caller's own cache is left as it is
+    val callerRows = folds(0).getTestSet.getRepresentationHandler.get(classOf[RDD[_]], classOf[Row])
+      .asInstanceOf[RDD[Row]].persist()
+
+    val leaderboard = new HyperparameterSearch(folds, "linearRegressionWithSGD").setMaxConcurrentTrials(2).run(trials)
+    assert(leaderboard.size === 4)
+    assert(callerRows.getStorageLevel != StorageLevel.NONE)
+    for (trial <- leaderboard) {
+      assert(trial.getError == null)
+      assert(trial.getParams.length === 3)
+      assert(trial.getModels.length === 2 && trial.getModels.forall(_ != null))
+      assert(trial.getScores.length === 2)
+      assert(!trial.getMeanScore.isNaN)
+      assert(math.abs(trial.getMeanScore - trial.getScores.sum / 2) < 1e-9)
+      assert(trial.getTrainMillis >= 0 && trial.getScoreMillis >= 0)
+      assert(trial.getElapsedMillis >= trial.getTrainMillis + trial.getScoreMillis)
+    }
+    val scores = leaderboard.map(_.getMeanScore)
+    assert(scores.zip(scores.tail).forall { case (a, b) => a >= b })
+  }
+
+  test("test single-pass evaluation") {
+    val trainDDF = manager.sql2ddf("select " +
+      "distance/1000, arrdelay/100, depdelay/100, delayed from airline_delayed", false)
+    val regressionModel = trainDDF.ML.train("linearRegressionWithSGD", 10: java.lang.Integer,
+      0.1: java.lang.Double, 0.1: java.lang.Double)
+    val yTrueYPred = trainDDF.ML.applyModel(regressionModel, true, false)
+
+    val evaluation = yTrueYPred.getMLMetricsSupporter.evaluate(yTrueYPred)
+    assert(evaluation.getCount === yTrueYPred.getNumRows)
+
+    val meanYTrue = yTrueYPred.getSummary()(0).mean()
+    val r2 = yTrueYPred.getMLMetricsSupporter.r2score(meanYTrue)
+    assert(math.abs(evaluation.getR2 - r2) < 1e-9)
+
+    val residuals = evaluation.getResiduals
+    assert(residuals.count === evaluation.getCount)
+    assert(math.abs(evaluation.getRmse - math.sqrt(residuals.mSS / residuals.count + residuals.mean * residuals.mean))
+      < 1e-9)
+    assert(evaluation.getMae <= evaluation.getRmse)
+
+    assert(evaluation.getConfusionMatrix.map(_.sum).sum === evaluation.getCount)
+    assert(evaluation.getRoc.auc >= 0 && evaluation.getRoc.auc <= 1)
+
+    val onlyR2 = yTrueYPred.getMLMetricsSupporter.evaluate(yTrueYPred, Evaluation.Metric.R2)
+    assert(onlyR2.getR2 === evaluation.getR2)
+    assert(onlyR2.getRoc == null && onlyR2.getRmse.isNaN)
+  }
 }
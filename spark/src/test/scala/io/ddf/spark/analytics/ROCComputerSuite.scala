@@ -0,0 +1,70 @@
+package io.ddf.spark.analytics
+
+import io.ddf.spark.ATestSuite
+import io.ddf.spark.ml.ROCComputer
+
+import scala.util.Random
+
+/**
+  */
+class ROCComputerSuite extends ATestSuite {
+
+  // the probability that a positive scores above a negative, ties counting as a half
+  def bruteForceAUC(labels: Array[Double], scores: Array[Double]): Double = {
+    val positives = scores.zip(labels).filter(_._2 == 1.0).map(_._1)
+    val negatives = scores.zip(labels).filter(_._2 != 1.0).map(_._1)
+    val pairs = for (p <- positives; n <- negatives) yield if (p > n) 1.0 else if (p == n) 0.5 else 0.0
+    pairs.sum / pairs.length
+  }
+
+  test("exact AUC of several score columns in one pass") {
+    val random = new Random(7)
+    val rows = Array.fill(2000) {
+      val label = if (random.nextDouble() < 0.3) 1.0 else 0.0
+      // a good score, a poor one, and one with many ties
+      Array(label, label + random.nextGaussian(), random.nextDouble() + label * 0.1,
+        math.round(label + random.nextGaussian()).toDouble)
+    }
+    val data = manager.getSparkContext.parallelize(rows, 4)
+
+    val curves = new ROCComputer().ROCCurves(data, 0, Array(1, 2, 3), Array("good", "poor", "tied"))
+    assert(curves.map(_.getName) === Array("good", "poor", "tied"))
+    for ((curve, k) <- curves.zip(Array(1, 2, 3))) {
+      assert(curve.getAucErrorBound === 0.0)
+      assert(math.abs(curve.getAuc - bruteForceAUC(rows.map(_(0)), rows.map(_(k)))) < 1e-9)
+      assert(curve.getPositives + curve.getNegatives === rows.length)
+
+      // the curve starts at the highest threshold and ends with every row predicted positive
+      assert(curve.getThresholds.zip(curve.getThresholds.tail).forall { case (a, b) => a > b })
+      assert(curve.getTpr.last === 1.0 && curve.getFpr.last === 1.0)
+      assert(curve.getAreaUnderPR > 0 && curve.getAreaUnderPR <= 1)
+
+      // the same curve, lowest threshold first, as a RocMetric
+      val roc = curve.toRocMetric
+      assert(roc.auc === curve.getAuc)
+      assert(roc.pred.head(0) === curve.getThresholds.last)
+      roc.auc = 0
+      assert(math.abs(roc.computeAUC() - curve.getAuc) < 1e-9)
+    }
+    assert(curves(0).getAuc > curves(1).getAuc)
+  }
+
+  test("compressed scores bound the AUC error") {
+    val random = new Random(11)
+    val rows = Array.fill(5000) {
+      val label = if (random.nextBoolean()) 1.0 else 0.0
+      Array(label, label + random.nextGaussian())
+    }
+    val data = manager.getSparkContext.parallelize(rows, 3)
+
+    val exact = new ROCComputer().ROCCurves(data, 0, Array(1), Array("score"))(0)
+    val compressed = new ROCComputer().ROCCurves(data, 0, Array(1), Array("score"), 100)(0)
+    // the partitions are binned on the same breakpoints, so their intervals do not collapse into a few wide ones
+    assert(compressed.getThresholds.length <= 100)
+    assert(compressed.getThresholds.length >= 90)
+    assert(compressed.getAucErrorBound > 0)
+    assert(compressed.getAucErrorBound < 0.01)
+    assert(math.abs(compressed.getAuc - exact.getAuc) <= compressed.getAucErrorBound + 1e-12)
+    assert(compressed.getPositives + compressed.getNegatives === rows.length)
+  }
+}
@@ -0,0 +1,42 @@
+package io.ddf.spark.content
+
+import io.ddf.spark.ATestSuite
+import org.apache.spark.mllib.regression.LabeledPoint
+import org.apache.spark.rdd.RDD
+
+class ProjectionViewSuite extends ATestSuite {
+  createTableMtcars()
+
+  test("array double view only has the projected columns") {
+    val ddf = manager.sql2ddf("select * from mtcars", false)
+    val viewHandler = ddf.getViewHandler.asInstanceOf[ViewHandler]
+
+    val view = viewHandler.get(Array(0, 3), viewHandler.ViewFormat.ARRAY_DOUBLE)
+    assert(view.getNumColumns == 2)
+    assert(view.getColumnNames.get(1) == "hp")
+
+    val rdd = view.getRepresentationHandler.get(classOf[RDD[_]], classOf[Array[Double]]).asInstanceOf[RDD[Array[Double]]]
+    val rows = rdd.collect()
+    assert(rows.length == 32)
+    assert(rows.forall(_.length == 2))
+  }
+
+  test("labeled point view") {
+    val ddf = manager.sql2ddf("select * from mtcars", false)
+    val viewHandler = ddf.getViewHandler.asInstanceOf[ViewHandler]
+
+    val view = viewHandler.get(Array(3, 5, 0), viewHandler.ViewFormat.LABELED_POINT)
+    val points = view.getRepresentationHandler.get(classOf[RDD[_]], classOf[LabeledPoint])
+      .asInstanceOf[RDD[LabeledPoint]].collect()
+    assert(points.length == 32)
+    assert(points.forall(_.features.size == 2))
+  }
+
+  test("invalid column index") {
+    val ddf = manager.sql2ddf("select * from mtcars", false)
+    val viewHandler = ddf.getViewHandler.asInstanceOf[ViewHandler]
+    intercept[io.ddf.exception.DDFException] {
+      viewHandler.get(Array(42), viewHandler.ViewFormat.DEFAULT)
+    }
+  }
+}
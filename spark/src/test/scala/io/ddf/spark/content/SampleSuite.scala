@@ -1,6 +1,7 @@
 package io.ddf.spark.content
 
 import io.ddf.spark.ATestSuite
+import org.apache.spark.sql.DataFrame
 import scala.collection.JavaConversions._
 /**
  */
@@ -35,4 +36,35 @@ class SampleSuite extends ATestSuite {
       case e: Exception => println("exception caught: " + e)
     }
   }
+
+  test("test sample with numrows is deterministic") {
+    val ddf = manager.sql2ddf("select * from mtcars", false)
+    val sample1 = ddf.VIEWS.getRandomSample(10, false, 7).map(_.toSeq)
+    val sample2 = ddf.VIEWS.getRandomSample(10, false, 7).map(_.toSeq)
+    assert(sample1 == sample2)
+    assert(sample1.distinct.length == 10)
+
+    val sampleDDF = ddf.VIEWS.getRandomSampleByNum(10, false, 7)
+    assert(sampleDDF.getNumRows == 10)
+    assert(sampleDDF.getNumColumns == ddf.getNumColumns)
+  }
+
+  test("test stratified sample") {
+    val ddf = manager.sql2ddf("select * from mtcars", false)
+    val sizes = new java.util.HashMap[String, Integer]()
+    sizes.put("4", 3)
+    sizes.put("6", 2)
+    sizes.put("8", 20)
+    val sample = ddf.VIEWS.getStratifiedSample("cyl", sizes, 1)
+    val rows = sample.getRepresentationHandler.get(classOf[DataFrame]).asInstanceOf[DataFrame].collect()
+    val counts = rows.groupBy(_.getInt(1)).mapValues(_.length)
+    // stratum 8 only has 14 rows
+    assert(counts == Map(4 -> 3, 6 -> 2, 8 -> 14))
+
+    val fractions = new java.util.HashMap[String, java.lang.Double]()
+    fractions.put("4", 1.0)
+    fractions.put("6", 0.0)
+    val sampleByFraction = ddf.VIEWS.getStratifiedSampleByFraction("cyl", fractions, 1)
+    assert(sampleByFraction.getNumRows == 11)
+  }
 }